@@ -0,0 +1,23 @@
+#!/bin/bash
+
+# Builds and runs the JMH benchmarks with allocation profiling. Any arguments are passed
+# to JMH, e.g. a benchmark name regex:  ./bench.sh RuleInterpreterBenchmark
+#
+# The benchmarks in bench/ are kept out of the application build: the sources in src/
+# are compiled to build/classes, then bench/ is compiled against them with the JMH
+# annotation processor, which generates the benchmark stubs and META-INF/BenchmarkList,
+# and packaged as build/lib/rps-etc-bench-1.0.jar. The JMH jars are read from lib/.
+set -e
+
+JMH=lib/jmh-core-1.37.jar:lib/jopt-simple-5.0.4.jar:lib/commons-math3-3.6.1.jar
+
+rm -rf build/classes build/bench-classes
+mkdir -p build/classes build/bench-classes build/lib
+javac -nowarn -d build/classes $(find src -name "*.java")
+javac -nowarn -classpath build/classes:$JMH \
+  -processorpath lib/jmh-generator-annprocess-1.37.jar:lib/jmh-core-1.37.jar \
+  -d build/bench-classes $(find bench -name "*.java")
+jar cf build/lib/rps-etc-bench-1.0.jar -C build/bench-classes .
+
+java -classpath build/classes:build/lib/rps-etc-bench-1.0.jar:$JMH \
+  org.openjdk.jmh.Main -f 1 -wi 3 -i 5 -prof gc "$@"
@@ -0,0 +1,58 @@
+package org.puzzle.rps.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.puzzle.rps.BatchGameEngine;
+import org.puzzle.rps.BatchGameEngine.Strategy;
+import org.puzzle.rps.RuleInterpreter;
+
+/**
+ * Benchmark for a batch of games played a round at a time, with a mix of strategies.
+ * Scores are per round of the whole batch; divide by gameCount to compare with
+ * GameEngineBenchmark.
+ */
+@State(Scope.Thread)
+public class BatchGameEngineBenchmark {
+
+  private static final int ROUNDS = 10;
+
+  @Param({"rpsRules", "lizardSpockRules"})
+  public String ruleSet;
+
+  @Param({"1000", "1000000"})
+  public int gameCount;
+
+  private RuleInterpreter rules;
+
+  @Setup(Level.Trial)
+  public void prep() {
+    rules = RuleSets.load(ruleSet);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @OperationsPerInvocation(ROUNDS)
+  public BatchGameEngine play() {
+
+    // Building the batch is a small part of the cost, and gives every invocation fresh games
+    Strategy[] strategies = Strategy.values();
+    BatchGameEngine engine = new BatchGameEngine(rules, gameCount, ROUNDS, 42L);
+    for (int g=0; g<gameCount; g++) {
+      engine.addGame(strategies[g % strategies.length], strategies[(g / strategies.length) % strategies.length]);
+    }
+    engine.play();
+    return engine;
+  }
+
+}
@@ -0,0 +1,91 @@
+package org.puzzle.rps.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.puzzle.rps.GameEngine;
+import org.puzzle.rps.GameEngine.GameState;
+import org.puzzle.rps.GameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.RandomComputerPlayer;
+
+/**
+ * Benchmarks for a whole game with no delay between rounds, with a varying number
+ * of observers attached. Scores are per round.
+ */
+@State(Scope.Thread)
+public class GameEngineBenchmark {
+
+  private static final int ROUNDS = 10000;
+
+  @Param({"rpsRules", "lizardSpockRules"})
+  public String ruleSet;
+
+  @Param({"0", "1", "4"})
+  public int observerCount;
+
+  private GameEngine game;
+
+  @Setup(Level.Trial)
+  public void prep() {
+
+    RuleInterpreter rules = RuleSets.load(ruleSet);
+    Player p1 = new RandomComputerPlayer(rules.getTokenList());
+    Player p2 = new RandomComputerPlayer(rules.getTokenList());
+
+    game = new GameEngine(p1, p2, rules, ROUNDS);
+    game.setGameDelay(0);
+
+    for (int i=0; i<observerCount; i++) {
+      game.registerObserver( new NullObserver() );
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @OperationsPerInvocation(ROUNDS)
+  public GameState play() {
+    game.play();
+    return game.outcome();
+  }
+
+
+
+  /**
+   * Observer which does nothing, so that only the cost of dispatch is measured
+   */
+  public static class NullObserver implements GameObserver {
+
+    // Written to on every event, so that calls cannot be optimised away entirely
+    public int events;
+
+    @Override
+    public void notifyPlay(Player player, String token) {
+      events++;
+    }
+
+    @Override
+    public void notifyRoundOutcome(Result r) {
+      events++;
+    }
+
+    @Override
+    public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+      events++;
+    }
+
+  }
+
+}
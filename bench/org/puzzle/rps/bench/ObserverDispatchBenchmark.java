@@ -0,0 +1,72 @@
+package org.puzzle.rps.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.puzzle.rps.GameEngine;
+import org.puzzle.rps.GameEngine.GameState;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+
+/**
+ * Benchmark isolating observer dispatch: players always play the same pair of
+ * tokens, so player and rule costs are constant and the difference between
+ * observer counts is the cost of notifying them. Scores are per round.
+ */
+@State(Scope.Thread)
+public class ObserverDispatchBenchmark {
+
+  private static final int ROUNDS = 10000;
+
+  @Param({"0", "1", "2", "8"})
+  public int observerCount;
+
+  private GameEngine game;
+
+  @Setup(Level.Trial)
+  public void prep() {
+
+    RuleInterpreter rules = RuleSets.load("rpsRules");
+    final String rock = rules.token(0);
+    final String scissors = rules.token(1);
+
+    Player p1 = new Player() {
+      @Override
+      public String getMove() {
+        return rock;
+      }
+    };
+    Player p2 = new Player() {
+      @Override
+      public String getMove() {
+        return scissors;
+      }
+    };
+
+    game = new GameEngine(p1, p2, rules, ROUNDS);
+    game.setGameDelay(0);
+
+    for (int i=0; i<observerCount; i++) {
+      game.registerObserver( new GameEngineBenchmark.NullObserver() );
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @OperationsPerInvocation(ROUNDS)
+  public GameState dispatch() {
+    game.play();
+    return game.outcome();
+  }
+
+}
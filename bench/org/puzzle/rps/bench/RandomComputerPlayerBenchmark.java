@@ -0,0 +1,42 @@
+package org.puzzle.rps.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.RandomComputerPlayer;
+
+/**
+ * Benchmark for the random computer player's move selection.
+ */
+@State(Scope.Thread)
+public class RandomComputerPlayerBenchmark {
+
+  @Param({"rpsRules", "generated-1001"})
+  public String ruleSet;
+
+  private Player player;
+
+  @Setup(Level.Trial)
+  public void prep() {
+    RuleInterpreter rules = RuleSets.load(ruleSet);
+    player = new RandomComputerPlayer(rules.getTokenList());
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public String getMove() {
+    return player.getMove();
+  }
+
+}
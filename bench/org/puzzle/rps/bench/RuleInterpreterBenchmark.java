@@ -0,0 +1,115 @@
+package org.puzzle.rps.bench;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.RuleInterpreter;
+
+/**
+ * Benchmarks for parsing rules, and for looking up winners by token, by index, and
+ * in bulk.
+ */
+@State(Scope.Thread)
+public class RuleInterpreterBenchmark {
+
+  @Param({"rpsRules", "lizardSpockRules", "generated-101", "generated-1001"})
+  public String ruleSet;
+
+  private File ruleFile;
+  private RuleInterpreter rules;
+
+  // Pseudo-random walk over the token pairs, so lookups don't all hit one cell
+  private List<String> tokens;
+  private int tokenCount;
+  private int i1;
+  private int i2;
+
+  // Pairs for bulk lookups, and the codes they resolve to
+  private static final int BATCH_SIZE = 4096;
+  private int[] batchFirst;
+  private int[] batchSecond;
+  private int[] batchCodes;
+
+  @Setup(Level.Trial)
+  public void prep() {
+    ruleFile = RuleSets.ruleFile(ruleSet);
+    rules = RuleSets.load(ruleSet);
+    tokens = rules.getTokenList();
+    tokenCount = rules.getTokenCount();
+
+    batchFirst = new int[BATCH_SIZE];
+    batchSecond = new int[BATCH_SIZE];
+    batchCodes = new int[BATCH_SIZE];
+    for (int i=0; i<BATCH_SIZE; i++) {
+      advance();
+      batchFirst[i] = i1;
+      batchSecond[i] = i2;
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public RuleInterpreter parseRules() throws FileNotFoundException {
+    RuleInterpreter ri = new RuleInterpreter();
+    ri.parseRules(ruleFile);
+    return ri;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Result winnerByToken() {
+    advance();
+    return rules.winner(tokens.get(i1), tokens.get(i2));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Result winnerByIndex() {
+    advance();
+    return rules.winner(i1, i2);
+  }
+
+  /*
+   * Time per batch; divide by BATCH_SIZE to compare with the single lookups
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public int[] outcomesBatch() {
+    rules.outcomes(batchFirst, batchSecond, batchCodes);
+    return batchCodes;
+  }
+
+  /*
+   * Step to the next pair of tokens. Cheap, and the same for both lookups.
+   */
+  private void advance() {
+    i1 += 1;
+    if (i1 == tokenCount) {
+      i1 = 0;
+    }
+    i2 += 7;
+    if (i2 >= tokenCount) {
+      i2 -= tokenCount;
+      if (i2 >= tokenCount) {
+        i2 = 0;
+      }
+    }
+  }
+
+}
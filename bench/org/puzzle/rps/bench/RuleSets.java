@@ -0,0 +1,89 @@
+package org.puzzle.rps.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.puzzle.rps.RuleInterpreter;
+
+/**
+ * Static container for benchmark rule sets. Resolves the bundled rule files by
+ * name, and generates large balanced rule sets on demand.
+ *
+ * <p>A generated rule set named "generated-N" has N tokens (N must be odd), where
+ * each token beats the (N-1)/2 tokens following it, wrapping around. This is the
+ * same shape as Rock-Paper-Scissors, so every pair of tokens is covered exactly once.
+ */
+public class RuleSets {
+
+  private static final String GENERATED_PREFIX = "generated-";
+
+  /**
+   * Get a rule file for the given rule set name: either a bundled rule file
+   * (e.g. "rpsRules") or a generated one (e.g. "generated-101").
+   * @param name Name of the rule set
+   * @return File containing the rules
+   */
+  public static File ruleFile(String name) {
+
+    if (name.startsWith(GENERATED_PREFIX)) {
+      return generate( Integer.parseInt(name.substring(GENERATED_PREFIX.length())) );
+    }
+
+    // Bundled rule sets; run benchmarks from the project root
+    return new File("src/resources/" + name + ".txt");
+  }
+
+  /**
+   * Parse the named rule set.
+   * @param name Name of the rule set
+   * @return RuleInterpreter, with the rules parsed
+   */
+  public static RuleInterpreter load(String name) {
+    try {
+      RuleInterpreter rules = new RuleInterpreter();
+      rules.parseRules( ruleFile(name) );
+      return rules;
+    } catch (FileNotFoundException e) {
+      throw new RuntimeException("Unable to find rule set " + name, e);
+    }
+  }
+
+  /**
+   * Write a balanced rule set with the given number of tokens to a temporary file.
+   * @param tokenCount Number of tokens, must be odd
+   * @return File containing the rules; deleted on exit
+   */
+  public static File generate(int tokenCount) {
+
+    if (tokenCount % 2 == 0) {
+      throw new IllegalArgumentException("Balanced rule sets need an odd number of tokens");
+    }
+
+    try {
+
+      File ruleFile = File.createTempFile(GENERATED_PREFIX + tokenCount + "-", ".txt");
+      ruleFile.deleteOnExit();
+
+      BufferedWriter writer = new BufferedWriter(new FileWriter(ruleFile));
+      try {
+        for (int i=0; i<tokenCount; i++) {
+          for (int k=1; k<=tokenCount/2; k++) {
+            writer.write( String.format("T%d:beats:T%d", i, (i + k) % tokenCount) );
+            writer.newLine();
+          }
+        }
+      } finally {
+        writer.close();
+      }
+
+      return ruleFile;
+
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception generating rule set", e);
+    }
+  }
+
+}
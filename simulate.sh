@@ -0,0 +1,3 @@
+#!/bin/bash
+
+java -classpath build/lib/rps-etc-1.0.jar org.puzzle.rps.SimulationGamesMaster src/resources/rpsRules.txt ${1:-100} ${2:-100000}
@@ -0,0 +1,329 @@
+package org.puzzle.rps;
+
+/**
+ * Engine for running very many lightweight games at once, for strategy population
+ * studies. Where a GameEngine holds Player objects and plays one game on its thread,
+ * a BatchGameEngine holds every game as a slot across parallel primitive arrays -
+ * strategy ids, scores, round counters, last moves and random number state - and
+ * advances all of them one round at a time, in a single sweep over the arrays.
+ *
+ * <p>Each sweep works through the games a block at a time: moves for every game in
+ * the block are chosen into one pair of arrays, resolved in one call to
+ * RuleInterpreter.outcomes(), and then scored. Each pass reads its arrays in order, and
+ * a block's working set stays in cache, so one core can drive millions of games. A
+ * game takes 30 bytes, and nothing is allocated once the engine is built.
+ *
+ * <p>Games play built-in Strategies rather than Players, so that moves can be chosen
+ * without virtual calls or per-game objects. Each game has its own random number
+ * state, seeded from the engine seed and the game's slot, so a batch replays exactly
+ * given the same seed, games and rules.
+ *
+ * <p>Instances are not thread safe. Large populations can be split across several
+ * engines, one per thread, sharing the rules.
+ */
+public class BatchGameEngine {
+
+  /**
+   * Built-in strategies. Strategies that follow the last round play randomly in
+   * the first round of each game.
+   */
+  public enum Strategy {
+    /** Play a token chosen uniformly at random */
+    RANDOM,
+    /** Always play the first token in the symbol table */
+    CONSTANT,
+    /** Play the token after our own last move, in symbol table order */
+    CYCLE,
+    /** Play the opponent's last move */
+    COPY_LAST,
+    /** Play a token that beats the opponent's last move */
+    BEAT_LAST
+  }
+
+  private static final Strategy[] STRATEGIES = Strategy.values();
+
+  // Games per block of a sweep: small enough that a block's arrays stay in cache
+  private static final int BLOCK_SIZE = 1024;
+
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private final RuleInterpreter ruleInterpreter;
+  private final int tokenCount;
+  private final int roundsPerGame;
+  private final long seed;
+
+  // Best response to each token: a token that beats it, or failing that draws with it
+  private final int[] bestResponse;
+
+  // Game state, one slot per game
+  private final byte[] p1Strategy;
+  private final byte[] p2Strategy;
+  private final int[] p1Score;
+  private final int[] p2Score;
+  private final int[] rounds;
+  private final int[] p1Last;
+  private final int[] p2Last;
+  private final long[] randomState;
+  private int gameCount;
+  private int activeCount;
+
+  // Scratch space for one block of a sweep
+  private final int[] blockGames = new int[BLOCK_SIZE];
+  private final int[] blockMoves1 = new int[BLOCK_SIZE];
+  private final int[] blockMoves2 = new int[BLOCK_SIZE];
+  private final int[] blockCodes = new int[BLOCK_SIZE];
+
+  /**
+   * Public constructor
+   * @param rules The rules to apply to every game
+   * @param capacity Most games the engine can hold
+   * @param roundsPerGame Number of rounds in each game
+   * @param seed Seed for the games' random moves
+   */
+  public BatchGameEngine(RuleInterpreter rules, int capacity, int roundsPerGame, long seed) {
+
+    if (capacity < 0) {
+      throw new IllegalArgumentException( String.format("Invalid capacity '%d'", capacity) );
+    }
+    if (roundsPerGame < 1) {
+      throw new IllegalArgumentException( String.format("Invalid number of rounds '%d'", roundsPerGame) );
+    }
+
+    this.ruleInterpreter = rules;
+    this.tokenCount = rules.getTokenCount();
+    this.roundsPerGame = roundsPerGame;
+    this.seed = seed;
+
+    // Work out best responses from the outcome table
+    bestResponse = new int[tokenCount];
+    for (int opp=0; opp<tokenCount; opp++) {
+      bestResponse[opp] = opp;
+      for (int t=0; t<tokenCount; t++) {
+        if (RuleInterpreter.side( rules.outcome(t, opp) ) == RuleInterpreter.FIRST_WINS) {
+          bestResponse[opp] = t;
+          break;
+        }
+      }
+    }
+
+    p1Strategy = new byte[capacity];
+    p2Strategy = new byte[capacity];
+    p1Score = new int[capacity];
+    p2Score = new int[capacity];
+    rounds = new int[capacity];
+    p1Last = new int[capacity];
+    p2Last = new int[capacity];
+    randomState = new long[capacity];
+  }
+
+  /**
+   * Add a game between two strategies. It starts on the next round played.
+   * @param strategy1 Strategy for player one
+   * @param strategy2 Strategy for player two
+   * @return int, the game's slot, by which its state can be read
+   * @throws IllegalStateException If the engine is at capacity
+   */
+  public int addGame(Strategy strategy1, Strategy strategy2) {
+
+    if (gameCount == p1Strategy.length) {
+      throw new IllegalStateException( String.format("Batch engine is full, at %d games", gameCount) );
+    }
+
+    int g = gameCount++;
+    p1Strategy[g] = (byte) strategy1.ordinal();
+    p2Strategy[g] = (byte) strategy2.ordinal();
+    p1Last[g] = -1;
+    p2Last[g] = -1;
+    randomState[g] = mix(seed + GOLDEN_GAMMA * (g + 1));
+    activeCount++;
+    return g;
+  }
+
+  /**
+   * Play one round of every game that isn't yet finished.
+   * @return int, the number of games still unfinished afterwards
+   * @throws IllegalStateException If no rule covers a pair of moves
+   */
+  public int playRound() {
+
+    for (int from=0; from<gameCount; from+=BLOCK_SIZE) {
+      playBlock(from, Math.min(gameCount, from + BLOCK_SIZE));
+    }
+    return activeCount;
+  }
+
+  /**
+   * Play rounds until every game is finished.
+   * @throws IllegalStateException If no rule covers a pair of moves
+   */
+  public void play() {
+    while (activeCount > 0) {
+      playRound();
+    }
+  }
+
+  /*
+   * Private helper method. Play a round of the unfinished games in slots 'from' up to
+   * 'to': choose every move, resolve all of them at once, then score them.
+   */
+  private void playBlock(int from, int to) {
+
+    int count = 0;
+    for (int g=from; g<to; g++) {
+      if (rounds[g] < roundsPerGame) {
+        blockGames[count] = g;
+        blockMoves1[count] = move(g, p1Strategy[g], p1Last[g], p2Last[g]);
+        blockMoves2[count] = move(g, p2Strategy[g], p2Last[g], p1Last[g]);
+        count++;
+      }
+    }
+    if (count == 0) {
+      return;
+    }
+
+    ruleInterpreter.outcomes(blockMoves1, blockMoves2, blockCodes, 0, count);
+
+    for (int i=0; i<count; i++) {
+      int g = blockGames[i];
+      switch (RuleInterpreter.side(blockCodes[i])) {
+        case RuleInterpreter.FIRST_WINS:
+          p1Score[g]++;
+          break;
+        case RuleInterpreter.SECOND_WINS:
+          p2Score[g]++;
+          break;
+        case RuleInterpreter.NO_RULE:
+          throw new IllegalStateException( String.format("No rule covers '%s' and '%s'",
+              ruleInterpreter.token(blockMoves1[i]), ruleInterpreter.token(blockMoves2[i])) );
+        default:
+          // A draw, no change to scores
+      }
+      p1Last[g] = blockMoves1[i];
+      p2Last[g] = blockMoves2[i];
+      if (++rounds[g] == roundsPerGame) {
+        activeCount--;
+      }
+    }
+  }
+
+  /*
+   * Private helper method. Choose a move for one side of a game, given the side's
+   * own last move and its opponent's; both -1 before the first round.
+   */
+  private int move(int g, byte strategy, int ownLast, int oppLast) {
+
+    switch (STRATEGIES[strategy]) {
+      case CONSTANT:
+        return 0;
+      case CYCLE:
+        if (ownLast >= 0) {
+          return ownLast + 1 == tokenCount ? 0 : ownLast + 1;
+        }
+        break;
+      case COPY_LAST:
+        if (oppLast >= 0) {
+          return oppLast;
+        }
+        break;
+      case BEAT_LAST:
+        if (oppLast >= 0) {
+          return bestResponse[oppLast];
+        }
+        break;
+      default:
+        // Random
+    }
+    return nextRandom(g);
+  }
+
+  /*
+   * Private helper method. Next random token for a game, from its SplitMix64 state.
+   */
+  private int nextRandom(int g) {
+    long z = mix( randomState[g] += GOLDEN_GAMMA );
+    return (int) (((z >>> 32) * tokenCount) >>> 32);
+  }
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /** Number of games added */
+  public int getGameCount() {
+    return gameCount;
+  }
+
+  /** Number of games not yet finished */
+  public int getActiveCount() {
+    return activeCount;
+  }
+
+  /** Player one's score in the given game */
+  public int getP1Score(int game) {
+    checkGame(game);
+    return p1Score[game];
+  }
+
+  /** Player two's score in the given game */
+  public int getP2Score(int game) {
+    checkGame(game);
+    return p2Score[game];
+  }
+
+  /** Number of rounds played in the given game */
+  public int getRoundsPlayed(int game) {
+    checkGame(game);
+    return rounds[game];
+  }
+
+  /** Strategy of player one in the given game */
+  public Strategy getP1Strategy(int game) {
+    checkGame(game);
+    return STRATEGIES[p1Strategy[game]];
+  }
+
+  /** Strategy of player two in the given game */
+  public Strategy getP2Strategy(int game) {
+    checkGame(game);
+    return STRATEGIES[p2Strategy[game]];
+  }
+
+  /**
+   * Rounds won by each strategy across all games so far, for population studies.
+   * @return long[], indexed by Strategy ordinal
+   */
+  public long[] roundsWonByStrategy() {
+    long[] won = new long[STRATEGIES.length];
+    for (int g=0; g<gameCount; g++) {
+      won[p1Strategy[g]] += p1Score[g];
+      won[p2Strategy[g]] += p2Score[g];
+    }
+    return won;
+  }
+
+  /**
+   * Rounds played by each strategy across all games so far; a strategy playing
+   * itself counts twice.
+   * @return long[], indexed by Strategy ordinal
+   */
+  public long[] roundsPlayedByStrategy() {
+    long[] played = new long[STRATEGIES.length];
+    for (int g=0; g<gameCount; g++) {
+      played[p1Strategy[g]] += rounds[g];
+      played[p2Strategy[g]] += rounds[g];
+    }
+    return played;
+  }
+
+  /*
+   * Private helper method, rejects slots that hold no game
+   */
+  private void checkGame(int game) {
+    if (game < 0 || game >= gameCount) {
+      throw new IllegalArgumentException( String.format("Invalid game slot '%d'", game) );
+    }
+  }
+
+}
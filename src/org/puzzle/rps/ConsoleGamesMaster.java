@@ -5,10 +5,10 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import org.puzzle.rps.history.GameHistoryLog;
 import org.puzzle.rps.players.Player;
 import org.puzzle.rps.players.PlayerFactory;
 import org.puzzle.rps.players.PlayerFactory.PlayerType;
@@ -23,8 +23,13 @@ import org.puzzle.rps.support.FileSupport;
  * tricky to unit test. However the the abstract logic provided in the GamesMaster does have
  * unit test coverage.
  * 
- * <p>Also this class does not currently provide a means for changing rulesets between
- * games. The rule set can be provided via a construction parameter.
+ * <p>The rule set can be provided via a construction parameter, or through a RulesetHolder;
+ * when run from the command line, the rule file is watched, and changes to it are picked
+ * up by the next game.
+ * 
+ * <p>Each game's number and seed are shown with the banner. Computer players, and the
+ * choice of dinosaur, are seeded from the game seed; a game between computer players
+ * can be replayed with GameReplay.
  * 
  * ASCII art dinosaurs courtesy:
  * http://www.ascii-art.de/ascii/def/dinosaur.txt
@@ -33,10 +38,8 @@ public class ConsoleGamesMaster extends GamesMaster {
 
   private static final String ASCII_BANNER;
   private static final String[] DINOSAURS;  
-  private static final Random RANDOM_DINO = new Random();
   
   private BufferedReader reader;  
-  private List<String> tokenList;
   
   // Static initializer, for reading in file based resources
   static {
@@ -68,10 +71,18 @@ public class ConsoleGamesMaster extends GamesMaster {
         
     // Prepare console resource for reading input
     reader = new BufferedReader(new InputStreamReader(System.in));
+  }
+
+  /**
+   * Public constructor
+   * @param holder Holder of the rules to apply to games; each game uses the current rules
+   * @param pFactory Class for creating players
+   */
+  public ConsoleGamesMaster(RulesetHolder holder, PlayerFactory pFactory) {
+    super(holder, pFactory);
     
-    // Create a token list for display, and for player creation
-    tokenList = new ArrayList<String>();
-    tokenList.addAll( ruleInterpreter.getTokens() );
+    // Prepare console resource for reading input
+    reader = new BufferedReader(new InputStreamReader(System.in));
   }
 
   @Override
@@ -85,6 +96,7 @@ public class ConsoleGamesMaster extends GamesMaster {
     System.out.println();    
     
     // Display available game tokens and their associated numbers
+    List<String> tokenList = ruleInterpreter.getTokenList();
     System.out.println("Game tokens:");
     for (int j=0; j<tokenList.size(); j++ ) {
       System.out.println( String.format("  %d - %s", j+1, tokenList.get(j)) );
@@ -98,33 +110,37 @@ public class ConsoleGamesMaster extends GamesMaster {
       System.out.println( String.format("  %d - %s", i+1, types[i]) );
     }
 
+    System.out.println( String.format("Game %d, seed %d", gameNumber, gameSeed()) );
     System.out.println();    
 
   }
 
   @Override
   protected Player readyPlayerOne(PlayerFactory factory) {
-    return readyPlayer("Select player 1 type: ", factory);
+    return readyPlayer("Select player 1 type: ", factory, 1);
   }
 
   @Override
   protected Player readyPlayerTwo(PlayerFactory factory) {
-    return readyPlayer("Select player 2 type: ", factory);
+    return readyPlayer("Select player 2 type: ", factory, 2);
   }
 
   /*
    * Private helper method. Display the given console prompt, then
    * obtains a choice of player and creates the required type using
-   * the player factory. 
+   * the player factory. Computer players are seeded from the game seed.
    */
-  private Player readyPlayer(String consolePrompt, PlayerFactory factory) {
+  private Player readyPlayer(String consolePrompt, PlayerFactory factory, int player) {
     
     System.out.print(consolePrompt);
     
     int choice = readIntFromConsole( 1, PlayerType.values().length );
     PlayerType type = PlayerType.values()[choice-1];
     
-    return factory.createPlayer( type , tokenList );
+    if (type == PlayerType.HUMAN) {
+      return factory.createPlayer( type , ruleInterpreter );
+    }
+    return factory.createPlayer( type , ruleInterpreter, playerSeed(player) );
   }
 
 
@@ -182,13 +198,13 @@ public class ConsoleGamesMaster extends GamesMaster {
 
   private void outputWinner(String winner) {
     
-    // Display the winner, then a random choice of dinosaur
+    // Display the winner, then a choice of dinosaur, random but repeatable from the game seed
     System.out.println( String.format( "And the winner is: %s", winner) );
     System.out.println( "" );  
     System.out.println( String.format( "Congratulations %s, here is your celebratory dinosaur:",winner ));
     System.out.println( "" );  
     
-    System.out.println( DINOSAURS[ RANDOM_DINO.nextInt( DINOSAURS.length ) ] );
+    System.out.println( DINOSAURS[ new SplittableRandom( gameSeed() ).nextInt( DINOSAURS.length ) ] );
   }
 
   
@@ -244,18 +260,25 @@ public class ConsoleGamesMaster extends GamesMaster {
    */
   public static void main(String args[]) throws FileNotFoundException {
     
-    if (args.length != 1) {
-      System.out.println("Usage: java [jvm args] org.puzzle.rps.ConsoleGamesMaster [rule file]");
+    if (args.length < 1 || args.length > 3) {
+      System.out.println("Usage: java [jvm args] org.puzzle.rps.ConsoleGamesMaster [rule file] [master seed] [history directory]");
     }
     
-    // Use rules defined on command line, plus default player factory
-    RuleInterpreter ruleset = new RuleInterpreter();
-    ruleset.parseRules( new File(args[0]) );
+    // Use rules defined on command line, reloaded when changed, plus default player factory
+    RulesetHolder ruleset = new RulesetHolder( new File(args[0]) );
+    new RuleFileWatcher(ruleset).start();
     
     PlayerFactory playerFactory = new PlayerFactory();
     
     // Create instance of this class, set it going...
     ConsoleGamesMaster gm = new ConsoleGamesMaster(ruleset, playerFactory);
+    if (args.length >= 2) {
+      gm.setMasterSeed( Long.parseLong(args[1]) );
+    }
+    if (args.length == 3) {
+      // Game results are kept in a history log, as well as shown
+      gm.setHistory( new GameHistoryLog( new File(args[2]) ) );
+    }
     gm.runGames(true);
   }
   
@@ -0,0 +1,50 @@
+package org.puzzle.rps;
+
+/**
+ * Outcome table held on the heap, as one int per pair of tokens in row order.
+ */
+class DenseOutcomeTable implements OutcomeTable {
+
+  private final int tokenCount;
+  private final int[] codes;
+
+  /**
+   * Package constructor
+   * @param tokenCount Number of tokens
+   * @param codes Outcome codes, tokenCount * tokenCount of them in row order
+   */
+  DenseOutcomeTable(int tokenCount, int[] codes) {
+    if (codes.length != tokenCount * tokenCount) {
+      throw new IllegalArgumentException( String.format("Expected %d outcome codes, got %d",
+          tokenCount * tokenCount, codes.length) );
+    }
+    this.tokenCount = tokenCount;
+    this.codes = codes;
+  }
+
+  @Override
+  public int getTokenCount() {
+    return tokenCount;
+  }
+
+  @Override
+  public int code(int t1, int t2) {
+    return codes[t1 * tokenCount + t2];
+  }
+
+  @Override
+  public void codes(int[] first, int[] second, int[] codes, int offset, int length) {
+    // Plain loop over plain arrays: nothing for the JIT to hoist but the bounds checks
+    int[] table = this.codes;
+    int n = tokenCount;
+    for (int i=offset; i<offset+length; i++) {
+      codes[i] = table[first[i] * n + second[i]];
+    }
+  }
+
+  @Override
+  public long getFootprint() {
+    return 4L * codes.length;
+  }
+
+}
@@ -0,0 +1,223 @@
+package org.puzzle.rps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.ResumablePlayer;
+
+/**
+ * Saved state of a game part way through, from which a GameEngine can resume it: the
+ * rounds played and scores so far, and the saved state of each player that is a
+ * ResumablePlayer.
+ *
+ * <p>Format, little endian:
+ * <PRE>
+ *  0  int   magic
+ *  4  int   format version
+ *  8  int   number of rounds in the game
+ * 12  int   rounds played
+ * 16  int   P1 score
+ * 20  int   P2 score
+ * 24  int   P1 timeouts
+ * 28  int   P2 timeouts
+ * 32  int   hash code of the rules' token list
+ * 36  int   size of P1's saved state, in bytes; -1 if not saved
+ * 40  int   size of P2's saved state, in bytes; -1 if not saved
+ * 44        P1's saved state, then P2's
+ *     long  CRC32 of everything before it
+ * </PRE>
+ *
+ * <p>A checkpoint is encoded into a single buffer, players writing their state straight
+ * into it, and the buffer is written out as it is; the buffer can be reused for the
+ * next checkpoint once written. Checkpoints are written to a temporary file, forced to
+ * disk and moved into place, so a checkpoint file always holds the whole of the last
+ * checkpoint, however the process stops.
+ */
+class GameCheckpoint {
+
+  private static final int MAGIC = 0x4B535052; // "RPSK"
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 44;
+
+  private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  /** Number of rounds in the game */
+  final int rounds;
+  /** Rounds played when the checkpoint was taken */
+  final int round;
+  /** Scores and timeouts so far */
+  final int p1Score;
+  final int p2Score;
+  final int p1Timeouts;
+  final int p2Timeouts;
+  /** Hash code of the token list of the rules in play */
+  final int tokensHash;
+  /** Players' saved state, in the checkpoint's byte order; null if not saved */
+  final ByteBuffer p1State;
+  final ByteBuffer p2State;
+
+  /*
+   * Private constructor, for a checkpoint read from file
+   */
+  private GameCheckpoint(int rounds, int round, int p1Score, int p2Score, int p1Timeouts, int p2Timeouts,
+      int tokensHash, ByteBuffer p1State, ByteBuffer p2State) {
+    this.rounds = rounds;
+    this.round = round;
+    this.p1Score = p1Score;
+    this.p2Score = p2Score;
+    this.p1Timeouts = p1Timeouts;
+    this.p2Timeouts = p2Timeouts;
+    this.tokensHash = tokensHash;
+    this.p1State = p1State;
+    this.p2State = p2State;
+  }
+
+  /**
+   * Read a checkpoint
+   * @param file The checkpoint file
+   * @return GameCheckpoint, or null if there is no checkpoint file
+   * @throws IllegalStateException If the file is not an intact checkpoint
+   */
+  static GameCheckpoint read(File file) {
+
+    if (!file.isFile()) {
+      return null;
+    }
+
+    ByteBuffer buf;
+    try {
+      buf = ByteBuffer.wrap( Files.readAllBytes(file.toPath()) ).order(ORDER);
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception reading game checkpoint",e);
+    }
+
+    int size = buf.capacity();
+    if (size < HEADER_SIZE + 8 || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+      throw new IllegalStateException( String.format("Invalid checkpoint file '%s'", file) );
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(buf.array(), 0, size - 8);
+    int p1Size = buf.getInt(36);
+    int p2Size = buf.getInt(40);
+    if (crc.getValue() != buf.getLong(size - 8)
+        || (long) HEADER_SIZE + Math.max(0, p1Size) + Math.max(0, p2Size) + 8 != size) {
+      throw new IllegalStateException( String.format("Invalid checkpoint file '%s'", file) );
+    }
+
+    buf.position(HEADER_SIZE);
+    ByteBuffer p1State = state(buf, p1Size);
+    ByteBuffer p2State = state(buf, p2Size);
+    return new GameCheckpoint(buf.getInt(8), buf.getInt(12), buf.getInt(16), buf.getInt(20),
+        buf.getInt(24), buf.getInt(28), buf.getInt(32), p1State, p2State);
+  }
+
+  /**
+   * Encode a checkpoint, saving the state of each player that is a ResumablePlayer
+   * @param buf Buffer from an earlier checkpoint, to reuse if it is large enough; or null
+   * @param rounds Number of rounds in the game
+   * @param round Rounds played
+   * @param p1Score P1's score
+   * @param p2Score P2's score
+   * @param p1Timeouts P1's timeouts
+   * @param p2Timeouts P2's timeouts
+   * @param tokensHash Hash code of the token list of the rules in play
+   * @param p1 Player one
+   * @param p2 Player two
+   * @return ByteBuffer holding the checkpoint, ready to write
+   * @throws IllegalStateException If a player saves other than the state size it gave
+   */
+  static ByteBuffer encode(ByteBuffer buf, int rounds, int round, int p1Score, int p2Score, int p1Timeouts,
+      int p2Timeouts, int tokensHash, Player p1, Player p2) {
+
+    int p1Size = p1 instanceof ResumablePlayer ? ((ResumablePlayer) p1).getStateSize() : -1;
+    int p2Size = p2 instanceof ResumablePlayer ? ((ResumablePlayer) p2).getStateSize() : -1;
+    int size = HEADER_SIZE + Math.max(0, p1Size) + Math.max(0, p2Size) + 8;
+    if (buf == null || buf.capacity() < size) {
+      buf = ByteBuffer.allocate(size).order(ORDER);
+    }
+    buf.clear();
+    buf.limit(size);
+
+    buf.putInt(MAGIC).putInt(VERSION).putInt(rounds).putInt(round);
+    buf.putInt(p1Score).putInt(p2Score).putInt(p1Timeouts).putInt(p2Timeouts);
+    buf.putInt(tokensHash).putInt(p1Size).putInt(p2Size);
+    saveState(p1, p1Size, buf);
+    saveState(p2, p2Size, buf);
+
+    CRC32 crc = new CRC32();
+    crc.update(buf.array(), 0, buf.position());
+    buf.putLong(crc.getValue());
+    buf.flip();
+    return buf;
+  }
+
+  /**
+   * Write an encoded checkpoint
+   * @param file The checkpoint file; replaced if it exists
+   * @param buf The checkpoint, from encode()
+   */
+  static void write(File file, ByteBuffer buf) {
+
+    try {
+      File parent = file.getAbsoluteFile().getParentFile();
+      File temp = File.createTempFile(file.getName(), ".tmp", parent);
+      try {
+        FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE);
+        try {
+          while (buf.hasRemaining()) {
+            channel.write(buf);
+          }
+          channel.force(true);
+        } finally {
+          channel.close();
+        }
+
+        Files.move(temp.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        temp.delete();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception writing game checkpoint",e);
+    }
+  }
+
+  /*
+   * Private helper method, saves a player's state into the buffer, if it has any
+   */
+  private static void saveState(Player p, int size, ByteBuffer buf) {
+    if (size < 0) {
+      return;
+    }
+    int start = buf.position();
+    ((ResumablePlayer) p).saveState(buf);
+    if (buf.position() - start != size) {
+      throw new IllegalStateException(
+          String.format("Invalid saved state size '%d'", buf.position() - start) );
+    }
+  }
+
+  /*
+   * Private helper method, a view of a player's saved state in the buffer; null if not saved
+   */
+  private static ByteBuffer state(ByteBuffer buf, int size) {
+    if (size < 0) {
+      return null;
+    }
+    ByteBuffer state = buf.slice();
+    state.limit(size);
+    buf.position(buf.position() + size);
+    return state.order(ORDER);
+  }
+
+}
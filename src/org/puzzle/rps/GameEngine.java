@@ -1,25 +1,126 @@
 package org.puzzle.rps;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import org.puzzle.rps.metrics.EngineMetrics;
+import org.puzzle.rps.metrics.LatencyHistogram;
+import org.puzzle.rps.players.AsyncPlayer;
+import org.puzzle.rps.players.IndexedPlayer;
 import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.ResumablePlayer;
 
 /**
  * Class for running instances of RPS-type games.
+ * 
+ * <p>Rounds are played in terms of token indices. Players implementing IndexedPlayer
+ * over the same token list as the rules are asked for indices directly; any other
+ * player's moves are looked up in the rules' symbol table. Likewise, observers
+ * implementing IndexedGameObserver receive index based events, while any other
+ * observer receives tokens and Results.
+ * 
+ * <p>Once warmed up, the round loop is garbage free: moves and outcomes are primitive
+ * values, Results and tokens handed to observers are preallocated by the rules, and
+ * observers are held in arrays so that dispatch needs no iterators.
+ * 
+ * <p>play() paces rounds by sleeping between them, holding its thread for the whole
+ * game. Games played with play(TimingWheel) are paced by the wheel instead: each round
+ * runs on one of the wheel's worker threads and schedules the next, so no thread waits
+ * on a game between rounds, and thousands of paced games can share a few threads.
+ * 
+ * <p>By default players are asked for their moves one after the other, and the game
+ * waits as long as they take. With a move deadline set, both players are asked at
+ * once - AsyncPlayers through requestMove(), and other players on a shared pool of
+ * daemon threads - and a player whose move isn't in by the deadline is dealt with by
+ * the TimeoutPolicy. A late move isn't thrown away: the player isn't asked again
+ * while its request is outstanding, and the move counts for the next round if it
+ * arrives by that round's deadline. A late player that is also an observer is still
+ * making its move, so it hears nothing of the game while its request is outstanding,
+ * and checkpoints wait until no request is outstanding. A forfeited round has no
+ * Result, so observers don't hear of it at all: only the scores and timeouts in the
+ * GameState record it. Rounds played under TimeoutPolicy.DEFAULT_MOVE are notified as
+ * usual, with the default move for the late player.
+ * 
+ * <p>A long game can be checkpointed: with a checkpoint file set, every so many rounds
+ * the rounds played, scores, and the state of each ResumablePlayer are saved to it
+ * (see GameCheckpoint), and once the game is over the file is removed. Checkpoints
+ * are encoded on the game's thread but written to disk on a background thread; the
+ * game only waits for a write if the next checkpoint falls due before it is done.
+ * After a restart, resume() carries the game on from the last checkpoint, with
+ * players and rules created as before; seeded computer players then move exactly as
+ * they would have without the restart. Observers only hear of rounds played after
+ * resuming, and late moves outstanding at the checkpoint are not carried over.
  */
 public class GameEngine {
 
+  /**
+   * What happens to a player who misses the move deadline
+   */
+  public enum TimeoutPolicy {
+    /**
+     * The player loses the round; if both players are late, the round is a draw.
+     * Observers are not notified of forfeited rounds.
+     */
+    FORFEIT_ROUND,
+    /** The default move is played for the player */
+    DEFAULT_MOVE
+  }
+
   private Player player1;
   private Player player2;
   
+  // Players' index based move path, or null where moves must be looked up by token
+  private IndexedPlayer indexedPlayer1;
+  private IndexedPlayer indexedPlayer2;
+  
   private RuleInterpreter ruleInterpreter;  
   private final int numRounds;
   private int roundDelay = 2000;
   
   private GameState gameState;
   
-  private List<GameObserver> observers = new ArrayList<GameObserver>();
+  // Move deadline, if any, and what to do about late players
+  private long moveDeadlineNanos;
+  private TimeoutPolicy timeoutPolicy = TimeoutPolicy.FORFEIT_ROUND;
+  private int defaultMove;
+  
+  // Players' outstanding move requests; null when there are none
+  private CompletableFuture<Integer> pendingMove1;
+  private CompletableFuture<Integer> pendingMove2;
+  
+  // Optional checkpoint file, and rounds between checkpoints
+  private File checkpointFile;
+  private int checkpointInterval;
+  private boolean checkpointDue;
+  
+  // The last checkpoint's buffer, reused for the next, and its write while in progress
+  private ByteBuffer checkpointBuffer;
+  private CompletableFuture<Void> checkpointWrite;
+  
+  // Optional instrumentation, plus the players' move latency histograms for this game
+  private EngineMetrics metrics;
+  private LatencyHistogram p1MoveLatency;
+  private LatencyHistogram p2MoveLatency;
+  
+  // Registry the current game's start was recorded in, until its end is recorded
+  private EngineMetrics gameMetrics;
+  
+  // Observers, held in arrays rather than collections so dispatch never allocates
+  private GameObserver[] observers = new GameObserver[0];
+  private IndexedGameObserver[] indexedObservers = new IndexedGameObserver[0];
   
   /**
    * Constructor for two players.
@@ -33,53 +134,467 @@ public class GameEngine {
     player2 = p2;
     numRounds = rounds;
     ruleInterpreter = rules;
+    
+    indexedPlayer1 = indexedPath(p1);
+    indexedPlayer2 = indexedPath(p2);
+    
+    // Players that observe games learn of events as they happen
+    if (p1 instanceof GameObserver) {
+      registerObserver( (GameObserver) p1 );
+    }
+    if (p2 instanceof GameObserver && p2 != p1) {
+      registerObserver( (GameObserver) p2 );
+    }
   }
 
   /**
    * Call this method to start play.
    */
   public void play() {
+    try {
+      startGame();
+      playRounds(1);
+    } finally {
+      abandonGame();
+    }
+  }
+
+  /**
+   * Call this method to resume play from the last checkpoint, or to start play if
+   * there is none. The game must have been created as it was when checkpointed.
+   * @throws IllegalStateException If the checkpoint is not of this game, or is corrupt
+   */
+  public void resume() {
+    try {
+      playRounds( resumeGame() );
+    } finally {
+      abandonGame();
+    }
+  }
+
+  /*
+   * Private helper method. Play the rest of the game, from the given round. The
+   * round is counted in a long, so that a game of Integer.MAX_VALUE rounds ends.
+   */
+  private void playRounds(int first) {
     
-    // Prepare for a new game!
-    gameState = new GameState();
-    
-    int round = 1;
+    long round = first;
     while (round <= numRounds) {  
       
-      // Get moves, and notify the plays
-      String play1 = player1.getMove();
-      String play2 = player2.getMove(); 
-      
-      notifyPlay(player1, play1);
-      notifyPlay(player2, play2);
+      playRound((int) round);
+      checkpoint((int) round);
+      round++;
       
-      // Work out the result from the rule interpreter
-      Result res = ruleInterpreter.winner(play1, play2);
+      // Sleep for a bit between rounds (unless running headless)
+      if (roundDelay > 0) {
+        try {
+          Thread.sleep(roundDelay);
+        } catch (InterruptedException e) {
+          throw new RuntimeException("Received unexpected interruption while sleeping in game...");
+        }
+      }
+    }
+    
+    finishGame();
+  }
 
-      round++;
+  /**
+   * Start play, pacing rounds on the given timing wheel rather than by sleeping.
+   * Rounds run on the wheel's worker threads, one at a time and in order, with the
+   * game delay between them; observers and players are called from those threads.
+   * The game must not be played again until the returned future completes.
+   * @param wheel A running TimingWheel
+   * @return CompletableFuture completed with the final GameState, or exceptionally
+   *   if a round fails or the wheel is stopped
+   */
+  public CompletableFuture<GameState> play(TimingWheel wheel) {
+    
+    CompletableFuture<GameState> result = new CompletableFuture<GameState>();
+    PacedGame game = new PacedGame(wheel, result, false);
+    try {
+      wheel.schedule(game, 0, TimeUnit.MILLISECONDS, game.stopped);
+    } catch (IllegalStateException e) {
+      // The wheel isn't running; the game fails through its future, like any other failure
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  /**
+   * Resume play from the last checkpoint, or start play if there is none, pacing
+   * rounds on the given timing wheel as play(TimingWheel) does.
+   * @param wheel A running TimingWheel
+   * @return CompletableFuture completed with the final GameState, or exceptionally
+   *   if the checkpoint is not of this game, a round fails or the wheel is stopped
+   */
+  public CompletableFuture<GameState> resume(TimingWheel wheel) {
+    
+    CompletableFuture<GameState> result = new CompletableFuture<GameState>();
+    PacedGame game = new PacedGame(wheel, result, true);
+    try {
+      wheel.schedule(game, 0, TimeUnit.MILLISECONDS, game.stopped);
+    } catch (IllegalStateException e) {
+      // The wheel isn't running; the game fails through its future, like any other failure
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  /*
+   * Private helper method. Prepare for a new game!
+   */
+  private void startGame() {
+    
+    gameState = new GameState();
+    
+    // Late moves from an earlier game don't count in this one; a player still making
+    // one is asked again once it is in, so that it is never asked twice at once
+    if (pendingMove1 != null) {
+      pendingMove1 = requestMoveAfter(pendingMove1, player1, indexedPlayer1);
+    }
+    if (pendingMove2 != null) {
+      pendingMove2 = requestMoveAfter(pendingMove2, player2, indexedPlayer2);
+    }
+    checkpointDue = false;
+    
+    // Metrics are optional; without them, the only cost is a null check per round
+    if (metrics != null) {
+      p1MoveLatency = metrics.moveLatency(player1);
+      p2MoveLatency = metrics.moveLatency(player2);
+      metrics.gameStarted();
+      gameMetrics = metrics;
+    }
+  }
+
+  /*
+   * Private helper method. Prepare for a new game, then restore the last checkpoint
+   * over it, if there is one.
+   * @return the round to play next
+   */
+  private int resumeGame() {
+    
+    startGame();
+    if (checkpointFile == null) {
+      return 1;
+    }
+    GameCheckpoint checkpoint = GameCheckpoint.read(checkpointFile);
+    if (checkpoint == null) {
+      return 1;
+    }
+    
+    if (checkpoint.rounds != numRounds || checkpoint.tokensHash != ruleInterpreter.getTokenList().hashCode()
+        || (checkpoint.p1State != null) != (player1 instanceof ResumablePlayer)
+        || (checkpoint.p2State != null) != (player2 instanceof ResumablePlayer)) {
+      throw new IllegalStateException( String.format("Checkpoint '%s' is not of this game", checkpointFile) );
+    }
+    
+    if (checkpoint.p1State != null) {
+      ((ResumablePlayer) player1).restoreState(checkpoint.p1State);
+    }
+    if (checkpoint.p2State != null) {
+      ((ResumablePlayer) player2).restoreState(checkpoint.p2State);
+    }
+    
+    gameState.p1Score = checkpoint.p1Score;
+    gameState.p2Score = checkpoint.p2Score;
+    gameState.p1Timeouts = checkpoint.p1Timeouts;
+    gameState.p2Timeouts = checkpoint.p2Timeouts;
+    return checkpoint.round + 1;
+  }
 
-      // Update scores..
-      if (!res.winVerb.equals(Result.DRAW_VERB)) {
-        if (res.winningToken.equals(play1)) {
-          gameState.p1Score++;
-        } else {
-          gameState.p2Score++;        
-        }      
+  /*
+   * Private helper method. Save a checkpoint if one is due after the given round;
+   * none is needed after the last. A player can't be saved while it is making a move,
+   * so a checkpoint due while a move is outstanding is saved after the first round
+   * that leaves none.
+   */
+  private void checkpoint(int round) {
+    
+    if (checkpointFile == null || round >= numRounds) {
+      return;
+    }
+    checkpointDue |= round % checkpointInterval == 0;
+    if (!checkpointDue || pendingMove1 != null || pendingMove2 != null) {
+      return;
+    }
+    checkpointDue = false;
+    
+    // The buffer is reused, so the last checkpoint must be on disk before it's refilled
+    awaitCheckpoint();
+    checkpointBuffer = GameCheckpoint.encode(checkpointBuffer, numRounds, round,
+        gameState.p1Score, gameState.p2Score, gameState.p1Timeouts, gameState.p2Timeouts,
+        ruleInterpreter.getTokenList().hashCode(), player1, player2);
+    
+    final File file = checkpointFile;
+    final ByteBuffer buf = checkpointBuffer;
+    checkpointWrite = CompletableFuture.runAsync(new Runnable() {
+      @Override
+      public void run() {
+        GameCheckpoint.write(file, buf);
       }
-      
-      // Notify result of this round, then sleep for a bit
-      notifyRoundOutcome(res);
-      
-      try {
-        Thread.sleep(roundDelay);
-      } catch (InterruptedException e) {
-        throw new RuntimeException("Received unexpected interruption while sleeping in game...");
+    }, CheckpointPool.EXECUTOR);
+  }
+
+  /*
+   * Private helper method. Wait for the last checkpoint to be written, if it is
+   * still being written.
+   */
+  private void awaitCheckpoint() {
+    
+    if (checkpointWrite == null) {
+      return;
+    }
+    try {
+      checkpointWrite.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
+      throw new RuntimeException("Failed writing game checkpoint", e.getCause());
+    } finally {
+      checkpointWrite = null;
     }
+  }
+
+  /*
+   * Private helper method. Play the given round, measured if metrics are attached.
+   */
+  private void playRound(int round) {
+    if (metrics == null) {
+      playRound();
+    } else {
+      playMeasuredRound(round);
+    }
+  }
+
+  /*
+   * Private helper method. Notify the outcome of the game.
+   */
+  private void finishGame() {
     
-    // Notify the outcome of the game
     notifyGameOutcome(player1, gameState.p1Score, player2, gameState.p2Score);
     
+    // The game is over, so there is nothing left to resume
+    awaitCheckpoint();
+    if (checkpointFile != null) {
+      checkpointFile.delete();
+    }
+    
+    if (gameMetrics != null) {
+      gameMetrics.gameCompleted();
+      gameMetrics = null;
+    }
+  }
+
+  /*
+   * Private helper method. Called however play ends; if the game was stopped by an
+   * exception, record it as failed, so it no longer counts as in flight.
+   */
+  private void abandonGame() {
+    
+    // A checkpoint being written is still one to resume from, so let it finish
+    try {
+      awaitCheckpoint();
+    } catch (RuntimeException e) {
+      // The game has failed already; that failure is the one reported
+    }
+    
+    if (gameMetrics != null) {
+      gameMetrics.gameFailed();
+      gameMetrics = null;
+    }
+  }
+
+  /*
+   * Private helper method. Play a single round: get moves and notify the plays,
+   * work out the result from the rule interpreter, update scores and notify the result.
+   */
+  private void playRound() {
+    
+    if (moveDeadlineNanos > 0) {
+      playTimedRound();
+      return;
+    }
+    
+    int play1 = nextMove(player1, indexedPlayer1);
+    int play2 = nextMove(player2, indexedPlayer2); 
+    
+    notifyPlay(player1, play1);
+    notifyPlay(player2, play2);
+    
+    int outcome = ruleInterpreter.outcome(play1, play2);
+    updateScores(play1, play2, outcome);
+    
+    notifyRoundOutcome(play1, play2, outcome);
+  }
+
+  /*
+   * Private helper method. Play a single round as above, counting it in the metrics;
+   * on sampled rounds, also time each step.
+   */
+  private void playMeasuredRound(int round) {
+    
+    metrics.roundPlayed();
+    if (!metrics.sample(round) || moveDeadlineNanos > 0) {
+      playRound();
+      return;
+    }
+    
+    long start = System.nanoTime();
+    int play1 = nextMove(player1, indexedPlayer1);
+    long p1Moved = System.nanoTime();
+    int play2 = nextMove(player2, indexedPlayer2); 
+    long p2Moved = System.nanoTime();
+    
+    notifyPlay(player1, play1);
+    notifyPlay(player2, play2);
+    long playsNotified = System.nanoTime();
+    
+    int outcome = ruleInterpreter.outcome(play1, play2);
+    long resolved = System.nanoTime();
+    updateScores(play1, play2, outcome);
+    
+    notifyRoundOutcome(play1, play2, outcome);
+    long outcomeNotified = System.nanoTime();
+    
+    metrics.recordMove(p1MoveLatency, p1Moved - start);
+    metrics.recordMove(p2MoveLatency, p2Moved - p1Moved);
+    metrics.winnerLatency().record(resolved - playsNotified);
+    metrics.observerLatency().record((playsNotified - p2Moved) + (outcomeNotified - resolved));
+  }
+
+  /*
+   * Private helper method. Play a single round under the move deadline: ask both
+   * players at once, wait for their moves until the deadline, and apply the timeout
+   * policy to any player who is late.
+   */
+  private void playTimedRound() {
+    
+    long deadline = System.nanoTime() + moveDeadlineNanos;
+    if (pendingMove1 == null) {
+      pendingMove1 = requestMove(player1, indexedPlayer1);
+    }
+    if (pendingMove2 == null) {
+      pendingMove2 = requestMove(player2, indexedPlayer2);
+    }
+    
+    int play1 = awaitMove(pendingMove1, deadline);
+    int play2 = awaitMove(pendingMove2, deadline);
+    
+    if (play1 >= 0) {
+      pendingMove1 = null;
+    } else {
+      gameState.p1Timeouts++;
+    }
+    if (play2 >= 0) {
+      pendingMove2 = null;
+    } else {
+      gameState.p2Timeouts++;
+    }
+    
+    if (timeoutPolicy == TimeoutPolicy.DEFAULT_MOVE) {
+      play1 = play1 >= 0 ? play1 : defaultMove;
+      play2 = play2 >= 0 ? play2 : defaultMove;
+    } else if (play1 < 0 || play2 < 0) {
+      
+      // Forfeit: there is no Result for the round, so it isn't notified
+      if (play1 >= 0) {
+        gameState.p1Score++;
+      }
+      if (play2 >= 0) {
+        gameState.p2Score++;
+      }
+      return;
+    }
+    
+    notifyPlay(player1, play1);
+    notifyPlay(player2, play2);
+    
+    int outcome = ruleInterpreter.outcome(play1, play2);
+    updateScores(play1, play2, outcome);
+    
+    notifyRoundOutcome(play1, play2, outcome);
+  }
+
+  /*
+   * Private helper method. Ask a player for a move, as a token index, without waiting.
+   */
+  private CompletableFuture<Integer> requestMove(final Player p, final IndexedPlayer indexed) {
+    
+    if (p instanceof AsyncPlayer) {
+      return ((AsyncPlayer) p).requestMove().thenApply(new Function<String, Integer>() {
+        @Override
+        public Integer apply(String token) {
+          return ruleInterpreter.tokenIndex(token);
+        }
+      });
+    }
+    
+    return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+      @Override
+      public Integer get() {
+        return nextMove(p, indexed);
+      }
+    }, MovePool.EXECUTOR);
+  }
+
+  /*
+   * Private helper method. Ask a player for a move once an outstanding request has
+   * finished, whatever its outcome; the outstanding move itself is discarded.
+   */
+  private CompletableFuture<Integer> requestMoveAfter(CompletableFuture<Integer> outstanding,
+      final Player p, final IndexedPlayer indexed) {
+    
+    return outstanding.handle(new BiFunction<Integer, Throwable, Void>() {
+      @Override
+      public Void apply(Integer move, Throwable failure) {
+        return null;
+      }
+    }).thenCompose(new Function<Void, CompletableFuture<Integer>>() {
+      @Override
+      public CompletableFuture<Integer> apply(Void done) {
+        return requestMove(p, indexed);
+      }
+    });
+  }
+
+  /*
+   * Private helper method. Wait for a requested move until the deadline.
+   * @return the token index, or -1 if the move is late
+   */
+  private static int awaitMove(CompletableFuture<Integer> move, long deadline) {
+    try {
+      return move.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      return -1;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Received unexpected interruption while waiting for a move...");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException("Player failed to move", e.getCause());
+    }
+  }
+
+  /*
+   * Private helper method. Update scores from the outcome of a round.
+   */
+  private void updateScores(int play1, int play2, int outcome) {
+    switch (RuleInterpreter.side(outcome)) {
+      case RuleInterpreter.FIRST_WINS:
+        gameState.p1Score++;
+        break;
+      case RuleInterpreter.SECOND_WINS:
+        gameState.p2Score++;
+        break;
+      case RuleInterpreter.NO_RULE:
+        throw new IllegalStateException( String.format("No rule covers '%s' and '%s'",
+            ruleInterpreter.token(play1), ruleInterpreter.token(play2)) );
+      default:
+        // A draw, no change to scores
+    }
   }
 
   /**
@@ -90,8 +605,30 @@ public class GameEngine {
     return gameState;
   }
 
-  
-  
+  /*
+   * Private helper method. Get the next move from the given player, as a token
+   * index; via the player's index based path if there is one.
+   */
+  private int nextMove(Player p, IndexedPlayer indexed) {
+    if (indexed != null) {
+      return indexed.getMoveIndex();
+    }
+    return ruleInterpreter.tokenIndex( p.getMove() );
+  }
+
+  /*
+   * Private helper method. A player's move indices can only be used directly if
+   * they refer to the same tokens, in the same order, as the rules.
+   */
+  private IndexedPlayer indexedPath(Player p) {
+    if (p instanceof IndexedPlayer) {
+      IndexedPlayer indexed = (IndexedPlayer) p;
+      if (indexed.getTokenList().equals( ruleInterpreter.getTokenList() )) {
+        return indexed;
+      }
+    }
+    return null;
+  }
 
 
 
@@ -101,27 +638,49 @@ public class GameEngine {
    * @param observer Instance of GameObserver
    */
   public void registerObserver(GameObserver observer) {
-    observers.add(observer);
+    if (observer instanceof IndexedGameObserver) {
+      indexedObservers = Arrays.copyOf(indexedObservers, indexedObservers.length + 1);
+      indexedObservers[indexedObservers.length - 1] = (IndexedGameObserver) observer;
+    } else {
+      observers = Arrays.copyOf(observers, observers.length + 1);
+      observers[observers.length - 1] = observer;
+    }
   }
 
   /**
    * Observation mechanism. Notify all observers of the given play
    * @param p Who made the play
-   * @param token Token that was played
+   * @param token Index of the token that was played
    */
-  private void notifyPlay(Player p, String token) {
-    for (GameObserver obs : observers) {
-      obs.notifyPlay(p,token);
+  private void notifyPlay(Player p, int token) {
+    for (int i=0; i<indexedObservers.length; i++) {
+      if (!moving(indexedObservers[i])) {
+        indexedObservers[i].notifyPlay(p,token);
+      }
+    }
+    for (int i=0; i<observers.length; i++) {
+      if (!moving(observers[i])) {
+        observers[i].notifyPlay(p,ruleInterpreter.token(token));
+      }
     }
   }
 
   /**
-   * Observation mechanism. Notify all observers of the given play
-   * @param res Instance of Result, the outcome of the last round
+   * Observation mechanism. Notify all observers of the outcome of the last round
+   * @param play1 Index of the token played by player one
+   * @param play2 Index of the token played by player two
+   * @param outcome Outcome code for the round
    */
-  private void notifyRoundOutcome(Result r) {
-    for (GameObserver obs : observers) {
-      obs.notifyRoundOutcome(r);
+  private void notifyRoundOutcome(int play1, int play2, int outcome) {
+    for (int i=0; i<indexedObservers.length; i++) {
+      if (!moving(indexedObservers[i])) {
+        indexedObservers[i].notifyRoundOutcome(player1, play1, player2, play2, outcome);
+      }
+    }
+    for (int i=0; i<observers.length; i++) {
+      if (!moving(observers[i])) {
+        observers[i].notifyRoundOutcome(ruleInterpreter.winner(play1, play2));
+      }
     }
   }
 
@@ -133,19 +692,178 @@ public class GameEngine {
    * @param p2score P2's final score
    */
   private void notifyGameOutcome(Player p1, int p1score, Player p2, int p2score) {
-    for (GameObserver obs : observers) {
-      obs.notifyGameOutcome(p1, p1score, p2, p2score);
+    for (int i=0; i<indexedObservers.length; i++) {
+      if (!moving(indexedObservers[i])) {
+        indexedObservers[i].notifyGameOutcome(p1, p1score, p2, p2score);
+      }
     }
+    for (int i=0; i<observers.length; i++) {
+      if (!moving(observers[i])) {
+        observers[i].notifyGameOutcome(p1, p1score, p2, p2score);
+      }
+    }
+  }
+
+  /*
+   * Private helper method. Whether an observer is a player whose move is outstanding,
+   * and so may be running on another thread; such a player isn't notified.
+   */
+  private boolean moving(GameObserver observer) {
+    return (pendingMove1 != null && observer == player1) || (pendingMove2 != null && observer == player2);
   }
 
   /**
    * Setter method - define the delay used between rounds. Added for testing
-   * purposes. The default is 2 seconds.
+   * purposes. The default is 2 seconds; zero (or less) disables pacing entirely,
+   * for headless simulation.
    * @param delay int value, number of milliseconds to wait between rounds.
    */
   public void setGameDelay(int delay) {
     roundDelay = delay;
   }
+
+  /**
+   * Setter method - set a deadline for each move, and the policy for players who
+   * miss it. Moves are then collected from both players at once. The default is no
+   * deadline, with moves collected one after the other.
+   * @param deadlineMillis Milliseconds allowed for each move; zero (or less) for no deadline
+   * @param policy What happens to a player who misses the deadline
+   */
+  public void setMoveDeadline(long deadlineMillis, TimeoutPolicy policy) {
+    moveDeadlineNanos = Math.max(0, TimeUnit.MILLISECONDS.toNanos(deadlineMillis));
+    timeoutPolicy = policy;
+  }
+
+  /**
+   * Setter method - define the move played for a late player under
+   * TimeoutPolicy.DEFAULT_MOVE. The default is the first token in the rules.
+   * @param token A game token
+   * @throws IllegalArgumentException If the token is not known
+   */
+  public void setDefaultMove(String token) {
+    defaultMove = ruleInterpreter.tokenIndex(token);
+  }
+
+  /**
+   * Setter method - checkpoint the game to a file every so many rounds, so that it
+   * can be resumed after a restart. Checkpointing is disabled by default.
+   * @param file Checkpoint file, replaced at each checkpoint; or null to disable checkpoints
+   * @param interval Number of rounds between checkpoints
+   * @throws IllegalArgumentException If the interval is less than one
+   */
+  public void setCheckpoint(File file, int interval) {
+    if (interval < 1) {
+      throw new IllegalArgumentException( String.format("Invalid checkpoint interval '%d'", interval) );
+    }
+    checkpointFile = file;
+    checkpointInterval = interval;
+  }
+
+  /**
+   * Setter method - attach a metrics registry, to be updated by subsequent games.
+   * Metrics are disabled by default.
+   * @param engineMetrics Instance of EngineMetrics, or null to disable metrics
+   */
+  public void setMetrics(EngineMetrics engineMetrics) {
+    metrics = engineMetrics;
+  }
+  
+  
+  
+  /*
+   * A game paced by a timing wheel, from the start or resumed from a checkpoint: each
+   * step plays one round, then schedules the next step after the game delay. As in
+   * play(), the outcome follows the final delay.
+   */
+  private class PacedGame implements Runnable {
+    
+    private final TimingWheel wheel;
+    private final CompletableFuture<GameState> result;
+    private final boolean resuming;
+    private long round;
+    
+    // Run instead of the next step if the wheel is stopped first
+    final Runnable stopped = new Runnable() {
+      @Override
+      public void run() {
+        abandonGame();
+        result.completeExceptionally( new IllegalStateException("Timing wheel stopped") );
+      }
+    };
+    
+    PacedGame(TimingWheel wheel, CompletableFuture<GameState> result, boolean resuming) {
+      this.wheel = wheel;
+      this.result = result;
+      this.resuming = resuming;
+    }
+    
+    @Override
+    public void run() {
+      try {
+        
+        if (round == 0 && resuming) {
+          round = resumeGame();
+        } else if (round == 0) {
+          startGame();
+          round = 1;
+        }
+        
+        if (round > numRounds) {
+          finishGame();
+          result.complete(gameState);
+          return;
+        }
+        
+        playRound((int) round);
+        checkpoint((int) round);
+        round++;
+        wheel.schedule(this, Math.max(0, roundDelay), TimeUnit.MILLISECONDS, stopped);
+        
+      } catch (RuntimeException e) {
+        abandonGame();
+        result.completeExceptionally(e);
+      }
+    }
+  }
+  
+  
+  
+  /*
+   * Shared pool for collecting moves from players that only move synchronously.
+   * Created on first use; daemon threads, so that a hung player can't keep the
+   * JVM alive.
+   */
+  private static class MovePool {
+    
+    static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "player-move-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+  
+  
+  
+  /*
+   * Shared pool for writing checkpoints off the games' threads. Daemon threads: a
+   * checkpoint cut short by the JVM exiting leaves the one before it in place.
+   */
+  private static class CheckpointPool {
+    
+    static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "game-checkpoint-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
   
   
   
@@ -156,6 +874,8 @@ public class GameEngine {
     
     private int p1Score;
     private int p2Score;
+    private int p1Timeouts;
+    private int p2Timeouts;
     
     /** Accessor for P1's score */
     public int getP1Score() {
@@ -165,6 +885,14 @@ public class GameEngine {
     public int getP2Score() {
       return p2Score;
     }
+    /** Accessor for the number of moves P1 made late */
+    public int getP1Timeouts() {
+      return p1Timeouts;
+    }
+    /** Accessor for the number of moves P2 made late */
+    public int getP2Timeouts() {
+      return p2Timeouts;
+    }
 
   }
   
@@ -0,0 +1,68 @@
+package org.puzzle.rps;
+
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+
+/**
+ * Immutable record of a seeded game: everything needed to play it again, and a
+ * fingerprint of how it went. Class state is publicly accessible here because
+ * instances are immutable.
+ *
+ * <p>The digest is a 64 bit hash over every round's moves and outcome, in order, so
+ * two games with the same digest played the same moves, not just to the same score.
+ */
+public class GameRecord {
+
+  /** Seed the game's players were derived from */
+  public final long seed;
+  /** Type of player one */
+  public final PlayerType p1Type;
+  /** Type of player two */
+  public final PlayerType p2Type;
+  /** Number of rounds played */
+  public final int rounds;
+  /** Player one's final score */
+  public final int p1Score;
+  /** Player two's final score */
+  public final int p2Score;
+  /** Hash of every round's moves and outcome */
+  public final long digest;
+
+  /**
+   * Public constructor
+   */
+  public GameRecord(long seed, PlayerType p1Type, PlayerType p2Type, int rounds,
+      int p1Score, int p2Score, long digest) {
+    this.seed = seed;
+    this.p1Type = p1Type;
+    this.p2Type = p2Type;
+    this.rounds = rounds;
+    this.p1Score = p1Score;
+    this.p2Score = p2Score;
+    this.digest = digest;
+  }
+
+  @Override
+  public String toString() {
+    // Provide a human readable version of the record
+    return String.format("Seed %d, %s v %s, %d rounds: %d-%d (digest %016x)",
+        seed, p1Type, p2Type, rounds, p1Score, p2Score, digest);
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (digest ^ (digest >>> 32));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof GameRecord))
+      return false;
+    GameRecord other = (GameRecord) obj;
+    return seed == other.seed && p1Type == other.p1Type && p2Type == other.p2Type
+        && rounds == other.rounds && p1Score == other.p1Score && p2Score == other.p2Score
+        && digest == other.digest;
+  }
+
+}
@@ -1,11 +1,17 @@
 package org.puzzle.rps;
 
+import java.util.SplittableRandom;
+
+import org.puzzle.rps.history.GameHistoryLog;
+import org.puzzle.rps.history.HistoryObserver;
+import org.puzzle.rps.metrics.EngineMetrics;
 import org.puzzle.rps.players.Player;
 import org.puzzle.rps.players.PlayerFactory;
 
 /**
- * Class for running a collection of different games. Currently
- * supports a single ruleset, but choices of different players each game.
+ * Class for running a collection of different games. Supports choices of 
+ * different players each game, and either a single fixed ruleset, or a 
+ * RulesetHolder whose current ruleset is taken at the start of each game.
  * 
  * <p>This is an abstract class to provide a level of decoupling between
  * the game master logic and user interaction. The runGames() method
@@ -15,13 +21,28 @@ import org.puzzle.rps.players.PlayerFactory;
  * 
  * <p>Once a game has started, all gameplay events are communicated via the 
  * GameObserver interface. 
+ * 
+ * <p>Games are numbered from zero, and each has a seed derived from the games
+ * master's master seed and its number (see GameReplay). Sub-types seed computer
+ * players from it, so that any game between computer players can be replayed.
+ * The master seed is random unless set.
  */
 public abstract class GamesMaster implements GameObserver {
   
   /** Rule interpreter, should be used during game creation */
   protected RuleInterpreter ruleInterpreter;
+  /** Optional holder of the current ruleset; null if the ruleset is fixed */
+  protected RulesetHolder rulesetHolder;
   /** The player factory, provides a way for the different types of players to be created */
   protected PlayerFactory playerFactory;
+  /** Optional metrics registry, attached to every game; null if metrics are disabled */
+  protected EngineMetrics metrics;
+  /** Optional log of game history, recording every game; null if history is disabled */
+  protected GameHistoryLog history;
+  /** Master seed, from which every game's seed is derived */
+  protected long masterSeed = new SplittableRandom().nextLong();
+  /** Number of the current game, counting from zero; -1 before the first game */
+  protected long gameNumber = -1;
   
   /**
    * Public constructor
@@ -33,6 +54,16 @@ public abstract class GamesMaster implements GameObserver {
     playerFactory = pFactory;
   }
 
+  /**
+   * Public constructor, for rulesets which may change between games
+   * @param holder Holder of the current ruleset
+   * @param pFactory A factory for creating players
+   */
+  public GamesMaster(RulesetHolder holder, PlayerFactory pFactory) {
+    this(holder.current(), pFactory);
+    rulesetHolder = holder;
+  }
+
   /**
    * Run one or more games
    * @param continuous If true, keep playing games forever. Otherwise, just play one game
@@ -46,6 +77,12 @@ public abstract class GamesMaster implements GameObserver {
       /* This is the core logic for running a single game, from showing the initial banner,
        * through creating players and games, to receiving game events.
        */
+      if (rulesetHolder != null) {
+        // Pick up any new ruleset; the game keeps this version to the end
+        ruleInterpreter = rulesetHolder.current();
+      }
+      
+      gameNumber++;
       showBanner();
       
       Player p1 = readyPlayerOne(playerFactory);
@@ -55,6 +92,12 @@ public abstract class GamesMaster implements GameObserver {
       
       GameEngine game = prepareGame(p1,p2,rounds);
       game.registerObserver(this);
+      if (metrics != null) {
+        game.setMetrics(metrics);
+      }
+      if (history != null) {
+        game.registerObserver( new HistoryObserver(history) );
+      }
       
       game.play();
 
@@ -66,6 +109,53 @@ public abstract class GamesMaster implements GameObserver {
     
   }
 
+  /**
+   * Attach a metrics registry, to be updated by every subsequent game
+   * @param engineMetrics Instance of EngineMetrics, or null to disable metrics
+   */
+  public void setMetrics(EngineMetrics engineMetrics) {
+    metrics = engineMetrics;
+  }
+
+  /**
+   * Record every subsequent game in a history log
+   * @param historyLog Instance of GameHistoryLog, or null to disable history
+   */
+  public void setHistory(GameHistoryLog historyLog) {
+    history = historyLog;
+  }
+
+  /**
+   * Set the master seed, and start numbering games from zero again
+   * @param seed The master seed
+   */
+  public void setMasterSeed(long seed) {
+    masterSeed = seed;
+    gameNumber = -1;
+  }
+
+  /** The master seed, from which every game's seed is derived */
+  public long getMasterSeed() {
+    return masterSeed;
+  }
+
+  /**
+   * Seed of the current game
+   * @return long, derived from the master seed and the game number
+   */
+  protected long gameSeed() {
+    return GameReplay.gameSeed(masterSeed, gameNumber);
+  }
+
+  /**
+   * Seed for one of the current game's players
+   * @param player 1 for player one, 2 for player two
+   * @return long, derived from the game seed
+   */
+  protected long playerSeed(int player) {
+    return GameReplay.playerSeed(gameSeed(), player);
+  }
+
   /**
    * Implement this method to display any initial banner before each game
    */
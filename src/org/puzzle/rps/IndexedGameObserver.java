@@ -0,0 +1,33 @@
+package org.puzzle.rps;
+
+import org.puzzle.rps.players.Player;
+
+/**
+ * Observer interface for game events by token index. Tokens are indices into the
+ * symbol table of the rules in play, and round outcomes are RuleInterpreter outcome
+ * codes, so events can be consumed without touching Strings or Results.
+ * 
+ * <p>The GameEngine sends play and round events to instances of this interface via
+ * the index based methods below, instead of the String based ones inherited from
+ * GameObserver. Game outcomes are notified as usual.
+ */
+public interface IndexedGameObserver extends GameObserver {
+
+  /** 
+   * A play has taken place
+   * @param player Who made the play
+   * @param token Index of the token they played
+   */
+  void notifyPlay(Player player, int token);
+
+  /**
+   * Notify the outcome of the round
+   * @param player1 The first player in the game
+   * @param p1Token Index of the token played by player one
+   * @param player2 The second player in the game
+   * @param p2Token Index of the token played by player two
+   * @param outcome Outcome code, from RuleInterpreter.outcome(p1Token, p2Token)
+   */
+  void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome);
+
+}
@@ -0,0 +1,80 @@
+package org.puzzle.rps;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Outcome table read in place from a memory mapped file, as one int per pair of
+ * tokens in row order. Nothing is copied onto the heap; pages are loaded by the OS
+ * as they are first used, and are shared between processes mapping the same file.
+ *
+ * <p>A single mapping is limited to 2GB, so large tables are mapped as several
+ * regions, each holding a whole number of rows.
+ */
+class MappedOutcomeTable implements OutcomeTable {
+
+  // Largest region to map, in bytes
+  private static final long MAX_REGION = 1L << 30;
+
+  private final int tokenCount;
+  private final int rowsPerRegion;
+  private final IntBuffer[] regions;
+
+  /**
+   * Package constructor. The channel may be closed once the table is built.
+   * @param channel Channel onto the file holding the table
+   * @param position Offset of the table in the file
+   * @param tokenCount Number of tokens
+   * @param order Byte order of the codes in the file
+   * @throws IOException If the file cannot be mapped
+   */
+  MappedOutcomeTable(FileChannel channel, long position, int tokenCount, ByteOrder order) throws IOException {
+
+    long rowBytes = 4L * tokenCount;
+    this.tokenCount = tokenCount;
+    this.rowsPerRegion = (int) Math.max(1, Math.min(tokenCount, MAX_REGION / Math.max(1, rowBytes)));
+
+    int regionCount = tokenCount == 0 ? 0 : (tokenCount + rowsPerRegion - 1) / rowsPerRegion;
+    regions = new IntBuffer[regionCount];
+    for (int r=0; r<regionCount; r++) {
+      int rows = Math.min(rowsPerRegion, tokenCount - r * rowsPerRegion);
+      regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, position + r * rowsPerRegion * rowBytes, rows * rowBytes)
+          .order(order).asIntBuffer();
+    }
+  }
+
+  @Override
+  public int getTokenCount() {
+    return tokenCount;
+  }
+
+  @Override
+  public int code(int t1, int t2) {
+    return regions[t1 / rowsPerRegion].get((t1 % rowsPerRegion) * tokenCount + t2);
+  }
+
+  @Override
+  public void codes(int[] first, int[] second, int[] codes, int offset, int length) {
+
+    // Most tables fit in one region, which saves a division per pair
+    if (regions.length == 1) {
+      IntBuffer region = regions[0];
+      for (int i=offset; i<offset+length; i++) {
+        codes[i] = region.get(first[i] * tokenCount + second[i]);
+      }
+      return;
+    }
+
+    for (int i=offset; i<offset+length; i++) {
+      codes[i] = code(first[i], second[i]);
+    }
+  }
+
+  @Override
+  public long getFootprint() {
+    return 4L * tokenCount * tokenCount;
+  }
+
+}
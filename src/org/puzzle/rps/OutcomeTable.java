@@ -0,0 +1,43 @@
+package org.puzzle.rps;
+
+/**
+ * Storage for the outcome codes of every pair of token indices. Implementations
+ * differ in where the codes live - on the heap, or in a memory mapped snapshot -
+ * but every lookup is O(1) and allocation free.
+ *
+ * <p>Callers are responsible for checking token indices.
+ */
+interface OutcomeTable {
+
+  /**
+   * Number of tokens covered by the table
+   * @return int, the token count
+   */
+  int getTokenCount();
+
+  /**
+   * Outcome code for a pair of token indices
+   * @param t1 Index of the first token
+   * @param t2 Index of the second token
+   * @return int outcome code, as described by RuleInterpreter
+   */
+  int code(int t1, int t2);
+
+  /**
+   * Outcome codes for many pairs of token indices: for each i from offset up to
+   * offset + length, codes[i] is the code for first[i] and second[i]
+   * @param first Indices of the first tokens
+   * @param second Indices of the second tokens
+   * @param codes Array to fill with outcome codes
+   * @param offset Index of the first pair
+   * @param length Number of pairs
+   */
+  void codes(int[] first, int[] second, int[] codes, int offset, int length);
+
+  /**
+   * Estimate of the memory held by the table, on or off the heap
+   * @return long, the size in bytes
+   */
+  long getFootprint();
+
+}
@@ -0,0 +1,305 @@
+package org.puzzle.rps;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Compressed outcome table, for rulesets too large for one int per pair of tokens.
+ *
+ * <p>Only unordered pairs of distinct tokens are stored - draws need no storage - in
+ * triangular order: the pair of tokens lo &lt; hi has index hi*(hi-1)/2 + lo. Each pair
+ * has a bit field holding one bit for the winning direction (set if the lower index
+ * wins) and the id of the winning verb from the verb dictionary. Fields are a power of
+ * two bits wide, so none straddles a word: with a single verb, a pair takes two bits,
+ * and 100,000 tokens fit in 1.25GB. Verb id 0 is the draw verb, so a field of zero
+ * marks a pair that no rule covers.
+ *
+ * <p>Words are held in segments of LongBuffers, either on the heap, or memory mapped
+ * from a ruleset snapshot. Lookups are O(1): a little arithmetic, and one word read.
+ */
+class PackedOutcomeTable implements OutcomeTable {
+
+  // Words per segment: 2^24 longs, 128MB
+  private static final int SEGMENT_SHIFT = 24;
+  private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+  private final int tokenCount;
+  private final int fieldBits;
+  private final int fieldShift;
+  private final int fieldsPerWordShift;
+  private final long fieldMask;
+  private final long pairCount;
+  private final long wordCount;
+  private final LongBuffer[] segments;
+
+  /**
+   * Package constructor, for an empty table on the heap
+   * @param tokenCount Number of tokens
+   * @param verbCount Number of verbs in the verb dictionary, including the draw verb
+   */
+  PackedOutcomeTable(int tokenCount, int verbCount) {
+    this(tokenCount, verbCount, heapSegments( wordCount(tokenCount, verbCount) ));
+  }
+
+  /*
+   * Private constructor, over the given segments of words
+   */
+  private PackedOutcomeTable(int tokenCount, int verbCount, LongBuffer[] segments) {
+    this.tokenCount = tokenCount;
+    this.fieldBits = fieldBits(verbCount);
+    this.fieldShift = Integer.numberOfTrailingZeros(fieldBits);
+    this.fieldsPerWordShift = 6 - fieldShift;
+    this.fieldMask = (1L << fieldBits) - 1;
+    this.pairCount = (long) tokenCount * (tokenCount - 1) / 2;
+    this.wordCount = wordCount(tokenCount, verbCount);
+    this.segments = segments;
+  }
+
+  /**
+   * Map a table from a file. The channel may be closed once the table is built.
+   * @param tokenCount Number of tokens
+   * @param verbCount Number of verbs in the verb dictionary, including the draw verb
+   * @param channel Channel onto the file holding the table's words
+   * @param position Offset of the words in the file
+   * @param order Byte order of the words in the file
+   * @return PackedOutcomeTable, read only
+   * @throws IOException If the file cannot be mapped
+   */
+  static PackedOutcomeTable map(int tokenCount, int verbCount, FileChannel channel, long position,
+      ByteOrder order) throws IOException {
+
+    long wordCount = wordCount(tokenCount, verbCount);
+    LongBuffer[] segments = new LongBuffer[segmentCount(wordCount)];
+    for (int s=0; s<segments.length; s++) {
+      long first = (long) s << SEGMENT_SHIFT;
+      segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, position + 8 * first, 8 * segmentWords(wordCount, s))
+          .order(order).asLongBuffer();
+    }
+    return new PackedOutcomeTable(tokenCount, verbCount, segments);
+  }
+
+  /*
+   * Private helper method, allocates zeroed segments on the heap
+   */
+  private static LongBuffer[] heapSegments(long wordCount) {
+    LongBuffer[] segments = new LongBuffer[segmentCount(wordCount)];
+    for (int s=0; s<segments.length; s++) {
+      segments[s] = LongBuffer.wrap( new long[segmentWords(wordCount, s)] );
+    }
+    return segments;
+  }
+
+  private static int segmentCount(long wordCount) {
+    return (int) ((wordCount + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+  }
+
+  private static int segmentWords(long wordCount, int segment) {
+    return (int) Math.min(1L << SEGMENT_SHIFT, wordCount - ((long) segment << SEGMENT_SHIFT));
+  }
+
+  /**
+   * Number of 64 bit words needed to store a table
+   * @param tokenCount Number of tokens
+   * @param verbCount Number of verbs, including the draw verb
+   * @return long, the word count
+   */
+  static long wordCount(int tokenCount, int verbCount) {
+    long pairs = (long) tokenCount * (tokenCount - 1) / 2;
+    int shift = 6 - Integer.numberOfTrailingZeros(fieldBits(verbCount));
+    return (pairs + (1L << shift) - 1) >>> shift;
+  }
+
+  /*
+   * Private helper method. Width of a field: a direction bit plus enough bits for
+   * any verb id, rounded up to a power of two.
+   */
+  private static int fieldBits(int verbCount) {
+    int verbBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(verbCount - 1));
+    int bits = verbBits + 1;
+    return Integer.highestOneBit(bits) == bits ? bits : Integer.highestOneBit(bits) << 1;
+  }
+
+  @Override
+  public int getTokenCount() {
+    return tokenCount;
+  }
+
+  @Override
+  public int code(int t1, int t2) {
+
+    if (t1 == t2) {
+      return RuleInterpreter.DRAW;
+    }
+
+    int lo = Math.min(t1, t2);
+    int hi = Math.max(t1, t2);
+    int field = field( pairIndex(lo, hi) );
+
+    int verb = field >>> 1;
+    if (verb == 0) {
+      return RuleInterpreter.NO_RULE;
+    }
+
+    boolean firstWins = ((field & 1) == 1) == (t1 == lo);
+    return (verb << RuleInterpreter.VERB_SHIFT) | (firstWins ? RuleInterpreter.FIRST_WINS : RuleInterpreter.SECOND_WINS);
+  }
+
+  @Override
+  public void codes(int[] first, int[] second, int[] codes, int offset, int length) {
+    for (int i=offset; i<offset+length; i++) {
+      codes[i] = code(first[i], second[i]);
+    }
+  }
+
+  /**
+   * Record that one token beats another, replacing any earlier rule for the pair.
+   * Tokens can't beat themselves; such rules are ignored. Heap tables only.
+   * @param beater Index of the winning token
+   * @param beaten Index of the losing token
+   * @param verbId Id of the winning verb
+   */
+  void set(int beater, int beaten, int verbId) {
+
+    if (beater == beaten) {
+      return;
+    }
+
+    int lo = Math.min(beater, beaten);
+    int hi = Math.max(beater, beaten);
+    long field = ((long) verbId << 1) | (beater == lo ? 1 : 0);
+
+    long pair = pairIndex(lo, hi);
+    long word = pair >>> fieldsPerWordShift;
+    int bit = (int) (pair & ((1 << fieldsPerWordShift) - 1)) << fieldShift;
+
+    LongBuffer segment = segments[(int) (word >>> SEGMENT_SHIFT)];
+    int offset = (int) (word & SEGMENT_MASK);
+    segment.put(offset, (segment.get(offset) & ~(fieldMask << bit)) | (field << bit));
+  }
+
+  /** Number of unordered pairs of distinct tokens */
+  long getPairCount() {
+    return pairCount;
+  }
+
+  /** Number of 64 bit words in the table */
+  long getWordCount() {
+    return wordCount;
+  }
+
+  /** Word of the table, by index */
+  long word(long index) {
+    return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+  }
+
+  /**
+   * Count the pairs of distinct tokens that no rule covers. Whole words are checked
+   * at once, so this takes O(pairs * fieldBits / 64) operations.
+   * @return long, the number of missing pairs
+   */
+  long countMissing() {
+    long missing = 0;
+    for (long w=0; w<wordCount; w++) {
+      missing += Long.bitCount( zeroFields(w) );
+    }
+    return missing;
+  }
+
+  /**
+   * List pairs of distinct tokens that no rule covers, in pair index order
+   * @param limit Most pairs to list
+   * @return long[] of pairs, each the lower token index in the high 32 bits and the higher in the low
+   */
+  long[] listMissing(int limit) {
+
+    long[] pairs = new long[16];
+    int count = 0;
+
+    for (long w=0; w<wordCount && count < limit; w++) {
+      long zeros = zeroFields(w);
+      while (zeros != 0 && count < limit) {
+        long pair = (w << fieldsPerWordShift) + (Long.numberOfTrailingZeros(zeros) >>> fieldShift);
+        if (count == pairs.length) {
+          pairs = Arrays.copyOf(pairs, count * 2);
+        }
+        pairs[count++] = tokens(pair);
+        zeros &= zeros - 1;
+      }
+    }
+
+    return Arrays.copyOf(pairs, count);
+  }
+
+  @Override
+  public long getFootprint() {
+    return 8 * wordCount;
+  }
+
+  /*
+   * Private helper method. Top bit of each field in the given word that's zero,
+   * ignoring fields beyond the last pair.
+   */
+  private long zeroFields(long w) {
+
+    long low = replicate(1L);
+    long high = low << (fieldBits - 1);
+    long rest = ~high;
+
+    // Top bit of each field is set if any bit in the field is set
+    long x = word(w);
+    long nonZero = (((x & rest) + rest) | x) & high;
+    long zeros = ~nonZero & high;
+
+    // Padding after the last pair isn't missing
+    long firstPair = w << fieldsPerWordShift;
+    long fields = Math.min(1L << fieldsPerWordShift, pairCount - firstPair);
+    if (fields < (1L << fieldsPerWordShift)) {
+      zeros &= (1L << (fields << fieldShift)) - 1;
+    }
+    return zeros;
+  }
+
+  /*
+   * Private helper method, repeats a field value across a word
+   */
+  private long replicate(long value) {
+    long word = 0;
+    for (int f=0; f<64; f+=fieldBits) {
+      word |= value << f;
+    }
+    return word;
+  }
+
+  private int field(long pair) {
+    long word = pair >>> fieldsPerWordShift;
+    int bit = (int) (pair & ((1 << fieldsPerWordShift) - 1)) << fieldShift;
+    return (int) ((segments[(int) (word >>> SEGMENT_SHIFT)].get((int) (word & SEGMENT_MASK)) >>> bit) & fieldMask);
+  }
+
+  /**
+   * Index of the unordered pair of tokens lo &lt; hi
+   */
+  static long pairIndex(int lo, int hi) {
+    return (long) hi * (hi - 1) / 2 + lo;
+  }
+
+  /**
+   * The tokens of a pair, from its index
+   * @return long, the lower token index in the high 32 bits and the higher in the low
+   */
+  static long tokens(long pair) {
+    long hi = (long) ((1 + Math.sqrt(1 + 8.0 * pair)) / 2);
+    while (hi * (hi - 1) / 2 > pair) {
+      hi--;
+    }
+    while ((hi + 1) * hi / 2 <= pair) {
+      hi++;
+    }
+    long lo = pair - hi * (hi - 1) / 2;
+    return (lo << 32) | hi;
+  }
+
+}
@@ -0,0 +1,726 @@
+package org.puzzle.rps;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parser for rule files, built for very large rulesets. Compiles a rule file straight
+ * into the symbol table, verb dictionary and outcome table used by RuleInterpreter.
+ *
+ * <p>The file is split into chunks on line boundaries, and each chunk is memory mapped
+ * and scanned byte by byte on a ForkJoinPool. Nothing is copied out of the mapping
+ * while scanning: tokens and verbs are interned into per-chunk open addressing tables
+ * keyed by their bytes in the mapping. Only the distinct tokens and verbs of each chunk
+ * are ever decoded into Strings.
+ *
+ * <p>The file is scanned twice. The first pass collects only the symbols, merging each
+ * chunk's into the symbol table and verb dictionary in file order, so token ordering
+ * (beaters first) and verb ids are exactly as if the file had been read line by line.
+ * Once the symbols are known, the outcome table is sized and the second pass fills it
+ * in: each chunk's rules are resolved to symbol table indices as it is scanned, then
+ * written into the table in file order, so the last of several rules covering the same
+ * pair wins, again as line by line.
+ *
+ * <p>Both passes scan chunks in batches of one per pool thread, and each batch is
+ * merged and dropped before the next is scanned. However large the file, only a batch
+ * of chunks' symbols and rules are held at once, besides the compiled tables.
+ *
+ * <p>Rulesets of up to DEFAULT_DENSE_TOKEN_LIMIT tokens compile to a DenseOutcomeTable.
+ * Larger rulesets compile to a PackedOutcomeTable, taking a few bits per unordered
+ * pair of tokens rather than eight bytes; rules of a token beating itself are ignored
+ * there, as draws aren't stored.
+ *
+ * <p>When validating, every rule is also recorded with a RulesetValidator, and the
+ * parse fails with a RulesetValidationException if the ruleset is incomplete or
+ * contradicts itself.
+ */
+class RuleFileParser {
+
+  /** Default target size of a chunk, in bytes */
+  static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+  /** Default largest number of tokens compiled to a dense outcome table */
+  static final int DEFAULT_DENSE_TOKEN_LIMIT = 4096;
+
+  // Mappings are limited to 2GB; keep well clear, allowing for the line that ends a chunk
+  private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+  private static final int PROBE_SIZE = 256;
+
+  private final File ruleFile;
+  private final int chunkSize;
+  private final boolean validating;
+  private final int denseTokenLimit;
+
+  // Compiled rules
+  private String[] tokenTable;
+  private Map<String, Integer> tokenIndex;
+  private String[] verbTable;
+  private OutcomeTable outcomeTable;
+
+  // Codes of a dense outcome table, while rules are written into it; null if packed
+  private int[] denseCodes;
+
+  /**
+   * Package constructor
+   * @param ruleFile File containing the rules to parse
+   * @param chunkSize Target size of a chunk, in bytes
+   * @param validating Whether to validate the ruleset
+   */
+  RuleFileParser(File ruleFile, int chunkSize, boolean validating) {
+    this(ruleFile, chunkSize, validating, DEFAULT_DENSE_TOKEN_LIMIT);
+  }
+
+  /**
+   * Package constructor
+   * @param ruleFile File containing the rules to parse
+   * @param chunkSize Target size of a chunk, in bytes
+   * @param validating Whether to validate the ruleset
+   * @param denseTokenLimit Largest number of tokens compiled to a dense outcome table
+   */
+  RuleFileParser(File ruleFile, int chunkSize, boolean validating, int denseTokenLimit) {
+    if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+      throw new IllegalArgumentException( String.format("Invalid chunk size '%d'", chunkSize) );
+    }
+    if (denseTokenLimit < 0 || (long) denseTokenLimit * denseTokenLimit > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException( String.format("Invalid dense token limit '%d'", denseTokenLimit) );
+    }
+    this.ruleFile = ruleFile;
+    this.chunkSize = chunkSize;
+    this.validating = validating;
+    this.denseTokenLimit = denseTokenLimit;
+  }
+
+  /**
+   * Parse and compile the rule file, scanning chunks in parallel on the given pool
+   * @param pool ForkJoinPool to parse chunks on
+   * @throws FileNotFoundException If the rule file cannot be found
+   * @throws RulesetValidationException If validating, and the ruleset is invalid
+   */
+  void parse(ForkJoinPool pool) throws FileNotFoundException {
+
+    if (!ruleFile.isFile()) {
+      throw new FileNotFoundException( ruleFile.getPath() );
+    }
+
+    FileChannel channel = null;
+    try {
+
+      channel = FileChannel.open(ruleFile.toPath(), StandardOpenOption.READ);
+
+      List<Chunk> chunks = split(channel);
+      int batchSize = Math.max(1, pool.getParallelism());
+
+      // First pass: collect the symbols, in file order
+      SymbolMerge symbols = new SymbolMerge();
+      for (int from=0; from<chunks.size(); from+=batchSize) {
+        List<Chunk> batch = scan(pool, chunks.subList(from, Math.min(chunks.size(), from + batchSize)));
+        for (Chunk chunk : batch) {
+          symbols.merge(chunk);
+        }
+      }
+      compileSymbols(symbols);
+
+      // Second pass: write the rules into the outcome table, in file order
+      Map<String, Integer> verbIds = symbols.verbIds;
+      RuleWriter writer = new RuleWriter();
+      for (int from=0; from<chunks.size(); from+=batchSize) {
+        List<Chunk> batch = chunks.subList(from, Math.min(chunks.size(), from + batchSize));
+        List<Chunk> scanned = new ArrayList<Chunk>(batch.size());
+        for (Chunk chunk : batch) {
+          scanned.add( chunk.forRules(tokenIndex, verbIds) );
+        }
+        for (Chunk chunk : scan(pool, scanned)) {
+          writer.write(chunk);
+        }
+      }
+      writer.finish();
+
+    } catch (IOException e) {
+
+      // Escalate IOException to RTE; no point forcing client to deal with this
+      throw new RuntimeException("IO Exception detected reading rules",e);
+
+    } finally {
+
+      try {
+        if (channel != null) {
+          channel.close();
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("IO Exception closing rule file",e);
+      }
+
+    }
+  }
+
+  /** The symbol table: tokens that beat others first, in order of first appearance */
+  String[] getTokenTable() {
+    return tokenTable;
+  }
+
+  /** Index of each token in the symbol table */
+  Map<String, Integer> getTokenIndex() {
+    return tokenIndex;
+  }
+
+  /** The verb dictionary; verb id 0 is the draw verb */
+  String[] getVerbTable() {
+    return verbTable;
+  }
+
+  /** The outcome table: dense, or packed for large rulesets */
+  OutcomeTable getOutcomeTable() {
+    return outcomeTable;
+  }
+
+  /*
+   * Private helper method. Split the file into chunks of roughly chunkSize bytes,
+   * each ending just after a newline (or at the end of the file).
+   */
+  private List<Chunk> split(FileChannel channel) throws IOException {
+
+    List<Chunk> chunks = new ArrayList<Chunk>();
+    long size = channel.size();
+    ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+
+    long start = 0;
+    while (start < size) {
+
+      long end = Math.min(size, start + chunkSize);
+
+      // Move the end on to just past the next newline
+      while (end < size && !endsLine(channel, end, probe)) {
+        end = nextLineStart(channel, end, size, probe);
+      }
+
+      if (end - start > Integer.MAX_VALUE) {
+        throw new RuntimeException("Malformed rule detected");
+      }
+
+      chunks.add( new Chunk(channel, start, (int) (end - start)) );
+      start = end;
+    }
+
+    return chunks;
+  }
+
+  /*
+   * Private helper method, true if the byte before the given position is a newline
+   */
+  private static boolean endsLine(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+    probe.clear();
+    probe.limit(1);
+    channel.read(probe, position - 1);
+    return probe.get(0) == '\n';
+  }
+
+  /*
+   * Private helper method, finds the position just past the next newline at or after
+   * the given position; or the end of the file, if there is none.
+   */
+  private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer probe)
+      throws IOException {
+    while (position < size) {
+      probe.clear();
+      int read = channel.read(probe, position);
+      for (int i=0; i<read; i++) {
+        if (probe.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += Math.max(read, 0);
+    }
+    return size;
+  }
+
+  /*
+   * Private helper method. Scan a batch of chunks in parallel, surfacing the first
+   * failure in file order.
+   */
+  private static List<Chunk> scan(ForkJoinPool pool, List<Chunk> batch) {
+    pool.invoke(new ScanAll(batch));
+    for (Chunk chunk : batch) {
+      if (chunk.failure != null) {
+        throw chunk.failure;
+      }
+    }
+    return batch;
+  }
+
+  /*
+   * Private helper method. Build the symbol table and verb dictionary from the merged
+   * symbols, and an empty outcome table to suit.
+   */
+  private void compileSymbols(SymbolMerge symbols) {
+
+    Set<String> tokens = new LinkedHashSet<String>(symbols.beaterTokens);
+    tokens.addAll(symbols.beatenTokens);
+
+    int tokenCount = tokens.size();
+
+    tokenTable = tokens.toArray(new String[tokenCount]);
+    tokenIndex = new HashMap<String, Integer>();
+    for (int i=0; i<tokenCount; i++) {
+      tokenIndex.put(tokenTable[i], i);
+    }
+    verbTable = new String[symbols.verbIds.size() + 1];
+    verbTable[0] = Result.DRAW_VERB;
+    for (Map.Entry<String, Integer> verb : symbols.verbIds.entrySet()) {
+      verbTable[verb.getValue()] = verb.getKey();
+    }
+
+    if (tokenCount <= denseTokenLimit) {
+      denseCodes = new int[tokenCount * tokenCount];
+      Arrays.fill(denseCodes, RuleInterpreter.NO_RULE);
+      for (int i=0; i<tokenCount; i++) {
+        denseCodes[i * tokenCount + i] = RuleInterpreter.DRAW;
+      }
+      outcomeTable = new DenseOutcomeTable(tokenCount, denseCodes);
+    } else {
+      outcomeTable = new PackedOutcomeTable(tokenCount, verbTable.length);
+    }
+  }
+
+
+
+  /*
+   * Symbols of the chunks merged so far, in file order. Tokens are kept in two sets
+   * to give preference to 'beater' ordering. Rule verbs are numbered from 1, even one
+   * spelt like the draw verb, as verb id 0 is reserved for draws.
+   */
+  private static class SymbolMerge {
+
+    final Set<String> beaterTokens = new LinkedHashSet<String>();
+    final Set<String> beatenTokens = new LinkedHashSet<String>();
+    final Map<String, Integer> verbIds = new LinkedHashMap<String, Integer>();
+
+    /*
+     * Merge the symbols of the next chunk, then drop them from the chunk
+     */
+    void merge(Chunk chunk) {
+
+      String[] tokenNames = chunk.tokens.names();
+      for (int i=0; i<chunk.beaterCount; i++) {
+        beaterTokens.add( tokenNames[chunk.beaterOrder[i]] );
+      }
+      for (int i=0; i<chunk.beatenCount; i++) {
+        beatenTokens.add( tokenNames[chunk.beatenOrder[i]] );
+      }
+      for (String verb : chunk.verbs.names()) {
+        if (!verbIds.containsKey(verb)) {
+          verbIds.put(verb, verbIds.size() + 1);
+        }
+      }
+      chunk.release();
+    }
+  }
+
+
+
+  /*
+   * Writer of rules into the outcome table, one chunk at a time in file order. Later
+   * rules replace earlier ones for the same pair of tokens, so rules are written on
+   * a single thread.
+   */
+  private class RuleWriter {
+
+    // Exactly one of these is filled in
+    private final int[] codes;
+    private final PackedOutcomeTable packed;
+    private final RulesetValidator validator;
+    private final int tokenCount = tokenTable.length;
+
+    RuleWriter() {
+      codes = denseCodes;
+      if (codes == null) {
+        packed = (PackedOutcomeTable) outcomeTable;
+        validator = validating ? new RulesetValidator(packed) : null;
+      } else {
+        packed = null;
+        validator = validating ? new RulesetValidator(tokenCount) : null;
+      }
+    }
+
+    /*
+     * Write the next chunk's rules, then drop them from the chunk
+     */
+    void write(Chunk chunk) {
+
+      int[] rules = chunk.rules;
+      for (int r=0; r<chunk.ruleCount * 3; r+=3) {
+        int beater = rules[r];
+        int verbId = rules[r + 1];
+        int beaten = rules[r + 2];
+
+        // Before writing the rule: a packed validator checks it against the table
+        if (validator != null) {
+          validator.record(beater, beaten);
+        }
+
+        if (codes != null) {
+          // A token always draws with itself, as in the packed table; self rules are ignored
+          if (beater == beaten) {
+            continue;
+          }
+          int verb = verbId << RuleInterpreter.VERB_SHIFT;
+          codes[beater * tokenCount + beaten] = verb | RuleInterpreter.FIRST_WINS;
+          codes[beaten * tokenCount + beater] = verb | RuleInterpreter.SECOND_WINS;
+        } else {
+          packed.set(beater, beaten, verbId);
+        }
+      }
+      chunk.release();
+    }
+
+    /*
+     * Validate the ruleset, once every rule is written
+     */
+    void finish() {
+      denseCodes = null;
+      if (validator != null) {
+        validator.validate(tokenTable);
+      }
+    }
+  }
+
+
+
+  /*
+   * Task scanning all chunks, each as a task of its own
+   */
+  private static class ScanAll extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Chunk> chunks;
+
+    ScanAll(List<Chunk> chunks) {
+      this.chunks = chunks;
+    }
+
+    @Override
+    protected void compute() {
+      invokeAll(chunks);
+    }
+  }
+
+  /*
+   * One chunk of the rule file, and its scanned contents: in the first pass its
+   * symbols, in order of first appearance in each role; in the second its rules, as
+   * triples of symbol table index, verb id and symbol table index. Failures are kept
+   * rather than thrown, so that the caller sees the original exception.
+   */
+  private static class Chunk extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long position;
+    private final int length;
+
+    // Symbol table indices and verb ids to resolve rules to; null in the first pass
+    private final Map<String, Integer> tokenIds;
+    private final Map<String, Integer> verbIds;
+
+    // First pass: local symbol tables and role orderings
+    SymbolTable tokens;
+    SymbolTable verbs;
+    int[] beaterOrder = new int[16];
+    int beaterCount;
+    int[] beatenOrder = new int[16];
+    int beatenCount;
+
+    // Second pass: rules as resolved triples
+    int[] rules;
+    int ruleCount;
+
+    RuntimeException failure;
+
+    Chunk(FileChannel channel, long position, int length) {
+      this(channel, position, length, null, null);
+    }
+
+    private Chunk(FileChannel channel, long position, int length,
+        Map<String, Integer> tokenIds, Map<String, Integer> verbIds) {
+      this.channel = channel;
+      this.position = position;
+      this.length = length;
+      this.tokenIds = tokenIds;
+      this.verbIds = verbIds;
+    }
+
+    /*
+     * The same chunk, to be scanned for its rules
+     */
+    Chunk forRules(Map<String, Integer> tokenIds, Map<String, Integer> verbIds) {
+      return new Chunk(channel, position, length, tokenIds, verbIds);
+    }
+
+    @Override
+    protected void compute() {
+      try {
+        scan( channel.map(FileChannel.MapMode.READ_ONLY, position, length) );
+      } catch (IOException e) {
+        failure = new RuntimeException("IO Exception detected reading rules",e);
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+
+    /*
+     * Scan every line of the chunk. A rule line is exactly two colon separated
+     * fields, optionally ending in a carriage return.
+     */
+    private void scan(MappedByteBuffer buf) {
+
+      tokens = new SymbolTable(buf);
+      verbs = new SymbolTable(buf);
+      boolean resolving = tokenIds != null;
+
+      // First pass: tokens may first appear as a beater, a beaten token, or both
+      byte[] roles = new byte[16];
+
+      // Second pass: symbol table index of each local token, and id of each local verb
+      int[] globalToken = new int[16];
+      int[] globalVerb = new int[16];
+      int tokensResolved = 0;
+      int verbsResolved = 0;
+      if (resolving) {
+        rules = new int[48];
+      }
+
+      int limit = buf.limit();
+      int pos = 0;
+      while (pos < limit) {
+
+        int lineStart = pos;
+        int colon1 = -1;
+        int colon2 = -1;
+        int colons = 0;
+
+        int end = pos;
+        byte b;
+        while (end < limit && (b = buf.get(end)) != '\n') {
+          if (b == ':') {
+            if (colons == 0) {
+              colon1 = end;
+            } else {
+              colon2 = end;
+            }
+            colons++;
+          }
+          end++;
+        }
+        pos = end + 1;
+
+        int lineEnd = end;
+        if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') {
+          lineEnd--;
+        }
+
+        if (colons != 2 || colon1 == lineStart || colon2 == colon1 + 1 || lineEnd == colon2 + 1) {
+          throw new RuntimeException("Malformed rule detected");
+        }
+
+        int beater = tokens.intern(lineStart, colon1);
+        int verb = verbs.intern(colon1 + 1, colon2);
+        int beaten = tokens.intern(colon2 + 1, lineEnd);
+
+        if (resolving) {
+          // Look up symbols new to this chunk; local ids run on in order
+          for (; tokensResolved<tokens.size(); tokensResolved++) {
+            globalToken = append(globalToken, tokensResolved, lookup(tokenIds, tokens.name(tokensResolved)));
+          }
+          for (; verbsResolved<verbs.size(); verbsResolved++) {
+            globalVerb = append(globalVerb, verbsResolved, lookup(verbIds, verbs.name(verbsResolved)));
+          }
+          if (ruleCount * 3 + 3 > rules.length) {
+            rules = Arrays.copyOf(rules, rules.length * 2);
+          }
+          rules[ruleCount * 3] = globalToken[beater];
+          rules[ruleCount * 3 + 1] = globalVerb[verb];
+          rules[ruleCount * 3 + 2] = globalToken[beaten];
+          ruleCount++;
+          continue;
+        }
+
+        if (tokens.size() > roles.length) {
+          roles = Arrays.copyOf(roles, roles.length * 2);
+        }
+        if ((roles[beater] & 1) == 0) {
+          roles[beater] |= 1;
+          beaterOrder = append(beaterOrder, beaterCount++, beater);
+        }
+        if ((roles[beaten] & 2) == 0) {
+          roles[beaten] |= 2;
+          beatenOrder = append(beatenOrder, beatenCount++, beaten);
+        }
+      }
+
+      if (resolving) {
+        // Only the resolved rules are needed, not the mapping
+        tokens = null;
+        verbs = null;
+      }
+    }
+
+    /*
+     * Look up a symbol found in the first pass; anything else means the file changed
+     */
+    private static int lookup(Map<String, Integer> ids, String name) {
+      Integer id = ids.get(name);
+      if (id == null) {
+        throw new RuntimeException("Rule file changed while being parsed");
+      }
+      return id;
+    }
+
+    /*
+     * Drop everything scanned, including the mapping, once merged or written
+     */
+    void release() {
+      tokens = null;
+      verbs = null;
+      rules = null;
+      beaterOrder = null;
+      beatenOrder = null;
+    }
+
+    private static int[] append(int[] array, int count, int value) {
+      if (count == array.length) {
+        array = Arrays.copyOf(array, count * 2);
+      }
+      array[count] = value;
+      return array;
+    }
+  }
+
+  /*
+   * Open addressing table interning byte ranges of a buffer. Ids are assigned in order
+   * of first appearance; each entry is the start and length of its first occurrence.
+   */
+  private static class SymbolTable {
+
+    private final ByteBuffer buf;
+
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int[] hashes = new int[16];
+    private int size;
+
+    // Slots hold id + 1; zero is empty. Kept at most half full.
+    private int[] slots = new int[32];
+
+    SymbolTable(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    int size() {
+      return size;
+    }
+
+    /*
+     * Intern the bytes from start (inclusive) to end (exclusive), returning their id
+     */
+    int intern(int start, int end) {
+
+      int length = end - start;
+      int hash = 0;
+      for (int i=start; i<end; i++) {
+        hash = 31 * hash + buf.get(i);
+      }
+
+      int mask = slots.length - 1;
+      int slot = mix(hash) & mask;
+      while (slots[slot] != 0) {
+        int id = slots[slot] - 1;
+        if (hashes[id] == hash && lengths[id] == length && matches(starts[id], start, length)) {
+          return id;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      // First appearance
+      int id = size++;
+      if (id == starts.length) {
+        starts = Arrays.copyOf(starts, id * 2);
+        lengths = Arrays.copyOf(lengths, id * 2);
+        hashes = Arrays.copyOf(hashes, id * 2);
+      }
+      starts[id] = start;
+      lengths[id] = length;
+      hashes[id] = hash;
+      slots[slot] = id + 1;
+
+      if (size * 2 > slots.length) {
+        rehash();
+      }
+      return id;
+    }
+
+    /*
+     * Decode each interned byte range, in id order
+     */
+    String[] names() {
+      String[] names = new String[size];
+      for (int id=0; id<size; id++) {
+        names[id] = name(id);
+      }
+      return names;
+    }
+
+    /*
+     * Decode one interned byte range
+     */
+    String name(int id) {
+      byte[] bytes = new byte[lengths[id]];
+      for (int i=0; i<bytes.length; i++) {
+        bytes[i] = buf.get(starts[id] + i);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean matches(int s1, int s2, int length) {
+      for (int i=0; i<length; i++) {
+        if (buf.get(s1 + i) != buf.get(s2 + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void rehash() {
+      slots = new int[slots.length * 2];
+      int mask = slots.length - 1;
+      for (int id=0; id<size; id++) {
+        int slot = mix(hashes[id]) & mask;
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+      }
+    }
+
+    private static int mix(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+package org.puzzle.rps;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Watches a RulesetHolder's rule file, reloading the holder whenever the file is
+ * created, modified, or replaced. Runs on a daemon thread of its own.
+ *
+ * <p>Editors often save in several steps, so one save may trigger several reloads;
+ * reloads of unchanged contents, and of part written files that fail to parse, leave
+ * the current version in place.
+ */
+public class RuleFileWatcher {
+
+  private final RulesetHolder holder;
+  private final Path directory;
+  private final Path fileName;
+
+  private WatchService watchService;
+  private Thread watcherThread;
+
+  /**
+   * Public constructor
+   * @param holder The holder to reload
+   * @throws IllegalArgumentException If the holder has no rule file
+   */
+  public RuleFileWatcher(RulesetHolder holder) {
+    if (holder.getRuleFile() == null) {
+      throw new IllegalArgumentException("Ruleset holder has no rule file to watch");
+    }
+    this.holder = holder;
+
+    Path path = holder.getRuleFile().getAbsoluteFile().toPath();
+    this.directory = path.getParent();
+    this.fileName = path.getFileName();
+  }
+
+  /**
+   * Start watching the rule file
+   */
+  public synchronized void start() {
+
+    if (watcherThread != null) {
+      throw new IllegalStateException("Already watching");
+    }
+
+    try {
+      watchService = directory.getFileSystem().newWatchService();
+      directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception watching rule file",e);
+    }
+
+    watcherThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        watch();
+      }
+    }, "rule-file-watcher");
+    watcherThread.setDaemon(true);
+    watcherThread.start();
+  }
+
+  /**
+   * Stop watching the rule file, waiting for any reload in progress to finish
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public synchronized void stop() throws InterruptedException {
+
+    if (watcherThread == null) {
+      return;
+    }
+
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception closing rule file watcher",e);
+    }
+    watcherThread.join();
+    watcherThread = null;
+  }
+
+  /*
+   * Private helper method, the watcher thread's loop
+   */
+  private void watch() {
+
+    while (true) {
+
+      WatchKey key;
+      try {
+        key = watchService.take();
+      } catch (ClosedWatchServiceException e) {
+        return;
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      boolean changed = false;
+      for (WatchEvent<?> event : key.pollEvents()) {
+        // Overflow means events were lost, so the file may have changed
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+          changed = true;
+        }
+      }
+
+      if (changed) {
+        holder.reload();
+      }
+
+      if (!key.reset()) {
+        return;
+      }
+    }
+  }
+
+}
@@ -1,15 +1,14 @@
 package org.puzzle.rps;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Interpreter for Rock-Paper-Scissors type games. Parses rule files 
@@ -19,84 +18,226 @@ import java.util.Set;
  * <PRE>Winner:verb:Loser</PRE>
  * 
  * See test/resources folder for more examples. 
+ * 
+ * <p>Rule files are parsed by a RuleFileParser, which memory maps the file and
+ * scans chunks of it in parallel. The rules are compiled into a symbol table, giving
+ * each token an index, and a table of outcome codes for every pair of token indices:
+ * dense, one int per pair, for up to 4096 tokens, and bit-packed beyond that, so
+ * rulesets of 100,000 tokens and more fit in memory. For up to 2048 tokens a
+ * pre-resolved Result is also held for every pair (draws included), so lookups by
+ * index are O(1) and allocation free; beyond that, Results are built from the
+ * outcome codes on demand.
+ * 
+ * <p>Rules may also be loaded from a compiled binary snapshot, written the first
+ * time a rule file is loaded; see loadRules(File, File) and RulesetSnapshot. A
+ * snapshot's outcome table is memory mapped, and used without copying.
+ * 
+ * <p>Rules can be loaded into an interpreter only once; after that it is an immutable
+ * version of the ruleset, and safe to share between any number of games and threads
+ * once safely published. Nothing on the lookup paths takes a lock. To change rules
+ * while games are running, load a new interpreter and swap it in through a
+ * RulesetHolder; games in flight finish on the version they started with.
+ * 
+ * <p>By default rulesets are validated as they are parsed: every pair of distinct
+ * tokens must be covered by exactly one winning direction. See RulesetValidator.
+ * Validation may be switched off for rulesets known to be partial; games then fail
+ * with an IllegalStateException if they reach a pair that no rule covers.
+ * 
+ * <p>For callers that work purely in token indices, each pair of tokens also has
+ * an int outcome code: the low two bits give the side that wins (DRAW, FIRST_WINS,
+ * SECOND_WINS, or NO_RULE if no rule covers the pair), and the remaining bits give
+ * the id of the winning verb in the verb dictionary. Verb id 0 is always the draw verb.
+ * Outcome codes can be looked up in bulk, for arrays of token index pairs; see
+ * outcomes(int[], int[], int[]).
  */
 public class RuleInterpreter {
 
+  /** Outcome side: the tokens draw */
+  public static final int DRAW = 0;
+  /** Outcome side: the first token wins */
+  public static final int FIRST_WINS = 1;
+  /** Outcome side: the second token wins */
+  public static final int SECOND_WINS = 2;
+  /** Outcome side: no rule covers the tokens */
+  public static final int NO_RULE = 3;
+
+  private static final int SIDE_MASK = 3;
+  static final int VERB_SHIFT = 2;
+
+  // Results are pre-resolved for every pair of tokens up to this many tokens
+  private static final int RESULT_CACHE_TOKENS = 2048;
+
   private Set<String> tokens;
-  private Map<Play, Result> playMap;
+  private boolean validating = true;
   
+  // Compiled form of the rules: symbol table, verb dictionary, and n*n outcome tables
+  private String[] tokenTable;
+  private Map<String, Integer> tokenIndex;
+  private String[] verbTable;
+  private Result[] outcomes;
+  private OutcomeTable outcomeTable;
+  
+  /**
+   * Switch load-time validation of rulesets on or off. On by default.
+   * @param validating Whether subsequently parsed rulesets are validated
+   */
+  public void setValidating(boolean validating) {
+    this.validating = validating;
+  }
+
   /**
-   * Initialse the RuleInterpreter with the given ruleset
+   * Initialse the RuleInterpreter with the given ruleset. Large rule files are
+   * parsed in parallel, on the common ForkJoinPool.
    * @param ruleFile File containing the rules to parse
    * @throws FileNotFoundException If the given file cannot be found
+   * @throws RulesetValidationException If validating, and the ruleset is incomplete or inconsistent
+   * @throws IllegalStateException If rules have already been loaded
    */
   public void parseRules(File ruleFile) throws FileNotFoundException {
+    parseRules(ruleFile, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Initialse the RuleInterpreter with the given ruleset, parsing chunks of the
+   * rule file in parallel on the given pool.
+   * @param ruleFile File containing the rules to parse
+   * @param pool ForkJoinPool to parse on
+   * @throws FileNotFoundException If the given file cannot be found
+   * @throws RulesetValidationException If validating, and the ruleset is incomplete or inconsistent
+   */
+  public void parseRules(File ruleFile, ForkJoinPool pool) throws FileNotFoundException {
+    parseRules(ruleFile, pool, RuleFileParser.DEFAULT_CHUNK_SIZE);
+  }
+
+  /*
+   * Package level parse, with a given chunk size
+   */
+  void parseRules(File ruleFile, ForkJoinPool pool, int chunkSize) throws FileNotFoundException {
+    parseRules(ruleFile, pool, chunkSize, RuleFileParser.DEFAULT_DENSE_TOKEN_LIMIT);
+  }
+
+  /*
+   * Package level parse, with a given chunk size and limit on dense outcome tables
+   */
+  void parseRules(File ruleFile, ForkJoinPool pool, int chunkSize, int denseTokenLimit) throws FileNotFoundException {
+    
+    checkUnloaded();
+    
+    RuleFileParser parser = new RuleFileParser(ruleFile, chunkSize, validating, denseTokenLimit);
+    parser.parse(pool);
+    
+    install(parser.getTokenTable(), parser.getTokenIndex(), parser.getVerbTable(), parser.getOutcomeTable());
+  }
+
+  /**
+   * Initialise the RuleInterpreter with the given ruleset, using a compiled snapshot
+   * of the rules kept in the user's .rps/snapshots directory. See loadRules(File, File).
+   * @param ruleFile File containing the rules
+   * @throws FileNotFoundException If the given file cannot be found
+   * @throws RulesetValidationException If validating, and the ruleset is incomplete or inconsistent
+   */
+  public void loadRules(File ruleFile) throws FileNotFoundException {
+    loadRules(ruleFile, RulesetSnapshot.defaultFile(ruleFile));
+  }
+
+  /**
+   * Initialise the RuleInterpreter with the given ruleset, using a compiled snapshot of
+   * the rules if one is available. If the snapshot is up to date with the rule file it is
+   * memory mapped and used in place, with no parsing; otherwise the rule file is parsed
+   * as normal, and a fresh snapshot is written for next time. Failure to write the
+   * snapshot does not fail the load.
+   * @param ruleFile File containing the rules
+   * @param snapshotFile File holding, or to hold, the compiled snapshot
+   * @throws FileNotFoundException If the given rule file cannot be found
+   * @throws RulesetValidationException If validating, and the ruleset is incomplete or inconsistent
+   * @throws IllegalStateException If rules have already been loaded
+   */
+  public void loadRules(File ruleFile, File snapshotFile) throws FileNotFoundException {
     
-    tokens = new LinkedHashSet<String>();
-    Set<String> beaterTokens = new LinkedHashSet<String>();
-    Set<String> beatenTokens = new LinkedHashSet<String>();
+    checkUnloaded();
     
-    playMap = new HashMap<Play, Result>();
+    if (!ruleFile.isFile()) {
+      throw new FileNotFoundException( ruleFile.getPath() );
+    }
     
-    // Use BufferedReader and FileReader to read lines from the file
-    FileReader fileReader = new FileReader(ruleFile);
-    BufferedReader ruleReader = new BufferedReader(fileReader);
+    long length = ruleFile.length();
+    long checksum = RulesetSnapshot.checksum(ruleFile);
     
-    try {
-      
-      String ruleString;      
-      while ((ruleString = ruleReader.readLine()) != null) {       
-        parseRule(ruleString, beaterTokens, beatenTokens);
-      }
-      
-      // Assign tokens - use two sets here to give preference to 'beater' ordering
-      tokens.addAll(beaterTokens);
-      tokens.addAll(beatenTokens);
-      
-    } catch (IOException e) {
-      
-      // Escalate IOException to RTE; no point forcing client to deal with this
-      throw new RuntimeException("IO Exception detected reading rules",e);
-      
-    } finally {
-
-      // Close the rule reader, and treat IOExceptions as terminal. 
-      // Could consider graceful failure but not much point in this case.
+    RulesetSnapshot snapshot = RulesetSnapshot.read(snapshotFile, length, checksum, validating);
+    if (snapshot != null) {
+      install(snapshot.tokenTable, snapshot.tokenIndex(), snapshot.verbTable, snapshot.outcomes);
+      return;
+    }
+    
+    // Stale or missing - fall back on the text
+    parseRules(ruleFile);
+    
+    // Only snapshot the rules if the file didn't change while being parsed
+    if (ruleFile.length() == length && RulesetSnapshot.checksum(ruleFile) == checksum) {
       try {
-        ruleReader.close();
-      } catch (IOException e) {
-        throw new RuntimeException("IO Exception closing rule file",e);
+        RulesetSnapshot.write(snapshotFile, tokenTable, verbTable, outcomeTable, validating, length, checksum);
+      } catch (RuntimeException e) {
+        // Snapshots are an optimisation only; the rules are loaded regardless
       }
-      
     }
+  }
 
+  /*
+   * Private helper method, rejects loading rules into an interpreter that already has some
+   */
+  private void checkUnloaded() {
+    if (tokenTable != null) {
+      throw new IllegalStateException("Rules already loaded; load new rules into a new RuleInterpreter");
+    }
   }
 
   /*
-   * Private helper method for parsing rules
+   * Private helper method. Takes on compiled rules, and pre-resolves a Result for
+   * every pair of tokens when there are few enough tokens to cache them all.
    */
-  private void parseRule(String ruleString, Set<String> beaterSet, Set<String> beatenSet) {
+  private void install(String[] tokenTable, Map<String, Integer> tokenIndex, String[] verbTable,
+      OutcomeTable outcomeTable) {
     
-    // Parse the rule
-    String[] readTokens = ruleString.split(":");
- 
-    if (readTokens.length != 3) {
-      throw new RuntimeException("Malformed rule detected");
-    }
+    this.tokens = new LinkedHashSet<String>( Arrays.asList(tokenTable) );
+    this.tokenTable = tokenTable;
+    this.tokenIndex = tokenIndex;
+    this.verbTable = verbTable;
+    this.outcomeTable = outcomeTable;
+    this.outcomes = null;
     
-    String beater = readTokens[0];
-    String method = readTokens[1];
-    String beaten = readTokens[2];
-        
-    // Add the tokens to the known set
-    beaterSet.add(beater);
-    beatenSet.add(beaten);
+    int tokenCount = tokenTable.length;
+    if (tokenCount > RESULT_CACHE_TOKENS) {
+      return;
+    }
     
-    // Add the rule to the lookup mechanism
-    Result r = new Result(beater, method, beaten);
-    Play p = new Play(beater, beaten);
+    // Both orderings of a pair of tokens share one Result
+    Result[] cache = new Result[tokenCount * tokenCount];
+    for (int i=0; i<tokenCount; i++) {
+      for (int j=i; j<tokenCount; j++) {
+        Result r = resolve(i, j);
+        cache[i * tokenCount + j] = r;
+        cache[j * tokenCount + i] = r;
+      }
+    }
+    this.outcomes = cache;
+  }
 
-    playMap.put(p, r);
+  /*
+   * Private helper method, builds the Result for a pair of token indices from its outcome code
+   */
+  private Result resolve(int t1, int t2) {
+    
+    int code = outcomeTable.code(t1, t2);
+    switch (side(code)) {
+      case DRAW:
+        return new Result(tokenTable[t1], Result.DRAW_VERB, tokenTable[t2]);
+      case FIRST_WINS:
+        return new Result(tokenTable[t1], verbTable[verbId(code)], tokenTable[t2]);
+      case SECOND_WINS:
+        return new Result(tokenTable[t2], verbTable[verbId(code)], tokenTable[t1]);
+      default:
+        return null;
+    }
   }
 
   /**
@@ -108,6 +249,68 @@ public class RuleInterpreter {
     return Collections.unmodifiableSet( tokens );
   }
 
+  /**
+   * Read-only accessor for the symbol table. The position of each token in
+   * the list is its token index, and matches the iteration order of getTokens().
+   * @return List of String
+   */
+  public List<String> getTokenList() {
+    return Collections.unmodifiableList( Arrays.asList(tokenTable) );
+  }
+
+  /**
+   * Number of tokens known to the interpreter. Valid token indices run from
+   * zero up to, but excluding, this value.
+   * @return int, the token count
+   */
+  public int getTokenCount() {
+    return tokenTable.length;
+  }
+
+  /*
+   * Package level estimate of the memory held by the compiled rules, in bytes:
+   * the outcome table, any pre-resolved Results, and the symbol table.
+   */
+  long footprint() {
+    
+    long cells = (long) tokenTable.length * tokenTable.length;
+    long bytes = outcomeTable.getFootprint();
+    if (outcomes != null) {
+      // A reference per cell, and a Result per pair of tokens
+      bytes += 4 * cells + 24 * (cells + tokenTable.length) / 2;
+    }
+    for (String token : tokenTable) {
+      // String and its bytes, plus a map entry and boxed index
+      bytes += 40 + token.length() + 48;
+    }
+    return bytes;
+  }
+
+  /**
+   * Look up the index of the given token in the symbol table.
+   * @param token A game token
+   * @return int, the token index
+   * @throws IllegalArgumentException If the token is not known
+   */
+  public int tokenIndex(String token) {
+    Integer idx = tokenIndex.get(token);
+    if (idx == null) {
+      throw new IllegalArgumentException( String.format("Invalid game Token '%s'", token) );
+    }
+    return idx;
+  }
+
+  /**
+   * Look up the token with the given index in the symbol table.
+   * @param index A token index
+   * @return String, the token
+   * @throws IllegalArgumentException If the index is out of range
+   */
+  public String token(int index) {
+    checkIndex(index);
+    return tokenTable[index];
+  }
+
   /**
    * Returns the winner form the two provided tokens.
    * @param t1 First token in play
@@ -116,27 +319,132 @@ public class RuleInterpreter {
    * @throws InvalidStateException
    */
   public Result winner(String t1, String t2) {
+    
+    // Adapter onto the index based lookup; draws are pre-resolved too
+    int idx1 = tokenIndex(t1);
+    int idx2 = tokenIndex(t2);
+    
+    return outcomes != null ? outcomes[idx1 * tokenTable.length + idx2] : resolve(idx1, idx2);
+  }
 
-    String invalidTokenMsg = "Invalid game Token '%s'";
-    if (!tokens.contains(t1)) {
-      throw new IllegalArgumentException( String.format(invalidTokenMsg, t1) );
+  /**
+   * Returns the winner for the two provided token indices. Up to 2048 tokens
+   * this is a single array lookup, and never allocates.
+   * @param t1 Index of the first token in play
+   * @param t2 Index of the second token in play
+   * @return The pre-resolved Result, or null if no rule covers the pair
+   * @throws IllegalArgumentException If either index is out of range
+   */
+  public Result winner(int t1, int t2) {
+    checkIndex(t1);
+    checkIndex(t2);
+    return outcomes != null ? outcomes[t1 * tokenTable.length + t2] : resolve(t1, t2);
+  }
+
+  /**
+   * Returns the outcome code for the two provided token indices. Like the index
+   * based winner lookup, this is a single array lookup and never allocates.
+   * @param t1 Index of the first token in play
+   * @param t2 Index of the second token in play
+   * @return int outcome code; see side(int) and verbId(int)
+   * @throws IllegalArgumentException If either index is out of range
+   */
+  public int outcome(int t1, int t2) {
+    checkIndex(t1);
+    checkIndex(t2);
+    return outcomeTable.code(t1, t2);
+  }
+
+  /**
+   * Returns the outcome codes for many pairs of token indices in one call: codes[i]
+   * is the outcome for first[i] against second[i]. All indices are checked up front,
+   * then the codes are read in one tight loop over the outcome table, with no per-pair
+   * call overhead or allocation.
+   * @param first Indices of the first tokens in play
+   * @param second Indices of the second tokens in play
+   * @param codes Array to fill with outcome codes; see side(int) and verbId(int)
+   * @throws IllegalArgumentException If the arrays differ in length, or any index is out of range
+   */
+  public void outcomes(int[] first, int[] second, int[] codes) {
+    if (second.length != first.length || codes.length != first.length) {
+      throw new IllegalArgumentException( String.format("Batch arrays differ in length: %d, %d, %d",
+          first.length, second.length, codes.length) );
     }
-    if (!tokens.contains(t2)) {
-      throw new IllegalArgumentException( String.format(invalidTokenMsg, t2) );      
+    outcomes(first, second, codes, 0, first.length);
+  }
+
+  /**
+   * Returns the outcome codes for a range of pairs of token indices in one call: for
+   * each i from offset up to offset + length, codes[i] is the outcome for first[i]
+   * against second[i]. Elements of codes outside the range are left alone.
+   * @param first Indices of the first tokens in play
+   * @param second Indices of the second tokens in play
+   * @param codes Array to fill with outcome codes; see side(int) and verbId(int)
+   * @param offset Index of the first pair
+   * @param length Number of pairs
+   * @throws IllegalArgumentException If the range doesn't fit the arrays, or any index is out of range
+   */
+  public void outcomes(int[] first, int[] second, int[] codes, int offset, int length) {
+
+    int end = offset + length;
+    if (offset < 0 || length < 0 || end < 0
+        || end > first.length || end > second.length || end > codes.length) {
+      throw new IllegalArgumentException( String.format("Invalid batch range %d+%d", offset, length) );
     }
-    
-    // Check for a draw
-    if (t1.equals(t2)) {
-      return new Result(t1, Result.DRAW_VERB, t2);
+
+    // Branch free check of every index: any out of range makes 'bad' negative
+    int last = tokenTable.length - 1;
+    int bad = 0;
+    for (int i=offset; i<end; i++) {
+      bad |= first[i] | (last - first[i]) | second[i] | (last - second[i]);
     }
-    
-    // Need to check, at most, two map elements here. Does X beat Y, or
-    // does Y beat X? If neither, throw an exception
-    
-    Play thisPlay = new Play(t1,t2);    
-    Result res = playMap.get(thisPlay);
+    if (bad < 0) {
+      for (int i=offset; i<end; i++) {
+        checkIndex(first[i]);
+        checkIndex(second[i]);
+      }
+    }
+
+    outcomeTable.codes(first, second, codes, offset, length);
+  }
+
+  /**
+   * Look up a verb in the verb dictionary.
+   * @param verbId A verb id, from an outcome code
+   * @return String, the verb
+   */
+  public String verb(int verbId) {
+    if (verbId < 0 || verbId >= verbTable.length) {
+      throw new IllegalArgumentException( String.format("Invalid verb id '%d'", verbId) );
+    }
+    return verbTable[verbId];
+  }
+
+  /**
+   * Extract the winning side from an outcome code.
+   * @param outcome An outcome code
+   * @return int, one of DRAW, FIRST_WINS, SECOND_WINS or NO_RULE
+   */
+  public static int side(int outcome) {
+    return outcome & SIDE_MASK;
+  }
 
-    return res;
+  /**
+   * Extract the verb id from an outcome code.
+   * @param outcome An outcome code
+   * @return int, the id of the winning verb
+   */
+  public static int verbId(int outcome) {
+    return outcome >>> VERB_SHIFT;
+  }
+
+  /*
+   * Private helper method, rejects token indices outside the symbol table
+   */
+  private void checkIndex(int index) {
+    if (index < 0 || index >= tokenTable.length) {
+      throw new IllegalArgumentException( String.format("Invalid game token index '%d'", index) );
+    }
   }
 
 }
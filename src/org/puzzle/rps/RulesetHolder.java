@@ -0,0 +1,162 @@
+package org.puzzle.rps;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+/**
+ * Holder for the current version of a ruleset, for swapping rules while games run.
+ *
+ * <p>Each version is a separate RuleInterpreter, which can't change once loaded. New
+ * games take whichever version is current when they start, and keep it to the end, so
+ * a reload never disturbs a game in flight. Reading the current version is a single
+ * volatile read; only reloads and swaps synchronise, with each other.
+ *
+ * <p>When created from a rule file, the holder can reload it: see reload(), and
+ * RuleFileWatcher for reloading whenever the file changes.
+ */
+public class RulesetHolder {
+
+  private final File ruleFile;
+  private final boolean validating;
+
+  private volatile Version current;
+  private volatile RuntimeException lastReloadError;
+
+  /**
+   * Public constructor, loading validated rules from the given file
+   * @param ruleFile File containing the rules
+   * @throws FileNotFoundException If the given file cannot be found
+   */
+  public RulesetHolder(File ruleFile) throws FileNotFoundException {
+    this(ruleFile, true);
+  }
+
+  /**
+   * Public constructor, loading rules from the given file
+   * @param ruleFile File containing the rules
+   * @param validating Whether rulesets must pass validation to be loaded
+   * @throws FileNotFoundException If the given file cannot be found
+   */
+  public RulesetHolder(File ruleFile, boolean validating) throws FileNotFoundException {
+    this.ruleFile = ruleFile;
+    this.validating = validating;
+
+    long checksum = RulesetSnapshot.checksum(ruleFile);
+    current = new Version(load(), 1, ruleFile.length(), checksum);
+  }
+
+  /**
+   * Public constructor, holding rules that are already loaded. Such holders can
+   * only be changed by swapping in new rules.
+   * @param rules The initial rules
+   */
+  public RulesetHolder(RuleInterpreter rules) {
+    this.ruleFile = null;
+    this.validating = false;
+    current = new Version(rules, 1, -1, -1);
+  }
+
+  /**
+   * The current version of the ruleset
+   * @return RuleInterpreter
+   */
+  public RuleInterpreter current() {
+    return current.rules;
+  }
+
+  /**
+   * The current version number; starts at one, and counts up with every change
+   * @return long, the version number
+   */
+  public long getVersion() {
+    return current.number;
+  }
+
+  /**
+   * The rule file this holder loads from
+   * @return File, or null if the holder was given its rules directly
+   */
+  public File getRuleFile() {
+    return ruleFile;
+  }
+
+  /**
+   * Make the given rules the current version
+   * @param rules The new rules
+   */
+  public synchronized void swap(RuleInterpreter rules) {
+    current = new Version(rules, current.number + 1, -1, -1);
+  }
+
+  /**
+   * Reload the rule file, if its contents have changed. If the new rules can't be
+   * loaded - the file is missing, malformed, part written, or fails validation - the
+   * current version stays in place, and the failure is kept; see getLastReloadError().
+   * @return true if a new version was loaded
+   * @throws IllegalStateException If the holder has no rule file
+   */
+  public synchronized boolean reload() {
+
+    if (ruleFile == null) {
+      throw new IllegalStateException("No rule file to reload");
+    }
+
+    try {
+      long length = ruleFile.length();
+      long checksum = RulesetSnapshot.checksum(ruleFile);
+      if (length == current.sourceLength && checksum == current.sourceChecksum) {
+        return false;
+      }
+
+      current = new Version(load(), current.number + 1, length, checksum);
+      lastReloadError = null;
+      return true;
+
+    } catch (FileNotFoundException e) {
+      lastReloadError = new RuntimeException("Rule file not found", e);
+      return false;
+    } catch (RuntimeException e) {
+      lastReloadError = e;
+      return false;
+    }
+  }
+
+  /**
+   * The failure of the most recent reload, if it failed
+   * @return RuntimeException, or null if the most recent reload succeeded or changed nothing
+   */
+  public RuntimeException getLastReloadError() {
+    return lastReloadError;
+  }
+
+  /*
+   * Private helper method, loads a new version of the rules from the file
+   */
+  private RuleInterpreter load() throws FileNotFoundException {
+    RuleInterpreter rules = new RuleInterpreter();
+    rules.setValidating(validating);
+    rules.loadRules(ruleFile);
+    return rules;
+  }
+
+
+
+  /*
+   * One version of the ruleset, with the source file details it was loaded from
+   */
+  private static class Version {
+
+    final RuleInterpreter rules;
+    final long number;
+    final long sourceLength;
+    final long sourceChecksum;
+
+    Version(RuleInterpreter rules, long number, long sourceLength, long sourceChecksum) {
+      this.rules = rules;
+      this.number = number;
+      this.sourceLength = sourceLength;
+      this.sourceChecksum = sourceChecksum;
+    }
+  }
+
+}
@@ -0,0 +1,222 @@
+package org.puzzle.rps;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registry of loaded rulesets, shared between any number of games and threads.
+ *
+ * <p>Rulesets are keyed by the SHA-256 digest of their rule file's contents, so each
+ * distinct ruleset is loaded once however many files or paths it is reached through.
+ * The RuleInterpreters handed out are immutable, and may be used concurrently by any
+ * number of GameEngines.
+ *
+ * <p>Rulesets are reference counted: each acquire() should be paired with a release()
+ * once the rules are no longer in use. Rulesets nobody is using stay loaded, so that they
+ * can be handed out again cheaply, until the estimated footprint of all loaded rulesets
+ * exceeds the memory budget; then unused rulesets are evicted, least recently used
+ * first. Rulesets in use are never evicted, so the budget may be exceeded while they
+ * are held.
+ *
+ * <p>Each ruleset is loaded by the first thread to ask for it, while other threads
+ * asking for the same ruleset wait; threads asking for other rulesets are not held up.
+ */
+public class RulesetRegistry {
+
+  // Largest region of a rule file to digest in one mapping
+  private static final long DIGEST_REGION = 1L << 30;
+
+  private final long memoryBudget;
+
+  // Entries by content key, in order of use, least recent first
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final Map<RuleInterpreter, Entry> byRules = new IdentityHashMap<RuleInterpreter, Entry>();
+  private long footprint;
+
+  /**
+   * Public constructor
+   * @param memoryBudget Estimated memory, in bytes, beyond which unused rulesets are evicted
+   */
+  public RulesetRegistry(long memoryBudget) {
+    if (memoryBudget < 0) {
+      throw new IllegalArgumentException( String.format("Invalid memory budget '%d'", memoryBudget) );
+    }
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Get the rules in the given file, loading them if no identical ruleset is loaded.
+   * Call release() when done with them.
+   * @param ruleFile File containing the rules
+   * @return RuleInterpreter, shared and immutable
+   * @throws FileNotFoundException If the given file cannot be found
+   * @throws RulesetValidationException If the ruleset is incomplete or inconsistent
+   */
+  public RuleInterpreter acquire(File ruleFile) throws FileNotFoundException {
+
+    if (!ruleFile.isFile()) {
+      throw new FileNotFoundException( ruleFile.getPath() );
+    }
+    String key = contentKey(ruleFile);
+
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+      if (entry == null) {
+        entry = new Entry(key);
+        entries.put(key, entry);
+      }
+      entry.references++;
+    }
+
+    RuleInterpreter rules;
+    try {
+      rules = entry.load(ruleFile);
+    } catch (FileNotFoundException e) {
+      abandon(entry);
+      throw e;
+    } catch (RuntimeException e) {
+      abandon(entry);
+      throw e;
+    }
+
+    synchronized (this) {
+      if (!entry.counted) {
+        entry.counted = true;
+        byRules.put(rules, entry);
+        footprint += entry.footprint;
+        evict();
+      }
+    }
+    return rules;
+  }
+
+  /**
+   * Release rules obtained from acquire(). Once released as many times as they were
+   * acquired, the rules may be evicted.
+   * @param rules Rules from this registry
+   * @throws IllegalArgumentException If the rules aren't held from this registry
+   */
+  public synchronized void release(RuleInterpreter rules) {
+
+    Entry entry = byRules.get(rules);
+    if (entry == null || entry.references == 0) {
+      throw new IllegalArgumentException("Rules not held from this registry");
+    }
+
+    entry.references--;
+    if (entry.references == 0) {
+      evict();
+    }
+  }
+
+  /** Number of rulesets currently loaded */
+  public synchronized int getLoadedCount() {
+    return byRules.size();
+  }
+
+  /** Estimated memory, in bytes, of all loaded rulesets */
+  public synchronized long getFootprint() {
+    return footprint;
+  }
+
+  /** Memory budget, in bytes */
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /*
+   * Private helper method. Evict unused rulesets, least recently used first, until
+   * within budget. Called holding the registry lock.
+   */
+  private void evict() {
+    Iterator<Entry> it = entries.values().iterator();
+    while (footprint > memoryBudget && it.hasNext()) {
+      Entry entry = it.next();
+      if (entry.references == 0 && entry.counted) {
+        it.remove();
+        byRules.remove(entry.rules);
+        footprint -= entry.footprint;
+      }
+    }
+  }
+
+  /*
+   * Private helper method, drops a reference taken by a failed acquire
+   */
+  private synchronized void abandon(Entry entry) {
+    entry.references--;
+    if (entry.references == 0 && !entry.counted) {
+      entries.remove(entry.key);
+    }
+  }
+
+  /*
+   * Private helper method, the SHA-256 digest of a file's contents, in hex
+   */
+  private static String contentKey(File ruleFile) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      FileChannel channel = FileChannel.open(ruleFile.toPath(), StandardOpenOption.READ);
+      try {
+        long size = channel.size();
+        for (long position=0; position<size; position+=DIGEST_REGION) {
+          digest.update( channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(DIGEST_REGION, size - position)) );
+        }
+      } finally {
+        channel.close();
+      }
+
+      StringBuilder key = new StringBuilder();
+      for (byte b : digest.digest()) {
+        key.append( String.format("%02x", b) );
+      }
+      return key.toString();
+
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("SHA-256 not available",e);
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception detected reading rules",e);
+    }
+  }
+
+
+
+  /*
+   * One ruleset, loaded at most once. 'references' and 'counted' are guarded by
+   * the registry lock; 'rules' by the entry's own lock, so loads run in parallel.
+   */
+  private static class Entry {
+
+    final String key;
+    int references;
+    boolean counted;
+
+    RuleInterpreter rules;
+    long footprint;
+
+    Entry(String key) {
+      this.key = key;
+    }
+
+    synchronized RuleInterpreter load(File ruleFile) throws FileNotFoundException {
+      if (rules == null) {
+        RuleInterpreter loaded = new RuleInterpreter();
+        loaded.loadRules(ruleFile);
+        footprint = loaded.footprint();
+        rules = loaded;
+      }
+      return rules;
+    }
+  }
+
+}
@@ -0,0 +1,368 @@
+package org.puzzle.rps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled binary form of a ruleset, for fast startup. A snapshot holds the symbol
+ * table, verb dictionary and outcome table of a RuleInterpreter, along with the length
+ * and CRC32 checksum of the rule file it was compiled from.
+ *
+ * <p>Loading a snapshot memory maps it, and the outcome table is used in place; only the
+ * token and verb strings are read onto the heap. A snapshot whose source checksum no
+ * longer matches the rule file is stale, and is ignored, as is any snapshot that is
+ * truncated, corrupt, or from another version of this format. The header, strings and
+ * outcome table are all checksummed, so checking a snapshot reads it through once;
+ * that is still far quicker than parsing the rules again.
+ *
+ * <p>Format, little endian:
+ * <PRE>
+ *  0  int   magic
+ *  4  int   format version
+ *  8  int   flags (bit 0: the ruleset was validated; bit 1: the outcome table is packed)
+ * 12  int   token count, n
+ * 16  int   verb count
+ * 20  int   size of the string section, in bytes
+ * 24  long  length of the source rule file
+ * 32  long  CRC32 of the source rule file
+ * 40  long  CRC32 of the outcome table
+ * 48  long  CRC32 of bytes 0-47 and the string section
+ * 56        string section: tokens then verbs, each an int length then UTF-8 bytes
+ *           padding to a multiple of 8 bytes
+ *           outcome table: n*n int outcome codes, in row order; or if packed, the
+ *           words of a PackedOutcomeTable, as longs
+ * </PRE>
+ *
+ * <p>Snapshots are written to a temporary file and moved into place, so readers never
+ * see a partly written snapshot.
+ */
+class RulesetSnapshot {
+
+  private static final int MAGIC = 0x31535052; // "RPS1"
+  private static final int VERSION = 3;
+  private static final int FLAG_VALIDATED = 1;
+  private static final int FLAG_PACKED = 2;
+
+  private static final int HEADER_SIZE = 56;
+  private static final int CHECKED_HEADER_SIZE = 48;
+
+  private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  // Size of the buffer used to write the outcome table
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+  // Largest region of a file to checksum in one mapping
+  private static final long CHECKSUM_REGION = 1L << 30;
+
+  /** The symbol table */
+  final String[] tokenTable;
+  /** The verb dictionary */
+  final String[] verbTable;
+  /** Outcome table, mapped from the snapshot file */
+  final OutcomeTable outcomes;
+
+  private RulesetSnapshot(String[] tokenTable, String[] verbTable, OutcomeTable outcomes) {
+    this.tokenTable = tokenTable;
+    this.verbTable = verbTable;
+    this.outcomes = outcomes;
+  }
+
+  /**
+   * Build an index of the symbol table
+   * @return Map of token to token index
+   */
+  Map<String, Integer> tokenIndex() {
+    Map<String, Integer> index = new HashMap<String, Integer>();
+    for (int i=0; i<tokenTable.length; i++) {
+      index.put(tokenTable[i], i);
+    }
+    return index;
+  }
+
+  /**
+   * Default location of the snapshot for a rule file: in a directory of the user's
+   * own, named after the rule file and its full path. Snapshots are trusted as the
+   * rules they hold, so they are kept out of shared directories such as the system
+   * temporary directory, where another user could plant one.
+   * @param ruleFile A rule file
+   * @return File for its snapshot
+   */
+  static File defaultFile(File ruleFile) {
+    String path = ruleFile.getAbsolutePath();
+    return new File(defaultDirectory(),
+        String.format("rps-%s-%08x.snapshot", ruleFile.getName(), path.hashCode()));
+  }
+
+  /*
+   * Private helper method, the user's snapshot directory, created readable and writable
+   * by its owner only if it doesn't exist
+   */
+  private static File defaultDirectory() {
+    File dir = new File(System.getProperty("user.home"), ".rps" + File.separator + "snapshots");
+    if (!dir.isDirectory() && dir.mkdirs()) {
+      dir.setReadable(false, false);
+      dir.setWritable(false, false);
+      dir.setExecutable(false, false);
+      dir.setReadable(true, true);
+      dir.setWritable(true, true);
+      dir.setExecutable(true, true);
+    }
+    return dir;
+  }
+
+  /**
+   * CRC32 checksum of a rule file
+   * @param ruleFile The rule file
+   * @return long, the checksum
+   */
+  static long checksum(File ruleFile) {
+
+    try {
+      FileChannel channel = FileChannel.open(ruleFile.toPath(), StandardOpenOption.READ);
+      try {
+        return checksum(channel, 0, channel.size());
+      } finally {
+        channel.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception detected reading rules",e);
+    }
+  }
+
+  /*
+   * Private helper method, CRC32 checksum of a region of a file
+   */
+  private static long checksum(FileChannel channel, long offset, long length) throws IOException {
+    CRC32 crc = new CRC32();
+    for (long position=0; position<length; position+=CHECKSUM_REGION) {
+      crc.update( channel.map(FileChannel.MapMode.READ_ONLY, offset + position,
+          Math.min(CHECKSUM_REGION, length - position)) );
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Read a snapshot, if it is present, intact and up to date.
+   * @param snapshotFile The snapshot file
+   * @param sourceLength Length of the current rule file
+   * @param sourceChecksum Checksum of the current rule file
+   * @param validated Whether only a validated ruleset will do
+   * @return RulesetSnapshot, or null if the snapshot can't be used
+   */
+  static RulesetSnapshot read(File snapshotFile, long sourceLength, long sourceChecksum, boolean validated) {
+
+    if (!snapshotFile.isFile()) {
+      return null;
+    }
+
+    try {
+      FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ);
+      try {
+        return read(channel, sourceLength, sourceChecksum, validated);
+      } finally {
+        channel.close();
+      }
+    } catch (IOException e) {
+      // Unreadable snapshots are simply not used
+      return null;
+    }
+  }
+
+  /*
+   * Private helper method, reads and checks the snapshot on the given channel
+   */
+  private static RulesetSnapshot read(FileChannel channel, long sourceLength, long sourceChecksum,
+      boolean validated) throws IOException {
+
+    long size = channel.size();
+    if (size < HEADER_SIZE) {
+      return null;
+    }
+
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ORDER);
+    int flags = header.getInt(8);
+    int tokenCount = header.getInt(12);
+    int verbCount = header.getInt(16);
+    int stringBytes = header.getInt(20);
+    long tableChecksum = header.getLong(40);
+    long headerChecksum = header.getLong(48);
+
+    if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+        || header.getLong(24) != sourceLength || header.getLong(32) != sourceChecksum
+        || (validated && (flags & FLAG_VALIDATED) == 0)
+        || tokenCount < 0 || verbCount < 1 || stringBytes < 0) {
+      return null;
+    }
+
+    boolean packed = (flags & FLAG_PACKED) != 0;
+    long tableOffset = align(HEADER_SIZE + (long) stringBytes);
+    long tableBytes = packed ? 8 * PackedOutcomeTable.wordCount(tokenCount, verbCount) : 4L * tokenCount * tokenCount;
+    if (size != tableOffset + tableBytes) {
+      return null;
+    }
+
+    ByteBuffer strings = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, stringBytes).order(ORDER);
+
+    CRC32 crc = new CRC32();
+    header.limit(CHECKED_HEADER_SIZE);
+    crc.update(header);
+    crc.update(strings.duplicate());
+    if (crc.getValue() != headerChecksum) {
+      return null;
+    }
+
+    String[] tokens = readStrings(strings, tokenCount);
+    String[] verbs = readStrings(strings, verbCount);
+    if (tokens == null || verbs == null || checksum(channel, tableOffset, tableBytes) != tableChecksum) {
+      return null;
+    }
+
+    OutcomeTable outcomes = packed
+        ? PackedOutcomeTable.map(tokenCount, verbCount, channel, tableOffset, ORDER)
+        : new MappedOutcomeTable(channel, tableOffset, tokenCount, ORDER);
+    return new RulesetSnapshot(tokens, verbs, outcomes);
+  }
+
+  /**
+   * Write a snapshot of compiled rules.
+   * @param snapshotFile The snapshot file; replaced if it exists
+   * @param tokenTable The symbol table
+   * @param verbTable The verb dictionary
+   * @param outcomes The outcome table
+   * @param validated Whether the ruleset was validated
+   * @param sourceLength Length of the rule file the rules were compiled from
+   * @param sourceChecksum Checksum of the rule file the rules were compiled from
+   */
+  static void write(File snapshotFile, String[] tokenTable, String[] verbTable, OutcomeTable outcomes,
+      boolean validated, long sourceLength, long sourceChecksum) {
+
+    int tokenCount = tokenTable.length;
+    PackedOutcomeTable packed = outcomes instanceof PackedOutcomeTable ? (PackedOutcomeTable) outcomes : null;
+
+    // Header and strings first; their checksum, which covers the table's, is filled in
+    // once the table has been written
+    byte[][] encoded = new byte[tokenCount + verbTable.length][];
+    int stringBytes = 0;
+    for (int i=0; i<encoded.length; i++) {
+      String s = i < tokenCount ? tokenTable[i] : verbTable[i - tokenCount];
+      encoded[i] = s.getBytes(StandardCharsets.UTF_8);
+      stringBytes += 4 + encoded[i].length;
+    }
+
+    int tableOffset = (int) align(HEADER_SIZE + (long) stringBytes);
+    ByteBuffer head = ByteBuffer.allocate(tableOffset).order(ORDER);
+    head.putInt(MAGIC).putInt(VERSION).putInt((validated ? FLAG_VALIDATED : 0) | (packed != null ? FLAG_PACKED : 0));
+    head.putInt(tokenCount).putInt(verbTable.length).putInt(stringBytes);
+    head.putLong(sourceLength).putLong(sourceChecksum);
+    head.position(HEADER_SIZE);
+    for (byte[] bytes : encoded) {
+      head.putInt(bytes.length).put(bytes);
+    }
+
+    head.clear();
+    CRC32 tableCrc = new CRC32();
+
+    try {
+      File parent = snapshotFile.getAbsoluteFile().getParentFile();
+      File temp = File.createTempFile(snapshotFile.getName(), ".tmp", parent);
+      try {
+        FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE);
+        try {
+          writeFully(channel, head);
+
+          ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ORDER);
+          if (packed != null) {
+            for (long w=0; w<packed.getWordCount(); w++) {
+              if (!buf.hasRemaining()) {
+                writeTable(channel, buf, tableCrc);
+              }
+              buf.putLong( packed.word(w) );
+            }
+          } else {
+            for (int i=0; i<tokenCount; i++) {
+              for (int j=0; j<tokenCount; j++) {
+                if (!buf.hasRemaining()) {
+                  writeTable(channel, buf, tableCrc);
+                }
+                buf.putInt( outcomes.code(i, j) );
+              }
+            }
+          }
+          writeTable(channel, buf, tableCrc);
+
+          CRC32 crc = new CRC32();
+          head.putLong(40, tableCrc.getValue());
+          crc.update(head.array(), 0, CHECKED_HEADER_SIZE);
+          crc.update(head.array(), HEADER_SIZE, stringBytes);
+          head.putLong(CHECKED_HEADER_SIZE, crc.getValue());
+          head.clear().limit(HEADER_SIZE);
+          while (head.hasRemaining()) {
+            channel.write(head, head.position());
+          }
+          channel.force(true);
+        } finally {
+          channel.close();
+        }
+
+        Files.move(temp.toPath(), snapshotFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        temp.delete();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception writing ruleset snapshot",e);
+    }
+  }
+
+  /*
+   * Private helper method, reads 'count' length-prefixed strings; null if they overrun
+   */
+  private static String[] readStrings(ByteBuffer strings, int count) {
+    String[] result = new String[count];
+    for (int i=0; i<count; i++) {
+      if (strings.remaining() < 4) {
+        return null;
+      }
+      int length = strings.getInt();
+      if (length < 0 || length > strings.remaining()) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      strings.get(bytes);
+      result[i] = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return result;
+  }
+
+  /*
+   * Private helper method, writes out and empties a buffer of the outcome table,
+   * adding it to the table's checksum
+   */
+  private static void writeTable(FileChannel channel, ByteBuffer buf, CRC32 tableCrc) throws IOException {
+    tableCrc.update(buf.array(), 0, buf.position());
+    buf.flip();
+    writeFully(channel, buf);
+    buf.clear();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+  }
+
+  private static long align(long offset) {
+    return (offset + 7) & ~7L;
+  }
+
+}
@@ -0,0 +1,189 @@
+package org.puzzle.rps;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thrown when a ruleset fails validation: some pairs of distinct tokens are covered
+ * by no rule, or some pairs are covered by contradictory rules (A beats B, and B
+ * beats A; or a token beating itself).
+ *
+ * <p>Every missing and conflicting pair is reported. The pairs are held as bitsets
+ * over token indices, and only turned into Pair objects when asked for, so reporting
+ * stays cheap even for badly broken rulesets with thousands of tokens.
+ *
+ * <p>Rulesets too large for bitsets over every pair (see PackedOutcomeTable) are
+ * reported with exact counts, but at most MAX_LISTED_PAIRS pairs of each kind listed.
+ */
+public class RulesetValidationException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Most pairs of each kind listed for rulesets reported without bitsets */
+  public static final int MAX_LISTED_PAIRS = 1 << 20;
+
+  // Number of pairs of each kind listed in the exception message
+  private static final int MESSAGE_PAIRS = 10;
+
+  private final String[] tokenTable;
+  private final int words;
+  private final long[] missing;
+  private final long[] conflicting;
+  private final long missingCount;
+  private final long conflictingCount;
+
+  /**
+   * Package constructor. Pairs are given as rows of bitsets, one row of 'words'
+   * longs per token index; bit j of row i marks the pair of tokens i and j.
+   */
+  RulesetValidationException(String[] tokenTable, int words, long[] missing, long[] conflicting) {
+    this(tokenTable, words, missing, count(missing), conflicting, count(conflicting));
+  }
+
+  /**
+   * Package constructor. Pairs are given as lists, each pair the lower token index in
+   * the high 32 bits and the higher in the low 32; the lists may be shorter than the counts.
+   */
+  RulesetValidationException(String[] tokenTable, long[] missing, long missingCount, long[] conflicting, long conflictingCount) {
+    this(tokenTable, 0, missing, missingCount, conflicting, conflictingCount);
+  }
+
+  private RulesetValidationException(String[] tokenTable, int words, long[] missing, long missingCount,
+      long[] conflicting, long conflictingCount) {
+    super( describe(tokenTable, words, missing, missingCount, conflicting, conflictingCount) );
+    this.tokenTable = tokenTable;
+    this.words = words;
+    this.missing = missing;
+    this.conflicting = conflicting;
+    this.missingCount = missingCount;
+    this.conflictingCount = conflictingCount;
+  }
+
+  /** Number of pairs of distinct tokens not covered by any rule */
+  public long getMissingCount() {
+    return missingCount;
+  }
+
+  /** Number of pairs of tokens covered by contradictory rules */
+  public long getConflictingCount() {
+    return conflictingCount;
+  }
+
+  /**
+   * All pairs of distinct tokens not covered by any rule; at most MAX_LISTED_PAIRS
+   * for rulesets reported without bitsets
+   * @return List of Pair, in symbol table order
+   */
+  public List<Pair> getMissingPairs() {
+    return pairs(tokenTable, words, missing, Integer.MAX_VALUE);
+  }
+
+  /**
+   * All pairs of tokens covered by contradictory rules; at most MAX_LISTED_PAIRS
+   * for rulesets reported without bitsets
+   * @return List of Pair, in symbol table order
+   */
+  public List<Pair> getConflictingPairs() {
+    return pairs(tokenTable, words, conflicting, Integer.MAX_VALUE);
+  }
+
+  /*
+   * Private helper method, builds the exception message
+   */
+  private static String describe(String[] tokenTable, int words, long[] missing, long missingCount,
+      long[] conflicting, long conflictingCount) {
+
+    StringBuilder message = new StringBuilder();
+    message.append( String.format("Invalid ruleset: %d missing pairs, %d conflicting pairs",
+        missingCount, conflictingCount) );
+
+    List<Pair> sample = pairs(tokenTable, words, missing, MESSAGE_PAIRS);
+    if (!sample.isEmpty()) {
+      message.append("; missing ").append(sample);
+    }
+    sample = pairs(tokenTable, words, conflicting, MESSAGE_PAIRS);
+    if (!sample.isEmpty()) {
+      message.append("; conflicting ").append(sample);
+    }
+
+    return message.toString();
+  }
+
+  /*
+   * Private helper method, lists up to 'limit' pairs from the given bitset rows, or list
+   */
+  private static List<Pair> pairs(String[] tokenTable, int words, long[] bits, int limit) {
+
+    List<Pair> pairs = new ArrayList<Pair>();
+
+    if (words == 0) {
+      // Listed pairs
+      for (int i=0; i<bits.length && pairs.size() < limit; i++) {
+        pairs.add( new Pair(tokenTable[(int) (bits[i] >>> 32)], tokenTable[(int) bits[i]]) );
+      }
+      return pairs;
+    }
+
+    for (int w=0; w<bits.length && pairs.size() < limit; w++) {
+      long word = bits[w];
+      while (word != 0 && pairs.size() < limit) {
+        int row = w / words;
+        int column = ((w % words) << 6) + Long.numberOfTrailingZeros(word);
+        pairs.add( new Pair(tokenTable[row], tokenTable[column]) );
+        word &= word - 1;
+      }
+    }
+    return pairs;
+  }
+
+  private static long count(long[] bits) {
+    long count = 0;
+    for (long word : bits) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+
+
+  /**
+   * Immutable pair of tokens. Class state is publicly accessible
+   * here because instances are immutable.
+   */
+  public static class Pair {
+
+    /** The token earlier in the symbol table */
+    public final String first;
+    /** The token later in the symbol table */
+    public final String second;
+
+    /**
+     * Public constructor
+     */
+    public Pair(String first, String second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s/%s", first, second);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * first.hashCode() + second.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof Pair))
+        return false;
+      Pair other = (Pair) obj;
+      return first.equals(other.first) && second.equals(other.second);
+    }
+  }
+
+}
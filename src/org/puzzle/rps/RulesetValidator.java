@@ -0,0 +1,160 @@
+package org.puzzle.rps;
+
+import java.util.Arrays;
+
+/**
+ * Checks a ruleset for completeness and consistency as it is compiled.
+ *
+ * <p>Each rule is recorded in two bit matrices over token indices: which tokens each
+ * token beats, and which tokens each token is beaten by. A pair of distinct tokens is
+ * missing if neither bit is set for it, and conflicting if both are (A beats B and B
+ * beats A), which also catches a token beating itself. Both checks combine whole rows
+ * 64 pairs at a time, so validation takes O(n^2/64) word operations, and the matrices
+ * take n^2/4 bytes.
+ *
+ * <p>That is too much for the huge rulesets stored in a PackedOutcomeTable, so those
+ * are validated against the table itself. Each rule is checked against the table before
+ * it is written: it conflicts if the table already holds the opposite direction for the
+ * pair. Conflicts are kept in a list, and missing pairs - empty fields in the table - are
+ * found by scanning the table a word at a time.
+ */
+class RulesetValidator {
+
+  private final int tokenCount;
+  private final int words;
+
+  // Row i, bit j: token i beats token j; token i is beaten by token j
+  private final long[] beats;
+  private final long[] beatenBy;
+
+  // Packed tables: the table, and conflicting pairs found so far
+  private final PackedOutcomeTable packed;
+  private long[] conflicts;
+  private int conflictCount;
+
+  /**
+   * Package constructor, for dense tables
+   * @param tokenCount Number of tokens in the symbol table
+   */
+  RulesetValidator(int tokenCount) {
+    this.tokenCount = tokenCount;
+    this.words = (tokenCount + 63) >>> 6;
+    this.beats = new long[tokenCount * words];
+    this.beatenBy = new long[tokenCount * words];
+    this.packed = null;
+  }
+
+  /**
+   * Package constructor, for packed tables
+   * @param table The table the rules are written to
+   */
+  RulesetValidator(PackedOutcomeTable table) {
+    this.tokenCount = table.getTokenCount();
+    this.words = 0;
+    this.beats = null;
+    this.beatenBy = null;
+    this.packed = table;
+    this.conflicts = new long[16];
+  }
+
+  /**
+   * Record a rule. For packed tables, this must be called before the rule is written.
+   * @param beater Index of the winning token
+   * @param beaten Index of the losing token
+   */
+  void record(int beater, int beaten) {
+
+    if (packed == null) {
+      beats[beater * words + (beaten >>> 6)] |= 1L << beaten;
+      beatenBy[beaten * words + (beater >>> 6)] |= 1L << beater;
+      return;
+    }
+
+    if (beater == beaten || RuleInterpreter.side( packed.code(beater, beaten) ) == RuleInterpreter.SECOND_WINS) {
+      if (conflictCount == conflicts.length) {
+        conflicts = Arrays.copyOf(conflicts, conflictCount * 2);
+      }
+      conflicts[conflictCount++] = ((long) Math.min(beater, beaten) << 32) | Math.max(beater, beaten);
+    }
+  }
+
+  /**
+   * Check all recorded rules
+   * @param tokenTable The symbol table, for reporting
+   * @throws RulesetValidationException If any pair is missing or conflicting
+   */
+  void validate(String[] tokenTable) {
+
+    if (packed != null) {
+      validatePacked(tokenTable);
+      return;
+    }
+
+    long[] missing = new long[tokenCount * words];
+    long[] conflicting = new long[tokenCount * words];
+    boolean valid = true;
+
+    // Each pair is checked once, from the row of its earlier token
+    for (int i=0; i<tokenCount; i++) {
+      int row = i * words;
+      for (int w=i>>>6; w<words; w++) {
+        long covered = beats[row + w] | beatenBy[row + w];
+        long both = beats[row + w] & beatenBy[row + w];
+
+        missing[row + w] = ~covered & mask(w, i + 1);
+        conflicting[row + w] = both & mask(w, i);
+        valid &= (missing[row + w] | conflicting[row + w]) == 0;
+      }
+    }
+
+    if (!valid) {
+      throw new RulesetValidationException(tokenTable, words, missing, conflicting);
+    }
+  }
+
+  /*
+   * Private helper method, validation for packed tables
+   */
+  private void validatePacked(String[] tokenTable) {
+
+    long missingCount = packed.countMissing();
+
+    // A pair may conflict many times over; report it once
+    long[] conflicting = Arrays.copyOf(conflicts, conflictCount);
+    Arrays.sort(conflicting);
+    int distinct = 0;
+    for (int i=0; i<conflicting.length; i++) {
+      if (i == 0 || conflicting[i] != conflicting[i - 1]) {
+        conflicting[distinct++] = conflicting[i];
+      }
+    }
+
+    if (missingCount > 0 || distinct > 0) {
+      long[] missing = packed.listMissing(RulesetValidationException.MAX_LISTED_PAIRS);
+      Arrays.sort(missing);
+      throw new RulesetValidationException(tokenTable, missing, missingCount,
+          Arrays.copyOf(conflicting, Math.min(distinct, RulesetValidationException.MAX_LISTED_PAIRS)), distinct);
+    }
+  }
+
+  /*
+   * Private helper method. Mask of the bits in word w for token indices from 'from'
+   * (inclusive) to tokenCount (exclusive).
+   */
+  private long mask(int w, int from) {
+
+    int base = w << 6;
+    long mask = -1L;
+    if (from >= base + 64) {
+      return 0;
+    }
+    if (from > base) {
+      mask &= -1L << (from - base);
+    }
+    if (tokenCount < base + 64) {
+      mask &= -1L >>> (base + 64 - tokenCount);
+    }
+    return mask;
+  }
+
+}
@@ -0,0 +1,205 @@
+package org.puzzle.rps;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.PlayerFactory;
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+
+/**
+ * A headless games master, for high throughput simulation. Extends GamesMaster,
+ * and implements all methods without any console I/O: player types and the number
+ * of rounds are fixed at construction, games are played without any pacing between
+ * rounds, and the outcome of a run is summarised in a SimulationReport.
+ *
+ * <p>Additional observers may be registered, and are attached to every game;
+ * with none registered the only observer is the games master itself, which simply
+ * tallies game outcomes.
+ *
+ * <p>Players are seeded from each game's seed, so every game is reproducible: the
+ * report gives the master seed and the number of its first game, and replayGame()
+ * plays any game again on its own.
+ *
+ * <p>Human players need a console, so they are not supported here.
+ */
+public class SimulationGamesMaster extends GamesMaster {
+
+  private final PlayerType p1Type;
+  private final PlayerType p2Type;
+  private final int rounds;
+
+  private List<GameObserver> observers = new ArrayList<GameObserver>();
+
+  // Running totals for the current simulation
+  private long gamesPlayed;
+  private long roundsPlayed;
+  private long p1Wins;
+  private long p2Wins;
+  private long draws;
+  private long elapsedNanos;
+  private long gameStart;
+
+  /**
+   * Public constructor
+   * @param ruleInterp The rules to apply to games
+   * @param pFactory Class for creating players
+   * @param p1Type Type of player one, for every game
+   * @param p2Type Type of player two, for every game
+   * @param rounds Number of rounds in each game
+   */
+  public SimulationGamesMaster(RuleInterpreter ruleInterp, PlayerFactory pFactory,
+      PlayerType p1Type, PlayerType p2Type, int rounds) {
+    super(ruleInterp, pFactory);
+
+    if (p1Type == PlayerType.HUMAN || p2Type == PlayerType.HUMAN) {
+      throw new IllegalArgumentException("Human players cannot take part in a headless simulation");
+    }
+    if (rounds < 1) {
+      throw new IllegalArgumentException( String.format("Invalid number of rounds '%d'", rounds) );
+    }
+
+    this.p1Type = p1Type;
+    this.p2Type = p2Type;
+    this.rounds = rounds;
+  }
+
+  /**
+   * Register an observer, to be attached to every game in subsequent simulations
+   * @param observer Instance of GameObserver
+   */
+  public void registerObserver(GameObserver observer) {
+    observers.add(observer);
+  }
+
+  /**
+   * Play the given number of games, back to back, on the calling thread.
+   * @param games Number of games to play
+   * @return SimulationReport, summarising the games played
+   */
+  public SimulationReport simulate(int games) {
+
+    gamesPlayed = 0;
+    roundsPlayed = 0;
+    p1Wins = 0;
+    p2Wins = 0;
+    draws = 0;
+    elapsedNanos = 0;
+    long firstGame = gameNumber + 1;
+
+    for (int i=0; i<games; i++) {
+      runGames(false);
+    }
+
+    return new SimulationReport(gamesPlayed, roundsPlayed, p1Wins, p2Wins, draws, elapsedNanos,
+        masterSeed, firstGame);
+  }
+
+  /**
+   * Play one game of the run again, by the current rules, from its seed.
+   * @param game Number of the game, counting from zero
+   * @return GameRecord, describing the replayed game
+   */
+  public GameRecord replayGame(long game) {
+
+    if (game < 0) {
+      throw new IllegalArgumentException( String.format("Invalid game number '%d'", game) );
+    }
+    return new GameReplay(ruleInterpreter, playerFactory)
+        .play(GameReplay.gameSeed(masterSeed, game), p1Type, p2Type, rounds);
+  }
+
+  @Override
+  protected void showBanner() {
+    // Headless - nothing to show
+  }
+
+  @Override
+  protected Player readyPlayerOne(PlayerFactory factory) {
+    return factory.createPlayer(p1Type, ruleInterpreter, playerSeed(1));
+  }
+
+  @Override
+  protected Player readyPlayerTwo(PlayerFactory factory) {
+    return factory.createPlayer(p2Type, ruleInterpreter, playerSeed(2));
+  }
+
+  @Override
+  protected int getRounds() {
+    return rounds;
+  }
+
+  @Override
+  protected GameEngine prepareGame(Player p1, Player p2, int rounds) {
+
+    GameEngine game = new GameEngine(p1,p2,ruleInterpreter,rounds);
+    game.setGameDelay(0);
+
+    for (GameObserver obs : observers) {
+      game.registerObserver(obs);
+    }
+
+    // Timing starts here, so that player creation is not counted
+    gameStart = System.nanoTime();
+    return game;
+  }
+
+  @Override
+  public void notifyPlay(Player player, String token) {
+    // Nothing to do per play
+  }
+
+  @Override
+  public void notifyRoundOutcome(Result res) {
+    // Nothing to do per round; rounds are counted per game
+  }
+
+  @Override
+  public void notifyGameOutcome(Player p1, int p1score, Player p2, int p2score) {
+
+    elapsedNanos += System.nanoTime() - gameStart;
+    gamesPlayed++;
+    roundsPlayed += rounds;
+
+    if (p1score > p2score) {
+      p1Wins++;
+    } else if (p2score > p1score) {
+      p2Wins++;
+    } else {
+      draws++;
+    }
+  }
+
+
+
+  /**
+   * Main method for executing a headless simulation between two random computer players.
+   * The master seed is random unless given.
+   * @param args Input arguments
+   * @throws FileNotFoundException If the string given by parameter 1 does not correspond to a file
+   */
+  public static void main(String args[]) throws FileNotFoundException {
+
+    if (args.length != 3 && args.length != 4) {
+      System.out.println("Usage: java [jvm args] org.puzzle.rps.SimulationGamesMaster [rule file] [games] [rounds per game] [master seed]");
+      return;
+    }
+
+    RuleInterpreter ruleset = new RuleInterpreter();
+    ruleset.loadRules( new File(args[0]) );
+
+    int games = Integer.parseInt(args[1]);
+    int rounds = Integer.parseInt(args[2]);
+
+    SimulationGamesMaster gm = new SimulationGamesMaster(ruleset, new PlayerFactory(),
+        PlayerType.RANDOM_COMPUTER, PlayerType.RANDOM_COMPUTER, rounds);
+    if (args.length == 4) {
+      gm.setMasterSeed( Long.parseLong(args[3]) );
+    }
+
+    System.out.println( gm.simulate(games) );
+  }
+
+}
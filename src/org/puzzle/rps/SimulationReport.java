@@ -0,0 +1,60 @@
+package org.puzzle.rps;
+
+/**
+ * Immutable summary of a headless simulation run. Class state is publicly
+ * accessible here because instances are immutable.
+ */
+public class SimulationReport {
+
+  /** Number of games played */
+  public final long games;
+  /** Total number of rounds played, across all games */
+  public final long rounds;
+  /** Games won by player one */
+  public final long p1Wins;
+  /** Games won by player two */
+  public final long p2Wins;
+  /** Games ending level */
+  public final long draws;
+  /** Time spent playing games, in nanoseconds */
+  public final long elapsedNanos;
+  /** Master seed of the run, from which every game can be replayed */
+  public final long masterSeed;
+  /** Number of the first game of the simulation, within the run */
+  public final long firstGame;
+
+  /**
+   * Public constructor
+   */
+  public SimulationReport(long games, long rounds, long p1Wins, long p2Wins, long draws, long elapsedNanos,
+      long masterSeed, long firstGame) {
+    this.games = games;
+    this.rounds = rounds;
+    this.p1Wins = p1Wins;
+    this.p2Wins = p2Wins;
+    this.draws = draws;
+    this.elapsedNanos = elapsedNanos;
+    this.masterSeed = masterSeed;
+    this.firstGame = firstGame;
+  }
+
+  /**
+   * Throughput of the simulation.
+   * @return double, the number of rounds played per second of game time
+   */
+  public double roundsPerSecond() {
+    if (elapsedNanos <= 0) {
+      return 0;
+    }
+    return rounds * 1e9 / elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    // Provide a human readable version of the report
+    return String.format("%d games, %d rounds in %.3f s (%.0f rounds/s); P1 wins %d, P2 wins %d, draws %d; master seed %d, games %d-%d",
+        games, rounds, elapsedNanos / 1e9, roundsPerSecond(), p1Wins, p2Wins, draws,
+        masterSeed, firstGame, firstGame + games - 1);
+  }
+
+}
@@ -0,0 +1,365 @@
+package org.puzzle.rps;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel, for running very many delayed tasks - such as the next round
+ * of thousands of paced games - on a handful of threads.
+ *
+ * <p>Time is divided into ticks. The wheel is a ring of buckets, one per tick, and a
+ * task is hashed into the bucket for the tick its deadline falls in, with a count of
+ * the whole turns of the wheel left before it is due. A single ticker thread wakes
+ * once per tick, and hands the due tasks in that tick's bucket to a small pool of
+ * worker threads. Scheduling and cancelling are O(1), whatever the number of tasks,
+ * and tasks run no earlier than their deadline and at most about one tick after it.
+ *
+ * <p>Newly scheduled tasks are queued, and moved into their buckets by the ticker
+ * thread, so the buckets need no locking. Cancelled tasks are dropped when the ticker
+ * next reaches them.
+ *
+ * <p>Stopping the wheel drops the tasks not yet due. A task may be scheduled with a
+ * hook to run if it is dropped this way, so that whoever is waiting on it can be told.
+ */
+public class TimingWheel {
+
+  /** Default length of a tick, in milliseconds */
+  public static final long DEFAULT_TICK_MILLIS = 10;
+
+  /** Default number of buckets in the wheel: a little over 5 seconds of 10ms ticks */
+  public static final int DEFAULT_WHEEL_SIZE = 512;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final ExecutorService workers;
+
+  // Tasks scheduled since the ticker last ran
+  private final Queue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+
+  private Thread tickerThread;
+  private volatile boolean running;
+  private volatile long startTime;
+
+  /**
+   * Public constructor, for a wheel with the default tick and size, running tasks
+   * on as many worker threads as there are processors
+   */
+  public TimingWheel() {
+    this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Public constructor
+   * @param tickMillis Length of a tick, in milliseconds
+   * @param wheelSize Number of buckets; rounded up to a power of two
+   * @param workerThreads Number of threads to run due tasks on
+   */
+  public TimingWheel(long tickMillis, int wheelSize, int workerThreads) {
+
+    if (tickMillis < 1) {
+      throw new IllegalArgumentException( String.format("Invalid tick '%d'", tickMillis) );
+    }
+    if (wheelSize < 1 || wheelSize > 1 << 30) {
+      throw new IllegalArgumentException( String.format("Invalid wheel size '%d'", wheelSize) );
+    }
+    if (workerThreads < 1) {
+      throw new IllegalArgumentException( String.format("Invalid number of worker threads '%d'", workerThreads) );
+    }
+
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+
+    int size = Integer.highestOneBit(wheelSize) == wheelSize ? wheelSize : Integer.highestOneBit(wheelSize) << 1;
+    this.wheel = new Bucket[size];
+    for (int i=0; i<size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+
+    this.workers = Executors.newFixedThreadPool(workerThreads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "timing-wheel-worker-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Start the ticker thread
+   */
+  public synchronized void start() {
+
+    if (tickerThread != null) {
+      throw new IllegalStateException("Timing wheel already started");
+    }
+
+    startTime = System.nanoTime();
+    running = true;
+
+    tickerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        tick();
+      }
+    }, "timing-wheel");
+    tickerThread.setDaemon(true);
+    tickerThread.start();
+  }
+
+  /**
+   * Stop the wheel. Tasks not yet due are dropped, and the stop hooks of any that
+   * have one are run on the calling thread; tasks already handed to the worker
+   * threads are allowed to finish.
+   * @throws InterruptedException If interrupted while waiting for the ticker thread
+   */
+  public synchronized void stop() throws InterruptedException {
+
+    if (tickerThread == null) {
+      return;
+    }
+
+    running = false;
+    LockSupport.unpark(tickerThread);
+    tickerThread.join();
+    workers.shutdown();
+
+    // The ticker has finished with the buckets, so they can be emptied from here
+    for (int i=0; i<wheel.length; i++) {
+      Timeout timeout;
+      while ((timeout = wheel[i].head) != null) {
+        wheel[i].remove(timeout);
+        timeout.drop();
+      }
+    }
+    dropPending();
+  }
+
+  /**
+   * Schedule a task to run on a worker thread once the given delay has passed.
+   * Tasks with no delay are handed to the workers straight away.
+   * @param task The task to run
+   * @param delay The delay
+   * @param unit Units of the delay
+   * @return Timeout, by which the task may be cancelled
+   * @throws IllegalStateException If the wheel isn't running
+   */
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    return schedule(task, delay, unit, null);
+  }
+
+  /**
+   * Schedule a task as above, with a hook to run instead if the wheel is stopped
+   * before the task is due.
+   * @param task The task to run
+   * @param delay The delay
+   * @param unit Units of the delay
+   * @param onStop Run if the task is dropped by stop(); may be null
+   * @return Timeout, by which the task may be cancelled
+   * @throws IllegalStateException If the wheel isn't running
+   */
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit, Runnable onStop) {
+
+    if (!running) {
+      throw new IllegalStateException("Timing wheel not running");
+    }
+
+    Timeout timeout = new Timeout(task, onStop, System.nanoTime() - startTime + unit.toNanos( Math.max(0, delay) ));
+    if (delay <= 0) {
+      try {
+        workers.execute(timeout);
+      } catch (RejectedExecutionException e) {
+        // Stopped since the check above
+        throw new IllegalStateException("Timing wheel not running");
+      }
+    } else {
+      pending.add(timeout);
+      if (!running) {
+        // Stopped since the check above, perhaps after stop() emptied the queue
+        dropPending();
+      }
+    }
+    return timeout;
+  }
+
+  /*
+   * Private helper method. Drop the newly scheduled tasks of a stopped wheel.
+   */
+  private void dropPending() {
+    Timeout timeout;
+    while ((timeout = pending.poll()) != null) {
+      timeout.drop();
+    }
+  }
+
+  /*
+   * Private helper method, the ticker thread's loop. Each pass waits for the end of
+   * the current tick, buckets newly scheduled tasks, then runs the tick's due tasks.
+   */
+  private void tick() {
+
+    long tick = 0;
+    while (running) {
+
+      long deadline = (tick + 1) * tickNanos;
+      long wait;
+      while (running && (wait = deadline - (System.nanoTime() - startTime)) > 0) {
+        LockSupport.parkNanos(this, wait);
+      }
+      if (!running) {
+        return;
+      }
+
+      transferPending(tick);
+      expire(wheel[(int) (tick & mask)]);
+      tick++;
+    }
+  }
+
+  /*
+   * Private helper method. Move newly scheduled tasks into the buckets for their
+   * deadlines; any already due go in the current bucket.
+   */
+  private void transferPending(long tick) {
+
+    Timeout timeout;
+    while ((timeout = pending.poll()) != null) {
+
+      if (timeout.isCancelled()) {
+        continue;
+      }
+
+      long due = timeout.deadline / tickNanos;
+      timeout.remainingRounds = (due - tick) / wheel.length;
+      wheel[(int) (Math.max(due, tick) & mask)].add(timeout);
+    }
+  }
+
+  /*
+   * Private helper method. Hand the bucket's due tasks to the workers, and count
+   * down the rest by one turn of the wheel.
+   */
+  private void expire(Bucket bucket) {
+
+    Timeout timeout = bucket.head;
+    while (timeout != null) {
+      Timeout next = timeout.next;
+      if (timeout.isCancelled()) {
+        bucket.remove(timeout);
+      } else if (timeout.remainingRounds <= 0) {
+        bucket.remove(timeout);
+        workers.execute(timeout);
+      } else {
+        timeout.remainingRounds--;
+      }
+      timeout = next;
+    }
+  }
+
+
+
+  /**
+   * A scheduled task, which may be cancelled until it starts to run. If the wheel is
+   * stopped first, the task is cancelled, and its stop hook run.
+   */
+  public static class Timeout implements Runnable {
+
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int RUN = 2;
+
+    private final Runnable task;
+    private final Runnable onStop;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+
+    // Nanoseconds since the wheel started; turns of the wheel left; bucket links
+    private final long deadline;
+    private long remainingRounds;
+    private Timeout prev;
+    private Timeout next;
+
+    Timeout(Runnable task, Runnable onStop, long deadline) {
+      this.task = task;
+      this.onStop = onStop;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancel the task, if it hasn't yet started
+     * @return true if the task was cancelled, and will not run
+     */
+    public boolean cancel() {
+      return state.compareAndSet(WAITING, CANCELLED);
+    }
+
+    /** Whether the task was cancelled */
+    public boolean isCancelled() {
+      return state.get() == CANCELLED;
+    }
+
+    @Override
+    public void run() {
+      if (state.compareAndSet(WAITING, RUN)) {
+        task.run();
+      }
+    }
+
+    /*
+     * Cancel the task as its wheel stops, and run the stop hook if it was waiting
+     */
+    void drop() {
+      if (state.compareAndSet(WAITING, CANCELLED) && onStop != null) {
+        try {
+          onStop.run();
+        } catch (RuntimeException e) {
+          // The hook's failure mustn't keep other dropped tasks from being told
+        }
+      }
+    }
+  }
+
+  /*
+   * Doubly linked list of tasks, touched only by the ticker thread
+   */
+  private static class Bucket {
+
+    private Timeout head;
+    private Timeout tail;
+
+    void add(Timeout timeout) {
+      timeout.prev = tail;
+      timeout.next = null;
+      if (tail == null) {
+        head = timeout;
+      } else {
+        tail.next = timeout;
+      }
+      tail = timeout;
+    }
+
+    void remove(Timeout timeout) {
+      if (timeout.prev == null) {
+        head = timeout.next;
+      } else {
+        timeout.prev.next = timeout.next;
+      }
+      if (timeout.next == null) {
+        tail = timeout.prev;
+      } else {
+        timeout.next.prev = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+    }
+  }
+
+}
@@ -0,0 +1,172 @@
+package org.puzzle.rps.analytics;
+
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.analytics.RoundStore.Column;
+
+/**
+ * Immutable block of up to ROWS rounds in a RoundStore, held as one compressed
+ * IntColumn per Column. Game ids are stored as offsets from the chunk's first game.
+ *
+ * <p>Alongside the columns, a chunk keeps the range of each column and the number of
+ * rounds with each outcome side, so a scan can skip a chunk that no row could match,
+ * and count one that every row matches without touching its rows.
+ */
+class Chunk {
+
+  /** Most rounds in a chunk */
+  static final int ROWS = 1 << 16;
+
+  // Query bounds meaning no bound
+  static final long UNBOUNDED_MIN = Long.MIN_VALUE;
+  static final long UNBOUNDED_MAX = Long.MAX_VALUE;
+
+  // Indexes into scan counts
+  static final int ROUNDS = 0;
+  static final int SIDES = 1;
+  static final int SCANNED = 5;
+  static final int SKIPPED = 6;
+  static final int COUNTS = 7;
+
+  private static final Column[] COLUMNS = Column.values();
+
+  private final int rows;
+  private final long baseGame;
+  private final IntColumn[] columns;
+  private final long[] sides = new long[4];
+
+  /**
+   * Package constructor, compressing the given rows
+   * @param games Game id of each round
+   * @param values Values of every other column, indexed by Column ordinal; the GAME entry is ignored
+   * @param rows Number of rounds
+   */
+  Chunk(long[] games, int[][] values, int rows) {
+
+    this.rows = rows;
+    this.baseGame = rows > 0 ? games[0] : 0;
+    this.columns = new IntColumn[COLUMNS.length];
+
+    int[] offsets = new int[rows];
+    for (int i=0; i<rows; i++) {
+      offsets[i] = (int) (games[i] - baseGame);
+    }
+    columns[Column.GAME.ordinal()] = IntColumn.encode(offsets, rows);
+
+    for (Column c : COLUMNS) {
+      if (c != Column.GAME) {
+        columns[c.ordinal()] = IntColumn.encode(values[c.ordinal()], rows);
+      }
+    }
+
+    int[] outcomes = values[Column.OUTCOME.ordinal()];
+    for (int i=0; i<rows; i++) {
+      sides[RuleInterpreter.side(outcomes[i])]++;
+    }
+  }
+
+  /** Number of rounds */
+  int getRows() {
+    return rows;
+  }
+
+  /** Smallest value of a column */
+  long min(Column c) {
+    IntColumn column = columns[c.ordinal()];
+    return c == Column.GAME ? baseGame + column.getMin() : column.getMin();
+  }
+
+  /** Largest value of a column */
+  long max(Column c) {
+    IntColumn column = columns[c.ordinal()];
+    return c == Column.GAME ? baseGame + column.getMax() : column.getMax();
+  }
+
+  /** The compressed column */
+  IntColumn column(Column c) {
+    return columns[c.ordinal()];
+  }
+
+  /** Approximate size of the compressed columns, in bytes */
+  long getFootprint() {
+    long footprint = 0;
+    for (IntColumn column : columns) {
+      footprint += column.getFootprint();
+    }
+    return footprint;
+  }
+
+  /**
+   * Count the rounds matching a query, by outcome side
+   * @param mins Least value wanted of each column, by ordinal
+   * @param maxs Greatest value wanted of each column, by ordinal
+   * @param counts Counts to add to: rounds, then each side, then chunks scanned and skipped
+   * @param selection Scratch space, of ROWS ints
+   * @param values Scratch space, of ROWS ints
+   */
+  void scan(long[] mins, long[] maxs, long[] counts, int[] selection, int[] values) {
+
+    if (rows == 0) {
+      return;
+    }
+
+    // Decide, column by column, whether the chunk can be skipped or rows must be checked
+    int checks = 0;
+    int[] checked = new int[COLUMNS.length];
+    for (Column c : COLUMNS) {
+      int i = c.ordinal();
+      if (mins[i] == UNBOUNDED_MIN && maxs[i] == UNBOUNDED_MAX) {
+        continue;
+      }
+      if (max(c) < mins[i] || min(c) > maxs[i]) {
+        counts[SKIPPED]++;
+        return;
+      }
+      if (min(c) < mins[i] || max(c) > maxs[i]) {
+        checked[checks++] = i;
+      }
+    }
+
+    counts[SCANNED]++;
+    if (checks == 0) {
+      // Every round matches
+      counts[ROUNDS] += rows;
+      for (int s=0; s<4; s++) {
+        counts[SIDES + s] += sides[s];
+      }
+      return;
+    }
+
+    // Narrow a selection of rows one column at a time
+    int selected = rows;
+    for (int i=0; i<rows; i++) {
+      selection[i] = i;
+    }
+    for (int k=0; k<checks && selected > 0; k++) {
+      int i = checked[k];
+      columns[i].decode(values);
+      // Bounds clamped to the column's range, so game ids can be made offsets safely
+      Column c = COLUMNS[i];
+      long offset = c == Column.GAME ? baseGame : 0;
+      long lo = Math.max(mins[i], min(c)) - offset;
+      long hi = Math.min(maxs[i], max(c)) - offset;
+      int kept = 0;
+      for (int s=0; s<selected; s++) {
+        int value = values[selection[s]];
+        if (value >= lo && value <= hi) {
+          selection[kept++] = selection[s];
+        }
+      }
+      selected = kept;
+    }
+
+    if (selected == 0) {
+      return;
+    }
+    columns[Column.OUTCOME.ordinal()].decode(values);
+    counts[ROUNDS] += selected;
+    for (int s=0; s<selected; s++) {
+      counts[SIDES + RuleInterpreter.side( values[selection[s]] )]++;
+    }
+  }
+
+}
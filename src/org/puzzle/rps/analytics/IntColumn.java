@@ -0,0 +1,194 @@
+package org.puzzle.rps.analytics;
+
+/**
+ * Immutable, compressed column of ints, for one chunk of a RoundStore.
+ *
+ * <p>Values are stored one of two ways, whichever is smaller:
+ * <ul>
+ * <li>Bit packed: each value less the column minimum, in just enough bits for the
+ * column's range, packed end to end in longs. Token indices usually take two or three
+ * bits, and a column holding a single value takes none.</li>
+ * <li>Run length: the value and end row of each run of equal values. Columns filled a
+ * game at a time, such as game ids and player ids, are long runs.</li>
+ * </ul>
+ * The column minimum and maximum are kept either way, so scans can skip whole chunks.
+ */
+class IntColumn {
+
+  private final int count;
+  private final int min;
+  private final int max;
+
+  // Bit packed: bits per value, and the packed words; null if run length encoded
+  private final int width;
+  private final long[] words;
+
+  // Run length: value of each run, and the row after it ends; null if bit packed
+  private final int[] runValues;
+  private final int[] runEnds;
+
+  private IntColumn(int count, int min, int max, int width, long[] words, int[] runValues, int[] runEnds) {
+    this.count = count;
+    this.min = min;
+    this.max = max;
+    this.width = width;
+    this.words = words;
+    this.runValues = runValues;
+    this.runEnds = runEnds;
+  }
+
+  /**
+   * Compress a column
+   * @param values The values
+   * @param count Number of values, from the start of the array
+   * @return IntColumn
+   */
+  static IntColumn encode(int[] values, int count) {
+
+    if (count == 0) {
+      return new IntColumn(0, 0, -1, 0, new long[1], null, null);
+    }
+
+    int min = values[0];
+    int max = values[0];
+    int runs = 1;
+    for (int i=1; i<count; i++) {
+      min = Math.min(min, values[i]);
+      max = Math.max(max, values[i]);
+      if (values[i] != values[i - 1]) {
+        runs++;
+      }
+    }
+
+    int width = 64 - Long.numberOfLeadingZeros((long) max - min);
+
+    if ((long) runs * 64 < (long) count * width) {
+      int[] runValues = new int[runs];
+      int[] runEnds = new int[runs];
+      int r = 0;
+      for (int i=1; i<=count; i++) {
+        if (i == count || values[i] != values[i - 1]) {
+          runValues[r] = values[i - 1];
+          runEnds[r] = i;
+          r++;
+        }
+      }
+      return new IntColumn(count, min, max, 0, null, runValues, runEnds);
+    }
+
+    // One spare word, so that reads may always take two
+    long[] words = new long[(int) (((long) count * width + 63) >>> 6) + 1];
+    if (width > 0) {
+      long mask = (1L << width) - 1;
+      for (int i=0; i<count; i++) {
+        long bit = (long) i * width;
+        long v = ((long) values[i] - min) & mask;
+        int w = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        words[w] |= v << offset;
+        if (offset + width > 64) {
+          words[w + 1] |= v >>> (64 - offset);
+        }
+      }
+    }
+    return new IntColumn(count, min, max, width, words, null, null);
+  }
+
+  /** Number of values */
+  int getCount() {
+    return count;
+  }
+
+  /** Smallest value; greater than the maximum if the column is empty */
+  int getMin() {
+    return min;
+  }
+
+  /** Largest value */
+  int getMax() {
+    return max;
+  }
+
+  /** Whether the column is run length encoded, rather than bit packed */
+  boolean isRunLength() {
+    return runValues != null;
+  }
+
+  /** Approximate size of the compressed values, in bytes */
+  long getFootprint() {
+    return runValues != null ? 8L * runValues.length : 8L * words.length;
+  }
+
+  /**
+   * A single value
+   * @param row Row of the value
+   * @return int, the value
+   */
+  int get(int row) {
+
+    if (runValues != null) {
+      int lo = 0;
+      int hi = runEnds.length - 1;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (runEnds[mid] <= row) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return runValues[lo];
+    }
+
+    if (width == 0) {
+      return min;
+    }
+    long bit = (long) row * width;
+    int w = (int) (bit >>> 6);
+    int offset = (int) (bit & 63);
+    long v = words[w] >>> offset;
+    if (offset + width > 64) {
+      v |= words[w + 1] << (64 - offset);
+    }
+    return (int) (min + (v & ((1L << width) - 1)));
+  }
+
+  /**
+   * Decompress every value
+   * @param out Array to decompress into, at least getCount() long
+   */
+  void decode(int[] out) {
+
+    if (runValues != null) {
+      int from = 0;
+      for (int r=0; r<runValues.length; r++) {
+        int value = runValues[r];
+        for (int i=from; i<runEnds[r]; i++) {
+          out[i] = value;
+        }
+        from = runEnds[r];
+      }
+      return;
+    }
+
+    if (width == 0) {
+      for (int i=0; i<count; i++) {
+        out[i] = min;
+      }
+      return;
+    }
+
+    long mask = (1L << width) - 1;
+    long bit = 0;
+    for (int i=0; i<count; i++, bit+=width) {
+      int w = (int) (bit >>> 6);
+      int offset = (int) (bit & 63);
+      long v = words[w] >>> offset;
+      if (offset + width > 64) {
+        v |= words[w + 1] << (64 - offset);
+      }
+      out[i] = (int) (min + (v & mask));
+    }
+  }
+
+}
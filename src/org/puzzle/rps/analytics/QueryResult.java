@@ -0,0 +1,85 @@
+package org.puzzle.rps.analytics;
+
+/**
+ * Immutable result of a RoundQuery: the number of matching rounds, by outcome side.
+ * Class state is publicly accessible here because instances are immutable.
+ */
+public class QueryResult {
+
+  /** Rounds matching the query */
+  public final long rounds;
+  /** Matching rounds won by the first side */
+  public final long firstWins;
+  /** Matching rounds won by the second side */
+  public final long secondWins;
+  /** Matching rounds drawn */
+  public final long draws;
+  /** Chunks whose rows, or summaries, were read */
+  public final long chunksScanned;
+  /** Chunks skipped by their column ranges */
+  public final long chunksSkipped;
+
+  /**
+   * Public constructor
+   */
+  public QueryResult(long rounds, long firstWins, long secondWins, long draws, long chunksScanned, long chunksSkipped) {
+    this.rounds = rounds;
+    this.firstWins = firstWins;
+    this.secondWins = secondWins;
+    this.draws = draws;
+    this.chunksScanned = chunksScanned;
+    this.chunksSkipped = chunksSkipped;
+  }
+
+  /**
+   * Share of matching rounds won by the first side
+   * @return double, between 0 and 1; 0 if no rounds matched
+   */
+  public double firstWinRate() {
+    return rounds == 0 ? 0 : (double) firstWins / rounds;
+  }
+
+  /**
+   * Share of matching rounds won by the second side
+   * @return double, between 0 and 1; 0 if no rounds matched
+   */
+  public double secondWinRate() {
+    return rounds == 0 ? 0 : (double) secondWins / rounds;
+  }
+
+  /**
+   * This result, seen from the other side
+   * @return QueryResult, with the wins of each side exchanged
+   */
+  public QueryResult swapSides() {
+    return new QueryResult(rounds, secondWins, firstWins, draws, chunksScanned, chunksSkipped);
+  }
+
+  /**
+   * Combine this result with another
+   * @param other Result of another query, over different rounds
+   * @return QueryResult, the sum of both
+   */
+  public QueryResult plus(QueryResult other) {
+    return new QueryResult(rounds + other.rounds, firstWins + other.firstWins, secondWins + other.secondWins,
+        draws + other.draws, chunksScanned + other.chunksScanned, chunksSkipped + other.chunksSkipped);
+  }
+
+  /**
+   * Take the rounds of another result out of this one
+   * @param other Result of another query, over some of the same rounds
+   * @return QueryResult, the difference in rounds; chunk counts are the sum of both
+   */
+  public QueryResult minus(QueryResult other) {
+    return new QueryResult(rounds - other.rounds, firstWins - other.firstWins, secondWins - other.secondWins,
+        draws - other.draws, chunksScanned + other.chunksScanned, chunksSkipped + other.chunksSkipped);
+  }
+
+  @Override
+  public String toString() {
+    // Provide a human readable version of the result
+    return String.format("%d rounds: first wins %d (%.1f%%), second wins %d (%.1f%%), draws %d; %d chunks scanned, %d skipped",
+        rounds, firstWins, 100 * firstWinRate(), secondWins, 100 * secondWinRate(), draws, chunksScanned, chunksSkipped);
+  }
+
+}
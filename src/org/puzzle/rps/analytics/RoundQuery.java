@@ -0,0 +1,149 @@
+package org.puzzle.rps.analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.analytics.RoundStore.Column;
+
+/**
+ * Query over the rounds in a RoundStore, counting the matching rounds by outcome side.
+ *
+ * <p>A query is narrowed by a range of values for any of the columns; a round matches
+ * if every column is in range. Running it scans the store's chunks as fork/join tasks.
+ * Chunks whose column ranges can't match are skipped, and chunks whose ranges match in
+ * full are counted from their summaries; only the rest are decompressed, a column at a
+ * time, and only in the columns the query narrows.
+ */
+public class RoundQuery {
+
+  // Chunks scanned by a single task
+  private static final int CHUNKS_PER_TASK = 4;
+
+  // Scratch space for scanning a chunk, a selection and a column's values, per thread
+  private static final ThreadLocal<int[][]> SCRATCH = new ThreadLocal<int[][]>() {
+    @Override
+    protected int[][] initialValue() {
+      return new int[2][Chunk.ROWS];
+    }
+  };
+
+  private final RoundStore store;
+  private final long[] mins;
+  private final long[] maxs;
+
+  /**
+   * Package constructor, for a query matching every round
+   */
+  RoundQuery(RoundStore store) {
+    this.store = store;
+    this.mins = new long[Column.values().length];
+    this.maxs = new long[Column.values().length];
+    Arrays.fill(mins, Chunk.UNBOUNDED_MIN);
+    Arrays.fill(maxs, Chunk.UNBOUNDED_MAX);
+  }
+
+  /**
+   * Narrow the query to rounds with the given value in a column
+   * @return This query
+   */
+  public RoundQuery where(Column column, long value) {
+    return between(column, value, value);
+  }
+
+  /**
+   * Narrow the query to rounds with a value in the given range in a column
+   * @param column The column
+   * @param min Least value wanted
+   * @param max Greatest value wanted
+   * @return This query
+   */
+  public RoundQuery between(Column column, long min, long max) {
+    int i = column.ordinal();
+    mins[i] = Math.max(mins[i], min);
+    maxs[i] = Math.min(maxs[i], max);
+    return this;
+  }
+
+  /**
+   * Narrow the query to the given number of most recently appended games
+   * @return This query
+   */
+  public RoundQuery lastGames(long games) {
+    if (games < 0) {
+      throw new IllegalArgumentException( String.format("Invalid number of games '%d'", games) );
+    }
+    return between(Column.GAME, store.getNextGameId() - games, Chunk.UNBOUNDED_MAX);
+  }
+
+  /**
+   * Run the query on the common fork/join pool
+   * @return QueryResult
+   */
+  public QueryResult run() {
+    return run(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Run the query on the given pool, blocking until every chunk is scanned
+   * @param pool The pool to scan chunks on
+   * @return QueryResult
+   */
+  public QueryResult run(ForkJoinPool pool) {
+
+    Chunk[] chunks = store.snapshot();
+    long[] counts = pool.invoke( new ScanTask(chunks, 0, chunks.length) );
+    return new QueryResult(counts[Chunk.ROUNDS],
+        counts[Chunk.SIDES + RuleInterpreter.FIRST_WINS],
+        counts[Chunk.SIDES + RuleInterpreter.SECOND_WINS],
+        counts[Chunk.SIDES + RuleInterpreter.DRAW],
+        counts[Chunk.SCANNED], counts[Chunk.SKIPPED]);
+  }
+
+
+
+  /**
+   * Fork/join task over a range of chunks. Ranges are split in half until a few
+   * chunks remain, which are scanned with the thread's scratch space.
+   */
+  private class ScanTask extends RecursiveTask<long[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Chunk[] chunks;
+    private final int from;
+    private final int to;
+
+    ScanTask(Chunk[] chunks, int from, int to) {
+      this.chunks = chunks;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected long[] compute() {
+
+      if (to - from > CHUNKS_PER_TASK) {
+        int mid = (from + to) >>> 1;
+        ScanTask right = new ScanTask(chunks, mid, to);
+        right.fork();
+        long[] counts = new ScanTask(chunks, from, mid).compute();
+        long[] rightCounts = right.join();
+        for (int i=0; i<counts.length; i++) {
+          counts[i] += rightCounts[i];
+        }
+        return counts;
+      }
+
+      long[] counts = new long[Chunk.COUNTS];
+      int[][] scratch = SCRATCH.get();
+      for (int c=from; c<to; c++) {
+        chunks[c].scan(mins, maxs, counts, scratch[0], scratch[1]);
+      }
+      return counts;
+    }
+
+  }
+
+}
@@ -0,0 +1,266 @@
+package org.puzzle.rps.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Columnar store of completed rounds, for analytics over very many games.
+ *
+ * <p>Each round is a row of six ints: its game id, the ids of both players, both
+ * tokens played, and the outcome code. Rows are appended a whole game at a time, or a
+ * game's rounds in several pieces under a game id reserved beforehand, and gathered
+ * into chunks of Chunk.ROWS rows; a full chunk is compressed column by column (see
+ * IntColumn), and only read from then on. As rows arrive in runs of a game, game and
+ * player columns compress to runs, and token and outcome columns to a few bits a
+ * value, so a round takes a byte or two.
+ *
+ * <p>Game ids are handed out in order, as games are appended or ids reserved, so the
+ * most recent games have the highest ids. Players are identified by name, each name
+ * given an id when first seen.
+ *
+ * <p>Games may be appended from any number of threads. Queries (see RoundQuery) see
+ * every game appended before they start, and scan chunks in parallel on a fork/join
+ * pool, skipping any chunk whose column ranges rule it out.
+ */
+public class RoundStore {
+
+  /**
+   * The columns of a round
+   */
+  public enum Column {
+    /** Game id */
+    GAME,
+    /** Id of player one */
+    P1_PLAYER,
+    /** Id of player two */
+    P2_PLAYER,
+    /** Index of the token played by player one */
+    P1_TOKEN,
+    /** Index of the token played by player two */
+    P2_TOKEN,
+    /** Outcome code, as from RuleInterpreter.outcome(p1Token, p2Token) */
+    OUTCOME
+  }
+
+  private static final int COLUMN_COUNT = Column.values().length;
+
+  // Player ids by name, and names by id
+  private final ConcurrentMap<String, Integer> playerIds = new ConcurrentHashMap<String, Integer>();
+  private final List<String> playerNames = new ArrayList<String>();
+
+  private final Function<String, Integer> newPlayer = new Function<String, Integer>() {
+    @Override
+    public Integer apply(String name) {
+      synchronized (playerNames) {
+        playerNames.add(name);
+        return playerNames.size() - 1;
+      }
+    }
+  };
+
+  // Guarded by the lock: sealed chunks, the rows of the chunk being filled, the next game id
+  private final Object lock = new Object();
+  private Chunk[] chunks = new Chunk[0];
+  private long[] games = new long[Chunk.ROWS];
+  private int[][] values = new int[COLUMN_COUNT][Chunk.ROWS];
+  private int rows;
+  private long nextGameId;
+  private long sealedRows;
+
+  /**
+   * Id of a player, assigning one if the name is new
+   * @param name The player's name
+   * @return int, the player id
+   */
+  public int playerId(String name) {
+    return playerIds.computeIfAbsent(name, newPlayer);
+  }
+
+  /**
+   * Id of a player already in the store
+   * @param name The player's name
+   * @return int, the player id, or -1 if no game with the player has been appended
+   */
+  public int findPlayer(String name) {
+    Integer id = playerIds.get(name);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Name of a player
+   * @param id The player id
+   * @return String, the player's name
+   */
+  public String playerName(int id) {
+    synchronized (playerNames) {
+      if (id < 0 || id >= playerNames.size()) {
+        throw new IllegalArgumentException( String.format("Invalid player id '%d'", id) );
+      }
+      return playerNames.get(id);
+    }
+  }
+
+  /**
+   * Append the rounds of a completed game
+   * @param p1 Name of player one
+   * @param p2 Name of player two
+   * @param p1Tokens Token played by player one in each round
+   * @param p2Tokens Token played by player two in each round
+   * @param outcomes Outcome code of each round
+   * @param rounds Number of rounds, from the start of the arrays
+   * @return long, the game id
+   */
+  public long appendGame(String p1, String p2, int[] p1Tokens, int[] p2Tokens, int[] outcomes, int rounds) {
+    long gameId = reserveGameId();
+    appendRounds(gameId, p1, p2, p1Tokens, p2Tokens, outcomes, rounds);
+    return gameId;
+  }
+
+  /**
+   * Reserve the id of a game whose rounds are to be appended in pieces, as it is played
+   * @return long, the game id
+   */
+  public long reserveGameId() {
+    synchronized (lock) {
+      return nextGameId++;
+    }
+  }
+
+  /**
+   * Append some of the rounds of a game, under an id already reserved for it
+   * @param gameId The game id, from reserveGameId()
+   * @param p1 Name of player one
+   * @param p2 Name of player two
+   * @param p1Tokens Token played by player one in each round
+   * @param p2Tokens Token played by player two in each round
+   * @param outcomes Outcome code of each round
+   * @param rounds Number of rounds, from the start of the arrays
+   * @throws IllegalArgumentException If the game id has not been reserved
+   */
+  public void appendRounds(long gameId, String p1, String p2, int[] p1Tokens, int[] p2Tokens, int[] outcomes,
+      int rounds) {
+
+    int p1Id = playerId(p1);
+    int p2Id = playerId(p2);
+
+    synchronized (lock) {
+
+      if (gameId < 0 || gameId >= nextGameId) {
+        throw new IllegalArgumentException( String.format("Invalid game id '%d'", gameId) );
+      }
+
+      int from = 0;
+      while (from < rounds) {
+
+        int n = Math.min(rounds - from, Chunk.ROWS - rows);
+        Arrays.fill(games, rows, rows + n, gameId);
+        Arrays.fill(values[Column.P1_PLAYER.ordinal()], rows, rows + n, p1Id);
+        Arrays.fill(values[Column.P2_PLAYER.ordinal()], rows, rows + n, p2Id);
+        System.arraycopy(p1Tokens, from, values[Column.P1_TOKEN.ordinal()], rows, n);
+        System.arraycopy(p2Tokens, from, values[Column.P2_TOKEN.ordinal()], rows, n);
+        System.arraycopy(outcomes, from, values[Column.OUTCOME.ordinal()], rows, n);
+        rows += n;
+        from += n;
+
+        if (rows == Chunk.ROWS) {
+          seal();
+        }
+      }
+    }
+  }
+
+  /*
+   * Private helper method, called holding the lock. Compress the full chunk, and
+   * start another.
+   */
+  private void seal() {
+    Chunk[] sealed = Arrays.copyOf(chunks, chunks.length + 1);
+    sealed[chunks.length] = new Chunk(games, values, rows);
+    chunks = sealed;
+    sealedRows += rows;
+    rows = 0;
+  }
+
+  /**
+   * Start a query over every round appended so far
+   * @return RoundQuery, matching every round until narrowed
+   */
+  public RoundQuery query() {
+    return new RoundQuery(this);
+  }
+
+  /**
+   * How a token fares against a player, in their recent games: every round the token
+   * was played by their opponent, counted from the token's side. In games the player
+   * played against themself, a round where both sides played the token counts once.
+   * @param token Index of the token
+   * @param playerId Id of the player
+   * @param lastGames Number of most recent games to consider
+   * @return QueryResult, where first wins are rounds won by the token
+   */
+  public QueryResult tokenAgainstPlayer(int token, int playerId, long lastGames) {
+
+    QueryResult asFirst = query().lastGames(lastGames)
+        .where(Column.P1_TOKEN, token).where(Column.P2_PLAYER, playerId).run();
+    QueryResult asSecond = query().lastGames(lastGames)
+        .where(Column.P2_TOKEN, token).where(Column.P1_PLAYER, playerId).run();
+    QueryResult asBoth = query().lastGames(lastGames)
+        .where(Column.P1_TOKEN, token).where(Column.P2_TOKEN, token)
+        .where(Column.P1_PLAYER, playerId).where(Column.P2_PLAYER, playerId).run();
+    return asFirst.plus( asSecond.swapSides() ).minus(asBoth);
+  }
+
+  /**
+   * The chunks a query should scan: the sealed chunks, and the rows appended since
+   * @return Chunk[]
+   */
+  Chunk[] snapshot() {
+    synchronized (lock) {
+      if (rows == 0) {
+        return chunks;
+      }
+      Chunk[] all = Arrays.copyOf(chunks, chunks.length + 1);
+      all[chunks.length] = new Chunk(games, values, rows);
+      return all;
+    }
+  }
+
+  /** Id the next game appended will have */
+  public long getNextGameId() {
+    synchronized (lock) {
+      return nextGameId;
+    }
+  }
+
+  /** Number of rounds appended */
+  public long getRoundCount() {
+    synchronized (lock) {
+      return sealedRows + rows;
+    }
+  }
+
+  /** Number of compressed chunks */
+  public int getChunkCount() {
+    synchronized (lock) {
+      return chunks.length;
+    }
+  }
+
+  /** Approximate size of the compressed chunks, in bytes */
+  public long getFootprint() {
+    Chunk[] sealed;
+    synchronized (lock) {
+      sealed = chunks;
+    }
+    long footprint = 0;
+    for (Chunk chunk : sealed) {
+      footprint += chunk.getFootprint();
+    }
+    return footprint;
+  }
+
+}
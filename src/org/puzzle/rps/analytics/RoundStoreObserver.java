@@ -0,0 +1,110 @@
+package org.puzzle.rps.analytics;
+
+import org.puzzle.rps.IndexedGameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.players.Player;
+
+/**
+ * Observer adding each completed game's rounds to a RoundStore.
+ *
+ * <p>Rounds are buffered by token index on the game's thread, and appended to the
+ * store whenever the small fixed buffers fill, and when the game ends, so the store is
+ * only locked once per BUFFER_ROUNDS rounds and each instance holds a few KB however
+ * long the game.
+ * A game's id is reserved when its first round is played, so game ids follow the order
+ * games start in. Players are recorded by name.
+ *
+ * <p>Each game in play at once needs its own instance, registered with its engine. An
+ * instance may record any number of games one after another.
+ */
+public class RoundStoreObserver implements IndexedGameObserver {
+
+  // Rounds buffered before appending to the store; 3KB of buffers
+  static final int BUFFER_ROUNDS = 1 << 8;
+
+  private final RoundStore store;
+  private final int[] p1Tokens = new int[BUFFER_ROUNDS];
+  private final int[] p2Tokens = new int[BUFFER_ROUNDS];
+  private final int[] outcomes = new int[BUFFER_ROUNDS];
+  private int rounds;
+
+  // The game being recorded, and its players' names; gameId is -1 between games
+  private long gameId = -1;
+  private String p1Name;
+  private String p2Name;
+
+  private long lastGameId = -1;
+
+  /**
+   * Public constructor
+   * @param store The store to add games to
+   */
+  public RoundStoreObserver(RoundStore store) {
+    this.store = store;
+  }
+
+  @Override
+  public void notifyPlay(Player player, int token) {
+    // Plays are recorded with their round
+  }
+
+  @Override
+  public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+
+    if (gameId < 0) {
+      startGame(player1, player2);
+    }
+    if (rounds == outcomes.length) {
+      flush();
+    }
+    p1Tokens[rounds] = p1Token;
+    p2Tokens[rounds] = p2Token;
+    outcomes[rounds] = outcome;
+    rounds++;
+  }
+
+  @Override
+  public void notifyGameOutcome(Player p1, int p1score, Player p2, int p2score) {
+    if (gameId < 0) {
+      startGame(p1, p2);
+    }
+    flush();
+    lastGameId = gameId;
+    gameId = -1;
+  }
+
+  /*
+   * Private helper method. Reserve the new game's id, and note its players' names.
+   */
+  private void startGame(Player p1, Player p2) {
+    gameId = store.reserveGameId();
+    p1Name = String.valueOf(p1);
+    p2Name = String.valueOf(p2);
+  }
+
+  /*
+   * Private helper method. Append the buffered rounds to the store.
+   */
+  private void flush() {
+    store.appendRounds(gameId, p1Name, p2Name, p1Tokens, p2Tokens, outcomes, rounds);
+    rounds = 0;
+  }
+
+  @Override
+  public void notifyPlay(Player player, String token) {
+    // Not sent to indexed observers
+  }
+
+  @Override
+  public void notifyRoundOutcome(Result res) {
+    // Not sent to indexed observers
+  }
+
+  /**
+   * Store id of the last game added; -1 before the first game ends
+   */
+  public long getLastGameId() {
+    return lastGameId;
+  }
+
+}
@@ -0,0 +1,410 @@
+package org.puzzle.rps.history;
+
+import static org.puzzle.rps.history.HistoryFormat.MAX_RECORD_SIZE;
+import static org.puzzle.rps.history.HistoryFormat.ORDER;
+import static org.puzzle.rps.history.HistoryFormat.RECORD_HEADER_SIZE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Segmented, append-only log of game history, shared by any number of concurrently
+ * running games. Games write to it through a HistoryObserver each.
+ *
+ * <p>Records are appended to an in-memory buffer, under a short lock, and given
+ * consecutive sequence numbers; their CRCs are worked out beforehand, outside the lock.
+ * A single writer thread swaps the buffer for an empty one, writes out the whole batch
+ * and forces it to disk - and while it does, the next batch builds up behind it. So
+ * however many games are appending, one write and one force commits them all, and the
+ * busier the log, the larger its batches. Appending only waits if both buffers are full.
+ * Callers that need a record on disk can wait for it with awaitDurable().
+ *
+ * <p>The log is a directory of segments (see HistoryFormat). When the active segment
+ * reaches its size limit it is sealed, and a new one started; once there are more than
+ * the retained number of segments, the oldest are deleted.
+ *
+ * <p>Opening a log recovers it: the newest segment is checked record by record, and
+ * cut off after its last intact record, so a crash loses at most the records that were
+ * not yet durable. Sequence numbers and game ids carry on from where they left off.
+ */
+public class GameHistoryLog {
+
+  /** Default size limit of a segment: 256MB */
+  public static final long DEFAULT_SEGMENT_BYTES = 1L << 28;
+
+  /** Default number of segments retained */
+  public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+  /** Smallest allowed segment size limit */
+  public static final long MIN_SEGMENT_BYTES = 1L << 16;
+
+  // Size of each of the two append buffers
+  private static final int BUFFER_SIZE = 1 << 21;
+
+  private final File directory;
+  private final long segmentBytes;
+  private final int maxSegments;
+
+  private final Object lock = new Object();
+  private final List<Segment> segments = new ArrayList<Segment>();
+  private Segment active;
+
+  // Guarded by the lock: the buffer being filled, the one being written, sequence numbers
+  private ByteBuffer filling = ByteBuffer.allocate(BUFFER_SIZE).order(ORDER);
+  private ByteBuffer draining = ByteBuffer.allocate(BUFFER_SIZE).order(ORDER);
+  private long nextSequence;
+  private long durableSequence;
+  private boolean running = true;
+  private IOException writerError;
+
+  private final AtomicLong nextGameId;
+  private final Thread writer;
+
+  /**
+   * Public constructor, for a log with the default segment size and retention
+   * @param directory Directory holding the log; created if need be
+   */
+  public GameHistoryLog(File directory) {
+    this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_SEGMENTS);
+  }
+
+  /**
+   * Public constructor. Opens, and if need be recovers, the log in the given
+   * directory, and starts its writer thread.
+   * @param directory Directory holding the log; created if need be
+   * @param segmentBytes Size limit of a segment, in bytes
+   * @param maxSegments Number of segments to retain
+   */
+  public GameHistoryLog(File directory, long segmentBytes, int maxSegments) {
+
+    if (segmentBytes < MIN_SEGMENT_BYTES || segmentBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException( String.format("Invalid segment size '%d'", segmentBytes) );
+    }
+    if (maxSegments < 1) {
+      throw new IllegalArgumentException( String.format("Invalid number of segments '%d'", maxSegments) );
+    }
+
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = maxSegments;
+
+    directory.mkdirs();
+    if (!directory.isDirectory()) {
+      throw new IllegalArgumentException( String.format("Invalid history directory '%s'", directory) );
+    }
+
+    try {
+      recover();
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception opening game history",e);
+    }
+
+    nextSequence = active.getBaseSequence() + active.getRecordCount();
+    durableSequence = nextSequence;
+    nextGameId = new AtomicLong( active.getNextGameId() );
+
+    writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        write();
+      }
+    }, "history-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /*
+   * Private helper method. Open the segments in the directory, oldest first, and
+   * recover the newest; start a segment if there are none.
+   */
+  private void recover() throws IOException {
+
+    long[] bases = new long[0];
+    for (File file : directory.listFiles()) {
+      long base = HistoryFormat.baseSequence(file.getName());
+      if (base >= 0) {
+        bases = Arrays.copyOf(bases, bases.length + 1);
+        bases[bases.length - 1] = base;
+      } else if (file.getName().endsWith(".log.tmp")) {
+        // A segment that was never started
+        file.delete();
+      }
+    }
+    Arrays.sort(bases);
+
+    for (int i=0; i<bases.length; i++) {
+      segments.add( Segment.open(directory, bases[i], i == bases.length - 1) );
+    }
+    if (segments.isEmpty()) {
+      segments.add( Segment.create(directory, 0, 0) );
+    }
+    active = segments.get(segments.size() - 1);
+    retain();
+  }
+
+  /**
+   * Hand out an id for a new game. Ids are unique within the log, across restarts.
+   * @return long, the game id
+   */
+  public long nextGameId() {
+    return nextGameId.getAndIncrement();
+  }
+
+  /**
+   * Append a record. The record is written by the writer thread, at the next commit.
+   * @param payload Array holding the record's payload (see HistoryFormat)
+   * @param offset Offset of the payload in the array
+   * @param length Length of the payload
+   * @return long, the record's sequence number
+   * @throws IllegalStateException If the log is closed
+   */
+  public long append(byte[] payload, int offset, int length) {
+
+    if (length < 1 || length > MAX_RECORD_SIZE) {
+      throw new IllegalArgumentException( String.format("Invalid record length '%d'", length) );
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(payload, offset, length);
+
+    synchronized (lock) {
+      while (running && writerError == null && filling.remaining() < RECORD_HEADER_SIZE + length) {
+        waitOnLock();
+      }
+      checkOpen();
+
+      if (filling.position() == 0) {
+        // The writer may be waiting for records
+        lock.notifyAll();
+      }
+      filling.putInt(length).putInt((int) crc.getValue()).put(payload, offset, length);
+      return nextSequence++;
+    }
+  }
+
+  /**
+   * Wait until a record is durable: written, and forced to disk
+   * @param sequence Sequence number of the record
+   * @throws IllegalStateException If the log is closed before the record is durable
+   */
+  public void awaitDurable(long sequence) {
+    synchronized (lock) {
+      while (durableSequence <= sequence) {
+        // Records appended before the log was closed are still committed
+        checkWriter();
+        if (!running && sequence >= nextSequence) {
+          throw new IllegalStateException("Game history log closed");
+        }
+        waitOnLock();
+      }
+    }
+  }
+
+  /**
+   * Wait until every record appended so far is durable
+   */
+  public void sync() {
+    long last;
+    synchronized (lock) {
+      last = nextSequence - 1;
+    }
+    awaitDurable(last);
+  }
+
+  /**
+   * Read the log, in order, from the given sequence number on. Only durable records are read.
+   * @param fromSequence First sequence number wanted; records no longer retained are skipped
+   * @param visitor Receives the contents of the records
+   * @throws IllegalStateException If a record is corrupt
+   */
+  public void read(long fromSequence, final HistoryVisitor visitor) {
+
+    List<Segment> snapshot;
+    synchronized (lock) {
+      snapshot = new ArrayList<Segment>(segments);
+    }
+
+    Segment.RecordHandler handler = new Segment.RecordHandler() {
+      @Override
+      public boolean record(long sequence, int position, ByteBuffer payload) {
+        HistoryFormat.decode(payload, visitor);
+        return true;
+      }
+    };
+
+    for (int s=0; s<snapshot.size(); s++) {
+      boolean last = s == snapshot.size() - 1;
+      if (last || snapshot.get(s + 1).getBaseSequence() > fromSequence) {
+        try {
+          snapshot.get(s).read(fromSequence, handler);
+        } catch (NoSuchFileException e) {
+          // The segment was dropped while reading; its records are no longer retained
+        } catch (IOException e) {
+          throw new RuntimeException("IO Exception reading game history",e);
+        }
+      }
+    }
+  }
+
+  /** Sequence number the next record appended will have */
+  public long getNextSequence() {
+    synchronized (lock) {
+      return nextSequence;
+    }
+  }
+
+  /** Sequence number of the oldest record retained */
+  public long getFirstSequence() {
+    synchronized (lock) {
+      return segments.get(0).getBaseSequence();
+    }
+  }
+
+  /** Number of segments retained */
+  public int getSegmentCount() {
+    synchronized (lock) {
+      return segments.size();
+    }
+  }
+
+  /**
+   * Commit everything appended, stop the writer thread, and close the active segment.
+   * The log can't be appended to afterwards.
+   */
+  public void close() {
+
+    synchronized (lock) {
+      if (!running) {
+        return;
+      }
+      running = false;
+      lock.notifyAll();
+    }
+
+    try {
+      writer.join();
+      active.seal();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted closing game history", e);
+    } catch (IOException e) {
+      throw new RuntimeException("IO Exception closing game history",e);
+    }
+
+    synchronized (lock) {
+      checkWriter();
+    }
+  }
+
+  /*
+   * Private helper method, the writer thread's loop. Each pass takes every record
+   * appended since the last, writes them out and forces them to disk.
+   */
+  private void write() {
+
+    try {
+      while (true) {
+
+        ByteBuffer batch;
+        long batchEnd;
+        synchronized (lock) {
+          while (running && filling.position() == 0) {
+            lock.wait();
+          }
+          if (filling.position() == 0) {
+            // Closed, and everything committed
+            return;
+          }
+          batch = filling;
+          filling = draining;
+          draining = batch;
+          batchEnd = nextSequence;
+          lock.notifyAll();
+        }
+
+        batch.flip();
+        while (batch.hasRemaining()) {
+          active.append(batch, segmentBytes);
+          if (batch.hasRemaining()) {
+            roll();
+          }
+        }
+        active.force();
+        batch.clear();
+
+        synchronized (lock) {
+          durableSequence = batchEnd;
+          lock.notifyAll();
+        }
+      }
+    } catch (IOException e) {
+      synchronized (lock) {
+        writerError = e;
+        lock.notifyAll();
+      }
+    } catch (InterruptedException e) {
+      // Only daemon threads are interrupted like this; nothing more to write
+    }
+  }
+
+  /*
+   * Private helper method. Seal the active segment and start another, dropping old
+   * segments beyond those retained.
+   */
+  private void roll() throws IOException {
+
+    active.seal();
+    Segment next = Segment.create(directory, active.getBaseSequence() + active.getRecordCount(), nextGameId.get());
+
+    synchronized (lock) {
+      segments.add(next);
+      active = next;
+      retain();
+    }
+  }
+
+  /*
+   * Private helper method, deletes the oldest segments beyond those retained
+   */
+  private void retain() {
+    while (segments.size() > maxSegments) {
+      segments.remove(0).delete();
+    }
+  }
+
+  /*
+   * Private helper method, called holding the lock
+   */
+  private void waitOnLock() {
+    try {
+      lock.wait();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for game history", e);
+    }
+  }
+
+  /*
+   * Private helper method, called holding the lock
+   */
+  private void checkOpen() {
+    checkWriter();
+    if (!running) {
+      throw new IllegalStateException("Game history log closed");
+    }
+  }
+
+  private void checkWriter() {
+    if (writerError != null) {
+      throw new RuntimeException("IO Exception writing game history",writerError);
+    }
+  }
+
+}
@@ -0,0 +1,180 @@
+package org.puzzle.rps.history;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Static container for the game history log's binary format.
+ *
+ * <p>A log is a directory of segments. Each segment is a log file, named after the
+ * sequence number of its first record, and an index file of the same name. Format of
+ * a log file, little endian:
+ * <PRE>
+ *  0  int   magic
+ *  4  int   format version
+ *  8  long  sequence number of the first record
+ * 16  long  next game id when the segment was created
+ * 24        records, each:
+ *             int   payload length
+ *             int   CRC32 of the payload
+ *                   payload
+ * </PRE>
+ *
+ * <p>Payloads start with a record type byte and the game id, then:
+ * <PRE>
+ * ROUNDS  first round number, then for each round to the end of the payload:
+ *         player one's token index, player two's token index, outcome code
+ * GAME    player one's score, player two's score, rounds played,
+ *         player one's name, player two's name
+ * </PRE>
+ * All numbers in payloads are unsigned varints, seven bits to a byte, so a round
+ * usually takes three bytes; names are a varint length, then UTF-8 bytes.
+ *
+ * <p>An index file is a list of entries, each an int offset from the segment's first
+ * sequence number, and the int position of that record in the log file; there is an
+ * entry for the first record, and then one every INDEX_INTERVAL bytes or so.
+ */
+class HistoryFormat {
+
+  static final int MAGIC = 0x48535052; // "RPSH"
+  static final int VERSION = 1;
+
+  static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  static final int SEGMENT_HEADER_SIZE = 24;
+  static final int RECORD_HEADER_SIZE = 8;
+  static final int INDEX_ENTRY_SIZE = 8;
+
+  /** Largest payload of a single record */
+  static final int MAX_RECORD_SIZE = 1 << 16;
+
+  /** Bytes of records between index entries */
+  static final int INDEX_INTERVAL = 1 << 12;
+
+  // Record types
+  static final byte ROUNDS = 1;
+  static final byte GAME = 2;
+
+  private HistoryFormat() {
+  }
+
+  /** Name of a segment's log file */
+  static String logName(long baseSequence) {
+    return String.format("%020d.log", baseSequence);
+  }
+
+  /** Name of a segment's index file */
+  static String indexName(long baseSequence) {
+    return String.format("%020d.index", baseSequence);
+  }
+
+  /**
+   * First sequence number of a segment, from the name of its log file
+   * @return long, or -1 if the name isn't that of a log file
+   */
+  static long baseSequence(String logName) {
+    if (!logName.matches("[0-9]{20}\\.log")) {
+      return -1;
+    }
+    return Long.parseLong( logName.substring(0, 20) );
+  }
+
+  /**
+   * Write an unsigned varint
+   * @param bytes Destination array
+   * @param position Position to write at
+   * @param value Value to write, treated as unsigned
+   * @return int, the position after the value
+   */
+  static int putVarint(byte[] bytes, int position, long value) {
+    while ((value & ~0x7FL) != 0) {
+      bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    bytes[position++] = (byte) value;
+    return position;
+  }
+
+  /**
+   * Read an unsigned varint
+   * @param buf Buffer positioned at the value
+   * @return long, the value
+   * @throws IllegalStateException If the varint runs on for more than 64 bits
+   */
+  static long getVarint(ByteBuffer buf) {
+    long value = 0;
+    for (int shift=0; shift<64; shift+=7) {
+      byte b = buf.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Malformed varint in history record");
+  }
+
+  /**
+   * Write a string, as a varint length and UTF-8 bytes
+   * @return int, the position after the string
+   */
+  static int putString(byte[] bytes, int position, String value) {
+    byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+    position = putVarint(bytes, position, encoded.length);
+    System.arraycopy(encoded, 0, bytes, position, encoded.length);
+    return position + encoded.length;
+  }
+
+  /**
+   * Game id of a record
+   * @param payload The record's payload
+   * @return long, the game id
+   */
+  static long gameId(ByteBuffer payload) {
+    ByteBuffer buf = payload.duplicate();
+    buf.get();
+    return getVarint(buf);
+  }
+
+  /**
+   * Decode a record, and pass its contents to a visitor
+   * @param payload The record's payload
+   * @param visitor Receives the rounds or game in the record
+   * @throws IllegalStateException If the record is of an unknown type
+   */
+  static void decode(ByteBuffer payload, HistoryVisitor visitor) {
+
+    ByteBuffer buf = payload.duplicate();
+    byte type = buf.get();
+    long gameId = getVarint(buf);
+
+    switch (type) {
+      case ROUNDS:
+        int round = (int) getVarint(buf);
+        while (buf.hasRemaining()) {
+          int p1Token = (int) getVarint(buf);
+          int p2Token = (int) getVarint(buf);
+          int outcome = (int) getVarint(buf);
+          visitor.round(gameId, round++, p1Token, p2Token, outcome);
+        }
+        break;
+      case GAME:
+        int p1Score = (int) getVarint(buf);
+        int p2Score = (int) getVarint(buf);
+        int rounds = (int) getVarint(buf);
+        String p1 = getString(buf);
+        String p2 = getString(buf);
+        visitor.game(gameId, p1, p1Score, p2, p2Score, rounds);
+        break;
+      default:
+        throw new IllegalStateException( String.format("Unknown history record type '%d'", type) );
+    }
+  }
+
+  private static String getString(ByteBuffer buf) {
+    byte[] bytes = new byte[(int) getVarint(buf)];
+    buf.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
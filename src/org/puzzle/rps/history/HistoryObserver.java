@@ -0,0 +1,128 @@
+package org.puzzle.rps.history;
+
+import org.puzzle.rps.IndexedGameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.players.Player;
+
+/**
+ * Observer recording a game's rounds and outcome in a GameHistoryLog.
+ *
+ * <p>Rounds are encoded by token index into a small block on the game's thread, and
+ * the block appended to the log as one record when it fills, and at the end of the
+ * game, followed by a record of the outcome. A round usually takes three bytes, and
+ * the log is only touched once per thousand rounds or so, so recording costs little
+ * more than the encoding.
+ *
+ * <p>Each game in play at once needs its own instance, registered with its engine. An
+ * instance may record any number of games one after another; each gets a new game id
+ * from the log at its first round.
+ */
+public class HistoryObserver implements IndexedGameObserver {
+
+  // Size of a block of rounds, and most bytes a round can take
+  private static final int BLOCK_SIZE = 1 << 12;
+  private static final int MAX_ROUND_SIZE = 15;
+
+  // Longest player name recorded
+  private static final int MAX_NAME_LENGTH = 256;
+
+  private final GameHistoryLog log;
+  private final byte[] block = new byte[BLOCK_SIZE];
+  private int length;
+
+  private long gameId = -1;
+  private int round;
+  private long lastSequence = -1;
+
+  /**
+   * Public constructor
+   * @param log The log to record games in
+   */
+  public HistoryObserver(GameHistoryLog log) {
+    this.log = log;
+  }
+
+  @Override
+  public void notifyPlay(Player player, int token) {
+    // Plays are recorded with their round
+  }
+
+  @Override
+  public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+
+    if (gameId < 0) {
+      gameId = log.nextGameId();
+    }
+    if (length > BLOCK_SIZE - MAX_ROUND_SIZE) {
+      flush();
+    }
+    if (length == 0) {
+      block[0] = HistoryFormat.ROUNDS;
+      length = HistoryFormat.putVarint(block, 1, gameId);
+      length = HistoryFormat.putVarint(block, length, round);
+    }
+
+    length = HistoryFormat.putVarint(block, length, p1Token);
+    length = HistoryFormat.putVarint(block, length, p2Token);
+    length = HistoryFormat.putVarint(block, length, outcome);
+    round++;
+  }
+
+  @Override
+  public void notifyGameOutcome(Player p1, int p1score, Player p2, int p2score) {
+
+    if (gameId < 0) {
+      gameId = log.nextGameId();
+    }
+    flush();
+
+    String p1Name = name(p1);
+    String p2Name = name(p2);
+    byte[] record = new byte[1 + 10 + 3 * 5 + 2 * (5 + 3 * MAX_NAME_LENGTH)];
+    record[0] = HistoryFormat.GAME;
+    int end = HistoryFormat.putVarint(record, 1, gameId);
+    end = HistoryFormat.putVarint(record, end, p1score);
+    end = HistoryFormat.putVarint(record, end, p2score);
+    end = HistoryFormat.putVarint(record, end, round);
+    end = HistoryFormat.putString(record, end, p1Name);
+    end = HistoryFormat.putString(record, end, p2Name);
+    lastSequence = log.append(record, 0, end);
+
+    gameId = -1;
+    round = 0;
+  }
+
+  @Override
+  public void notifyPlay(Player player, String token) {
+    // Not sent to indexed observers
+  }
+
+  @Override
+  public void notifyRoundOutcome(Result res) {
+    // Not sent to indexed observers
+  }
+
+  /**
+   * Sequence number of the record of the last game outcome, for awaiting its
+   * durability; -1 before the first game ends
+   */
+  public long getLastSequence() {
+    return lastSequence;
+  }
+
+  /*
+   * Private helper method, appends the current block of rounds, if any
+   */
+  private void flush() {
+    if (length > 0) {
+      lastSequence = log.append(block, 0, length);
+      length = 0;
+    }
+  }
+
+  private static String name(Player player) {
+    String name = String.valueOf(player);
+    return name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) : name;
+  }
+
+}
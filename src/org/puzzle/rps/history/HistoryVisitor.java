@@ -0,0 +1,30 @@
+package org.puzzle.rps.history;
+
+/**
+ * Receives the contents of a game history log as it is read, in log order. Rounds
+ * of games played at the same time are interleaved, and told apart by game id.
+ */
+public interface HistoryVisitor {
+
+  /**
+   * A round was played
+   * @param gameId Id of the game
+   * @param round Number of the round within the game, counting from zero
+   * @param p1Token Index of the token played by player one
+   * @param p2Token Index of the token played by player two
+   * @param outcome Outcome code, as from RuleInterpreter.outcome(p1Token, p2Token)
+   */
+  void round(long gameId, int round, int p1Token, int p2Token, int outcome);
+
+  /**
+   * A game finished
+   * @param gameId Id of the game
+   * @param p1 Name of player one
+   * @param p1Score Player one's final score
+   * @param p2 Name of player two
+   * @param p2Score Player two's final score
+   * @param rounds Number of rounds played
+   */
+  void game(long gameId, String p1, int p1Score, String p2, int p2Score, int rounds);
+
+}
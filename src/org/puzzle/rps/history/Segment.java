@@ -0,0 +1,428 @@
+package org.puzzle.rps.history;
+
+import static org.puzzle.rps.history.HistoryFormat.INDEX_ENTRY_SIZE;
+import static org.puzzle.rps.history.HistoryFormat.INDEX_INTERVAL;
+import static org.puzzle.rps.history.HistoryFormat.MAGIC;
+import static org.puzzle.rps.history.HistoryFormat.MAX_RECORD_SIZE;
+import static org.puzzle.rps.history.HistoryFormat.ORDER;
+import static org.puzzle.rps.history.HistoryFormat.RECORD_HEADER_SIZE;
+import static org.puzzle.rps.history.HistoryFormat.SEGMENT_HEADER_SIZE;
+import static org.puzzle.rps.history.HistoryFormat.VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * One segment of a GameHistoryLog: a log file of records, and its index. See
+ * HistoryFormat for the layout of both.
+ *
+ * <p>Only the newest segment of a log is active, and written to, by the log's writer
+ * thread. Other segments are sealed: complete, forced to disk, and only read. The
+ * index is also kept in memory, for finding records by sequence number.
+ *
+ * <p>Opening the active segment recovers it after a crash. Its records are checked one
+ * by one, and the log file is cut off after the last whole record whose CRC matches;
+ * the index is rebuilt from the records that remain.
+ */
+class Segment {
+
+  private final long baseSequence;
+  private final File logFile;
+  private final File indexFile;
+
+  // Open for writing while active
+  private FileChannel log;
+  private FileChannel index;
+
+  private long nextGameId;
+  private long size;
+  private volatile long durableSize;
+  private long recordCount;
+  private long lastIndexed = -INDEX_INTERVAL;
+
+  // Index entries: offset from the base sequence in the high 32 bits, position in the low
+  private long[] entries = new long[64];
+  private int entryCount;
+  private final ByteBuffer indexBuffer = ByteBuffer.allocate(INDEX_ENTRY_SIZE * 1024).order(ORDER);
+
+  private Segment(File directory, long baseSequence) {
+    this.baseSequence = baseSequence;
+    this.logFile = new File(directory, HistoryFormat.logName(baseSequence));
+    this.indexFile = new File(directory, HistoryFormat.indexName(baseSequence));
+  }
+
+  /**
+   * Create a new, active, segment. The log file's header is written to a temporary
+   * file and moved into place, so a log file never has a partial header.
+   * @param directory Directory of the log
+   * @param baseSequence Sequence number of the segment's first record
+   * @param nextGameId Next game id to be handed out, for recovery
+   * @return Segment, open for writing
+   * @throws IOException If the files can't be created
+   */
+  static Segment create(File directory, long baseSequence, long nextGameId) throws IOException {
+
+    Segment segment = new Segment(directory, baseSequence);
+
+    ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).order(ORDER);
+    header.putInt(MAGIC).putInt(VERSION).putLong(baseSequence).putLong(nextGameId);
+    header.flip();
+
+    File temp = new File(directory, segment.logFile.getName() + ".tmp");
+    FileChannel channel = FileChannel.open(temp.toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    try {
+      writeFully(channel, header, 0);
+      channel.force(true);
+    } finally {
+      channel.close();
+    }
+    Files.move(temp.toPath(), segment.logFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+    segment.nextGameId = nextGameId;
+    segment.size = SEGMENT_HEADER_SIZE;
+    segment.durableSize = SEGMENT_HEADER_SIZE;
+    segment.openForWriting();
+    return segment;
+  }
+
+  /**
+   * Open an existing segment
+   * @param directory Directory of the log
+   * @param baseSequence Sequence number of the segment's first record
+   * @param active If true, recover the segment and open it for writing; otherwise it is sealed
+   * @return Segment
+   * @throws IOException If the files can't be read
+   * @throws IllegalStateException If the log file's header is corrupt
+   */
+  static Segment open(File directory, long baseSequence, boolean active) throws IOException {
+
+    final Segment segment = new Segment(directory, baseSequence);
+
+    FileChannel channel = FileChannel.open(segment.logFile.toPath(), StandardOpenOption.READ);
+    try {
+      long fileSize = channel.size();
+      if (fileSize < SEGMENT_HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+        throw new IllegalStateException( String.format("Corrupt history segment '%s'", segment.logFile) );
+      }
+      ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize).order(ORDER);
+      if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION || data.getLong(8) != baseSequence) {
+        throw new IllegalStateException( String.format("Corrupt history segment '%s'", segment.logFile) );
+      }
+      segment.nextGameId = data.getLong(16);
+
+      if (!active) {
+        segment.size = fileSize;
+        segment.durableSize = fileSize;
+        segment.loadIndex();
+        return segment;
+      }
+
+      // Check every record, noting index entries and game ids as we go
+      segment.size = scan(data, SEGMENT_HEADER_SIZE, baseSequence, new RecordHandler() {
+        @Override
+        public boolean record(long sequence, int position, ByteBuffer payload) {
+          segment.indexRecord(position);
+          segment.recordCount++;
+          segment.nextGameId = Math.max(segment.nextGameId, HistoryFormat.gameId(payload) + 1);
+          return true;
+        }
+      });
+      segment.durableSize = segment.size;
+    } finally {
+      channel.close();
+    }
+
+    // Drop any torn or corrupt tail, and rewrite the index to match
+    segment.openForWriting();
+    segment.log.truncate(segment.size);
+    ByteBuffer entries = ByteBuffer.allocate(INDEX_ENTRY_SIZE * segment.entryCount).order(ORDER);
+    for (int i=0; i<segment.entryCount; i++) {
+      entries.putInt((int) (segment.entries[i] >>> 32)).putInt((int) segment.entries[i]);
+    }
+    entries.flip();
+    writeFully(segment.index, entries, 0);
+    segment.force();
+    return segment;
+  }
+
+  /*
+   * Private helper method, opens the channels used to write an active segment. The
+   * index starts empty; on recovery, it's rewritten.
+   */
+  private void openForWriting() throws IOException {
+    log = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE);
+    index = FileChannel.open(indexFile.toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+  }
+
+  /*
+   * Private helper method. Read a sealed segment's index; if it's missing or
+   * damaged, rebuild it from the log file.
+   */
+  private void loadIndex() throws IOException {
+
+    if (indexFile.isFile() && indexFile.length() % INDEX_ENTRY_SIZE == 0) {
+      ByteBuffer buf = ByteBuffer.wrap( Files.readAllBytes(indexFile.toPath()) ).order(ORDER);
+      boolean valid = buf.remaining() > 0;
+      long previous = -1;
+      while (valid && buf.hasRemaining()) {
+        long entry = ((long) buf.getInt() << 32) | (buf.getInt() & 0xFFFFFFFFL);
+        valid = entry > previous && (int) entry >= SEGMENT_HEADER_SIZE && (int) entry < size;
+        addEntry(entry);
+        previous = entry;
+      }
+      if (valid || size == SEGMENT_HEADER_SIZE) {
+        return;
+      }
+    }
+
+    entryCount = 0;
+    lastIndexed = -INDEX_INTERVAL;
+    FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+    try {
+      ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ORDER);
+      scan(data, SEGMENT_HEADER_SIZE, baseSequence, new RecordHandler() {
+        @Override
+        public boolean record(long sequence, int position, ByteBuffer payload) {
+          indexRecord(position);
+          recordCount++;
+          return true;
+        }
+      });
+    } finally {
+      channel.close();
+    }
+  }
+
+  /** Sequence number of the segment's first record */
+  long getBaseSequence() {
+    return baseSequence;
+  }
+
+  /** Number of records written to an active segment, or recovered */
+  long getRecordCount() {
+    return recordCount;
+  }
+
+  /** Next game id to hand out, as far as this segment knows */
+  long getNextGameId() {
+    return nextGameId;
+  }
+
+  /** Size of the log file, in bytes */
+  long getSize() {
+    return size;
+  }
+
+  /**
+   * Write whole records from a batch, while they fit within the size limit. An empty
+   * segment takes the first record regardless.
+   * @param batch Records, from its position to its limit; the position is advanced past those written
+   * @param limit Most bytes the log file should hold
+   * @throws IOException If the records can't be written
+   */
+  void append(ByteBuffer batch, long limit) throws IOException {
+
+    int start = batch.position();
+    int p = start;
+
+    indexBuffer.clear();
+    while (p < batch.limit()) {
+      int recordSize = RECORD_HEADER_SIZE + batch.getInt(p);
+      long position = size + (p - start);
+      if (position + recordSize > limit && (recordCount > 0 || p > start)) {
+        break;
+      }
+      if (indexRecord((int) position)) {
+        if (!indexBuffer.hasRemaining()) {
+          indexBuffer.flip();
+          writeFully(index, indexBuffer, index.size());
+          indexBuffer.clear();
+        }
+        indexBuffer.putInt((int) (recordCount)).putInt((int) position);
+      }
+      recordCount++;
+      p += recordSize;
+    }
+
+    ByteBuffer chunk = batch.duplicate();
+    chunk.limit(p);
+    writeFully(log, chunk, size);
+    size += p - start;
+    batch.position(p);
+
+    indexBuffer.flip();
+    writeFully(index, indexBuffer, index.size());
+  }
+
+  /**
+   * Force everything written to disk; readers then see it.
+   * @throws IOException If the segment can't be forced
+   */
+  void force() throws IOException {
+    log.force(false);
+    index.force(false);
+    durableSize = size;
+  }
+
+  /**
+   * Force everything written to disk, and stop writing to the segment
+   * @throws IOException If the segment can't be forced or closed
+   */
+  void seal() throws IOException {
+    if (log != null) {
+      force();
+      log.close();
+      index.close();
+      log = null;
+      index = null;
+    }
+  }
+
+  /**
+   * Remove the segment's files
+   */
+  void delete() {
+    logFile.delete();
+    indexFile.delete();
+  }
+
+  /**
+   * Read durable records, in order, from the given sequence number on
+   * @param fromSequence First sequence number wanted
+   * @param handler Receives each record; returns false to stop reading
+   * @return true unless the handler stopped reading
+   * @throws IOException If the log file can't be read
+   * @throws IllegalStateException If a durable record is corrupt
+   */
+  boolean read(long fromSequence, final RecordHandler handler) throws IOException {
+
+    final long end = durableSize;
+    long entry = floorEntry(fromSequence - baseSequence);
+    int start = (int) entry;
+    if (start >= end) {
+      return true;
+    }
+
+    final boolean[] stopped = new boolean[1];
+    final long from = fromSequence;
+    FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+    try {
+      ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, end).order(ORDER);
+      long stop = scan(data, start, baseSequence + (entry >>> 32), new RecordHandler() {
+        @Override
+        public boolean record(long sequence, int position, ByteBuffer payload) {
+          if (sequence < from) {
+            return true;
+          }
+          stopped[0] = !handler.record(sequence, position, payload);
+          return !stopped[0];
+        }
+      });
+      if (!stopped[0] && stop != end) {
+        throw new IllegalStateException( String.format("Corrupt history record at %d in '%s'", stop, logFile) );
+      }
+    } finally {
+      channel.close();
+    }
+    return !stopped[0];
+  }
+
+  /*
+   * Private helper method. Check records from the given position on, passing each
+   * intact one to the handler, until the data ends, a record is torn or corrupt, or
+   * the handler stops.
+   * @return long, the position after the last record checked
+   */
+  private static long scan(ByteBuffer data, int position, long sequence, RecordHandler handler) {
+
+    CRC32 crc = new CRC32();
+    while (data.limit() - position >= RECORD_HEADER_SIZE) {
+
+      int length = data.getInt(position);
+      if (length < 1 || length > MAX_RECORD_SIZE || length > data.limit() - position - RECORD_HEADER_SIZE) {
+        break;
+      }
+
+      ByteBuffer payload = data.duplicate();
+      payload.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+      payload = payload.slice().order(ORDER);
+
+      crc.reset();
+      crc.update(payload.duplicate());
+      if ((int) crc.getValue() != data.getInt(position + 4)) {
+        break;
+      }
+
+      if (!handler.record(sequence++, position, payload)) {
+        return position + RECORD_HEADER_SIZE + length;
+      }
+      position += RECORD_HEADER_SIZE + length;
+    }
+    return position;
+  }
+
+  /*
+   * Private helper method. Add an index entry for the next record, if it's due one.
+   * @return true if an entry was added
+   */
+  private boolean indexRecord(int position) {
+    if (position - lastIndexed < INDEX_INTERVAL) {
+      return false;
+    }
+    addEntry((recordCount << 32) | position);
+    lastIndexed = position;
+    return true;
+  }
+
+  private synchronized void addEntry(long entry) {
+    if (entryCount == entries.length) {
+      entries = Arrays.copyOf(entries, entryCount * 2);
+    }
+    entries[entryCount++] = entry;
+  }
+
+  /*
+   * Private helper method. The last index entry at or before the given offset from
+   * the base sequence; or the first record, if there is none.
+   */
+  private synchronized long floorEntry(long offset) {
+    if (entryCount == 0 || offset < 0) {
+      return SEGMENT_HEADER_SIZE;
+    }
+    int i = Arrays.binarySearch(entries, 0, entryCount, (offset << 32) | 0xFFFFFFFFL);
+    int floor = i >= 0 ? i : -i - 2;
+    return floor < 0 ? SEGMENT_HEADER_SIZE : entries[floor];
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+    while (buf.hasRemaining()) {
+      position += channel.write(buf, position);
+    }
+  }
+
+
+
+  /**
+   * Receives records as a segment is scanned or read
+   */
+  interface RecordHandler {
+
+    /**
+     * @param sequence Sequence number of the record
+     * @param position Position of the record in the log file
+     * @param payload The record's payload
+     * @return true to carry on reading
+     */
+    boolean record(long sequence, int position, ByteBuffer payload);
+  }
+
+}
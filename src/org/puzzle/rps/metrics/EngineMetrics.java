@@ -0,0 +1,240 @@
+package org.puzzle.rps.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.puzzle.rps.players.Player;
+
+/**
+ * Metrics registry for game engines: rounds played, games in flight and completed,
+ * and latency histograms for player moves (by player type), outcome lookups and
+ * observer dispatch. One instance may be shared by any number of concurrently
+ * running GameEngines and GamesMasters; all updates are lock free.
+ *
+ * <p>Metrics are read either by pulling a MetricsSnapshot, or over JMX once the
+ * registry has been registered as an MBean. Engines with no registry attached pay
+ * only a null check per round.
+ *
+ * <p>Latencies are timed for one round in every sampleInterval, to keep the cost of
+ * reading the clock off most rounds; counts are kept for every round.
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+
+  private final int sampleMask;
+
+  private final LongAdder roundsPlayed = new LongAdder();
+  private final LongAdder gamesStarted = new LongAdder();
+  private final LongAdder gamesCompleted = new LongAdder();
+  private final LongAdder gamesFailed = new LongAdder();
+
+  private final ConcurrentMap<Class<?>, LatencyHistogram> moveLatency = new ConcurrentHashMap<Class<?>, LatencyHistogram>();
+  private final LatencyHistogram allMoveLatency = new LatencyHistogram();
+  private final LatencyHistogram winnerLatency = new LatencyHistogram();
+  private final LatencyHistogram observerLatency = new LatencyHistogram();
+
+  private static final Function<Class<?>, LatencyHistogram> NEW_HISTOGRAM = new Function<Class<?>, LatencyHistogram>() {
+    @Override
+    public LatencyHistogram apply(Class<?> type) {
+      return new LatencyHistogram();
+    }
+  };
+
+  // Last JMX reading of the round count, for the rounds per second attribute
+  private long jmxRounds;
+  private long jmxTimestamp = System.nanoTime();
+
+  private ObjectName objectName;
+
+  /**
+   * Public constructor, timing every round
+   */
+  public EngineMetrics() {
+    this(1);
+  }
+
+  /**
+   * Public constructor
+   * @param sampleInterval Time one round in this many; must be a power of two
+   */
+  public EngineMetrics(int sampleInterval) {
+    if (sampleInterval < 1 || Integer.bitCount(sampleInterval) != 1) {
+      throw new IllegalArgumentException( String.format("Sample interval '%d' is not a power of two", sampleInterval) );
+    }
+    sampleMask = sampleInterval - 1;
+  }
+
+  /**
+   * Should the given round be timed?
+   * @param round Round number
+   * @return true if latencies should be recorded for this round
+   */
+  public boolean sample(int round) {
+    return (round & sampleMask) == 0;
+  }
+
+  /** Record the start of a game */
+  public void gameStarted() {
+    gamesStarted.increment();
+  }
+
+  /** Record the end of a game */
+  public void gameCompleted() {
+    gamesCompleted.increment();
+  }
+
+  /** Record a game stopped by an exception, before it could be completed */
+  public void gameFailed() {
+    gamesFailed.increment();
+  }
+
+  /** Record a round */
+  public void roundPlayed() {
+    roundsPlayed.increment();
+  }
+
+  /**
+   * Record the time a player took to choose a move
+   * @param histogram The player's histogram, from moveLatency(Player)
+   * @param nanos Time taken
+   */
+  public void recordMove(LatencyHistogram histogram, long nanos) {
+    histogram.record(nanos);
+    allMoveLatency.record(nanos);
+  }
+
+  /**
+   * Move latency histogram for the given player's type. Look this up once per game,
+   * rather than once per move.
+   * @param player A player
+   * @return LatencyHistogram, shared by all players of the same type
+   */
+  public LatencyHistogram moveLatency(Player player) {
+    return moveLatency.computeIfAbsent(player.getClass(), NEW_HISTOGRAM);
+  }
+
+  /** Histogram of outcome lookup times */
+  public LatencyHistogram winnerLatency() {
+    return winnerLatency;
+  }
+
+  /** Histogram of observer dispatch times, per round */
+  public LatencyHistogram observerLatency() {
+    return observerLatency;
+  }
+
+  /**
+   * Take a snapshot of all metrics
+   * @return MetricsSnapshot
+   */
+  public MetricsSnapshot snapshot() {
+
+    Map<String, LatencyHistogram.Snapshot> moves = new TreeMap<String, LatencyHistogram.Snapshot>();
+    for (Map.Entry<Class<?>, LatencyHistogram> entry : moveLatency.entrySet()) {
+      moves.put(entry.getKey().getSimpleName(), entry.getValue().snapshot());
+    }
+
+    long completed = gamesCompleted.sum();
+    long inFlight = gamesStarted.sum() - completed - gamesFailed.sum();
+    return new MetricsSnapshot(System.nanoTime(), roundsPlayed.sum(), inFlight, completed,
+        moves, winnerLatency.snapshot(), observerLatency.snapshot());
+  }
+
+  /**
+   * Register this registry with the platform MBean server.
+   * @param name Name distinguishing this registry from others
+   * @return ObjectName, under which the registry was registered
+   */
+  public synchronized ObjectName register(String name) {
+    try {
+      objectName = new ObjectName("org.puzzle.rps:type=EngineMetrics,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      return objectName;
+    } catch (JMException e) {
+      throw new RuntimeException("Unable to register engine metrics", e);
+    }
+  }
+
+  /**
+   * Remove this registry from the platform MBean server, if registered.
+   */
+  public synchronized void unregister() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+      objectName = null;
+    } catch (JMException e) {
+      throw new RuntimeException("Unable to unregister engine metrics", e);
+    }
+  }
+
+  @Override
+  public long getRoundsPlayed() {
+    return roundsPlayed.sum();
+  }
+
+  @Override
+  public synchronized double getRoundsPerSecond() {
+    long rounds = roundsPlayed.sum();
+    long now = System.nanoTime();
+    double rate = now > jmxTimestamp ? (rounds - jmxRounds) * 1e9 / (now - jmxTimestamp) : 0;
+    jmxRounds = rounds;
+    jmxTimestamp = now;
+    return rate;
+  }
+
+  @Override
+  public long getGamesInFlight() {
+    long completed = gamesCompleted.sum();
+    return gamesStarted.sum() - completed - gamesFailed.sum();
+  }
+
+  @Override
+  public long getGamesCompleted() {
+    return gamesCompleted.sum();
+  }
+
+  @Override
+  public long getGamesFailed() {
+    return gamesFailed.sum();
+  }
+
+  @Override
+  public long getMoveLatencyMeanNanos() {
+    return allMoveLatency.snapshot().meanNanos;
+  }
+
+  @Override
+  public long getMoveLatency99thPercentileNanos() {
+    return allMoveLatency.snapshot().p99Nanos;
+  }
+
+  @Override
+  public long getWinnerLatencyMeanNanos() {
+    return winnerLatency.snapshot().meanNanos;
+  }
+
+  @Override
+  public long getObserverDispatchMeanNanos() {
+    return observerLatency.snapshot().meanNanos;
+  }
+
+  @Override
+  public long getObserverDispatch99thPercentileNanos() {
+    return observerLatency.snapshot().p99Nanos;
+  }
+
+}
@@ -0,0 +1,39 @@
+package org.puzzle.rps.metrics;
+
+/**
+ * JMX management interface for EngineMetrics. All latencies are in nanoseconds,
+ * and percentiles are accurate to within a factor of two.
+ */
+public interface EngineMetricsMBean {
+
+  /** Total rounds played */
+  long getRoundsPlayed();
+
+  /** Rounds played per second, since the previous reading of this attribute */
+  double getRoundsPerSecond();
+
+  /** Games started but not yet completed */
+  long getGamesInFlight();
+
+  /** Games completed */
+  long getGamesCompleted();
+
+  /** Games stopped by an exception */
+  long getGamesFailed();
+
+  /** Mean time taken by players to choose a move, over all player types */
+  long getMoveLatencyMeanNanos();
+
+  /** 99th percentile time taken by players to choose a move, over all player types */
+  long getMoveLatency99thPercentileNanos();
+
+  /** Mean time taken to look up the outcome of a round */
+  long getWinnerLatencyMeanNanos();
+
+  /** Mean time taken to notify observers of a round */
+  long getObserverDispatchMeanNanos();
+
+  /** 99th percentile time taken to notify observers of a round */
+  long getObserverDispatch99thPercentileNanos();
+
+}
@@ -0,0 +1,103 @@
+package org.puzzle.rps.metrics;
+
+import org.puzzle.rps.support.StripedCounters;
+
+/**
+ * Concurrent latency histogram with power-of-two buckets: bucket b counts samples
+ * of at least 2^(b-1) and less than 2^b nanoseconds (bucket 0 counts zero). Counts are
+ * held in StripedCounters, so recording is lock free, contention free and never
+ * allocates; percentiles are accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKETS = 64;
+
+  // Bucket counts, followed by the sum of all samples
+  private static final int SUM = BUCKETS;
+
+  private final StripedCounters counters = new StripedCounters(BUCKETS + 1);
+
+  /**
+   * Record a sample
+   * @param nanos Latency, in nanoseconds; negative values are treated as zero
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    counters.increment( BUCKETS - Long.numberOfLeadingZeros(nanos) );
+    counters.add(SUM, nanos);
+  }
+
+  /**
+   * Take a snapshot of the histogram. Samples recorded during the call may or may
+   * not be included.
+   * @return Snapshot, summarising the samples
+   */
+  public Snapshot snapshot() {
+
+    long[] counts = counters.sums();
+
+    long count = 0;
+    for (int b=0; b<BUCKETS; b++) {
+      count += counts[b];
+    }
+
+    return new Snapshot(count, count == 0 ? 0 : counts[SUM] / count,
+        percentile(counts, count, 0.5), percentile(counts, count, 0.99), percentile(counts, count, 1.0));
+  }
+
+  /*
+   * Private helper method. Upper bound of the bucket holding the given percentile.
+   */
+  private static long percentile(long[] counts, long count, double fraction) {
+
+    long target = (long) Math.ceil(count * fraction);
+    long seen = 0;
+    for (int b=0; b<BUCKETS; b++) {
+      seen += counts[b];
+      if (seen >= target && seen > 0) {
+        return b == 0 ? 0 : (1L << b) - 1;
+      }
+    }
+    return 0;
+  }
+
+
+
+  /**
+   * Immutable summary of a latency histogram. Class state is publicly accessible
+   * here because instances are immutable. Percentiles are bucket upper bounds.
+   */
+  public static class Snapshot {
+
+    /** Number of samples */
+    public final long count;
+    /** Mean latency, in nanoseconds */
+    public final long meanNanos;
+    /** Median latency, in nanoseconds */
+    public final long p50Nanos;
+    /** 99th percentile latency, in nanoseconds */
+    public final long p99Nanos;
+    /** Maximum latency, in nanoseconds */
+    public final long maxNanos;
+
+    /**
+     * Public constructor
+     */
+    public Snapshot(long count, long meanNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+      this.count = count;
+      this.meanNanos = meanNanos;
+      this.p50Nanos = p50Nanos;
+      this.p99Nanos = p99Nanos;
+      this.maxNanos = maxNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("count=%d mean=%dns p50<=%dns p99<=%dns max<=%dns", count, meanNanos, p50Nanos, p99Nanos, maxNanos);
+    }
+
+  }
+
+}
@@ -0,0 +1,63 @@
+package org.puzzle.rps.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable point-in-time reading of EngineMetrics. Class state is publicly
+ * accessible here because instances are immutable. Counts are cumulative; rates
+ * are found by comparing two snapshots.
+ */
+public class MetricsSnapshot {
+
+  /** When the snapshot was taken, from System.nanoTime() */
+  public final long timestampNanos;
+  /** Total rounds played */
+  public final long roundsPlayed;
+  /** Games started but not yet completed */
+  public final long gamesInFlight;
+  /** Games completed */
+  public final long gamesCompleted;
+  /** Move latency, by player type (simple class name) */
+  public final Map<String, LatencyHistogram.Snapshot> moveLatency;
+  /** Outcome lookup latency */
+  public final LatencyHistogram.Snapshot winnerLatency;
+  /** Observer dispatch time, per round */
+  public final LatencyHistogram.Snapshot observerLatency;
+
+  /**
+   * Public constructor
+   */
+  public MetricsSnapshot(long timestampNanos, long roundsPlayed, long gamesInFlight, long gamesCompleted,
+      Map<String, LatencyHistogram.Snapshot> moveLatency, LatencyHistogram.Snapshot winnerLatency,
+      LatencyHistogram.Snapshot observerLatency) {
+    this.timestampNanos = timestampNanos;
+    this.roundsPlayed = roundsPlayed;
+    this.gamesInFlight = gamesInFlight;
+    this.gamesCompleted = gamesCompleted;
+    this.moveLatency = Collections.unmodifiableMap(moveLatency);
+    this.winnerLatency = winnerLatency;
+    this.observerLatency = observerLatency;
+  }
+
+  /**
+   * Throughput between an earlier snapshot and this one.
+   * @param earlier A snapshot taken before this one
+   * @return double, rounds played per second in between
+   */
+  public double roundsPerSecondSince(MetricsSnapshot earlier) {
+    long elapsed = timestampNanos - earlier.timestampNanos;
+    if (elapsed <= 0) {
+      return 0;
+    }
+    return (roundsPlayed - earlier.roundsPlayed) * 1e9 / elapsed;
+  }
+
+  @Override
+  public String toString() {
+    // Provide a human readable version of the snapshot
+    return String.format("rounds=%d inFlight=%d completed=%d winner[%s] observers[%s] moves%s",
+        roundsPlayed, gamesInFlight, gamesCompleted, winnerLatency, observerLatency, moveLatency);
+  }
+
+}
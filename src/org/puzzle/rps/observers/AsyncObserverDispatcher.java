@@ -0,0 +1,306 @@
+package org.puzzle.rps.observers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.puzzle.rps.GameObserver;
+import org.puzzle.rps.IndexedGameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+
+/**
+ * Asynchronous dispatch of game events. Register an instance of this class with a
+ * GameEngine in place of the observers themselves: events are published into a
+ * preallocated ring buffer on the game thread, and delivered to the observers by a
+ * dedicated consumer thread, so slow observers no longer hold up the game.
+ *
+ * <p>The ring buffer has a single consumer, so events reach every observer in exactly
+ * the order each game produced them. One dispatcher may be registered with several
+ * games, on any threads: slots are claimed atomically, and published in the order
+ * they were claimed, so events from different games are interleaved but never mixed
+ * up. Slots are parallel primitive arrays, so publishing an event never allocates, and
+ * are cleared of players once delivered. If the observers fall a whole buffer behind,
+ * the games wait for a free slot.
+ *
+ * <p>Observers implementing IndexedGameObserver receive index based events; any other
+ * observer receives tokens and Results, looked up on the consumer thread. Events may
+ * also be published by token and Result; they are looked up by index as they are
+ * published.
+ *
+ * <p>Call drain() to wait for all published events to be delivered, and shutdown()
+ * to stop the consumer thread once the dispatcher is no longer needed. Both should
+ * be called from a game thread, or once the games have finished.
+ */
+public class AsyncObserverDispatcher implements IndexedGameObserver {
+
+  // Event types
+  private static final int PLAY = 0;
+  private static final int ROUND_OUTCOME = 1;
+  private static final int GAME_OUTCOME = 2;
+
+  private final RuleInterpreter ruleInterpreter;
+  private final GameObserver[] observers;
+  private final WaitStrategy waitStrategy;
+  private final int batchSize;
+
+  // Ring buffer slots, as parallel arrays. Meaning of the int fields depends on event type.
+  private final int mask;
+  private final int[] types;
+  private final Player[] firstPlayers;
+  private final Player[] secondPlayers;
+  private final int[] firstValues;
+  private final int[] secondValues;
+  private final int[] outcomes;
+
+  // Sequence numbers: next to be claimed, next to be published, and next to be consumed
+  private final AtomicLong claimed = new AtomicLong();
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong consumed = new AtomicLong();
+
+  private volatile boolean running = true;
+  private volatile Throwable observerError;
+  private final Thread consumer;
+
+  /**
+   * Public constructor. Starts the consumer thread.
+   * @param rules The rules in play, for translating events for non-indexed observers
+   * @param capacity Number of slots in the ring buffer, must be a power of two
+   * @param waitStrategy How the consumer waits for events, and the producer for free slots
+   * @param batchSize Maximum number of events delivered before the consumer reports progress
+   * @param observers The observers to deliver events to
+   */
+  public AsyncObserverDispatcher(RuleInterpreter rules, int capacity, WaitStrategy waitStrategy,
+      int batchSize, GameObserver... observers) {
+
+    if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException( String.format("Ring buffer capacity '%d' is not a power of two", capacity) );
+    }
+    if (batchSize < 1) {
+      throw new IllegalArgumentException( String.format("Invalid batch size '%d'", batchSize) );
+    }
+
+    this.ruleInterpreter = rules;
+    this.observers = observers.clone();
+    this.waitStrategy = waitStrategy;
+    this.batchSize = batchSize;
+
+    mask = capacity - 1;
+    types = new int[capacity];
+    firstPlayers = new Player[capacity];
+    secondPlayers = new Player[capacity];
+    firstValues = new int[capacity];
+    secondValues = new int[capacity];
+    outcomes = new int[capacity];
+
+    consumer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        consume();
+      }
+    }, "observer-dispatch");
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  @Override
+  public void notifyPlay(Player player, int token) {
+    long sequence = claim();
+    int slot = (int) sequence & mask;
+    types[slot] = PLAY;
+    firstPlayers[slot] = player;
+    firstValues[slot] = token;
+    publish(sequence);
+  }
+
+  @Override
+  public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+    long sequence = claim();
+    int slot = (int) sequence & mask;
+    types[slot] = ROUND_OUTCOME;
+    firstPlayers[slot] = player1;
+    firstValues[slot] = p1Token;
+    secondPlayers[slot] = player2;
+    secondValues[slot] = p2Token;
+    outcomes[slot] = outcome;
+    publish(sequence);
+  }
+
+  @Override
+  public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+    long sequence = claim();
+    int slot = (int) sequence & mask;
+    types[slot] = GAME_OUTCOME;
+    firstPlayers[slot] = player1;
+    firstValues[slot] = p1Score;
+    secondPlayers[slot] = player2;
+    secondValues[slot] = p2Score;
+    publish(sequence);
+  }
+
+  @Override
+  public void notifyPlay(Player player, String token) {
+    // Published by index, as from the GameEngine
+    notifyPlay(player, ruleInterpreter.tokenIndex(token));
+  }
+
+  /**
+   * Publish a round outcome notified by Result, rather than by token index. A Result
+   * doesn't say who played which token, so the winning token is published as player
+   * one's and the losing token as player two's, with no players: indexed observers
+   * receive null players, and other observers the same Result.
+   * @param r The Result of the round
+   */
+  @Override
+  public void notifyRoundOutcome(Result r) {
+    int winner = ruleInterpreter.tokenIndex(r.winningToken);
+    int loser = ruleInterpreter.tokenIndex(r.losingToken);
+    notifyRoundOutcome(null, winner, null, loser, ruleInterpreter.outcome(winner, loser));
+  }
+
+  /**
+   * Wait until every event published so far has been delivered to the observers.
+   * @throws RuntimeException If an observer failed while handling an event
+   */
+  public void drain() {
+    int attempt = 0;
+    long end = published.get();
+    while (consumed.get() < end && consumer.isAlive()) {
+      waitStrategy.idle(attempt++);
+    }
+    checkObserverError();
+  }
+
+  /**
+   * Deliver any outstanding events, then stop the consumer thread.
+   * @throws RuntimeException If an observer failed while handling an event
+   */
+  public void shutdown() {
+    drain();
+    running = false;
+    try {
+      consumer.join();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Interrupted while stopping observer dispatch", e);
+    }
+    checkObserverError();
+  }
+
+  /*
+   * Private helper method. Claim the next sequence, then wait for its slot to be free.
+   */
+  private long claim() {
+    long sequence = claimed.getAndIncrement();
+    int attempt = 0;
+    while (sequence - consumed.get() > mask) {
+      if (!consumer.isAlive()) {
+        throw new IllegalStateException("Observer dispatch has been shut down");
+      }
+      waitStrategy.idle(attempt++);
+    }
+    return sequence;
+  }
+
+  /*
+   * Private helper method. Make the claimed slot visible to the consumer, once every
+   * earlier claim has been published. With a single game there is no wait, and an
+   * ordered write is enough, as only the owner of the next sequence writes it.
+   */
+  private void publish(long sequence) {
+    int attempt = 0;
+    while (published.get() != sequence) {
+      waitStrategy.idle(attempt++);
+    }
+    published.lazySet(sequence + 1);
+  }
+
+  /*
+   * Private helper method. The consumer loop: deliver events in batches until
+   * shut down, and the buffer is empty.
+   */
+  private void consume() {
+
+    long next = 0;
+    int attempt = 0;
+
+    while (running || next < published.get()) {
+
+      long available = published.get();
+      if (available == next) {
+        // Idle, without letting the attempt count wrap round during long quiet spells
+        waitStrategy.idle(attempt);
+        if (attempt < Integer.MAX_VALUE) {
+          attempt++;
+        }
+        continue;
+      }
+      attempt = 0;
+
+      long end = Math.min(available, next + batchSize);
+      while (next < end) {
+        int slot = (int) next & mask;
+        deliver(slot);
+        // Don't keep players alive once their events are delivered
+        firstPlayers[slot] = null;
+        secondPlayers[slot] = null;
+        next++;
+      }
+
+      // Report progress, freeing the delivered slots for the producer
+      consumed.lazySet(next);
+    }
+  }
+
+  /*
+   * Private helper method. Deliver the event in the given slot to every observer.
+   * Observer failures are recorded rather than allowed to stop the consumer.
+   */
+  private void deliver(int slot) {
+
+    for (int i=0; i<observers.length; i++) {
+      try {
+        deliver(slot, observers[i]);
+      } catch (Throwable t) {
+        if (observerError == null) {
+          observerError = t;
+        }
+      }
+    }
+  }
+
+  private void deliver(int slot, GameObserver obs) {
+
+    switch (types[slot]) {
+
+      case PLAY:
+        if (obs instanceof IndexedGameObserver) {
+          ((IndexedGameObserver) obs).notifyPlay(firstPlayers[slot], firstValues[slot]);
+        } else {
+          obs.notifyPlay(firstPlayers[slot], ruleInterpreter.token(firstValues[slot]));
+        }
+        break;
+
+      case ROUND_OUTCOME:
+        if (obs instanceof IndexedGameObserver) {
+          ((IndexedGameObserver) obs).notifyRoundOutcome(firstPlayers[slot], firstValues[slot],
+              secondPlayers[slot], secondValues[slot], outcomes[slot]);
+        } else {
+          obs.notifyRoundOutcome( ruleInterpreter.winner(firstValues[slot], secondValues[slot]) );
+        }
+        break;
+
+      case GAME_OUTCOME:
+        obs.notifyGameOutcome(firstPlayers[slot], firstValues[slot], secondPlayers[slot], secondValues[slot]);
+        break;
+
+      default:
+        throw new IllegalStateException("Unexpected event type encountered");
+    }
+  }
+
+  private void checkObserverError() {
+    if (observerError != null) {
+      throw new RuntimeException("Observer failed during asynchronous dispatch", observerError);
+    }
+  }
+
+}
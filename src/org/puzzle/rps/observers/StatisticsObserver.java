@@ -0,0 +1,293 @@
+package org.puzzle.rps.observers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.puzzle.rps.IndexedGameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.support.StripedCounters;
+
+/**
+ * Observer maintaining live statistics over any number of games: how often each
+ * token is played, and won, lost or drawn with; and for each player, their round
+ * record, current and longest streaks, and their record against each opponent.
+ *
+ * <p>A single instance may be registered with thousands of concurrently running
+ * GameEngines. Token statistics are held in striped primitive counters indexed by
+ * token, so engines on different threads never contend; player statistics are found
+ * through concurrent maps, and recorded in LongAdders. After a player's first round,
+ * recording an event takes no locks and allocates nothing.
+ *
+ * <p>Streaks are updated by the thread running the player's game, so a player object
+ * should take part in one game at a time - as is the case for all players created by
+ * a PlayerFactory. Reads may run concurrently with updates, and see live values.
+ */
+public class StatisticsObserver implements IndexedGameObserver {
+
+  private final RuleInterpreter ruleInterpreter;
+  private final int tokenCount;
+
+  // Token statistics: plays, wins, losses and draws, in consecutive blocks of tokenCount
+  private final StripedCounters tokenCounters;
+
+  private final LongAdder games = new LongAdder();
+  private final ConcurrentMap<Player, PlayerStatistics> players = new ConcurrentHashMap<Player, PlayerStatistics>();
+
+  private static final Function<Player, PlayerStatistics> NEW_PLAYER = new Function<Player, PlayerStatistics>() {
+    @Override
+    public PlayerStatistics apply(Player p) {
+      return new PlayerStatistics();
+    }
+  };
+
+  /**
+   * Public constructor
+   * @param rules The rules in play; token statistics are indexed by its symbol table
+   */
+  public StatisticsObserver(RuleInterpreter rules) {
+    ruleInterpreter = rules;
+    tokenCount = rules.getTokenCount();
+    tokenCounters = new StripedCounters(4 * tokenCount);
+  }
+
+  @Override
+  public void notifyPlay(Player player, int token) {
+    tokenCounters.increment(token);
+  }
+
+  @Override
+  public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+
+    PlayerStatistics p1Stats = statsFor(player1);
+    PlayerStatistics p2Stats = statsFor(player2);
+
+    countRound(p1Token, p2Token, outcome);
+    switch (RuleInterpreter.side(outcome)) {
+      case RuleInterpreter.FIRST_WINS:
+        p1Stats.won(player2);
+        p2Stats.lost(player1);
+        break;
+      case RuleInterpreter.SECOND_WINS:
+        p1Stats.lost(player2);
+        p2Stats.won(player1);
+        break;
+      default:
+        p1Stats.drew(player2);
+        p2Stats.drew(player1);
+    }
+  }
+
+  @Override
+  public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+    games.increment();
+  }
+
+  @Override
+  public void notifyPlay(Player player, String token) {
+    // The GameEngine sends index based events to indexed observers
+    notifyPlay(player, ruleInterpreter.tokenIndex(token));
+  }
+
+  /**
+   * Record a round outcome notified by Result, rather than by token index. A Result
+   * doesn't say which player played which token, so only the token statistics are
+   * updated; player statistics are left as they are.
+   * @param r The Result of the round
+   */
+  @Override
+  public void notifyRoundOutcome(Result r) {
+    int winner = ruleInterpreter.tokenIndex(r.winningToken);
+    int loser = ruleInterpreter.tokenIndex(r.losingToken);
+    countRound(winner, loser, ruleInterpreter.outcome(winner, loser));
+  }
+
+  /*
+   * Private helper method. Count a round's outcome against the tokens played.
+   */
+  private void countRound(int p1Token, int p2Token, int outcome) {
+    switch (RuleInterpreter.side(outcome)) {
+      case RuleInterpreter.FIRST_WINS:
+        tokenCounters.increment(tokenCount + p1Token);
+        tokenCounters.increment(2 * tokenCount + p2Token);
+        break;
+      case RuleInterpreter.SECOND_WINS:
+        tokenCounters.increment(tokenCount + p2Token);
+        tokenCounters.increment(2 * tokenCount + p1Token);
+        break;
+      default:
+        tokenCounters.increment(3 * tokenCount + p1Token);
+        tokenCounters.increment(3 * tokenCount + p2Token);
+    }
+  }
+
+  /** Number of games completed */
+  public long getGames() {
+    return games.sum();
+  }
+
+  /** Number of times the given token has been played */
+  public long getPlays(int token) {
+    return tokenCounters.sum(token);
+  }
+
+  /** Number of rounds won by the given token */
+  public long getWins(int token) {
+    return tokenCounters.sum(tokenCount + token);
+  }
+
+  /** Number of rounds lost by the given token */
+  public long getLosses(int token) {
+    return tokenCounters.sum(2 * tokenCount + token);
+  }
+
+  /** Number of rounds in which the given token was drawn with; a token drawing with itself counts twice */
+  public long getDraws(int token) {
+    return tokenCounters.sum(3 * tokenCount + token);
+  }
+
+  /**
+   * Statistics for the given player
+   * @param player A player
+   * @return PlayerStatistics, or null if the player has not yet completed a round
+   */
+  public PlayerStatistics getPlayerStatistics(Player player) {
+    return players.get(player);
+  }
+
+  /*
+   * Private helper method. Find a player's statistics, creating them on first sight.
+   * Lookups for known players don't allocate.
+   */
+  private PlayerStatistics statsFor(Player player) {
+    PlayerStatistics stats = players.get(player);
+    if (stats == null) {
+      stats = players.computeIfAbsent(player, NEW_PLAYER);
+    }
+    return stats;
+  }
+
+
+
+  /**
+   * Live statistics for one player.
+   */
+  public static class PlayerStatistics {
+
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder losses = new LongAdder();
+    private final LongAdder draws = new LongAdder();
+
+    // Streaks: positive for consecutive wins, negative for consecutive losses
+    private volatile int currentStreak;
+    private volatile int longestWinStreak;
+    private volatile int longestLossStreak;
+
+    private final ConcurrentMap<Player, PairingStatistics> opponents = new ConcurrentHashMap<Player, PairingStatistics>();
+
+    private static final Function<Player, PairingStatistics> NEW_PAIRING = new Function<Player, PairingStatistics>() {
+      @Override
+      public PairingStatistics apply(Player p) {
+        return new PairingStatistics();
+      }
+    };
+
+    /** Rounds won */
+    public long getWins() {
+      return wins.sum();
+    }
+
+    /** Rounds lost */
+    public long getLosses() {
+      return losses.sum();
+    }
+
+    /** Rounds drawn */
+    public long getDraws() {
+      return draws.sum();
+    }
+
+    /** Current streak: consecutive wins if positive, consecutive losses if negative, zero after a draw */
+    public int getCurrentStreak() {
+      return currentStreak;
+    }
+
+    /** Longest run of consecutive wins */
+    public int getLongestWinStreak() {
+      return longestWinStreak;
+    }
+
+    /** Longest run of consecutive losses */
+    public int getLongestLossStreak() {
+      return longestLossStreak;
+    }
+
+    /** Rounds won against the given opponent */
+    public long getWins(Player opponent) {
+      PairingStatistics pairing = opponents.get(opponent);
+      return pairing == null ? 0 : pairing.wins.sum();
+    }
+
+    /** Rounds lost against the given opponent */
+    public long getLosses(Player opponent) {
+      PairingStatistics pairing = opponents.get(opponent);
+      return pairing == null ? 0 : pairing.losses.sum();
+    }
+
+    /** Rounds drawn against the given opponent */
+    public long getDraws(Player opponent) {
+      PairingStatistics pairing = opponents.get(opponent);
+      return pairing == null ? 0 : pairing.draws.sum();
+    }
+
+    private void won(Player opponent) {
+      wins.increment();
+      pairingWith(opponent).wins.increment();
+
+      int streak = currentStreak > 0 ? currentStreak + 1 : 1;
+      currentStreak = streak;
+      if (streak > longestWinStreak) {
+        longestWinStreak = streak;
+      }
+    }
+
+    private void lost(Player opponent) {
+      losses.increment();
+      pairingWith(opponent).losses.increment();
+
+      int streak = currentStreak < 0 ? currentStreak - 1 : -1;
+      currentStreak = streak;
+      if (-streak > longestLossStreak) {
+        longestLossStreak = -streak;
+      }
+    }
+
+    private void drew(Player opponent) {
+      draws.increment();
+      pairingWith(opponent).draws.increment();
+      currentStreak = 0;
+    }
+
+    private PairingStatistics pairingWith(Player opponent) {
+      PairingStatistics pairing = opponents.get(opponent);
+      if (pairing == null) {
+        pairing = opponents.computeIfAbsent(opponent, NEW_PAIRING);
+      }
+      return pairing;
+    }
+
+  }
+
+  /*
+   * Record of one player against one opponent
+   */
+  private static class PairingStatistics {
+    final LongAdder wins = new LongAdder();
+    final LongAdder losses = new LongAdder();
+    final LongAdder draws = new LongAdder();
+  }
+
+}
@@ -0,0 +1,56 @@
+package org.puzzle.rps.observers;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategies for waiting on a ring buffer, used both by consumers waiting for
+ * events and by a producer waiting for free slots. Each trades latency against
+ * CPU use differently.
+ */
+public enum WaitStrategy {
+
+  /** Spin continuously. Lowest latency, but burns a core per waiting thread. */
+  BUSY_SPIN {
+    @Override
+    public void idle(int attempt) {
+      Thread.onSpinWait();
+    }
+  },
+
+  /** Spin briefly, then yield the processor between checks. */
+  YIELDING {
+    @Override
+    public void idle(int attempt) {
+      if (attempt < SPIN_TRIES) {
+        Thread.onSpinWait();
+      } else {
+        Thread.yield();
+      }
+    }
+  },
+
+  /** Spin, then yield, then park briefly between checks. Gentlest on the CPU. */
+  SLEEPING {
+    @Override
+    public void idle(int attempt) {
+      if (attempt < SPIN_TRIES) {
+        Thread.onSpinWait();
+      } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(PARK_NANOS);
+      }
+    }
+  };
+
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 100;
+  private static final long PARK_NANOS = 100000;
+
+  /**
+   * Wait a little, before checking the ring buffer again.
+   * @param attempt How many times the caller has already waited, since it last made progress
+   */
+  public abstract void idle(int attempt);
+
+}
@@ -0,0 +1,24 @@
+package org.puzzle.rps.players;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface for players which supply their moves asynchronously - players waiting on
+ * a network peer, a person, or a long computation - so that the GameEngine can ask
+ * both players at once, and stop waiting at a deadline.
+ * 
+ * <p>When the engine has a move deadline set, it asks an AsyncPlayer for its move
+ * with requestMove(), and never blocks a thread on it; plain players are called on a
+ * shared pool instead. Without a deadline, moves are taken from getMove() as usual,
+ * which implementations may provide by waiting on requestMove().
+ */
+public interface AsyncPlayer extends Player {
+
+  /**
+   * Ask for the player's next move, without waiting for it. The engine makes at most
+   * one request at a time of each player.
+   * @return CompletableFuture of String, completed with one of the valid game tokens
+   */
+  public CompletableFuture<String> requestMove();
+
+}
@@ -19,7 +19,7 @@ import java.util.List;
  * than ideal. I was considering refactoring the code to provide a cleaner
  * separation of UI versus input logic, but unfortunately ran out of time.
  */
-public class HumanConsolePlayer implements Player {
+public class HumanConsolePlayer implements IndexedPlayer {
 
   /* Ref: "Futurama: The Birdbot of Ice-Catraz" */
   private static String HUMAN_NAME = "Wiggles";
@@ -45,6 +45,11 @@ public class HumanConsolePlayer implements Player {
 
   @Override
   public String getMove() {
+    return validTokens.get( getMoveIndex() );
+  }
+
+  @Override
+  public int getMoveIndex() {
 
     // Prepare variable for user choice. Default is invalid to ensure programmatic 
     // errors are visible.
@@ -87,7 +92,12 @@ public class HumanConsolePlayer implements Player {
       throw new RuntimeException("IO Exception detected while requesting human player move.");
     } 
 
-    return validTokens.get(choiceIdx);
+    return choiceIdx;
+  }
+
+  @Override
+  public List<String> getTokenList() {
+    return validTokens;
   }
 
   @Override
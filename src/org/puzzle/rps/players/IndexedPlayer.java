@@ -0,0 +1,28 @@
+package org.puzzle.rps.players;
+
+import java.util.List;
+
+/**
+ * Interface for players which choose their moves by token index, rather than by
+ * token. Indices refer to positions in the player's token list.
+ * 
+ * <p>When a player's token list matches the symbol table of the rules in play
+ * (RuleInterpreter.getTokenList()), the GameEngine uses the index directly and
+ * never touches the String form of the move. getMove() remains available as an
+ * adapter, for clients that work with tokens.
+ */
+public interface IndexedPlayer extends Player {
+
+  /**
+   * Get the player's next move
+   * @return int, the index of one of the valid game tokens
+   */
+  public int getMoveIndex();
+
+  /**
+   * Get the tokens that this player's move indices refer to
+   * @return List of String, the valid game tokens
+   */
+  public List<String> getTokenList();
+
+}
@@ -0,0 +1,269 @@
+package org.puzzle.rps.players;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.puzzle.rps.IndexedGameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.RuleInterpreter;
+
+/**
+ * Adaptive computer player. Models the opponent's move sequence as an order-k
+ * Markov chain - how often each token follows each sequence of k opponent moves -
+ * and plays the best response to the opponent's most likely next move.
+ *
+ * <p>Transition counts are held in one flat int array of (tokens^k) x tokens cells,
+ * so memory is fixed at construction regardless of game length. Choosing a move scans
+ * a single row of counts, and best responses are looked up from the rules' outcome
+ * table once, up front, so each move costs O(tokens).
+ *
+ * <p>The player learns the opponent's moves as a GameObserver; the GameEngine
+ * registers players that are observers automatically. It must play under the same
+ * rules it was created with. Until it has seen k opponent moves, or when it has no
+ * history for the current context, it plays randomly.
+ *
+ * <p>Its state - transition counts, current context and random moves - can be saved
+ * with a game checkpoint, and restored into a player created with the same rules and
+ * order.
+ */
+public class MarkovComputerPlayer implements IndexedPlayer, IndexedGameObserver, ResettablePlayer, ResumablePlayer {
+
+  /** Default order of the Markov chain: predict from the opponent's last two moves */
+  public static final int DEFAULT_ORDER = 2;
+
+  /** Limit on the number of transition counts, and so on memory */
+  public static final int MAX_COUNTS = 1 << 22;
+
+  /* Ref: "The Hitchhiker's Guide to the Galaxy" */
+  private static String NAME_PREFIX = "Marvin";
+  private String helloMyNameIs;
+
+  private final List<String> validTokens;
+  private final int tokenCount;
+  private PlayerRandom random;
+
+  // Best response to each token: a token that beats it, or failing that draws with it
+  private final int[] bestResponse;
+
+  // Transition counts, one row of tokenCount cells per context
+  private final int order;
+  private final int contexts;
+  private final int[] counts;
+
+  // Current context: the opponent's last 'order' moves, as a base-tokenCount number
+  private int context;
+  private int movesSeen;
+
+  /**
+   * Public constructor
+   * @param rules The rules in play
+   * @param order Number of previous opponent moves to predict from
+   * @throws IllegalArgumentException If the transition table would exceed MAX_COUNTS
+   */
+  public MarkovComputerPlayer(RuleInterpreter rules, int order) {
+    this(rules, order, new PlayerRandom());
+  }
+
+  /**
+   * Public constructor, for a player whose random moves are repeatable
+   * @param rules The rules in play
+   * @param order Number of previous opponent moves to predict from
+   * @param seed Seed for the player's random moves
+   * @throws IllegalArgumentException If the transition table would exceed MAX_COUNTS
+   */
+  public MarkovComputerPlayer(RuleInterpreter rules, int order, long seed) {
+    this(rules, order, new PlayerRandom(seed));
+  }
+
+  /*
+   * Private constructor, with the source of the player's random moves
+   */
+  private MarkovComputerPlayer(RuleInterpreter rules, int order, PlayerRandom random) {
+
+    this.random = random;
+
+    validTokens = rules.getTokenList();
+    tokenCount = validTokens.size();
+
+    if (order < 1) {
+      throw new IllegalArgumentException( String.format("Invalid Markov order '%d'", order) );
+    }
+
+    // Size the transition table, refusing anything beyond the memory limit
+    long contextCount = 1;
+    for (int i=0; i<order; i++) {
+      contextCount *= tokenCount;
+      if (contextCount * tokenCount > MAX_COUNTS) {
+        throw new IllegalArgumentException( String.format(
+            "Markov order %d over %d tokens needs more than %d transition counts", order, tokenCount, MAX_COUNTS) );
+      }
+    }
+
+    this.order = order;
+    this.contexts = (int) contextCount;
+    this.counts = new int[contexts * tokenCount];
+
+    // Work out best responses from the outcome table
+    bestResponse = new int[tokenCount];
+    for (int opp=0; opp<tokenCount; opp++) {
+      bestResponse[opp] = opp;
+      for (int t=0; t<tokenCount; t++) {
+        if (RuleInterpreter.side( rules.outcome(t, opp) ) == RuleInterpreter.FIRST_WINS) {
+          bestResponse[opp] = t;
+          break;
+        }
+      }
+    }
+
+    // Work out a name for this instance
+    helloMyNameIs = String.format("%s %d", NAME_PREFIX, random.nextInt(10000));
+  }
+
+  @Override
+  public int getMoveIndex() {
+
+    if (movesSeen < order) {
+      return random.nextInt(tokenCount);
+    }
+
+    // Predict the opponent's most likely next move from this context
+    int row = context * tokenCount;
+    int predicted = -1;
+    int best = 0;
+    for (int t=0; t<tokenCount; t++) {
+      if (counts[row + t] > best) {
+        best = counts[row + t];
+        predicted = t;
+      }
+    }
+
+    if (predicted < 0) {
+      return random.nextInt(tokenCount);
+    }
+    return bestResponse[predicted];
+  }
+
+  @Override
+  public String getMove() {
+    return validTokens.get( getMoveIndex() );
+  }
+
+  @Override
+  public List<String> getTokenList() {
+    return validTokens;
+  }
+
+  @Override
+  public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+
+    // Only interested in our own games; learn the opponent's move
+    if (player1 == this) {
+      learn(p2Token);
+    } else if (player2 == this) {
+      learn(p1Token);
+    }
+  }
+
+  @Override
+  public void reset(long seed) {
+    Arrays.fill(counts, 0);
+    movesSeen = 0;
+    context = 0;
+    random = new PlayerRandom(seed);
+  }
+
+  @Override
+  public int getStateSize() {
+    return 4 * 4 + 8 + 4 * counts.length;
+  }
+
+  @Override
+  public void saveState(ByteBuffer out) {
+    out.putInt(order).putInt(tokenCount).putInt(context).putInt(movesSeen);
+    out.putLong( random.getState() );
+
+    // Counts are the bulk of the state: copy them in one go, through an int view
+    out.asIntBuffer().put(counts);
+    out.position(out.position() + 4 * counts.length);
+  }
+
+  @Override
+  public void restoreState(ByteBuffer in) {
+
+    int savedOrder = in.getInt();
+    int savedTokens = in.getInt();
+    if (savedOrder != order || savedTokens != tokenCount) {
+      throw new IllegalStateException( String.format(
+          "Saved state is for Markov order %d over %d tokens, not order %d over %d",
+          savedOrder, savedTokens, order, tokenCount) );
+    }
+    if (in.remaining() < getStateSize() - 8) {
+      throw new IllegalStateException( String.format("Invalid saved state size '%d'", in.remaining() + 8) );
+    }
+
+    context = in.getInt();
+    movesSeen = in.getInt();
+    random.setState( in.getLong() );
+    in.asIntBuffer().get(counts);
+    in.position(in.position() + 4 * counts.length);
+  }
+
+  @Override
+  public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+    // Keep what has been learnt, but start the next game's context afresh
+    if (player1 == this || player2 == this) {
+      movesSeen = 0;
+      context = 0;
+    }
+  }
+
+  @Override
+  public void notifyPlay(Player player, int token) {
+    // Moves are learnt from round outcomes, which say who played what against whom
+  }
+
+  @Override
+  public void notifyPlay(Player player, String token) {
+    // The GameEngine sends index based events to indexed observers
+  }
+
+  @Override
+  public void notifyRoundOutcome(Result r) {
+    // The GameEngine sends index based events to indexed observers
+  }
+
+  /*
+   * Private helper method. Count the transition from the current context to the
+   * opponent's move, then move on to the next context.
+   */
+  private void learn(int oppMove) {
+
+    if (movesSeen >= order) {
+      int cell = context * tokenCount + oppMove;
+      if (++counts[cell] == Integer.MAX_VALUE) {
+        age(context * tokenCount);
+      }
+    } else {
+      movesSeen++;
+    }
+
+    context = (context * tokenCount + oppMove) % contexts;
+  }
+
+  /*
+   * Private helper method. Halve every count in a row, keeping counts bounded
+   * while preserving their proportions.
+   */
+  private void age(int row) {
+    for (int t=0; t<tokenCount; t++) {
+      counts[row + t] >>= 1;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return helloMyNameIs;
+  }
+
+}
@@ -4,9 +4,9 @@ package org.puzzle.rps.players;
  * Interface for Players. 
  * 
  * <p>Currently, there is only one method on this interface, for getting player moves.
- * A useful future enhancement will be to extend the GameObserver interface so that 
- * all game events are propagated to players. This will allow more sophisticated 
- * robots to be built.
+ * Players which also implement GameObserver are registered with the GameEngine for 
+ * every game they take part in, so that all game events are propagated to them. This 
+ * allows more sophisticated robots to be built.
  */
 public interface Player {
 
@@ -1,21 +1,52 @@
 package org.puzzle.rps.players;
 
 import java.util.List;
+import java.util.SplittableRandom;
+
+import org.puzzle.rps.RuleInterpreter;
 
 /** 
  * Factory for players.
+ * 
+ * <p>Computer players can also be had from a PlayerPool, which reuses them from
+ * game to game. Seeds for pooled players come from the factory's seed stream: a
+ * SplittableRandom, seeded at random unless a seed is given.
  */
 public class PlayerFactory {
 
   /**
-   * An enum for player types. Currently just two types - Human, and Random Robot.
-   * Possible extensions include heuristic based robots, networked humans etc.
+   * An enum for player types. Currently three types - Human, Random Robot, and an
+   * Adaptive Robot which learns its opponent's habits. Possible extensions include
+   * networked humans etc.
    */
   public enum PlayerType {
     HUMAN, 
-    RANDOM_COMPUTER
+    RANDOM_COMPUTER,
+    ADAPTIVE_COMPUTER
   }
   
+  // Root of the seed stream for pools; split once per pool
+  private final SplittableRandom seeds;
+
+  /**
+   * Public constructor
+   */
+  public PlayerFactory() {
+    this(new SplittableRandom());
+  }
+
+  /**
+   * Public constructor, for a factory whose pools seed their players repeatably
+   * @param seed Seed for the factory's seed stream
+   */
+  public PlayerFactory(long seed) {
+    this(new SplittableRandom(seed));
+  }
+
+  private PlayerFactory(SplittableRandom seeds) {
+    this.seeds = seeds;
+  }
+
   /**
    * Create an instance of the given player type, providing them with the 
    * given list of tokens.
@@ -30,11 +61,64 @@ public class PlayerFactory {
         return new HumanConsolePlayer(knownTokens, System.in, System.out);
       case RANDOM_COMPUTER:
         return new RandomComputerPlayer(knownTokens);
+      case ADAPTIVE_COMPUTER:
+        throw new IllegalArgumentException("Adaptive players need the rules in play; create them from a RuleInterpreter");
       default:
         throw new RuntimeException("Unexpected player type encountered");
     }
     
   }
+
+  /**
+   * Create an instance of the given player type, to play by the given rules.
+   * Supports all player types.
+   * @param type Instance of PlayerType
+   * @param rules The rules in play; the player uses its tokens
+   * @return
+   */
+  public Player createPlayer(PlayerType type, RuleInterpreter rules) {
+    
+    if (type == PlayerType.ADAPTIVE_COMPUTER) {
+      return new MarkovComputerPlayer(rules, MarkovComputerPlayer.DEFAULT_ORDER);
+    }
+    return createPlayer(type, rules.getTokenList());
+  }
+
+  /**
+   * Create an instance of the given computer player type, to play by the given
+   * rules, with its random moves seeded.
+   * @param type Instance of PlayerType; not HUMAN
+   * @param rules The rules in play; the player uses its tokens
+   * @param seed Seed for the player's random moves
+   * @return ResettablePlayer
+   */
+  public ResettablePlayer createPlayer(PlayerType type, RuleInterpreter rules, long seed) {
+    
+    switch (type) {
+      case RANDOM_COMPUTER:
+        return new RandomComputerPlayer(rules.getTokenList(), seed);
+      case ADAPTIVE_COMPUTER:
+        return new MarkovComputerPlayer(rules, MarkovComputerPlayer.DEFAULT_ORDER, seed);
+      default:
+        throw new IllegalArgumentException( String.format("Players of type '%s' can't be seeded", type) );
+    }
+  }
+
+  /**
+   * Create a pool of reusable players of the given computer player type. Each pool
+   * has its own part of the factory's seed stream.
+   * @param type Instance of PlayerType; not HUMAN
+   * @param rules The rules in play
+   * @return PlayerPool
+   */
+  public PlayerPool createPool(PlayerType type, RuleInterpreter rules) {
+    
+    SplittableRandom poolSeeds;
+    synchronized (seeds) {
+      poolSeeds = seeds.split();
+    }
+    return new PlayerPool(this, type, rules, poolSeeds, PlayerPool.DEFAULT_MAX_IDLE);
+  }
   
 
 }
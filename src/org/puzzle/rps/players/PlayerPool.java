@@ -0,0 +1,131 @@
+package org.puzzle.rps.players;
+
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+
+/**
+ * Pool of reusable computer players of one type, for workloads that play very many
+ * short games, such as tournaments. Players are acquired for a game and released
+ * after it; each acquired player is reset, and reseeded from the pool's seed stream,
+ * so a reused player is indistinguishable from a new one.
+ *
+ * <p>Idle players and seeds are both held per thread - each thread has its own free
+ * list, and its own SplittableRandom split from the pool's - so acquiring and
+ * releasing never contend, and never lock once a thread has its first seed. A player
+ * released on another thread simply joins that thread's free list.
+ *
+ * <p>A pool is also a Supplier of players, so it can be entered into a Tournament
+ * directly; the tournament releases players back to the pool after each game.
+ */
+public class PlayerPool implements Supplier<Player> {
+
+  /** Default limit on the idle players kept by each thread */
+  public static final int DEFAULT_MAX_IDLE = 64;
+
+  private final PlayerFactory factory;
+  private final PlayerType type;
+  private final RuleInterpreter rules;
+  private final int maxIdle;
+
+  // Root of the seed stream; split once for each thread that uses the pool
+  private final SplittableRandom seeds;
+
+  private final ThreadLocal<SplittableRandom> threadSeeds = new ThreadLocal<SplittableRandom>() {
+    @Override
+    protected SplittableRandom initialValue() {
+      synchronized (seeds) {
+        return seeds.split();
+      }
+    }
+  };
+
+  private final ThreadLocal<ArrayDeque<ResettablePlayer>> idle = new ThreadLocal<ArrayDeque<ResettablePlayer>>() {
+    @Override
+    protected ArrayDeque<ResettablePlayer> initialValue() {
+      return new ArrayDeque<ResettablePlayer>();
+    }
+  };
+
+  private final LongAdder created = new LongAdder();
+
+  /**
+   * Package constructor; pools are created by a PlayerFactory
+   * @param factory Factory to create new players with
+   * @param type Type of player to pool
+   * @param rules The rules the players play by
+   * @param seeds Seed stream for the pool
+   * @param maxIdle Limit on the idle players kept by each thread
+   */
+  PlayerPool(PlayerFactory factory, PlayerType type, RuleInterpreter rules, SplittableRandom seeds, int maxIdle) {
+
+    if (type == PlayerType.HUMAN) {
+      throw new IllegalArgumentException("Human players can't be pooled");
+    }
+    if (maxIdle < 0) {
+      throw new IllegalArgumentException( String.format("Invalid idle limit '%d'", maxIdle) );
+    }
+
+    this.factory = factory;
+    this.type = type;
+    this.rules = rules;
+    this.seeds = seeds;
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * Take a player from the pool, creating one if this thread has none idle.
+   * @return Player, freshly reset
+   */
+  public Player acquire() {
+
+    long seed = threadSeeds.get().nextLong();
+
+    ResettablePlayer player = idle.get().poll();
+    if (player == null) {
+      created.increment();
+      return factory.createPlayer(type, rules, seed);
+    }
+
+    player.reset(seed);
+    return player;
+  }
+
+  /**
+   * Return a player to the pool, once its game is over. Beyond this thread's idle
+   * limit, the player is dropped.
+   * @param player A player acquired from this pool
+   * @throws IllegalArgumentException If the player can't be pooled
+   */
+  public void release(Player player) {
+
+    if (!(player instanceof ResettablePlayer)) {
+      throw new IllegalArgumentException( String.format("Player '%s' can't be pooled", player) );
+    }
+
+    ArrayDeque<ResettablePlayer> free = idle.get();
+    if (free.size() < maxIdle) {
+      free.push( (ResettablePlayer) player );
+    }
+  }
+
+  @Override
+  public Player get() {
+    return acquire();
+  }
+
+  /** Type of the pooled players */
+  public PlayerType getType() {
+    return type;
+  }
+
+  /** Number of players the pool has created, as opposed to reused */
+  public long getCreatedCount() {
+    return created.sum();
+  }
+
+}
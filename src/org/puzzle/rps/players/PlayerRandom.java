@@ -0,0 +1,75 @@
+package org.puzzle.rps.players;
+
+import java.util.SplittableRandom;
+
+/**
+ * Source of computer players' random moves, whose state can be saved and restored.
+ *
+ * <p>This is the SplitMix64 generator behind SplittableRandom, and a seeded instance
+ * returns exactly what new SplittableRandom(seed) would; but where SplittableRandom
+ * keeps its state to itself, here it is a single long, so a player's moves can be
+ * checkpointed part way through a game and carried on after a restart.
+ *
+ * <p>Not thread safe: each player has its own instance.
+ */
+class PlayerRandom {
+
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private long state;
+
+  /**
+   * Package constructor, with a random seed from SplittableRandom's own seed sequence
+   */
+  PlayerRandom() {
+    this( new SplittableRandom().nextLong() );
+  }
+
+  /**
+   * Package constructor
+   * @param seed Seed, as for SplittableRandom
+   */
+  PlayerRandom(long seed) {
+    state = seed;
+  }
+
+  /**
+   * Next random value in a range, as SplittableRandom.nextInt(bound)
+   * @param bound Upper bound, exclusive; must be positive
+   * @return int, between zero and bound - 1
+   */
+  int nextInt(int bound) {
+
+    if (bound <= 0) {
+      throw new IllegalArgumentException( String.format("Invalid bound '%d'", bound) );
+    }
+
+    int r = mix32(state += GOLDEN_GAMMA);
+    int m = bound - 1;
+    if ((bound & m) == 0) {
+      return r & m;
+    }
+    // Reject values from the uneven top of the range
+    int u = r >>> 1;
+    while (u + m - (r = u % bound) < 0) {
+      u = mix32(state += GOLDEN_GAMMA) >>> 1;
+    }
+    return r;
+  }
+
+  /** The generator's state, to be restored with setState() */
+  long getState() {
+    return state;
+  }
+
+  /** Restore the generator's state, as saved by getState() */
+  void setState(long state) {
+    this.state = state;
+  }
+
+  private static int mix32(long z) {
+    z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+    return (int) (((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+  }
+
+}
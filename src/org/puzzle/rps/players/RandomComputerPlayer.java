@@ -1,18 +1,23 @@
 package org.puzzle.rps.players;
 
+import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.Random;
 
 /**
  * Computer based implementation of the Player interface, this class
  * uses a purely random means of chosing it's next move.
+ * 
+ * <p>Each instance has its own PlayerRandom. Unseeded instances take their seeds
+ * from SplittableRandom's own seed sequence, so instances created together, on any
+ * threads, still play differently; seeded instances repeat their moves exactly, and
+ * a checkpointed player carries on exactly where it left off.
  */
-public class RandomComputerPlayer implements Player {
+public class RandomComputerPlayer implements IndexedPlayer, ResettablePlayer, ResumablePlayer {
   
   private static String NAME_PREFIX = "Robby";  
   private String helloMyNameIs;   
 
-  private Random random;
+  private PlayerRandom random;
   private List<String> validTokens;
   private int tokenCount;
   
@@ -21,30 +26,70 @@ public class RandomComputerPlayer implements Player {
    * @param tokens The list of valid tokens to chose from in a game
    */
   public RandomComputerPlayer(List<String> tokens) {
+    this(tokens, new PlayerRandom());
+  }
+
+  /**
+   * Public constructor, for a player whose moves are repeatable
+   * @param tokens The list of valid tokens to chose from in a game
+   * @param seed Seed for the player's moves
+   */
+  public RandomComputerPlayer(List<String> tokens, long seed) {
+    this(tokens, new PlayerRandom(seed));
+  }
+
+  /*
+   * Private constructor, with the source of the player's moves
+   */
+  private RandomComputerPlayer(List<String> tokens, PlayerRandom random) {
     
     validTokens = tokens;
     tokenCount = validTokens.size();
-    
-    /* Get an instance of Random to control which tokens are returned.
-     * Also sleep for a little while, to ensure that other instances of this
-     * class (at least within the same thread) will generate different choices
-     */ 
-    random = new Random();
-    try {
-      Thread.sleep(10);
-    } catch (InterruptedException e) {
-      throw new RuntimeException("Random computer player was unexpectedly woken from sleep...");
-    }
+    this.random = random;
     
     // Work out a name for this instance
-    helloMyNameIs = String.format("%s %d", NAME_PREFIX, Math.abs( random.nextInt(10000) ));
+    helloMyNameIs = String.format("%s %d", NAME_PREFIX, random.nextInt(10000));
+  }
+
+  @Override
+  public void reset(long seed) {
+    // Nothing is learnt, so only the moves need reseeding
+    random = new PlayerRandom(seed);
+  }
+
+  @Override
+  public int getStateSize() {
+    return 8;
+  }
+
+  @Override
+  public void saveState(ByteBuffer out) {
+    // Nothing is learnt, so only the moves need saving
+    out.putLong( random.getState() );
+  }
+
+  @Override
+  public void restoreState(ByteBuffer in) {
+    if (in.remaining() < getStateSize()) {
+      throw new IllegalStateException( String.format("Invalid saved state size '%d'", in.remaining()) );
+    }
+    random.setState( in.getLong() );
   }
 
   @Override
   public String getMove() {
+    return validTokens.get( getMoveIndex() );
+  }
+
+  @Override
+  public int getMoveIndex() {
     // Use Random to get the next move
-    int choice = random.nextInt(tokenCount);
-    return validTokens.get(choice);
+    return random.nextInt(tokenCount);
+  }
+
+  @Override
+  public List<String> getTokenList() {
+    return validTokens;
   }
 
   @Override
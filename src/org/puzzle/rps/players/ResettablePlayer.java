@@ -0,0 +1,16 @@
+package org.puzzle.rps.players;
+
+/**
+ * Interface for players which can be returned to their freshly created state, so
+ * that one instance can play many games in turn. A PlayerPool resets each player it
+ * hands out, and only pools players of this kind.
+ */
+public interface ResettablePlayer extends Player {
+
+  /**
+   * Forget everything learnt in earlier games, and reseed any random choices
+   * @param seed Seed for the player's random choices
+   */
+  public void reset(long seed);
+
+}
@@ -0,0 +1,38 @@
+package org.puzzle.rps.players;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for players whose state can be saved part way through a game, and
+ * restored into a player created the same way, so that a checkpointed game can carry
+ * on after a restart just as it would have without one. The GameEngine saves the
+ * state of players of this kind with each checkpoint.
+ *
+ * <p>State is saved straight into the checkpoint's buffer, so a player with a lot of
+ * state - a large table of counts, say - can bulk copy it rather than write it a value
+ * at a time. The buffer's byte order must be left as it is.
+ */
+public interface ResumablePlayer extends Player {
+
+  /**
+   * Size of the state saveState() would save now
+   * @return int, the number of bytes
+   */
+  public int getStateSize();
+
+  /**
+   * Save everything the player's next moves depend on: what it has learnt, and the
+   * state of any random choices
+   * @param out Where to write the state, from its position; exactly getStateSize()
+   *   bytes must be written
+   */
+  public void saveState(ByteBuffer out);
+
+  /**
+   * Restore state saved by saveState(), from a player created the same way
+   * @param in Where to read the state, from its position
+   * @throws IllegalStateException If the state is not from a player like this one
+   */
+  public void restoreState(ByteBuffer in);
+
+}
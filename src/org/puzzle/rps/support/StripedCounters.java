@@ -0,0 +1,138 @@
+package org.puzzle.rps.support;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size array of counters, striped across threads in the style of LongAdder.
+ * Each thread is assigned a stripe - a private copy of every counter - so that
+ * threads updating the same counter rarely touch the same memory, and never
+ * contend on a lock. Reads sum the counter across all stripes.
+ *
+ * <p>Unlike an array of LongAdders, the counters for a stripe are held in one
+ * primitive array, so thousands of counters cost little more than the longs
+ * themselves. Stripes are padded apart to avoid false sharing between them.
+ */
+public class StripedCounters {
+
+  // Padding between stripes, in longs: two cache lines
+  private static final int PAD = 16;
+
+  // Stripe assignment: threads are handed stripes in turn, as they first arrive
+  private static final AtomicInteger NEXT_STRIPE = new AtomicInteger();
+  private static final ThreadLocal<Integer> THREAD_STRIPE = new ThreadLocal<Integer>() {
+    @Override
+    protected Integer initialValue() {
+      return NEXT_STRIPE.getAndIncrement();
+    }
+  };
+
+  private final int counters;
+  private final int stride;
+  private final int stripeMask;
+  private final AtomicLongArray cells;
+
+  /**
+   * Public constructor, with one stripe per available processor.
+   * @param counters Number of counters
+   */
+  public StripedCounters(int counters) {
+    this(counters, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Public constructor
+   * @param counters Number of counters
+   * @param stripes Number of stripes; rounded up to a power of two
+   */
+  public StripedCounters(int counters, int stripes) {
+
+    if (counters < 0) {
+      throw new IllegalArgumentException( String.format("Invalid number of counters '%d'", counters) );
+    }
+
+    int stripeCount = Integer.highestOneBit( Math.max(1, stripes) );
+    if (stripeCount < stripes) {
+      stripeCount <<= 1;
+    }
+
+    this.counters = counters;
+    this.stride = counters + PAD;
+    this.stripeMask = stripeCount - 1;
+    this.cells = new AtomicLongArray(stride * stripeCount);
+  }
+
+  /**
+   * Number of counters held
+   * @return int, the counter count
+   */
+  public int size() {
+    return counters;
+  }
+
+  /**
+   * Add one to the given counter
+   * @param counter Index of the counter
+   * @throws IllegalArgumentException If there is no such counter
+   */
+  public void increment(int counter) {
+    add(counter, 1);
+  }
+
+  /**
+   * Add to the given counter
+   * @param counter Index of the counter
+   * @param delta Amount to add
+   * @throws IllegalArgumentException If there is no such counter
+   */
+  public void add(int counter, long delta) {
+    checkCounter(counter);
+    cells.getAndAdd(stripeOffset() + counter, delta);
+  }
+
+  /**
+   * Current value of the given counter. Not an atomic snapshot: updates made
+   * during the call may or may not be included.
+   * @param counter Index of the counter
+   * @return long, the sum of the counter across all stripes
+   * @throws IllegalArgumentException If there is no such counter
+   */
+  public long sum(int counter) {
+    checkCounter(counter);
+    long total = 0;
+    for (int offset = counter; offset < cells.length(); offset += stride) {
+      total += cells.get(offset);
+    }
+    return total;
+  }
+
+  /**
+   * Current values of all counters, subject to the same caveat as sum(int).
+   * @return long array, indexed by counter
+   */
+  public long[] sums() {
+    long[] totals = new long[counters];
+    for (int i=0; i<counters; i++) {
+      totals[i] = sum(i);
+    }
+    return totals;
+  }
+
+  /*
+   * Private helper method. A counter index out of range would land in the padding,
+   * or in another stripe's counters, so is refused.
+   */
+  private void checkCounter(int counter) {
+    if (counter < 0 || counter >= counters) {
+      throw new IllegalArgumentException( String.format("Invalid counter '%d'", counter) );
+    }
+  }
+
+  /*
+   * Private helper method. Offset of the calling thread's stripe.
+   */
+  private int stripeOffset() {
+    return (THREAD_STRIPE.get() & stripeMask) * stride;
+  }
+
+}
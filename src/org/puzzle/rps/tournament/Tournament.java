@@ -0,0 +1,253 @@
+package org.puzzle.rps.tournament;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import org.puzzle.rps.GameEngine;
+import org.puzzle.rps.GameEngine.GameState;
+import org.puzzle.rps.GameRecord;
+import org.puzzle.rps.GameReplay;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.PlayerFactory;
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+import org.puzzle.rps.players.PlayerPool;
+
+/**
+ * Round-robin tournament between a set of entrants. Every pairing of entrants is
+ * scheduled as an independent task on a work-stealing fork/join pool, so pairings
+ * are spread across all available cores, and the outcomes are aggregated into a
+ * TournamentResult.
+ *
+ * <p>Entrants are given as player suppliers rather than players, as each game
+ * needs its own fresh pair of players; suppliers must therefore be safe to call
+ * from any pool thread. Entrants that are PlayerPools get their players back after
+ * each game, so that they can be reused. Games are played headless, with no delay between rounds.
+ * The rule interpreter is shared by all games, and is only read.
+ *
+ * <p>Seeded tournaments are given entrants as computer player types, and a master
+ * seed. Each game is seeded from the master seed and its number - numbered by pairing,
+ * then by game within the pairing - and plays freshly seeded players, so the result
+ * doesn't depend on how pairings are scheduled, and replayGame() can play any game
+ * again on its own.
+ */
+public class Tournament {
+
+  private final RuleInterpreter ruleInterpreter;
+  private final List<Supplier<? extends Player>> entrants;
+  private final int roundsPerGame;
+  private final int gamesPerPairing;
+
+  // Seeded tournaments only; entrant types are null otherwise
+  private final List<PlayerType> entrantTypes;
+  private final GameReplay replay;
+  private final long masterSeed;
+
+  /**
+   * Public constructor
+   * @param rules The rules to apply to every game
+   * @param entrants Suppliers of players, one per entrant
+   * @param roundsPerGame Number of rounds in each game
+   * @param gamesPerPairing Number of games played by each pair of entrants
+   */
+  public Tournament(RuleInterpreter rules, List<Supplier<? extends Player>> entrants,
+      int roundsPerGame, int gamesPerPairing) {
+
+    if (entrants.size() < 2) {
+      throw new IllegalArgumentException("A tournament needs at least two entrants");
+    }
+
+    this.ruleInterpreter = rules;
+    this.entrants = new ArrayList<Supplier<? extends Player>>(entrants);
+    this.roundsPerGame = roundsPerGame;
+    this.gamesPerPairing = gamesPerPairing;
+    this.entrantTypes = null;
+    this.replay = null;
+    this.masterSeed = 0;
+  }
+
+  /**
+   * Public constructor, for a seeded tournament between computer players
+   * @param rules The rules to apply to every game
+   * @param factory Factory for the players
+   * @param entrants Player types, one per entrant; not HUMAN
+   * @param roundsPerGame Number of rounds in each game
+   * @param gamesPerPairing Number of games played by each pair of entrants
+   * @param masterSeed Seed from which every game's seed is derived
+   */
+  public Tournament(RuleInterpreter rules, PlayerFactory factory, List<PlayerType> entrants,
+      int roundsPerGame, int gamesPerPairing, long masterSeed) {
+
+    if (entrants.size() < 2) {
+      throw new IllegalArgumentException("A tournament needs at least two entrants");
+    }
+    if (entrants.contains(PlayerType.HUMAN)) {
+      throw new IllegalArgumentException("Human players cannot take part in a seeded tournament");
+    }
+
+    this.ruleInterpreter = rules;
+    this.entrants = null;
+    this.roundsPerGame = roundsPerGame;
+    this.gamesPerPairing = gamesPerPairing;
+    this.entrantTypes = new ArrayList<PlayerType>(entrants);
+    this.replay = new GameReplay(rules, factory);
+    this.masterSeed = masterSeed;
+  }
+
+  /** Master seed of a seeded tournament */
+  public long getMasterSeed() {
+    if (entrantTypes == null) {
+      throw new IllegalStateException("Tournament isn't seeded");
+    }
+    return masterSeed;
+  }
+
+  /**
+   * Play one game of a seeded tournament again, on its own.
+   * @param i Index of the first entrant of the pairing
+   * @param j Index of the second entrant, greater than i
+   * @param game Number of the game within the pairing, counting from zero
+   * @return GameRecord, describing the replayed game
+   */
+  public GameRecord replayGame(int i, int j, int game) {
+
+    if (entrantTypes == null) {
+      throw new IllegalStateException("Tournament isn't seeded");
+    }
+    int n = entrantTypes.size();
+    if (i < 0 || j <= i || j >= n) {
+      throw new IllegalArgumentException( String.format("Invalid pairing '%d' v '%d'", i, j) );
+    }
+    if (game < 0 || game >= gamesPerPairing) {
+      throw new IllegalArgumentException( String.format("Invalid game number '%d'", game) );
+    }
+
+    // Pairings are numbered in the order run() lists them
+    int pairing = i * (2 * n - i - 1) / 2 + (j - i - 1);
+    return replay.play(gameSeed(pairing, game), entrantTypes.get(i), entrantTypes.get(j), roundsPerGame);
+  }
+
+  /**
+   * Run the tournament on the common fork/join pool.
+   * @return TournamentResult, the outcome of every pairing
+   */
+  public TournamentResult run() {
+    return run(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Run the tournament on the given pool, blocking until every pairing is complete.
+   * @param pool The pool to schedule pairings on
+   * @return TournamentResult, the outcome of every pairing
+   */
+  public TournamentResult run(ForkJoinPool pool) {
+
+    // Flatten the pairings: entrant i plays entrant j, for every i < j
+    int n = entrantTypes != null ? entrantTypes.size() : entrants.size();
+    int pairingCount = n * (n - 1) / 2;
+    int[] first = new int[pairingCount];
+    int[] second = new int[pairingCount];
+
+    int p = 0;
+    for (int i=0; i<n; i++) {
+      for (int j=i+1; j<n; j++) {
+        first[p] = i;
+        second[p] = j;
+        p++;
+      }
+    }
+
+    TournamentResult result = new TournamentResult(n);
+    pool.invoke( new PairingTask(first, second, 0, pairingCount, result) );
+
+    return result;
+  }
+
+  /*
+   * Private helper method. Plays all the games for one pairing, and records them.
+   */
+  private void playPairing(int pairing, int p1Idx, int p2Idx, TournamentResult result) {
+
+    if (entrantTypes != null) {
+      for (int g=0; g<gamesPerPairing; g++) {
+        GameRecord record = replay.play(gameSeed(pairing, g), entrantTypes.get(p1Idx), entrantTypes.get(p2Idx),
+            roundsPerGame);
+        result.record(p1Idx, record.p1Score, p2Idx, record.p2Score);
+      }
+      return;
+    }
+
+    for (int g=0; g<gamesPerPairing; g++) {
+
+      Player p1 = entrants.get(p1Idx).get();
+      Player p2 = entrants.get(p2Idx).get();
+
+      GameEngine game = new GameEngine(p1, p2, ruleInterpreter, roundsPerGame);
+      game.setGameDelay(0);
+      game.play();
+
+      GameState outcome = game.outcome();
+      result.record(p1Idx, outcome.getP1Score(), p2Idx, outcome.getP2Score());
+
+      release(entrants.get(p1Idx), p1);
+      release(entrants.get(p2Idx), p2);
+    }
+  }
+
+  /*
+   * Private helper method, the seed of a game in a seeded tournament
+   */
+  private long gameSeed(int pairing, int game) {
+    return GameReplay.gameSeed(masterSeed, (long) pairing * gamesPerPairing + game);
+  }
+
+  /*
+   * Private helper method, returns a pooled entrant's player to its pool
+   */
+  private static void release(Supplier<? extends Player> entrant, Player player) {
+    if (entrant instanceof PlayerPool) {
+      ((PlayerPool) entrant).release(player);
+    }
+  }
+
+
+
+  /**
+   * Fork/join task over a range of pairings. Ranges are split in half until
+   * a single pairing remains, leaving the pool free to steal work at any level.
+   */
+  private class PairingTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] first;
+    private final int[] second;
+    private final int from;
+    private final int to;
+    private final TournamentResult result;
+
+    PairingTask(int[] first, int[] second, int from, int to, TournamentResult result) {
+      this.first = first;
+      this.second = second;
+      this.from = from;
+      this.to = to;
+      this.result = result;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        playPairing(from, first[from], second[from], result);
+      } else if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll( new PairingTask(first, second, from, mid, result),
+                   new PairingTask(first, second, mid, to, result) );
+      }
+    }
+
+  }
+
+}
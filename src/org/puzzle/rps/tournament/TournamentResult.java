@@ -0,0 +1,81 @@
+package org.puzzle.rps.tournament;
+
+/**
+ * Outcome of a round-robin tournament, as an N x N matrix of game results
+ * between entrants. Entrants are identified by their position in the list
+ * given to the Tournament.
+ */
+public class TournamentResult {
+
+  private final int entrants;
+  private final long[] wins;
+  private final long[] draws;
+
+  /*
+   * Package constructor; the tournament fills in the matrices, which are
+   * flattened row by row
+   */
+  TournamentResult(int entrants) {
+    this.entrants = entrants;
+    this.wins = new long[entrants * entrants];
+    this.draws = new long[entrants * entrants];
+  }
+
+  /*
+   * Record the outcome of one game. Each pairing is recorded by a single task,
+   * so no two tasks ever write to the same cells.
+   */
+  void record(int p1, int p1score, int p2, int p2score) {
+    if (p1score > p2score) {
+      wins[p1 * entrants + p2]++;
+    } else if (p2score > p1score) {
+      wins[p2 * entrants + p1]++;
+    } else {
+      draws[p1 * entrants + p2]++;
+      draws[p2 * entrants + p1]++;
+    }
+  }
+
+  /** Number of entrants in the tournament */
+  public int getEntrants() {
+    return entrants;
+  }
+
+  /** Games won by entrant i against entrant j */
+  public long wins(int i, int j) {
+    return wins[i * entrants + j];
+  }
+
+  /** Games drawn between entrants i and j */
+  public long draws(int i, int j) {
+    return draws[i * entrants + j];
+  }
+
+  /** Games lost by entrant i against entrant j */
+  public long losses(int i, int j) {
+    return wins[j * entrants + i];
+  }
+
+  /** Total games won by entrant i, against all opponents */
+  public long totalWins(int i) {
+    long total = 0;
+    for (int j=0; j<entrants; j++) {
+      total += wins[i * entrants + j];
+    }
+    return total;
+  }
+
+  @Override
+  public String toString() {
+    // Provide a human readable matrix; each cell is wins/draws/losses for the row entrant
+    StringBuilder sb = new StringBuilder();
+    for (int i=0; i<entrants; i++) {
+      for (int j=0; j<entrants; j++) {
+        sb.append( String.format("%d/%d/%d\t", wins(i,j), draws(i,j), losses(i,j)) );
+      }
+      sb.append( String.format("%n") );
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,137 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.BatchGameEngine.Strategy;
+
+public class BatchGameEngineTest {
+
+  RuleInterpreter rules;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+    rules = new RuleInterpreter();
+    rules.parseRules(new File("src/resources/lizardSpockRules.txt"));
+  }
+
+  /*
+   * Every game plays exactly its rounds, across several blocks, and then stops
+   */
+  @Test
+  public void allGamesFinish() {
+
+    int games = 2500;
+    BatchGameEngine engine = new BatchGameEngine(rules, games, 20, 42L);
+    for (int g=0; g<games; g++) {
+      engine.addGame(Strategy.RANDOM, Strategy.values()[g % Strategy.values().length]);
+    }
+
+    assertEquals(games, engine.playRound());
+    engine.play();
+
+    assertEquals(0, engine.getActiveCount());
+    for (int g=0; g<games; g++) {
+      assertEquals(20, engine.getRoundsPlayed(g));
+      assertTrue(engine.getP1Score(g) + engine.getP2Score(g) <= 20);
+    }
+    assertEquals(0, engine.playRound());
+  }
+
+  /*
+   * Beating the opponent's last move wins every round but the first against a constant player
+   */
+  @Test
+  public void strategiesPlayAsDescribed() {
+
+    BatchGameEngine engine = new BatchGameEngine(rules, 3, 100, 7L);
+    int beat = engine.addGame(Strategy.BEAT_LAST, Strategy.CONSTANT);
+    int copy = engine.addGame(Strategy.COPY_LAST, Strategy.CONSTANT);
+    int cycle = engine.addGame(Strategy.CYCLE, Strategy.CONSTANT);
+    engine.play();
+
+    assertTrue(engine.getP1Score(beat) >= 99);
+    assertTrue(engine.getP2Score(beat) <= 1);
+
+    // Copying a constant player draws every round after the first
+    assertTrue(engine.getP1Score(copy) + engine.getP2Score(copy) <= 1);
+
+    // Cycling through five tokens meets each of them twenty times
+    assertEquals(40, engine.getP1Score(cycle));
+    assertEquals(40, engine.getP2Score(cycle));
+
+    long[] won = engine.roundsWonByStrategy();
+    assertEquals(engine.getP1Score(beat), won[Strategy.BEAT_LAST.ordinal()]);
+    assertEquals(600, sum( engine.roundsPlayedByStrategy() ));
+  }
+
+  /*
+   * The same seed and games replay exactly; another seed plays differently
+   */
+  @Test
+  public void seededGamesReplay() {
+
+    BatchGameEngine first = randomGames(1234L);
+    BatchGameEngine second = randomGames(1234L);
+    BatchGameEngine other = randomGames(4321L);
+
+    boolean differs = false;
+    for (int g=0; g<first.getGameCount(); g++) {
+      assertEquals(first.getP1Score(g), second.getP1Score(g));
+      assertEquals(first.getP2Score(g), second.getP2Score(g));
+      differs |= first.getP1Score(g) != other.getP1Score(g);
+    }
+    assertTrue(differs);
+  }
+
+  /*
+   * Capacity and game slots are enforced
+   */
+  @Test
+  public void limitsEnforced() {
+
+    BatchGameEngine engine = new BatchGameEngine(rules, 1, 10, 0L);
+    engine.addGame(Strategy.RANDOM, Strategy.RANDOM);
+
+    try {
+      engine.addGame(Strategy.RANDOM, Strategy.RANDOM);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals("Batch engine is full, at 1 games", e.getMessage());
+    }
+
+    try {
+      engine.getP1Score(1);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid game slot '1'", e.getMessage());
+    }
+  }
+
+  /*
+   * Private helper, plays a batch of random games
+   */
+  private BatchGameEngine randomGames(long seed) {
+    BatchGameEngine engine = new BatchGameEngine(rules, 100, 50, seed);
+    for (int g=0; g<100; g++) {
+      engine.addGame(Strategy.RANDOM, Strategy.RANDOM);
+    }
+    engine.play();
+    return engine;
+  }
+
+  private static long sum(long[] values) {
+    long total = 0;
+    for (long v : values) {
+      total += v;
+    }
+    return total;
+  }
+
+}
@@ -1,6 +1,8 @@
 package org.puzzle.rps;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -8,13 +10,31 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.puzzle.rps.GameEngine.GameState;
+import org.puzzle.rps.players.AsyncPlayer;
+import org.puzzle.rps.players.IndexedPlayer;
+import org.puzzle.rps.players.MarkovComputerPlayer;
 import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.RandomComputerPlayer;
 
 
 
@@ -59,6 +79,269 @@ public class GameEngineTest {
     verify(p2Mock, atLeastOnce()).getMove();    
   }
 
+  /*
+   * Games paced by a timing wheel play every round, with the delay between them,
+   * and complete with the final state
+   */
+  @Test
+  public void pacedGamePlaysOnTimingWheel() throws Exception {
+
+    TimingWheel wheel = new TimingWheel(5, 64, 1);
+    wheel.start();
+    try {
+      long start = System.nanoTime();
+      GameState state = gameEngine.play(wheel).get(5, TimeUnit.SECONDS);
+      long elapsed = System.nanoTime() - start;
+
+      verify(p1Mock, times(3)).getMove();
+      verify(p2Mock, times(3)).getMove();
+      assertEquals(0, state.getP1Score());
+      assertEquals(0, state.getP2Score());
+      assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(30));
+    } finally {
+      wheel.stop();
+    }
+  }
+
+  /*
+   * Stopping the wheel part way through a paced game completes its future exceptionally,
+   * rather than leaving it hanging
+   */
+  @Test
+  public void pacedGameFailsWhenWheelStops() throws Exception {
+
+    TimingWheel wheel = new TimingWheel(5, 64, 1);
+    wheel.start();
+    gameEngine.setGameDelay(5000);
+    CompletableFuture<GameState> result = gameEngine.play(wheel);
+    Thread.sleep(50);
+    wheel.stop();
+
+    try {
+      result.get(1, TimeUnit.SECONDS);
+      fail("ExecutionException expected");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  /*
+   * Playing on a wheel that isn't running fails through the future, rather than throwing
+   */
+  @Test
+  public void pacedGameOnStoppedWheelFails() throws Exception {
+
+    TimingWheel wheel = new TimingWheel(5, 64, 1);
+    wheel.start();
+    wheel.stop();
+
+    CompletableFuture<GameState> played = gameEngine.play(wheel);
+    CompletableFuture<GameState> resumed = gameEngine.resume(wheel);
+    for (CompletableFuture<GameState> result : Arrays.asList(played, resumed)) {
+      try {
+        result.get(1, TimeUnit.SECONDS);
+        fail("ExecutionException expected");
+      } catch (ExecutionException e) {
+        assertEquals("Timing wheel not running", e.getCause().getMessage());
+      }
+    }
+    verify(p1Mock, times(0)).getMove();
+  }
+
+  /*
+   * With a move deadline, both players are asked at once
+   */
+  @Test
+  public void movesCollectedConcurrently() throws FileNotFoundException {
+
+    final CountDownLatch bothAsked = new CountDownLatch(2);
+    Player p1 = new Player() {
+      @Override
+      public String getMove() {
+        bothAsked.countDown();
+        awaitQuietly(bothAsked);
+        return "Rock";
+      }
+    };
+    Player p2 = new AsyncPlayer() {
+      @Override
+      public String getMove() {
+        return requestMove().join();
+      }
+      @Override
+      public CompletableFuture<String> requestMove() {
+        bothAsked.countDown();
+        return CompletableFuture.completedFuture("Paper");
+      }
+    };
+
+    GameEngine game = new GameEngine(p1, p2, rpsRules(), 1);
+    game.setGameDelay(0);
+    game.setMoveDeadline(2000, GameEngine.TimeoutPolicy.FORFEIT_ROUND);
+    game.play();
+
+    assertEquals(0, game.outcome().getP1Timeouts());
+    assertEquals(1, game.outcome().getP2Score());
+  }
+
+  /*
+   * A player who misses the deadline forfeits the round, and isn't asked again while
+   * still thinking
+   */
+  @Test
+  public void latePlayerForfeitsRound() throws FileNotFoundException {
+
+    final AtomicInteger asked = new AtomicInteger();
+    Player slow = new Player() {
+      @Override
+      public String getMove() {
+        asked.incrementAndGet();
+        try {
+          Thread.sleep(500);
+        } catch (InterruptedException e) {
+          // Done thinking
+        }
+        return "Rock";
+      }
+    };
+
+    GameEngine game = new GameEngine(p1Mock, slow, rpsRules(), 3);
+    game.setGameDelay(0);
+    game.setMoveDeadline(20, GameEngine.TimeoutPolicy.FORFEIT_ROUND);
+    game.play();
+
+    assertEquals(3, game.outcome().getP1Score());
+    assertEquals(3, game.outcome().getP2Timeouts());
+    assertEquals(0, game.outcome().getP1Timeouts());
+    assertEquals(1, asked.get());
+  }
+
+  /*
+   * The default move is played for a late player, if so configured
+   */
+  @Test
+  public void latePlayerGetsDefaultMove() throws FileNotFoundException {
+
+    AsyncPlayer hung = new AsyncPlayer() {
+      @Override
+      public String getMove() {
+        return requestMove().join();
+      }
+      @Override
+      public CompletableFuture<String> requestMove() {
+        return new CompletableFuture<String>();
+      }
+    };
+
+    GameEngine game = new GameEngine(p1Mock, hung, rpsRules(), 3);
+    game.setGameDelay(0);
+    game.setMoveDeadline(10, GameEngine.TimeoutPolicy.DEFAULT_MOVE);
+    game.setDefaultMove("Paper");
+    game.play();
+
+    assertEquals(0, game.outcome().getP1Score());
+    assertEquals(3, game.outcome().getP2Score());
+    assertEquals(3, game.outcome().getP2Timeouts());
+  }
+
+  /*
+   * Forfeited rounds have no Result, so observers hear nothing of them
+   */
+  @Test
+  public void forfeitedRoundsNotNotified() throws FileNotFoundException {
+
+    AsyncPlayer hung = new AsyncPlayer() {
+      @Override
+      public String getMove() {
+        return requestMove().join();
+      }
+      @Override
+      public CompletableFuture<String> requestMove() {
+        return new CompletableFuture<String>();
+      }
+    };
+    final AtomicInteger rounds = new AtomicInteger();
+    final AtomicInteger games = new AtomicInteger();
+    GameObserver observer = new GameObserver() {
+      @Override
+      public void notifyPlay(Player player, String token) {
+        rounds.incrementAndGet();
+      }
+      @Override
+      public void notifyRoundOutcome(Result r) {
+        rounds.incrementAndGet();
+      }
+      @Override
+      public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+        games.incrementAndGet();
+      }
+    };
+
+    GameEngine game = new GameEngine(p1Mock, hung, rpsRules(), 3);
+    game.setGameDelay(0);
+    game.setMoveDeadline(10, GameEngine.TimeoutPolicy.FORFEIT_ROUND);
+    game.registerObserver(observer);
+    game.play();
+
+    assertEquals(3, game.outcome().getP1Score());
+    assertEquals(0, rounds.get());
+    assertEquals(1, games.get());
+  }
+
+  /*
+   * A late player that also observes the game isn't notified while its move is still
+   * being made on another thread
+   */
+  @Test
+  public void latePlayerNotNotifiedWhileMoving() throws FileNotFoundException {
+
+    final AtomicInteger moving = new AtomicInteger();
+    final AtomicInteger overlaps = new AtomicInteger();
+    final AtomicInteger outcomes = new AtomicInteger();
+    final CountDownLatch firstMove = new CountDownLatch(1);
+    class SlowObserver implements Player, GameObserver {
+      @Override
+      public String getMove() {
+        moving.incrementAndGet();
+        try {
+          if (firstMove.getCount() > 0) {
+            Thread.sleep(100);
+          }
+        } catch (InterruptedException e) {
+          // Done thinking
+        } finally {
+          firstMove.countDown();
+          moving.decrementAndGet();
+        }
+        return "Paper";
+      }
+      @Override
+      public void notifyPlay(Player player, String token) {
+        overlaps.addAndGet(moving.get());
+      }
+      @Override
+      public void notifyRoundOutcome(Result r) {
+        overlaps.addAndGet(moving.get());
+        outcomes.incrementAndGet();
+      }
+      @Override
+      public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+        overlaps.addAndGet(moving.get());
+      }
+    }
+
+    GameEngine game = new GameEngine(p1Mock, new SlowObserver(), rpsRules(), 20);
+    game.setGameDelay(5);
+    game.setMoveDeadline(10, GameEngine.TimeoutPolicy.DEFAULT_MOVE);
+    game.setDefaultMove("Scissors");
+    game.play();
+
+    assertEquals(0, overlaps.get());
+    assertTrue(game.outcome().getP2Timeouts() > 0);
+    assertTrue(outcomes.get() > 0);
+    assertTrue(outcomes.get() < 20);
+  }
+
   /*
    * Players should be asked for a move for each round  
    */
@@ -199,5 +482,435 @@ public class GameEngineTest {
     Result testRes = new Result("Paper","disproves","Spock");
     assertEquals("Paper disproves Spock", testRes.toString());
   }
-  
+
+  /*
+   * Indexed players over the rules' token list are asked for indices, never tokens
+   */
+  @Test
+  public void indexedPlayersUseIndexPath() throws FileNotFoundException {
+
+    RuleInterpreter ri = new RuleInterpreter();
+    ri.parseRules(new File("src/resources/lizardSpockRules.txt"));
+
+    ScriptedPlayer p1 = new ScriptedPlayer(ri.getTokenList(), "Spock","Lizard","Paper");
+    ScriptedPlayer p2 = new ScriptedPlayer(ri.getTokenList(), "Rock","Paper","Paper");
+
+    gameEngine = new GameEngine(p1,p2,ri,3);
+    gameEngine.setGameDelay(0);
+    gameEngine.play();
+
+    assertEquals(2, gameEngine.outcome().getP1Score());
+    assertEquals(0, gameEngine.outcome().getP2Score());
+    assertEquals(3, p1.indexMoves);
+    assertEquals(0, p1.tokenMoves);
+  }
+
+  /*
+   * Indexed players over some other token list fall back to tokens
+   */
+  @Test
+  public void mismatchedIndexedPlayersUseTokens() throws FileNotFoundException {
+
+    RuleInterpreter ri = new RuleInterpreter();
+    ri.parseRules(new File("src/resources/rpsRules.txt"));
+
+    List<String> reordered = new ArrayList<String>(ri.getTokenList());
+    Collections.reverse(reordered);
+
+    ScriptedPlayer p1 = new ScriptedPlayer(reordered, "Rock","Rock");
+    ScriptedPlayer p2 = new ScriptedPlayer(reordered, "Scissors","Paper");
+
+    gameEngine = new GameEngine(p1,p2,ri,2);
+    gameEngine.setGameDelay(0);
+    gameEngine.play();
+
+    assertEquals(1, gameEngine.outcome().getP1Score());
+    assertEquals(1, gameEngine.outcome().getP2Score());
+    assertEquals(0, p1.indexMoves);
+    assertEquals(2, p1.tokenMoves);
+  }
+
+  /*
+   * Indexed observers receive token indices and outcome codes
+   */
+  @Test
+  public void indexedEventsNotified() throws FileNotFoundException {
+
+    RuleInterpreter ri = new RuleInterpreter();
+    ri.parseRules(new File("src/resources/lizardSpockRules.txt"));
+
+    when(p1Mock.getMove()).thenReturn("Spock","Paper");
+    when(p2Mock.getMove()).thenReturn("Rock","Paper");
+
+    RecordingObserver observer = new RecordingObserver();
+    gameEngine = new GameEngine(p1Mock,p2Mock,ri,2);
+    gameEngine.setGameDelay(0);
+    gameEngine.registerObserver(observer);
+    gameEngine.play();
+
+    int spock = ri.tokenIndex("Spock");
+    int rock = ri.tokenIndex("Rock");
+    int paper = ri.tokenIndex("Paper");
+
+    assertEquals(Arrays.asList(spock, rock, paper, paper), observer.plays);
+    assertEquals(Arrays.asList(ri.outcome(spock, rock), ri.outcome(paper, paper)), observer.outcomes);
+    assertEquals(RuleInterpreter.FIRST_WINS, RuleInterpreter.side(observer.outcomes.get(0)));
+    assertEquals("vaporizes", ri.verb(RuleInterpreter.verbId(observer.outcomes.get(0))));
+    assertEquals(RuleInterpreter.DRAW, RuleInterpreter.side(observer.outcomes.get(1)));
+    assertEquals(1, observer.games);
+  }
+
+
+  /*
+   * Once warmed up, playing rounds allocates nothing: a long game allocates less
+   * than one byte per round, leaving just the fixed cost of starting a game
+   */
+  @Test
+  public void roundLoopIsGarbageFree() throws FileNotFoundException {
+
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+    Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+    allocations.setThreadAllocatedMemoryEnabled(true);
+
+    RuleInterpreter ri = new RuleInterpreter();
+    ri.parseRules(new File("src/resources/lizardSpockRules.txt"));
+
+    int rounds = 1000000;
+    gameEngine = new GameEngine(new RandomComputerPlayer(ri.getTokenList()),
+        new RandomComputerPlayer(ri.getTokenList()), ri, rounds);
+    gameEngine.setGameDelay(0);
+
+    // One observer on each dispatch path
+    CountingObserver plain = new CountingObserver();
+    CountingObserver indexed = new CountingIndexedObserver();
+    gameEngine.registerObserver(plain);
+    gameEngine.registerObserver(indexed);
+
+    // Warm up, then measure a whole game
+    gameEngine.play();
+
+    long threadId = Thread.currentThread().getId();
+    long before = allocations.getThreadAllocatedBytes(threadId);
+    gameEngine.play();
+    long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+    assertTrue( String.format("%d bytes allocated over %d rounds", allocated, rounds), allocated < rounds );
+    assertEquals(2 * rounds, indexed.rounds);
+    assertEquals(2 * rounds, plain.rounds);
+  }
+
+  /*
+   * A game stopped part way through resumes from its last checkpoint, and ends just as
+   * it would have without stopping; the checkpoint is removed once the game is over
+   */
+  @Test
+  public void checkpointedGameResumes() throws IOException {
+
+    RuleInterpreter ri = new RuleInterpreter();
+    ri.parseRules(new File("src/resources/lizardSpockRules.txt"));
+    File dir = Files.createTempDirectory("checkpoint-").toFile();
+    File checkpoint = new File(dir, "game.checkpoint");
+    try {
+
+      GameEngine uninterrupted = new GameEngine(new MarkovComputerPlayer(ri, 2, 1L),
+          new RandomComputerPlayer(ri.getTokenList(), 2L), ri, 5000);
+      uninterrupted.setGameDelay(0);
+      uninterrupted.play();
+
+      GameEngine stopped = new GameEngine(new MarkovComputerPlayer(ri, 2, 1L),
+          new RandomComputerPlayer(ri.getTokenList(), 2L), ri, 5000);
+      stopped.setGameDelay(0);
+      stopped.setCheckpoint(checkpoint, 1000);
+      stopped.registerObserver(new StoppingObserver(3500));
+      try {
+        stopped.play();
+        fail("Game should have stopped");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      assertTrue(checkpoint.isFile());
+
+      CountingObserver counter = new CountingIndexedObserver();
+      GameEngine resumed = new GameEngine(new MarkovComputerPlayer(ri, 2, 1L),
+          new RandomComputerPlayer(ri.getTokenList(), 2L), ri, 5000);
+      resumed.setGameDelay(0);
+      resumed.setCheckpoint(checkpoint, 1000);
+      resumed.registerObserver(counter);
+      resumed.resume();
+
+      assertEquals(2000, counter.rounds);
+      assertEquals(uninterrupted.outcome().getP1Score(), resumed.outcome().getP1Score());
+      assertEquals(uninterrupted.outcome().getP2Score(), resumed.outcome().getP2Score());
+      assertTrue(!checkpoint.exists());
+
+    } finally {
+      checkpoint.delete();
+      dir.delete();
+    }
+  }
+
+  /*
+   * A game paced by a timing wheel resumes too
+   */
+  @Test
+  public void pacedGameResumes() throws Exception {
+
+    RuleInterpreter ri = rpsRules();
+    File dir = Files.createTempDirectory("checkpoint-").toFile();
+    File checkpoint = new File(dir, "game.checkpoint");
+    TimingWheel wheel = new TimingWheel(1, 64, 1);
+    wheel.start();
+    try {
+
+      GameEngine uninterrupted = new GameEngine(new RandomComputerPlayer(ri.getTokenList(), 3L),
+          new RandomComputerPlayer(ri.getTokenList(), 4L), ri, 300);
+      uninterrupted.setGameDelay(0);
+      uninterrupted.play();
+
+      GameEngine stopped = new GameEngine(new RandomComputerPlayer(ri.getTokenList(), 3L),
+          new RandomComputerPlayer(ri.getTokenList(), 4L), ri, 300);
+      stopped.setGameDelay(0);
+      stopped.setCheckpoint(checkpoint, 100);
+      stopped.registerObserver(new StoppingObserver(250));
+      try {
+        stopped.play(wheel).get(10, TimeUnit.SECONDS);
+        fail("Game should have stopped");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+
+      GameEngine resumed = new GameEngine(new RandomComputerPlayer(ri.getTokenList(), 3L),
+          new RandomComputerPlayer(ri.getTokenList(), 4L), ri, 300);
+      resumed.setGameDelay(0);
+      resumed.setCheckpoint(checkpoint, 100);
+      GameState state = resumed.resume(wheel).get(10, TimeUnit.SECONDS);
+
+      assertEquals(uninterrupted.outcome().getP1Score(), state.getP1Score());
+      assertEquals(uninterrupted.outcome().getP2Score(), state.getP2Score());
+
+    } finally {
+      wheel.stop();
+      checkpoint.delete();
+      dir.delete();
+    }
+  }
+
+  /*
+   * Without a checkpoint, resuming plays the whole game; a checkpoint of some other
+   * game is refused
+   */
+  @Test
+  public void checkpointOfOtherGameRefused() throws IOException {
+
+    RuleInterpreter ri = rpsRules();
+    File dir = Files.createTempDirectory("checkpoint-").toFile();
+    File checkpoint = new File(dir, "game.checkpoint");
+    try {
+
+      GameEngine played = new GameEngine(new RandomComputerPlayer(ri.getTokenList(), 5L),
+          new RandomComputerPlayer(ri.getTokenList(), 6L), ri, 200);
+      played.setGameDelay(0);
+      played.play();
+
+      GameEngine resumed = new GameEngine(new RandomComputerPlayer(ri.getTokenList(), 5L),
+          new RandomComputerPlayer(ri.getTokenList(), 6L), ri, 200);
+      resumed.setGameDelay(0);
+      resumed.setCheckpoint(checkpoint, 50);
+      resumed.resume();
+      assertEquals(played.outcome().getP1Score(), resumed.outcome().getP1Score());
+      assertEquals(played.outcome().getP2Score(), resumed.outcome().getP2Score());
+
+      GameEngine stopped = new GameEngine(new RandomComputerPlayer(ri.getTokenList(), 5L),
+          new RandomComputerPlayer(ri.getTokenList(), 6L), ri, 200);
+      stopped.setGameDelay(0);
+      stopped.setCheckpoint(checkpoint, 50);
+      stopped.registerObserver(new StoppingObserver(120));
+      try {
+        stopped.play();
+        fail("Game should have stopped");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+
+      GameEngine other = new GameEngine(new RandomComputerPlayer(ri.getTokenList(), 5L),
+          new RandomComputerPlayer(ri.getTokenList(), 6L), ri, 300);
+      other.setGameDelay(0);
+      other.setCheckpoint(checkpoint, 50);
+      try {
+        other.resume();
+        fail("IllegalStateException expected");
+      } catch (IllegalStateException e) {
+        assertTrue(e.getMessage().contains("is not of this game"));
+      }
+
+    } finally {
+      checkpoint.delete();
+      dir.delete();
+    }
+  }
+
+  /*
+   * Checkpoint intervals below one round are rejected
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidCheckpointInterval() {
+    gameEngine.setCheckpoint(new File("game.checkpoint"), 0);
+  }
+
+  /*
+   * Private helper, loads the standard rules
+   */
+  private static RuleInterpreter rpsRules() throws FileNotFoundException {
+    RuleInterpreter ri = new RuleInterpreter();
+    ri.parseRules(new File("src/resources/rpsRules.txt"));
+    return ri;
+  }
+
+  /*
+   * Private helper, waits briefly on a latch
+   */
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+
+  /**
+   * Observer which counts rounds, without allocating
+   */
+  private static class CountingObserver implements GameObserver {
+
+    int rounds = 0;
+
+    @Override
+    public void notifyPlay(Player player, String token) {
+    }
+
+    @Override
+    public void notifyRoundOutcome(Result r) {
+      rounds++;
+    }
+
+    @Override
+    public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+    }
+
+  }
+
+  /**
+   * Indexed observer which counts rounds, without allocating
+   */
+  private static class CountingIndexedObserver extends CountingObserver implements IndexedGameObserver {
+
+    @Override
+    public void notifyPlay(Player player, int token) {
+    }
+
+    @Override
+    public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+      rounds++;
+    }
+
+  }
+
+  /**
+   * Indexed observer which stops the game, as if the process had, at a given round
+   */
+  private static class StoppingObserver extends CountingIndexedObserver {
+
+    private final int stopAt;
+
+    StoppingObserver(int stopAt) {
+      this.stopAt = stopAt;
+    }
+
+    @Override
+    public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+      if (++rounds == stopAt) {
+        throw new IllegalStateException("Stopped");
+      }
+    }
+
+  }
+
+  /**
+   * Indexed player which plays a fixed sequence of tokens, and counts how it was asked
+   */
+  private static class ScriptedPlayer implements IndexedPlayer {
+
+    private final List<String> tokens;
+    private final int[] moves;
+    private int next = 0;
+
+    int indexMoves, tokenMoves = 0;
+
+    ScriptedPlayer(List<String> tokens, String... script) {
+      this.tokens = tokens;
+      this.moves = new int[script.length];
+      for (int i=0; i<script.length; i++) {
+        moves[i] = tokens.indexOf(script[i]);
+      }
+    }
+
+    @Override
+    public int getMoveIndex() {
+      indexMoves++;
+      return moves[next++];
+    }
+
+    @Override
+    public String getMove() {
+      tokenMoves++;
+      return tokens.get(moves[next++]);
+    }
+
+    @Override
+    public List<String> getTokenList() {
+      return tokens;
+    }
+
+  }
+
+  /**
+   * Indexed observer which records the events it receives
+   */
+  private static class RecordingObserver implements IndexedGameObserver {
+
+    List<Integer> plays = new ArrayList<Integer>();
+    List<Integer> outcomes = new ArrayList<Integer>();
+    int games = 0;
+
+    @Override
+    public void notifyPlay(Player player, int token) {
+      plays.add(token);
+    }
+
+    @Override
+    public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+      outcomes.add(outcome);
+    }
+
+    @Override
+    public void notifyPlay(Player player, String token) {
+      fail("Indexed observers should not receive tokens");
+    }
+
+    @Override
+    public void notifyRoundOutcome(Result r) {
+      fail("Indexed observers should not receive Results");
+    }
+
+    @Override
+    public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+      games++;
+    }
+
+  }
+
 }
@@ -0,0 +1,102 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.players.PlayerFactory;
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+
+public class GameReplayTest {
+
+  // Test data
+  RuleInterpreter rules;
+
+  // Object under test
+  GameReplay replay;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+
+    rules = new RuleInterpreter();
+    rules.parseRules( new File("src/resources/lizardSpockRules.txt") );
+
+    replay = new GameReplay(rules, new PlayerFactory());
+  }
+
+  /*
+   * A game played again from its seed repeats every move
+   */
+  @Test
+  public void replayRepeatsGame() {
+
+    GameRecord record = replay.play(99L, PlayerType.ADAPTIVE_COMPUTER, PlayerType.RANDOM_COMPUTER, 500);
+
+    assertEquals(500, record.rounds);
+    assertEquals(record, replay.replay(record));
+    assertTrue(replay.verify(record));
+
+    // Another replayer, by the same rules, agrees
+    assertTrue(new GameReplay(rules, new PlayerFactory()).verify(record));
+  }
+
+  /*
+   * Different seeds play different games
+   */
+  @Test
+  public void seedsGiveDifferentGames() {
+
+    GameRecord first = replay.play(1L, PlayerType.RANDOM_COMPUTER, PlayerType.RANDOM_COMPUTER, 200);
+    GameRecord second = replay.play(2L, PlayerType.RANDOM_COMPUTER, PlayerType.RANDOM_COMPUTER, 200);
+
+    assertTrue(first.digest != second.digest);
+  }
+
+  /*
+   * A record that doesn't match its game fails verification
+   */
+  @Test
+  public void alteredRecordFailsVerification() {
+
+    GameRecord record = replay.play(5L, PlayerType.RANDOM_COMPUTER, PlayerType.ADAPTIVE_COMPUTER, 100);
+    GameRecord altered = new GameRecord(record.seed, record.p1Type, record.p2Type, record.rounds,
+        record.p1Score, record.p2Score, record.digest ^ 1);
+
+    assertFalse(replay.verify(altered));
+  }
+
+  /*
+   * Seeds are distinct across games of a run, and players of a game
+   */
+  @Test
+  public void derivedSeedsDistinct() {
+
+    assertTrue(GameReplay.gameSeed(3L, 0) != GameReplay.gameSeed(3L, 1));
+    assertTrue(GameReplay.gameSeed(3L, 0) != GameReplay.gameSeed(4L, 0));
+
+    long game = GameReplay.gameSeed(3L, 0);
+    assertTrue(GameReplay.playerSeed(game, 1) != GameReplay.playerSeed(game, 2));
+    assertEquals(GameReplay.playerSeed(game, 1), GameReplay.playerSeed(GameReplay.gameSeed(3L, 0), 1));
+  }
+
+  /*
+   * Human players can't be seeded, so their games can't be replayed
+   */
+  @Test
+  public void humanGamesRejected() {
+
+    try {
+      replay.play(1L, PlayerType.HUMAN, PlayerType.RANDOM_COMPUTER, 10);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Players of type 'HUMAN' can't be seeded", e.getMessage());
+    }
+  }
+
+}
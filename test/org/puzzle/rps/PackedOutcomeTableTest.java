@@ -0,0 +1,114 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PackedOutcomeTableTest {
+
+  /*
+   * Each rule gives both orderings of its pair, with the verb; draws need no rule
+   */
+  @Test
+  public void codesForBothOrderings() {
+
+    PackedOutcomeTable table = new PackedOutcomeTable(3, 3);
+    table.set(0, 2, 1);
+    table.set(1, 0, 2);
+    table.set(2, 1, 1);
+
+    assertEquals((1 << RuleInterpreter.VERB_SHIFT) | RuleInterpreter.FIRST_WINS, table.code(0, 2));
+    assertEquals((1 << RuleInterpreter.VERB_SHIFT) | RuleInterpreter.SECOND_WINS, table.code(2, 0));
+    assertEquals((2 << RuleInterpreter.VERB_SHIFT) | RuleInterpreter.FIRST_WINS, table.code(1, 0));
+    assertEquals((2 << RuleInterpreter.VERB_SHIFT) | RuleInterpreter.SECOND_WINS, table.code(0, 1));
+    for (int i=0; i<3; i++) {
+      assertEquals(RuleInterpreter.DRAW, table.code(i, i));
+    }
+  }
+
+  /*
+   * Pairs no rule covers are reported as such; later rules replace earlier ones
+   */
+  @Test
+  public void missingAndReplacedRules() {
+
+    PackedOutcomeTable table = new PackedOutcomeTable(4, 2);
+    assertEquals(RuleInterpreter.NO_RULE, table.code(3, 1));
+
+    table.set(3, 1, 1);
+    table.set(1, 3, 1);
+    assertEquals(RuleInterpreter.FIRST_WINS, RuleInterpreter.side( table.code(1, 3) ));
+
+    // Self rules aren't stored
+    table.set(2, 2, 1);
+    assertEquals(RuleInterpreter.DRAW, table.code(2, 2));
+  }
+
+  /*
+   * Fields widen with the verb dictionary, and verb ids survive intact
+   */
+  @Test
+  public void fieldsFitVerbDictionary() {
+
+    assertEquals(1, PackedOutcomeTable.wordCount(5, 2));   // 10 pairs of 2 bits
+    assertEquals(3, PackedOutcomeTable.wordCount(9, 4));   // 36 pairs of 4 bits
+    assertEquals(5, PackedOutcomeTable.wordCount(9, 100)); // 36 pairs of 8 bits
+
+    int tokenCount = 40;
+    int verbCount = 300;
+    PackedOutcomeTable table = new PackedOutcomeTable(tokenCount, verbCount);
+    for (int i=0; i<tokenCount; i++) {
+      for (int j=i+1; j<tokenCount; j++) {
+        table.set((i + j) % 2 == 0 ? i : j, (i + j) % 2 == 0 ? j : i, 1 + (i * tokenCount + j) % (verbCount - 1));
+      }
+    }
+    for (int i=0; i<tokenCount; i++) {
+      for (int j=i+1; j<tokenCount; j++) {
+        int code = table.code(i, j);
+        assertEquals(1 + (i * tokenCount + j) % (verbCount - 1), RuleInterpreter.verbId(code));
+        assertEquals((i + j) % 2 == 0 ? RuleInterpreter.FIRST_WINS : RuleInterpreter.SECOND_WINS, RuleInterpreter.side(code));
+      }
+    }
+    assertEquals(0, table.countMissing());
+  }
+
+  /*
+   * Pair indices map back to their tokens
+   */
+  @Test
+  public void pairIndexRoundTrip() {
+    long pair = 0;
+    for (int hi=1; hi<300; hi++) {
+      for (int lo=0; lo<hi; lo++) {
+        assertEquals(pair, PackedOutcomeTable.pairIndex(lo, hi));
+        assertEquals(((long) lo << 32) | hi, PackedOutcomeTable.tokens(pair++));
+      }
+    }
+    assertEquals(((long) 99998 << 32) | 99999, PackedOutcomeTable.tokens( PackedOutcomeTable.pairIndex(99998, 99999) ));
+  }
+
+  /*
+   * Missing pairs are counted and listed, ignoring the padding after the last pair
+   */
+  @Test
+  public void missingPairsFound() {
+
+    int tokenCount = 50;
+    PackedOutcomeTable table = new PackedOutcomeTable(tokenCount, 2);
+    assertEquals(tokenCount * (tokenCount - 1) / 2, table.countMissing());
+
+    for (int i=0; i<tokenCount; i++) {
+      for (int j=i+1; j<tokenCount; j++) {
+        if (!(i == 3 && j == 40) && !(i == 47 && j == 49)) {
+          table.set(j, i, 1);
+        }
+      }
+    }
+
+    assertEquals(2, table.countMissing());
+    assertArrayEquals(new long[] {(3L << 32) | 40, (47L << 32) | 49}, table.listMissing(10));
+    assertArrayEquals(new long[] {(3L << 32) | 40}, table.listMissing(1));
+  }
+
+}
@@ -0,0 +1,286 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RuleFileParserTest {
+
+  // Test data
+  File ruleFile;
+  ForkJoinPool pool;
+
+  @Before
+  public void prep() throws IOException {
+    ruleFile = File.createTempFile("rules-", ".txt");
+    pool = new ForkJoinPool(4);
+  }
+
+  @After
+  public void tidy() {
+    pool.shutdown();
+    ruleFile.delete();
+  }
+
+  /*
+   * Parsing in many small chunks gives exactly the same tables as parsing in one
+   */
+  @Test
+  public void chunkedParseMatchesSingleChunk() throws IOException {
+
+    StringBuilder rules = new StringBuilder();
+    int tokenCount = 51;
+    for (int i=0; i<tokenCount; i++) {
+      for (int k=1; k<=tokenCount/2; k++) {
+        rules.append( String.format("T%d:%s:T%d\n", i, k % 2 == 0 ? "beats" : "bests", (i + k) % tokenCount) );
+      }
+    }
+    write(rules.toString());
+
+    RuleInterpreter whole = new RuleInterpreter();
+    whole.parseRules(ruleFile, pool, Integer.MAX_VALUE >> 1);
+    RuleInterpreter chunked = new RuleInterpreter();
+    chunked.parseRules(ruleFile, pool, 64);
+
+    assertEquals(tokenCount, chunked.getTokenCount());
+    assertEquals(whole.getTokenList(), chunked.getTokenList());
+    for (int i=0; i<tokenCount; i++) {
+      assertEquals("T" + i, chunked.token(i));
+      for (int j=0; j<tokenCount; j++) {
+        assertEquals(whole.outcome(i, j), chunked.outcome(i, j));
+        assertEquals(whole.winner(i, j), chunked.winner(i, j));
+      }
+    }
+    assertEquals("bests", chunked.verb(1));
+    assertEquals("beats", chunked.verb(2));
+  }
+
+  /*
+   * Rulesets over the dense token limit compile to a packed table, with the same outcomes
+   */
+  @Test
+  public void packedTableMatchesDense() throws IOException {
+
+    StringBuilder rules = new StringBuilder();
+    int tokenCount = 75;
+    for (int i=0; i<tokenCount; i++) {
+      for (int k=1; k<=tokenCount/2; k++) {
+        rules.append( String.format("T%d:%s:T%d\n", i, k % 3 == 0 ? "beats" : k % 3 == 1 ? "bests" : "routs", (i + k) % tokenCount) );
+      }
+    }
+    write(rules.toString());
+
+    RuleInterpreter dense = new RuleInterpreter();
+    dense.parseRules(ruleFile, pool, 256);
+    RuleInterpreter packed = new RuleInterpreter();
+    packed.parseRules(ruleFile, pool, 256, 10);
+
+    assertTrue(packed.footprint() < dense.footprint());
+
+    int[] first = new int[tokenCount * tokenCount];
+    int[] second = new int[tokenCount * tokenCount];
+    for (int i=0; i<first.length; i++) {
+      first[i] = i / tokenCount;
+      second[i] = i % tokenCount;
+    }
+    int[] denseCodes = new int[first.length];
+    int[] packedCodes = new int[first.length];
+    dense.outcomes(first, second, denseCodes);
+    packed.outcomes(first, second, packedCodes);
+    assertArrayEquals(denseCodes, packedCodes);
+
+    assertEquals(dense.getTokenList(), packed.getTokenList());
+    for (int i=0; i<tokenCount; i++) {
+      for (int j=0; j<tokenCount; j++) {
+        assertEquals(dense.outcome(i, j), packed.outcome(i, j));
+        assertEquals(dense.winner(i, j), packed.winner(i, j));
+      }
+    }
+  }
+
+  /*
+   * Beaters come first in the symbol table, even when first seen in a later chunk
+   */
+  @Test
+  public void beatersOrderedFirstAcrossChunks() throws IOException {
+
+    write("A:beats:B\nC:beats:D\nB:beats:C\nD:beats:A\n");
+
+    RuleInterpreter rules = new RuleInterpreter();
+    rules.setValidating(false);
+    rules.parseRules(ruleFile, pool, 1);
+
+    assertEquals(Arrays.asList("A","C","B","D"), rules.getTokenList());
+  }
+
+  /*
+   * Later rules replace earlier ones for the same pair, across chunks
+   */
+  @Test
+  public void laterRulesWin() throws IOException {
+
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\nScissors:cuts:Rock\n");
+
+    // Contradictory and incomplete, so not validated
+    RuleInterpreter rules = new RuleInterpreter();
+    rules.setValidating(false);
+    rules.parseRules(ruleFile, pool, 1);
+
+    assertEquals(new Result("Scissors","cuts","Rock"), rules.winner("Rock","Scissors"));
+    assertEquals(new Result("Scissors","cuts","Rock"), rules.winner("Scissors","Rock"));
+    assertNull(rules.winner("Paper","Scissors"));
+  }
+
+  /*
+   * With more chunks than pool threads, chunks are scanned in several batches; symbols
+   * and rules are still merged in file order across them
+   */
+  @Test
+  public void batchesMergedInFileOrder() throws IOException {
+
+    StringBuilder rules = new StringBuilder("Rock:crushes:Scissors\n");
+    for (int i=0; i<10; i++) {
+      rules.append("T").append(i).append(":beats:Rock\n");
+    }
+    rules.append("Scissors:blunts:Rock\n");
+    write(rules.toString());
+
+    RuleInterpreter parsed = new RuleInterpreter();
+    parsed.setValidating(false);
+    parsed.parseRules(ruleFile, pool, 1);
+
+    assertEquals(12, parsed.getTokenCount());
+    assertEquals("Rock", parsed.token(0));
+    assertEquals("T9", parsed.token(10));
+    assertEquals("Scissors", parsed.token(11));
+    assertEquals(new Result("Scissors","blunts","Rock"), parsed.winner("Rock","Scissors"));
+    assertEquals(new Result("T9","beats","Rock"), parsed.winner("Rock","T9"));
+  }
+
+  /*
+   * Without validation, a rule of a token against itself is ignored by both kinds of
+   * table: a token always draws with itself
+   */
+  @Test
+  public void selfRuleIgnored() throws IOException {
+
+    write("Rock:crushes:Scissors\nRock:beats:Rock\nPaper:covers:Rock\nScissors:cuts:Paper\n");
+
+    RuleInterpreter dense = new RuleInterpreter();
+    dense.setValidating(false);
+    dense.parseRules(ruleFile, pool, 256);
+    RuleInterpreter packed = new RuleInterpreter();
+    packed.setValidating(false);
+    packed.parseRules(ruleFile, pool, 256, 0);
+
+    assertEquals(RuleInterpreter.DRAW, dense.outcome(0, 0));
+    assertEquals(new Result("Rock", Result.DRAW_VERB, "Rock"), dense.winner("Rock","Rock"));
+    for (int i=0; i<dense.getTokenCount(); i++) {
+      for (int j=0; j<dense.getTokenCount(); j++) {
+        assertEquals(dense.outcome(i, j), packed.outcome(i, j));
+      }
+    }
+  }
+
+  /*
+   * A rule verb spelt like the draw verb is still a win, in both the dense and the
+   * packed tables
+   */
+  @Test
+  public void drawVerbInRule() throws IOException {
+
+    write("Rock:draws with:Scissors\nScissors:cuts:Paper\nPaper:covers:Rock\n");
+
+    RuleInterpreter dense = new RuleInterpreter();
+    dense.parseRules(ruleFile, pool, 256);
+    RuleInterpreter packed = new RuleInterpreter();
+    packed.parseRules(ruleFile, pool, 256, 0);
+
+    assertEquals(RuleInterpreter.FIRST_WINS, RuleInterpreter.side(dense.outcome(0, 1)));
+    assertEquals(new Result("Rock", Result.DRAW_VERB, "Scissors"), packed.winner("Scissors","Rock"));
+    for (int i=0; i<dense.getTokenCount(); i++) {
+      for (int j=0; j<dense.getTokenCount(); j++) {
+        assertEquals(dense.outcome(i, j), packed.outcome(i, j));
+      }
+    }
+  }
+
+  /*
+   * Windows line endings, a missing final newline and multi-byte tokens are all handled
+   */
+  @Test
+  public void lineEndingsAndEncoding() throws IOException {
+
+    write("Ro\u00e7k:crushes:Scissors\r\nScissors:cuts:Paper\r\nPaper:covers:Ro\u00e7k");
+
+    RuleInterpreter rules = new RuleInterpreter();
+    rules.parseRules(ruleFile, pool, 1);
+
+    assertEquals(Arrays.asList("Ro\u00e7k","Scissors","Paper"), rules.getTokenList());
+    assertEquals(new Result("Paper","covers","Ro\u00e7k"), rules.winner("Ro\u00e7k","Paper"));
+  }
+
+  /*
+   * A malformed rule in any chunk fails the whole parse
+   */
+  @Test
+  public void malformedRuleRejected() throws IOException {
+
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\nScissors cuts Paper\n");
+
+    try {
+      new RuleInterpreter().parseRules(ruleFile, pool, 8);
+      fail("RTE expected");
+    } catch (RuntimeException e) {
+      assertEquals("Malformed rule detected", e.getMessage());
+    }
+  }
+
+  /*
+   * A rule with an empty token or verb is malformed
+   */
+  @Test
+  public void emptyFieldsRejected() throws IOException {
+
+    String[] malformed = { ":crushes:Scissors", "Rock::Scissors", "Rock:crushes:", "Rock:crushes:\r" };
+    for (String rule : malformed) {
+      write("Scissors:cuts:Paper\nPaper:covers:Rock\n" + rule + "\n");
+      try {
+        new RuleInterpreter().parseRules(ruleFile, pool, 1);
+        fail("RTE expected for " + rule);
+      } catch (RuntimeException e) {
+        assertEquals("Malformed rule detected", e.getMessage());
+      }
+    }
+  }
+
+  /*
+   * Missing files are reported as before
+   */
+  @Test(expected=FileNotFoundException.class)
+  public void missingFileRejected() throws FileNotFoundException {
+    new RuleInterpreter().parseRules(new File("test/resources/noSuchRules.txt"));
+  }
+
+  /*
+   * Private helper, writes the rule file
+   */
+  private void write(String rules) throws IOException {
+    Files.write(ruleFile.toPath(), rules.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
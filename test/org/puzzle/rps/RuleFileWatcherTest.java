@@ -0,0 +1,74 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RuleFileWatcherTest {
+
+  // Test data
+  File directory;
+  File ruleFile;
+  RulesetHolder holder;
+
+  // Object under test
+  RuleFileWatcher watcher;
+
+  @Before
+  public void prep() throws IOException {
+    directory = File.createTempFile("rules-", "");
+    directory.delete();
+    directory.mkdir();
+
+    ruleFile = new File(directory, "rules.txt");
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\n");
+
+    holder = new RulesetHolder(ruleFile);
+    watcher = new RuleFileWatcher(holder);
+    watcher.start();
+  }
+
+  @After
+  public void tidy() throws InterruptedException {
+    watcher.stop();
+    ruleFile.delete();
+    directory.delete();
+  }
+
+  /*
+   * Changing the rule file loads a new version
+   */
+  @Test(timeout=30000)
+  public void changesReloaded() throws IOException, InterruptedException {
+
+    write("Rock:smashes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\n");
+
+    while (holder.getVersion() == 1) {
+      Thread.sleep(10);
+    }
+    assertEquals(new Result("Rock","smashes","Scissors"), holder.current().winner("Rock","Scissors"));
+  }
+
+  /*
+   * Holders without a rule file can't be watched
+   */
+  @Test(expected=IllegalArgumentException.class)
+  public void holderNeedsFile() {
+    new RuleFileWatcher(new RulesetHolder(holder.current()));
+  }
+
+  /*
+   * Private helper, writes the rule file
+   */
+  private void write(String rules) throws IOException {
+    Files.write(ruleFile.toPath(), rules.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
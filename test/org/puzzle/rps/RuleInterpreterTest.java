@@ -1,11 +1,14 @@
 package org.puzzle.rps;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Before;
@@ -166,7 +169,202 @@ public class RuleInterpreterTest {
 
   }
   
-  private void checkOutcome(String t1, String t2, Result expResult) {    
+  /*
+   * Token indices follow the token ordering, and map back to the tokens
+   */
+  @Test
+  public void symbolTableMatchesTokens() throws FileNotFoundException {
+
+    ri.parseRules(new File("src/resources/lizardSpockRules.txt"));
+
+    List<String> tokenList = ri.getTokenList();
+    assertEquals(5, ri.getTokenCount());
+    assertEquals(new ArrayList<String>(ri.getTokens()), tokenList);
+
+    for (int i=0; i<tokenList.size(); i++) {
+      assertEquals(i, ri.tokenIndex(tokenList.get(i)));
+      assertEquals(tokenList.get(i), ri.token(i));
+    }
+  }
+
+  /*
+   * Index based lookups give the same results as token based lookups
+   */
+  @Test
+  public void indexLookupMatchesTokenLookup() throws FileNotFoundException {
+
+    ri.parseRules(new File("src/resources/lizardSpockRules.txt"));
+
+    for (String t1 : ri.getTokens()) {
+      for (String t2 : ri.getTokens()) {
+        assertSame(ri.winner(t1, t2), ri.winner(ri.tokenIndex(t1), ri.tokenIndex(t2)));
+      }
+    }
+
+    int rock = ri.tokenIndex("Rock");
+    int spock = ri.tokenIndex("Spock");
+    assertEquals(new Result("Spock", "vaporizes", "Rock"), ri.winner(rock, spock));
+    assertEquals(new Result("Spock", "vaporizes", "Rock"), ri.winner(spock, rock));
+  }
+
+  /*
+   * Draws are resolved up front, so repeated lookups return the same instance
+   */
+  @Test
+  public void drawsArePreallocated() throws FileNotFoundException {
+
+    ri.parseRules(new File("src/resources/rpsRules.txt"));
+
+    int paper = ri.tokenIndex("Paper");
+    assertEquals(new Result("Paper", "draws with", "Paper"), ri.winner(paper, paper));
+    assertSame(ri.winner(paper, paper), ri.winner(paper, paper));
+    assertSame(ri.winner("Paper", "Paper"), ri.winner("Paper", "Paper"));
+  }
+
+  /*
+   * Check for invalid token indices...
+   */
+  @Test
+  public void invalidIndexRejected() throws FileNotFoundException {
+
+    ri.parseRules(new File("src/resources/rpsRules.txt"));
+
+    try {
+      ri.winner(0, 3);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid game token index '3'", e.getMessage());
+    }
+
+    try {
+      ri.winner(-1, 0);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid game token index '-1'", e.getMessage());
+    }
+
+    try {
+      ri.tokenIndex("Bicycle");
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid game Token 'Bicycle'", e.getMessage());
+    }
+  }
+
+  /*
+   * Outcome codes give the winning side and verb for each pair of indices
+   */
+  @Test
+  public void outcomeCodesMatchResults() throws FileNotFoundException {
+
+    ri.parseRules(new File("src/resources/lizardSpockRules.txt"));
+
+    int n = ri.getTokenCount();
+    for (int t1=0; t1<n; t1++) {
+      for (int t2=0; t2<n; t2++) {
+
+        int outcome = ri.outcome(t1, t2);
+        Result res = ri.winner(t1, t2);
+
+        assertEquals(res.winVerb, ri.verb(RuleInterpreter.verbId(outcome)));
+
+        switch (RuleInterpreter.side(outcome)) {
+          case RuleInterpreter.DRAW:
+            assertEquals(t1, t2);
+            break;
+          case RuleInterpreter.FIRST_WINS:
+            assertEquals(ri.token(t1), res.winningToken);
+            break;
+          case RuleInterpreter.SECOND_WINS:
+            assertEquals(ri.token(t2), res.winningToken);
+            break;
+          default:
+            fail("Every pair should be covered");
+        }
+      }
+    }
+
+    assertEquals(Result.DRAW_VERB, ri.verb(0));
+  }
+
+  /*
+   * Bulk outcome codes match single lookups, and stay within the given range
+   */
+  @Test
+  public void batchOutcomesMatchSingle() throws FileNotFoundException {
+
+    ri.parseRules(new File("src/resources/lizardSpockRules.txt"));
+
+    int n = ri.getTokenCount();
+    int[] first = new int[n * n + 2];
+    int[] second = new int[n * n + 2];
+    for (int i=0; i<n*n; i++) {
+      first[i + 1] = i / n;
+      second[i + 1] = i % n;
+    }
+
+    int[] codes = new int[n * n + 2];
+    codes[0] = -1;
+    codes[n * n + 1] = -1;
+    ri.outcomes(first, second, codes, 1, n * n);
+
+    for (int i=0; i<n*n; i++) {
+      assertEquals(ri.outcome(i / n, i % n), codes[i + 1]);
+    }
+    assertEquals(-1, codes[0]);
+    assertEquals(-1, codes[n * n + 1]);
+  }
+
+  /*
+   * Bad indices and ranges are rejected before any codes are written
+   */
+  @Test
+  public void batchOutcomesChecked() throws FileNotFoundException {
+
+    ri.parseRules(new File("src/resources/rpsRules.txt"));
+
+    int[] codes = new int[] {-1, -1, -1};
+    try {
+      ri.outcomes(new int[] {0, 1, 2}, new int[] {2, 3, 0}, codes);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid game token index '3'", e.getMessage());
+    }
+    assertEquals(-1, codes[0]);
+
+    try {
+      ri.outcomes(new int[] {0, 1}, new int[] {2, 1}, codes);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Batch arrays differ in length: 2, 2, 3", e.getMessage());
+    }
+
+    try {
+      ri.outcomes(new int[] {0, 1}, new int[] {2, 1}, codes, 1, 2);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid batch range 1+2", e.getMessage());
+    }
+  }
+
+  /*
+   * Once loaded, an interpreter's rules can't be replaced
+   */
+  @Test
+  public void rulesLoadedOnce() throws FileNotFoundException {
+
+    ri.parseRules(new File("src/resources/rpsRules.txt"));
+
+    try {
+      ri.parseRules(new File("src/resources/lizardSpockRules.txt"));
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals("Rules already loaded; load new rules into a new RuleInterpreter", e.getMessage());
+    }
+    assertEquals(3, ri.getTokenCount());
+  }
+
+  private void checkOutcome(String t1, String t2, Result expResult) {
     assertEquals(expResult, ri.winner(t1,t2));
     assertEquals(expResult, ri.winner(t2,t1));      
   }
@@ -0,0 +1,178 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.players.Player;
+
+public class RulesetHolderTest {
+
+  private static final String RPS = "Rock:crushes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\n";
+  private static final String RPS_SMASHES = "Rock:smashes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\n";
+
+  // Test data
+  File ruleFile;
+
+  // Object under test
+  RulesetHolder holder;
+
+  @Before
+  public void prep() throws IOException {
+    ruleFile = File.createTempFile("rules-", ".txt");
+    write(RPS);
+    holder = new RulesetHolder(ruleFile);
+  }
+
+  @After
+  public void tidy() {
+    ruleFile.delete();
+  }
+
+  /*
+   * Reloading picks up changed rules as a new version
+   */
+  @Test
+  public void reloadPicksUpChanges() throws IOException {
+
+    RuleInterpreter first = holder.current();
+    assertEquals(1, holder.getVersion());
+
+    assertFalse(holder.reload());
+    assertSame(first, holder.current());
+
+    write(RPS_SMASHES);
+    assertTrue(holder.reload());
+    assertEquals(2, holder.getVersion());
+    assertEquals(new Result("Rock","smashes","Scissors"), holder.current().winner("Rock","Scissors"));
+
+    // The old version is untouched
+    assertEquals(new Result("Rock","crushes","Scissors"), first.winner("Rock","Scissors"));
+  }
+
+  /*
+   * Broken rule files are not loaded, and the current version stays in place
+   */
+  @Test
+  public void brokenReloadKeepsCurrent() throws IOException {
+
+    RuleInterpreter first = holder.current();
+
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\n");
+    assertFalse(holder.reload());
+    assertTrue(holder.getLastReloadError() instanceof RulesetValidationException);
+
+    ruleFile.delete();
+    assertFalse(holder.reload());
+    assertNotNull(holder.getLastReloadError());
+
+    assertSame(first, holder.current());
+    assertEquals(1, holder.getVersion());
+
+    write(RPS_SMASHES);
+    assertTrue(holder.reload());
+    assertNull(holder.getLastReloadError());
+  }
+
+  /*
+   * Games in flight keep their version; the next game gets the new one
+   */
+  @Test
+  public void gamesKeepTheirVersion() throws IOException {
+
+    final RuleInterpreter first = holder.current();
+    final int[] roundsPlayed = new int[1];
+
+    // Reload mid-game, from inside a player
+    Player reloader = new Player() {
+      @Override
+      public String getMove() {
+        if (++roundsPlayed[0] == 5) {
+          try {
+            write(RPS_SMASHES);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+          holder.reload();
+        }
+        return "Rock";
+      }
+    };
+    Player scissors = new Player() {
+      @Override
+      public String getMove() {
+        return "Scissors";
+      }
+    };
+
+    GameEngine game = new GameEngine(reloader, scissors, holder.current(), 10);
+    game.setGameDelay(0);
+    RecordingObserver observer = new RecordingObserver();
+    game.registerObserver(observer);
+    game.play();
+
+    assertEquals(2, holder.getVersion());
+    assertEquals(10, observer.crushes);
+    assertEquals(0, observer.smashes);
+    assertEquals(new Result("Rock","crushes","Scissors"), first.winner("Rock","Scissors"));
+    assertEquals(new Result("Rock","smashes","Scissors"), holder.current().winner("Rock","Scissors"));
+  }
+
+  /*
+   * Holders of loaded rules can be swapped, but not reloaded
+   */
+  @Test(expected=IllegalStateException.class)
+  public void swapOnly() {
+
+    RulesetHolder swapped = new RulesetHolder(holder.current());
+    swapped.swap(holder.current());
+    assertEquals(2, swapped.getVersion());
+
+    swapped.reload();
+  }
+
+  /*
+   * Private helper, writes the rule file
+   */
+  private void write(String rules) throws IOException {
+    Files.write(ruleFile.toPath(), rules.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /*
+   * Observer counting the verbs of round outcomes
+   */
+  private static class RecordingObserver implements GameObserver {
+
+    int crushes;
+    int smashes;
+
+    @Override
+    public void notifyPlay(Player player, String token) {
+    }
+
+    @Override
+    public void notifyRoundOutcome(Result r) {
+      if ("crushes".equals(r.winVerb)) {
+        crushes++;
+      } else if ("smashes".equals(r.winVerb)) {
+        smashes++;
+      }
+    }
+
+    @Override
+    public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+    }
+  }
+
+}
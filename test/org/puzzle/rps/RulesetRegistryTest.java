@@ -0,0 +1,172 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RulesetRegistryTest {
+
+  // Test data
+  File rps;
+  File rpsCopy;
+  File ranger;
+
+  // Object under test
+  RulesetRegistry registry;
+
+  @Before
+  public void prep() throws IOException {
+    rps = write("Rock:crushes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\n");
+    rpsCopy = write("Rock:crushes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\n");
+    ranger = write("Ranger:arrests:Poacher\nPoacher:shoots:Bear\nBear:mauls:Ranger\n");
+
+    registry = new RulesetRegistry(1 << 20);
+  }
+
+  @After
+  public void tidy() {
+    rps.delete();
+    rpsCopy.delete();
+    ranger.delete();
+  }
+
+  /*
+   * Identical rulesets are loaded once, and shared, whichever file they come from
+   */
+  @Test
+  public void identicalRulesetsShared() throws IOException {
+
+    RuleInterpreter first = registry.acquire(rps);
+    RuleInterpreter second = registry.acquire(rpsCopy);
+    RuleInterpreter other = registry.acquire(ranger);
+
+    assertSame(first, second);
+    assertNotSame(first, other);
+    assertEquals(2, registry.getLoadedCount());
+    assertTrue(registry.getFootprint() > 0);
+  }
+
+  /*
+   * Unused rulesets are evicted over budget, least recently used first; those in use never are
+   */
+  @Test
+  public void unusedRulesetsEvicted() throws IOException {
+
+    registry = new RulesetRegistry(0);
+
+    RuleInterpreter first = registry.acquire(rps);
+    RuleInterpreter other = registry.acquire(ranger);
+    assertEquals(2, registry.getLoadedCount());
+
+    registry.release(first);
+    assertEquals(1, registry.getLoadedCount());
+    assertNotSame(first, registry.acquire(rps));
+
+    registry.release(other);
+    assertEquals(1, registry.getLoadedCount());
+  }
+
+  /*
+   * Within budget, unused rulesets stay loaded
+   */
+  @Test
+  public void unusedRulesetsKeptWithinBudget() throws IOException {
+
+    RuleInterpreter first = registry.acquire(rps);
+    registry.release(first);
+
+    assertEquals(1, registry.getLoadedCount());
+    assertSame(first, registry.acquire(rpsCopy));
+  }
+
+  /*
+   * Releasing rules that aren't held is rejected
+   */
+  @Test
+  public void unbalancedReleaseRejected() throws IOException {
+
+    RuleInterpreter first = registry.acquire(rps);
+    registry.release(first);
+
+    try {
+      registry.release(first);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Rules not held from this registry", e.getMessage());
+    }
+  }
+
+  /*
+   * Invalid rulesets fail to load, and leave nothing behind
+   */
+  @Test
+  public void invalidRulesetNotRegistered() throws IOException {
+
+    File broken = write("Rock:crushes:Scissors\nPaper:covers:Rock\n");
+    try {
+      registry.acquire(broken);
+      fail("RulesetValidationException expected");
+    } catch (RulesetValidationException e) {
+      assertEquals(0, registry.getLoadedCount());
+      assertEquals(0, registry.getFootprint());
+    } finally {
+      broken.delete();
+    }
+  }
+
+  /*
+   * Many threads acquiring the same ruleset all get the one instance
+   */
+  @Test
+  public void concurrentAcquireShares() throws Exception {
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<RuleInterpreter>> results = new ArrayList<Future<RuleInterpreter>>();
+      for (int i=0; i<32; i++) {
+        final File file = i % 2 == 0 ? rps : rpsCopy;
+        results.add( executor.submit(new Callable<RuleInterpreter>() {
+          @Override
+          public RuleInterpreter call() throws Exception {
+            return registry.acquire(file);
+          }
+        }));
+      }
+
+      RuleInterpreter shared = results.get(0).get();
+      for (Future<RuleInterpreter> result : results) {
+        assertSame(shared, result.get());
+      }
+      assertEquals(1, registry.getLoadedCount());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /*
+   * Private helper, writes rules to a new temporary file
+   */
+  private File write(String rules) throws IOException {
+    File file = File.createTempFile("rules-", ".txt");
+    Files.write(file.toPath(), rules.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+}
@@ -0,0 +1,219 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RulesetSnapshotTest {
+
+  // Test data
+  File ruleFile;
+  File snapshotFile;
+
+  @Before
+  public void prep() throws IOException {
+    ruleFile = File.createTempFile("rules-", ".txt");
+    snapshotFile = new File(ruleFile.getPath() + ".snapshot");
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\n");
+  }
+
+  @After
+  public void tidy() {
+    ruleFile.delete();
+    snapshotFile.delete();
+  }
+
+  /*
+   * The first load parses the text and writes a snapshot; the next load uses the
+   * snapshot, and sees exactly the same rules
+   */
+  @Test
+  public void snapshotWrittenThenUsed() throws IOException {
+
+    RuleInterpreter parsed = new RuleInterpreter();
+    parsed.loadRules(ruleFile, snapshotFile);
+    assertTrue(snapshotFile.isFile());
+
+    assertNotNull(read(true));
+
+    RuleInterpreter loaded = new RuleInterpreter();
+    loaded.loadRules(ruleFile, snapshotFile);
+
+    assertEquals(parsed.getTokenList(), loaded.getTokenList());
+    for (int i=0; i<parsed.getTokenCount(); i++) {
+      for (int j=0; j<parsed.getTokenCount(); j++) {
+        assertEquals(parsed.outcome(i, j), loaded.outcome(i, j));
+        assertEquals(parsed.winner(i, j), loaded.winner(i, j));
+      }
+    }
+    assertEquals(new Result("Paper","covers","Rock"), loaded.winner("Rock","Paper"));
+  }
+
+  /*
+   * A snapshot goes stale when the rule file changes, and is rebuilt
+   */
+  @Test
+  public void staleSnapshotIgnored() throws IOException {
+
+    new RuleInterpreter().loadRules(ruleFile, snapshotFile);
+    write("Rock:smashes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\n");
+
+    assertNull(read(true));
+
+    RuleInterpreter rules = new RuleInterpreter();
+    rules.loadRules(ruleFile, snapshotFile);
+    assertEquals(new Result("Rock","smashes","Scissors"), rules.winner("Rock","Scissors"));
+
+    // ... and the rebuilt snapshot is current
+    assertNotNull(read(true));
+  }
+
+  /*
+   * Corrupt and truncated snapshots are ignored
+   */
+  @Test
+  public void corruptSnapshotIgnored() throws IOException {
+
+    new RuleInterpreter().loadRules(ruleFile, snapshotFile);
+
+    RandomAccessFile raf = new RandomAccessFile(snapshotFile, "rw");
+    try {
+      raf.seek(60);
+      raf.write('X');
+    } finally {
+      raf.close();
+    }
+    assertNull(read(true));
+
+    raf = new RandomAccessFile(snapshotFile, "rw");
+    try {
+      raf.setLength(raf.length() - 4);
+    } finally {
+      raf.close();
+    }
+    assertNull(read(true));
+
+    RuleInterpreter rules = new RuleInterpreter();
+    rules.loadRules(ruleFile, snapshotFile);
+    assertEquals(3, rules.getTokenCount());
+  }
+
+  /*
+   * A snapshot whose outcome table is damaged is ignored, rather than trusted
+   */
+  @Test
+  public void corruptTableIgnored() throws IOException {
+
+    new RuleInterpreter().loadRules(ruleFile, snapshotFile);
+
+    RandomAccessFile raf = new RandomAccessFile(snapshotFile, "rw");
+    try {
+      raf.seek(raf.length() - 1);
+      raf.write(0x7F);
+    } finally {
+      raf.close();
+    }
+    assertNull(read(true));
+
+    RuleInterpreter rules = new RuleInterpreter();
+    rules.loadRules(ruleFile, snapshotFile);
+    assertEquals(new Result("Scissors","cuts","Paper"), rules.winner("Paper","Scissors"));
+    assertNotNull(read(true));
+  }
+
+  /*
+   * Snapshots are kept in the user's own directory by default, not a shared one
+   */
+  @Test
+  public void defaultFileInUserDirectory() {
+
+    File snapshot = RulesetSnapshot.defaultFile(ruleFile);
+    File home = new File(System.getProperty("user.home")).getAbsoluteFile();
+
+    assertTrue(snapshot.getAbsolutePath().startsWith(home.getPath() + File.separator));
+    assertTrue(snapshot.getName().startsWith("rps-" + ruleFile.getName()));
+  }
+
+  /*
+   * Snapshots of unvalidated rules are not used when validation is required
+   */
+  @Test
+  public void unvalidatedSnapshotNotTrusted() throws IOException {
+
+    RuleInterpreter lenient = new RuleInterpreter();
+    lenient.setValidating(false);
+    lenient.loadRules(ruleFile, snapshotFile);
+
+    assertNotNull(read(false));
+    assertNull(read(true));
+  }
+
+  /*
+   * An unwritable snapshot location doesn't stop the rules loading
+   */
+  @Test
+  public void unwritableSnapshotTolerated() throws IOException {
+
+    File nowhere = new File(ruleFile.getPath() + ".missing/rules.snapshot");
+
+    RuleInterpreter rules = new RuleInterpreter();
+    rules.loadRules(ruleFile, nowhere);
+
+    assertEquals(3, rules.getTokenCount());
+    assertFalse(nowhere.exists());
+  }
+
+  /*
+   * Packed outcome tables are snapshotted as they are, and mapped back in place
+   */
+  @Test
+  public void packedTableRoundTrip() {
+
+    String[] tokens = new String[] {"T0","T1","T2","T3","T4"};
+    String[] verbs = new String[] {Result.DRAW_VERB,"beats","bests"};
+    PackedOutcomeTable table = new PackedOutcomeTable(tokens.length, verbs.length);
+    for (int i=0; i<tokens.length; i++) {
+      for (int k=1; k<=2; k++) {
+        table.set(i, (i + k) % tokens.length, k);
+      }
+    }
+
+    RulesetSnapshot.write(snapshotFile, tokens, verbs, table, true, ruleFile.length(), RulesetSnapshot.checksum(ruleFile));
+    RulesetSnapshot snapshot = read(true);
+
+    assertTrue(snapshot.outcomes instanceof PackedOutcomeTable);
+    assertEquals(table.getFootprint(), snapshot.outcomes.getFootprint());
+    for (int i=0; i<tokens.length; i++) {
+      for (int j=0; j<tokens.length; j++) {
+        assertEquals(table.code(i, j), snapshot.outcomes.code(i, j));
+      }
+    }
+  }
+
+  /*
+   * Private helper, reads the snapshot if it's usable for the current rule file
+   */
+  private RulesetSnapshot read(boolean validated) {
+    return RulesetSnapshot.read(snapshotFile, ruleFile.length(), RulesetSnapshot.checksum(ruleFile), validated);
+  }
+
+  /*
+   * Private helper, writes the rule file
+   */
+  private void write(String rules) throws IOException {
+    Files.write(ruleFile.toPath(), rules.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
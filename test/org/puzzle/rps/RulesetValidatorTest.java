@@ -0,0 +1,171 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.RulesetValidationException.Pair;
+
+public class RulesetValidatorTest {
+
+  // Test data
+  File ruleFile;
+
+  // Object under test
+  RuleInterpreter rules;
+
+  @Before
+  public void prep() throws IOException {
+    ruleFile = File.createTempFile("rules-", ".txt");
+    rules = new RuleInterpreter();
+  }
+
+  @After
+  public void tidy() {
+    ruleFile.delete();
+  }
+
+  /*
+   * Every pair missing a rule is reported
+   */
+  @Test
+  public void missingPairsReported() throws IOException {
+
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\nLizard:eats:Paper\n");
+
+    try {
+      rules.parseRules(ruleFile);
+      fail("RulesetValidationException expected");
+    } catch (RulesetValidationException e) {
+      assertEquals(3, e.getMissingCount());
+      assertEquals(0, e.getConflictingCount());
+      assertEquals(Arrays.asList(new Pair("Rock","Lizard"), new Pair("Paper","Scissors"), new Pair("Lizard","Scissors")),
+          e.getMissingPairs());
+      assertEquals("Invalid ruleset: 3 missing pairs, 0 conflicting pairs; missing [Rock/Lizard, Paper/Scissors, Lizard/Scissors]",
+          e.getMessage());
+    }
+  }
+
+  /*
+   * Contradictory rules, and tokens beating themselves, are reported
+   */
+  @Test
+  public void conflictingPairsReported() throws IOException {
+
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\nScissors:blunts:Rock\nPaper:folds:Paper\n");
+
+    try {
+      rules.parseRules(ruleFile);
+      fail("RulesetValidationException expected");
+    } catch (RulesetValidationException e) {
+      assertEquals(0, e.getMissingCount());
+      assertEquals(Arrays.asList(new Pair("Rock","Scissors"), new Pair("Paper","Paper")), e.getConflictingPairs());
+    }
+  }
+
+  /*
+   * A rule restated with a different verb is not a conflict
+   */
+  @Test
+  public void restatedRuleAccepted() throws IOException {
+
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\nRock:blunts:Scissors\n");
+    rules.parseRules(ruleFile);
+
+    assertEquals(new Result("Rock","blunts","Scissors"), rules.winner("Scissors","Rock"));
+  }
+
+  /*
+   * Large balanced rulesets pass; knocking out one rule is found, across word boundaries
+   */
+  @Test
+  public void largeRulesetChecked() throws IOException {
+
+    int tokenCount = 201;
+    StringBuilder balanced = new StringBuilder();
+    for (int i=0; i<tokenCount; i++) {
+      for (int k=1; k<=tokenCount/2; k++) {
+        if (i != 70 || k != 65) {
+          balanced.append( String.format("T%d:beats:T%d\n", i, (i + k) % tokenCount) );
+        }
+      }
+    }
+    write(balanced.toString());
+
+    try {
+      rules.parseRules(ruleFile);
+      fail("RulesetValidationException expected");
+    } catch (RulesetValidationException e) {
+      assertEquals(Arrays.asList(new Pair("T70","T135")), e.getMissingPairs());
+    }
+
+    write(balanced.append("T70:beats:T135\n").toString());
+    rules.parseRules(ruleFile);
+    assertEquals(tokenCount, rules.getTokenCount());
+  }
+
+  /*
+   * Packed tables are validated without bit matrices, and report the same pairs
+   */
+  @Test
+  public void packedRulesetChecked() throws IOException {
+
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\nScissors:cuts:Paper\nScissors:blunts:Rock\n"
+        + "Paper:folds:Paper\nLizard:eats:Paper\nRock:crushes:Scissors\n");
+
+    try {
+      rules.parseRules(ruleFile, ForkJoinPool.commonPool(), RuleFileParser.DEFAULT_CHUNK_SIZE, 0);
+      fail("RulesetValidationException expected");
+    } catch (RulesetValidationException e) {
+      assertEquals(2, e.getMissingCount());
+      assertEquals(Arrays.asList(new Pair("Rock","Lizard"), new Pair("Scissors","Lizard")), e.getMissingPairs());
+      assertEquals(2, e.getConflictingCount());
+      assertEquals(Arrays.asList(new Pair("Rock","Scissors"), new Pair("Paper","Paper")), e.getConflictingPairs());
+    }
+  }
+
+  /*
+   * Validation can be switched off for partial rulesets
+   */
+  @Test
+  public void validationOptional() throws IOException {
+
+    write("Rock:crushes:Scissors\nPaper:covers:Rock\n");
+
+    rules.setValidating(false);
+    rules.parseRules(ruleFile);
+
+    assertNull(rules.winner("Paper","Scissors"));
+  }
+
+  /*
+   * The bundled rulesets are all valid
+   */
+  @Test
+  public void bundledRulesetsValid() throws IOException {
+    for (String name : new String[] {"rpsRules", "lizardSpockRules", "rangerRules"}) {
+      rules = new RuleInterpreter();
+      rules.parseRules(new File("src/resources/" + name + ".txt"));
+      assertTrue(rules.getTokenCount() > 0);
+    }
+  }
+
+  /*
+   * Private helper, writes the rule file
+   */
+  private void write(String rules) throws IOException {
+    Files.write(ruleFile.toPath(), rules.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
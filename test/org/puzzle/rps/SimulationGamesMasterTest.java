@@ -0,0 +1,177 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.PlayerFactory;
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+
+public class SimulationGamesMasterTest {
+
+  // Test data
+  RuleInterpreter testRules;
+
+  // Object under test
+  SimulationGamesMaster gm;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+
+    testRules = new RuleInterpreter();
+    testRules.parseRules( new File("src/resources/lizardSpockRules.txt") );
+
+    gm = new SimulationGamesMaster(testRules, new PlayerFactory(),
+        PlayerType.RANDOM_COMPUTER, PlayerType.RANDOM_COMPUTER, 1000);
+  }
+
+  /*
+   * All requested games and rounds are played, and every game has an outcome
+   */
+  @Test
+  public void simulationReportsAllGames() {
+
+    SimulationReport report = gm.simulate(5);
+
+    assertEquals(5, report.games);
+    assertEquals(5000, report.rounds);
+    assertEquals(5, report.p1Wins + report.p2Wins + report.draws);
+    assertTrue(report.elapsedNanos > 0);
+    assertTrue(report.roundsPerSecond() > 0);
+  }
+
+  /*
+   * Running headless, games are not paced: a thousand rounds would take over half
+   * an hour at the default delay
+   */
+  @Test(timeout=10000)
+  public void gamesAreNotPaced() {
+    gm.simulate(2);
+  }
+
+  /*
+   * Registered observers see every event from every game
+   */
+  @Test
+  public void observersAttachedToGames() {
+
+    CountingObserver observer = new CountingObserver();
+    gm.registerObserver(observer);
+
+    gm.simulate(3);
+
+    assertEquals(6000, observer.plays);
+    assertEquals(3000, observer.rounds);
+    assertEquals(3, observer.games);
+  }
+
+  /*
+   * Each simulation starts its report from scratch
+   */
+  @Test
+  public void reportsAreIndependent() {
+
+    gm.simulate(2);
+    SimulationReport report = gm.simulate(1);
+
+    assertEquals(1, report.games);
+    assertEquals(1000, report.rounds);
+  }
+
+  /*
+   * Any game of a run can be played again from the master seed, with the same outcome
+   */
+  @Test
+  public void gamesReplayFromSeed() {
+
+    CountingObserver observer = new CountingObserver();
+    gm.registerObserver(observer);
+    gm.setMasterSeed(42L);
+
+    int[] p1Scores = new int[3];
+    int[] p2Scores = new int[3];
+    for (int g=0; g<3; g++) {
+      SimulationReport report = gm.simulate(1);
+      assertEquals(42L, report.masterSeed);
+      assertEquals(g, report.firstGame);
+      p1Scores[g] = observer.p1Score;
+      p2Scores[g] = observer.p2Score;
+    }
+
+    for (int g=2; g>=0; g--) {
+      GameRecord record = gm.replayGame(g);
+      assertEquals(p1Scores[g], record.p1Score);
+      assertEquals(p2Scores[g], record.p2Score);
+    }
+  }
+
+  /*
+   * Runs from the same master seed play the same games
+   */
+  @Test
+  public void runsRepeatFromSeed() {
+
+    SimulationGamesMaster other = new SimulationGamesMaster(testRules, new PlayerFactory(),
+        PlayerType.RANDOM_COMPUTER, PlayerType.RANDOM_COMPUTER, 1000);
+    gm.setMasterSeed(7L);
+    other.setMasterSeed(7L);
+
+    SimulationReport report = gm.simulate(10);
+    SimulationReport otherReport = other.simulate(10);
+
+    assertEquals(report.p1Wins, otherReport.p1Wins);
+    assertEquals(report.p2Wins, otherReport.p2Wins);
+    assertEquals(report.draws, otherReport.draws);
+    assertEquals(gm.replayGame(9), other.replayGame(9));
+  }
+
+  /*
+   * Humans need a console, so can't be simulated
+   */
+  @Test
+  public void humanPlayersRejected() {
+
+    try {
+      new SimulationGamesMaster(testRules, new PlayerFactory(), PlayerType.HUMAN, PlayerType.RANDOM_COMPUTER, 10);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Human players cannot take part in a headless simulation", e.getMessage());
+    }
+  }
+
+
+
+  /**
+   * Observer that simply counts events
+   */
+  private class CountingObserver implements GameObserver {
+
+    int plays, rounds, games = 0;
+    int p1Score, p2Score;
+
+    @Override
+    public void notifyPlay(Player player, String token) {
+      plays++;
+    }
+
+    @Override
+    public void notifyRoundOutcome(Result r) {
+      rounds++;
+    }
+
+    @Override
+    public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+      games++;
+      this.p1Score = p1Score;
+      this.p2Score = p2Score;
+    }
+
+  }
+
+}
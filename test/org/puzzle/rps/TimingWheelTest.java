@@ -0,0 +1,176 @@
+package org.puzzle.rps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+  // Object under test: 5ms ticks, 8 buckets, so 40ms is a whole turn of the wheel
+  TimingWheel wheel;
+
+  @Before
+  public void prep() {
+    wheel = new TimingWheel(5, 8, 2);
+    wheel.start();
+  }
+
+  @After
+  public void tidy() throws InterruptedException {
+    wheel.stop();
+  }
+
+  /*
+   * Tasks never run early, and run within a few ticks of their deadline, including
+   * tasks more than a turn of the wheel away
+   */
+  @Test
+  public void tasksRunOnTime() throws InterruptedException {
+
+    long[] delays = {0, 3, 17, 40, 95};
+    final CountDownLatch done = new CountDownLatch(delays.length);
+    final AtomicLong worstEarly = new AtomicLong(Long.MAX_VALUE);
+    final AtomicLong worstLate = new AtomicLong();
+
+    for (final long delay : delays) {
+      final long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+      wheel.schedule(new Runnable() {
+        @Override
+        public void run() {
+          long lateness = System.nanoTime() - due;
+          worstEarly.set(Math.min(worstEarly.get(), lateness));
+          worstLate.set(Math.max(worstLate.get(), lateness));
+          done.countDown();
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(worstEarly.get() >= 0);
+    assertTrue(worstLate.get() < TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  /*
+   * Thousands of tasks share the wheel's few worker threads
+   */
+  @Test
+  public void manyTasksFewThreads() throws InterruptedException {
+
+    int tasks = 5000;
+    final CountDownLatch done = new CountDownLatch(tasks);
+    final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    for (int i=0; i<tasks; i++) {
+      wheel.schedule(new Runnable() {
+        @Override
+        public void run() {
+          threads.add( Thread.currentThread().getName() );
+          done.countDown();
+        }
+      }, 1 + i % 60, TimeUnit.MILLISECONDS);
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(threads.size() <= 2);
+  }
+
+  /*
+   * Cancelled tasks never run
+   */
+  @Test
+  public void cancelledTasksSkipped() throws InterruptedException {
+
+    final AtomicBoolean ran = new AtomicBoolean();
+    TimingWheel.Timeout timeout = wheel.schedule(new Runnable() {
+      @Override
+      public void run() {
+        ran.set(true);
+      }
+    }, 20, TimeUnit.MILLISECONDS);
+
+    assertTrue(timeout.cancel());
+    assertTrue(timeout.isCancelled());
+    Thread.sleep(60);
+
+    assertFalse(ran.get());
+    assertFalse(timeout.cancel());
+  }
+
+  /*
+   * A stopped wheel takes no more tasks
+   */
+  @Test
+  public void stoppedWheelRejectsTasks() throws InterruptedException {
+
+    wheel.stop();
+    try {
+      wheel.schedule(new Runnable() {
+        @Override
+        public void run() {
+        }
+      }, 1, TimeUnit.MILLISECONDS);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals("Timing wheel not running", e.getMessage());
+    }
+    try {
+      wheel.schedule(new Runnable() {
+        @Override
+        public void run() {
+        }
+      }, 0, TimeUnit.MILLISECONDS);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals("Timing wheel not running", e.getMessage());
+    }
+  }
+
+  /*
+   * Stopping the wheel drops the tasks not yet due, bucketed or not, and runs their
+   * stop hooks
+   */
+  @Test
+  public void stopRunsHooksOfDroppedTasks() throws InterruptedException {
+
+    final AtomicBoolean ran = new AtomicBoolean();
+    final AtomicInteger dropped = new AtomicInteger();
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        ran.set(true);
+      }
+    };
+    Runnable onStop = new Runnable() {
+      @Override
+      public void run() {
+        dropped.incrementAndGet();
+      }
+    };
+
+    TimingWheel.Timeout bucketed = wheel.schedule(task, 5000, TimeUnit.MILLISECONDS, onStop);
+    Thread.sleep(30);
+    TimingWheel.Timeout queued = wheel.schedule(task, 5000, TimeUnit.MILLISECONDS, onStop);
+    TimingWheel.Timeout cancelled = wheel.schedule(task, 5000, TimeUnit.MILLISECONDS, onStop);
+    assertTrue(cancelled.cancel());
+    wheel.stop();
+
+    assertEquals(2, dropped.get());
+    assertTrue(bucketed.isCancelled());
+    assertTrue(queued.isCancelled());
+    assertFalse(ran.get());
+  }
+
+}
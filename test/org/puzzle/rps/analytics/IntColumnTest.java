@@ -0,0 +1,115 @@
+package org.puzzle.rps.analytics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntColumnTest {
+
+  /*
+   * Columns of long runs are run length encoded, and decode as they were
+   */
+  @Test
+  public void runsEncodedAsRuns() {
+
+    int[] values = new int[10000];
+    for (int i=0; i<values.length; i++) {
+      values[i] = 1000 + i / 250;
+    }
+
+    IntColumn column = IntColumn.encode(values, values.length);
+    assertTrue(column.isRunLength());
+    assertEquals(1000, column.getMin());
+    assertEquals(1039, column.getMax());
+    assertRoundTrip(values, column);
+  }
+
+  /*
+   * Columns of varied small values are bit packed, and decode as they were
+   */
+  @Test
+  public void variedValuesPacked() {
+
+    Random random = new Random(7);
+    int[] values = new int[10001];
+    for (int i=0; i<values.length; i++) {
+      values[i] = random.nextInt(5);
+    }
+
+    IntColumn column = IntColumn.encode(values, values.length);
+    assertFalse(column.isRunLength());
+    assertTrue(column.getFootprint() < values.length);
+    assertRoundTrip(values, column);
+  }
+
+  /*
+   * A column of one value takes next to nothing
+   */
+  @Test
+  public void constantColumn() {
+
+    int[] values = new int[5000];
+    Arrays.fill(values, 42);
+
+    IntColumn column = IntColumn.encode(values, values.length);
+    assertEquals(42, column.getMin());
+    assertEquals(42, column.getMax());
+    assertTrue(column.getFootprint() <= 8);
+    assertRoundTrip(values, column);
+  }
+
+  /*
+   * Values spanning the whole int range survive packing
+   */
+  @Test
+  public void fullRange() {
+
+    Random random = new Random(11);
+    int[] values = new int[3000];
+    for (int i=0; i<values.length; i++) {
+      values[i] = random.nextInt();
+    }
+    values[0] = Integer.MIN_VALUE;
+    values[1] = Integer.MAX_VALUE;
+
+    IntColumn column = IntColumn.encode(values, values.length);
+    assertEquals(Integer.MIN_VALUE, column.getMin());
+    assertEquals(Integer.MAX_VALUE, column.getMax());
+    assertRoundTrip(values, column);
+  }
+
+  /*
+   * Only the given number of values is encoded
+   */
+  @Test
+  public void partialArray() {
+
+    int[] values = { 3, 1, 4, 1, 5, 9, 2, 6 };
+    IntColumn column = IntColumn.encode(values, 5);
+    assertEquals(5, column.getCount());
+    assertEquals(1, column.getMin());
+    assertEquals(5, column.getMax());
+    assertRoundTrip(Arrays.copyOf(values, 5), column);
+  }
+
+  /*
+   * Private helper method, checks both single and bulk reads
+   */
+  private void assertRoundTrip(int[] values, IntColumn column) {
+
+    assertEquals(values.length, column.getCount());
+    int[] decoded = new int[values.length];
+    column.decode(decoded);
+    assertArrayEquals(values, decoded);
+    for (int i=0; i<values.length; i++) {
+      assertEquals(values[i], column.get(i));
+    }
+  }
+
+}
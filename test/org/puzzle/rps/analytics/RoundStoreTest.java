@@ -0,0 +1,304 @@
+package org.puzzle.rps.analytics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.GameEngine;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.analytics.RoundStore.Column;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.PlayerFactory;
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+
+public class RoundStoreTest {
+
+  private static final String[] PLAYERS = { "alice", "bob", "carol", "dave", "eve" };
+
+  // Test data
+  RuleInterpreter rules;
+  RoundStore store;
+  List<long[]> rows;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+
+    rules = new RuleInterpreter();
+    rules.parseRules( new File("src/resources/lizardSpockRules.txt") );
+    store = new RoundStore();
+    rows = new ArrayList<long[]>();
+
+    // Random games spanning several chunks, with every round also kept as a plain row
+    Random random = new Random(3);
+    int tokens = rules.getTokenCount();
+    while (rows.size() < 5 * Chunk.ROWS) {
+      String p1 = PLAYERS[random.nextInt(PLAYERS.length)];
+      String p2 = PLAYERS[random.nextInt(PLAYERS.length)];
+      int rounds = 1 + random.nextInt(4000);
+      int[] p1Tokens = new int[rounds];
+      int[] p2Tokens = new int[rounds];
+      int[] outcomes = new int[rounds];
+      for (int r=0; r<rounds; r++) {
+        p1Tokens[r] = random.nextInt(tokens);
+        p2Tokens[r] = random.nextInt(tokens);
+        outcomes[r] = rules.outcome(p1Tokens[r], p2Tokens[r]);
+      }
+      long game = store.appendGame(p1, p2, p1Tokens, p2Tokens, outcomes, rounds);
+      for (int r=0; r<rounds; r++) {
+        rows.add(new long[] { game, store.findPlayer(p1), store.findPlayer(p2), p1Tokens[r], p2Tokens[r], outcomes[r] });
+      }
+    }
+  }
+
+  /*
+   * Every round appended is stored, compressed to a few bytes each
+   */
+  @Test
+  public void roundsStored() {
+
+    assertEquals(rows.size(), store.getRoundCount());
+    assertEquals(rows.size() / Chunk.ROWS, store.getChunkCount());
+    assertTrue(store.getFootprint() < 2L * store.getChunkCount() * Chunk.ROWS);
+
+    QueryResult all = store.query().run();
+    assertEquals(rows.size(), all.rounds);
+    assertEquals(all.rounds, all.firstWins + all.secondWins + all.draws);
+  }
+
+  /*
+   * Queries over any mix of columns count the same rounds as a brute force scan
+   */
+  @Test
+  public void queriesMatchBruteForce() {
+
+    int p1 = store.findPlayer("bob");
+    int p2 = store.findPlayer("dave");
+    long lastGame = store.getNextGameId() - 1;
+
+    assertMatches(store.query().where(Column.P1_PLAYER, p1),
+        new long[] { Long.MIN_VALUE, p1, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE },
+        new long[] { Long.MAX_VALUE, p1, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE });
+
+    assertMatches(store.query().where(Column.P1_PLAYER, p1).where(Column.P2_PLAYER, p2).where(Column.P1_TOKEN, 2),
+        new long[] { Long.MIN_VALUE, p1, p2, 2, Long.MIN_VALUE, Long.MIN_VALUE },
+        new long[] { Long.MAX_VALUE, p1, p2, 2, Long.MAX_VALUE, Long.MAX_VALUE });
+
+    assertMatches(store.query().between(Column.GAME, lastGame / 3, lastGame / 2).between(Column.P2_TOKEN, 1, 3),
+        new long[] { lastGame / 3, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE, 1, Long.MIN_VALUE },
+        new long[] { lastGame / 2, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, 3, Long.MAX_VALUE });
+
+    assertMatches(store.query().lastGames(10).where(Column.P2_TOKEN, 4),
+        new long[] { lastGame - 9, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE, 4, Long.MIN_VALUE },
+        new long[] { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, 4, Long.MAX_VALUE });
+  }
+
+  /*
+   * A query for recent games skips the chunks of older ones
+   */
+  @Test
+  public void recentGamesSkipChunks() {
+
+    QueryResult recent = store.query().lastGames(5).run();
+    assertTrue(recent.chunksSkipped >= store.getChunkCount() - 1);
+    assertTrue(recent.chunksScanned <= 2);
+  }
+
+  /*
+   * A range covering whole chunks counts them from their summaries, with the same result
+   */
+  @Test
+  public void coveredChunksCounted() {
+
+    QueryResult wide = store.query().between(Column.P1_TOKEN, 0, rules.getTokenCount() - 1).run();
+    QueryResult all = store.query().run();
+    assertEquals(all.rounds, wide.rounds);
+    assertEquals(all.firstWins, wide.firstWins);
+    assertEquals(all.draws, wide.draws);
+  }
+
+  /*
+   * A query that no chunk could match skips them all
+   */
+  @Test
+  public void impossibleQuery() {
+
+    QueryResult none = store.query().where(Column.P1_TOKEN, 99).run();
+    assertEquals(0, none.rounds);
+    assertEquals(0, none.chunksScanned);
+  }
+
+  /*
+   * How a token fares against a player combines the rounds on both sides, counting
+   * self-play rounds where both sides played the token once
+   */
+  @Test
+  public void tokenAgainstPlayer() {
+
+    int eve = store.findPlayer("eve");
+    QueryResult result = store.tokenAgainstPlayer(3, eve, 50);
+
+    long first = store.getNextGameId() - 50;
+    long rounds = 0;
+    long wins = 0;
+    long losses = 0;
+    for (long[] row : rows) {
+      if (row[0] < first) {
+        continue;
+      }
+      if (row[2] == eve && row[3] == 3) {
+        rounds++;
+        wins += RuleInterpreter.side((int) row[5]) == RuleInterpreter.FIRST_WINS ? 1 : 0;
+        losses += RuleInterpreter.side((int) row[5]) == RuleInterpreter.SECOND_WINS ? 1 : 0;
+      }
+      if (row[1] == eve && row[4] == 3 && !(row[2] == eve && row[3] == 3)) {
+        rounds++;
+        wins += RuleInterpreter.side((int) row[5]) == RuleInterpreter.SECOND_WINS ? 1 : 0;
+        losses += RuleInterpreter.side((int) row[5]) == RuleInterpreter.FIRST_WINS ? 1 : 0;
+      }
+    }
+    assertEquals(rounds, result.rounds);
+    assertEquals(wins, result.firstWins);
+    assertEquals(losses, result.secondWins);
+  }
+
+  /*
+   * A player's own games against themself don't count the token twice in a round
+   */
+  @Test
+  public void selfPlayCountedOnce() {
+
+    RoundStore games = new RoundStore();
+    games.appendGame("eve", "eve", new int[] { 3, 3, 1 }, new int[] { 3, 2, 3 },
+        new int[] { rules.outcome(3, 3), rules.outcome(3, 2), rules.outcome(1, 3) }, 3);
+
+    QueryResult result = games.tokenAgainstPlayer(3, games.findPlayer("eve"), 1);
+    assertEquals(3, result.rounds);
+    assertEquals(1, result.draws);
+  }
+
+  /*
+   * Rounds appended in pieces under a reserved id make up one game
+   */
+  @Test
+  public void roundsAppendedInPieces() {
+
+    RoundStore games = new RoundStore();
+    long first = games.reserveGameId();
+    long second = games.reserveGameId();
+    int[] tokens = { 0, 1, 2 };
+    int[] outcomes = { rules.outcome(0, 0), rules.outcome(1, 1), rules.outcome(2, 2) };
+    games.appendRounds(first, "alice", "bob", tokens, tokens, outcomes, 3);
+    games.appendRounds(second, "carol", "dave", tokens, tokens, outcomes, 2);
+    games.appendRounds(first, "alice", "bob", tokens, tokens, outcomes, 1);
+
+    assertEquals(4, games.query().where(Column.GAME, first).run().rounds);
+    assertEquals(2, games.query().lastGames(1).run().rounds);
+  }
+
+  /*
+   * Rounds can't be appended under an id that was never reserved
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void unreservedGameRefused() {
+    int[] none = new int[0];
+    new RoundStore().appendRounds(0, "alice", "bob", none, none, none, 0);
+  }
+
+  /*
+   * Games played by an engine are added by the observer, by player name
+   */
+  @Test
+  public void observerAddsGames() {
+
+    RoundStore games = new RoundStore();
+    RoundStoreObserver observer = new RoundStoreObserver(games);
+    PlayerFactory factory = new PlayerFactory();
+    Player p1 = factory.createPlayer(PlayerType.RANDOM_COMPUTER, rules, 1L);
+    Player p2 = factory.createPlayer(PlayerType.ADAPTIVE_COMPUTER, rules, 2L);
+
+    for (int g=0; g<3; g++) {
+      GameEngine game = new GameEngine(p1, p2, rules, 1500);
+      game.setGameDelay(0);
+      game.registerObserver(observer);
+      game.play();
+      assertEquals(g, observer.getLastGameId());
+    }
+
+    assertEquals(4500, games.getRoundCount());
+    int id = games.findPlayer( String.valueOf(p1) );
+    assertEquals(4500, games.query().where(Column.P1_PLAYER, id).run().rounds);
+    assertEquals(1500, games.query().lastGames(1).run().rounds);
+  }
+
+  /*
+   * A game longer than the observer's buffer reaches the store while it is still being
+   * played, and seals chunks as they fill
+   */
+  @Test
+  public void observerFlushesLongGames() {
+
+    RoundStore games = new RoundStore();
+    RoundStoreObserver observer = new RoundStoreObserver(games);
+    PlayerFactory factory = new PlayerFactory();
+    Player p1 = factory.createPlayer(PlayerType.RANDOM_COMPUTER, rules, 1L);
+    Player p2 = factory.createPlayer(PlayerType.RANDOM_COMPUTER, rules, 2L);
+
+    for (int r=0; r<RoundStoreObserver.BUFFER_ROUNDS + 10; r++) {
+      observer.notifyRoundOutcome(p1, 0, p2, 1, rules.outcome(0, 1));
+    }
+    assertEquals(RoundStoreObserver.BUFFER_ROUNDS, games.getRoundCount());
+
+    for (int r=RoundStoreObserver.BUFFER_ROUNDS + 10; r<Chunk.ROWS + 10; r++) {
+      observer.notifyRoundOutcome(p1, 0, p2, 1, rules.outcome(0, 1));
+    }
+    assertEquals(Chunk.ROWS, games.getRoundCount());
+    assertEquals(1, games.getChunkCount());
+
+    observer.notifyGameOutcome(p1, 0, p2, Chunk.ROWS + 10);
+    assertEquals(Chunk.ROWS + 10, games.getRoundCount());
+    assertEquals(0, observer.getLastGameId());
+    assertEquals(Chunk.ROWS + 10, games.query().where(Column.GAME, 0).run().rounds);
+  }
+
+  /*
+   * Invalid arguments are rejected
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidLastGames() {
+    store.query().lastGames(-1);
+  }
+
+  /*
+   * Private helper method, checks a query against a brute force count of the rows
+   */
+  private void assertMatches(RoundQuery query, long[] mins, long[] maxs) {
+
+    long rounds = 0;
+    long[] sides = new long[4];
+    for (long[] row : rows) {
+      boolean match = true;
+      for (int c=0; c<row.length; c++) {
+        match &= row[c] >= mins[c] && row[c] <= maxs[c];
+      }
+      if (match) {
+        rounds++;
+        sides[RuleInterpreter.side((int) row[5])]++;
+      }
+    }
+
+    QueryResult result = query.run();
+    assertTrue(rounds > 0);
+    assertEquals(rounds, result.rounds);
+    assertEquals(sides[RuleInterpreter.FIRST_WINS], result.firstWins);
+    assertEquals(sides[RuleInterpreter.SECOND_WINS], result.secondWins);
+    assertEquals(sides[RuleInterpreter.DRAW], result.draws);
+  }
+
+}
@@ -0,0 +1,269 @@
+package org.puzzle.rps.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GameHistoryLogTest {
+
+  // Test data
+  File directory;
+
+  // Object under test
+  GameHistoryLog log;
+
+  @Before
+  public void prep() throws IOException {
+    directory = Files.createTempDirectory("history-").toFile();
+    log = new GameHistoryLog(directory, GameHistoryLog.MIN_SEGMENT_BYTES, 4);
+  }
+
+  @After
+  public void tidy() {
+    log.close();
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  /*
+   * Rounds and games are read back in the order they were recorded
+   */
+  @Test
+  public void recordsReadBack() {
+
+    HistoryObserver observer = new HistoryObserver(log);
+    for (int r=0; r<5000; r++) {
+      observer.notifyRoundOutcome(null, r % 5, null, (r + 1) % 5, r % 3);
+    }
+    observer.notifyGameOutcome(null, 7, null, 3);
+    log.sync();
+
+    Collector collector = new Collector();
+    log.read(0, collector);
+
+    assertEquals(5000, collector.rounds.size());
+    for (int r=0; r<5000; r++) {
+      assertEquals(r, collector.rounds.get(r)[1]);
+      assertEquals(r % 5, collector.rounds.get(r)[2]);
+      assertEquals((r + 1) % 5, collector.rounds.get(r)[3]);
+      assertEquals(r % 3, collector.rounds.get(r)[4]);
+    }
+    assertEquals(1, collector.games.size());
+    assertEquals("null 7 null 3 5000", collector.games.get(0));
+  }
+
+  /*
+   * Games appended from many threads at once are all committed, each round in order
+   */
+  @Test
+  public void concurrentGamesCommitted() throws InterruptedException {
+
+    // Big enough segments to keep every game
+    log.close();
+    log = new GameHistoryLog(directory);
+
+    Thread[] threads = new Thread[8];
+    for (int t=0; t<threads.length; t++) {
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int g=0; g<5; g++) {
+            HistoryObserver observer = new HistoryObserver(log);
+            for (int r=0; r<3000; r++) {
+              observer.notifyRoundOutcome(null, r & 3, null, r & 1, 0);
+            }
+            observer.notifyGameOutcome(null, 1, null, 2);
+            log.awaitDurable( observer.getLastSequence() );
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    final Map<Long, Integer> nextRound = new HashMap<Long, Integer>();
+    final int[] games = new int[1];
+    log.read(0, new HistoryVisitor() {
+      @Override
+      public void round(long gameId, int round, int p1Token, int p2Token, int outcome) {
+        Integer expected = nextRound.get(gameId);
+        assertEquals(expected == null ? 0 : expected.intValue(), round);
+        nextRound.put(gameId, round + 1);
+      }
+      @Override
+      public void game(long gameId, String p1, int p1Score, String p2, int p2Score, int rounds) {
+        assertEquals(3000, nextRound.get(gameId).intValue());
+        games[0]++;
+      }
+    });
+
+    assertEquals(40, games[0]);
+    assertEquals(40, nextRound.size());
+  }
+
+  /*
+   * Full segments are sealed and new ones started; only the newest are retained,
+   * and reads can start from any retained sequence number
+   */
+  @Test
+  public void segmentsRollAndRetain() {
+
+    // One record per game, so game ids match sequence numbers
+    HistoryObserver observer = new HistoryObserver(log);
+    for (int g=0; g<20000; g++) {
+      observer.notifyGameOutcome(null, g, null, 0);
+    }
+    log.sync();
+
+    assertEquals(20000, log.getNextSequence());
+    assertEquals(4, log.getSegmentCount());
+    assertTrue(log.getFirstSequence() > 0);
+
+    Collector all = new Collector();
+    log.read(0, all);
+    assertEquals(20000 - log.getFirstSequence(), all.games.size());
+
+    Collector tail = new Collector();
+    log.read(19000, tail);
+    assertEquals(1000, tail.games.size());
+    assertEquals(19000, tail.gameIds.get(0).longValue());
+  }
+
+  /*
+   * On restart, a torn record at the end of the log is dropped, and sequence numbers
+   * and game ids carry on from the last intact record
+   */
+  @Test
+  public void tornTailRecovered() throws IOException {
+
+    HistoryObserver observer = new HistoryObserver(log);
+    for (int g=0; g<100; g++) {
+      observer.notifyGameOutcome(null, g, null, 0);
+    }
+    log.close();
+
+    // Half a record, as if the process died mid-write
+    File last = lastLogFile();
+    long intact = last.length();
+    RandomAccessFile file = new RandomAccessFile(last, "rw");
+    try {
+      file.seek(intact);
+      file.write(new byte[] { 40, 0, 0, 0, 1, 2, 3 });
+    } finally {
+      file.close();
+    }
+
+    log = new GameHistoryLog(directory, GameHistoryLog.MIN_SEGMENT_BYTES, 4);
+    assertEquals(intact, last.length());
+    assertEquals(100, log.getNextSequence());
+    assertEquals(100, log.nextGameId());
+
+    new HistoryObserver(log).notifyGameOutcome(null, 1, null, 1);
+    log.sync();
+
+    Collector collector = new Collector();
+    log.read(0, collector);
+    assertEquals(101, collector.games.size());
+  }
+
+  /*
+   * On restart, a record whose CRC doesn't match is dropped, along with anything after it
+   */
+  @Test
+  public void corruptRecordDropped() throws IOException {
+
+    HistoryObserver observer = new HistoryObserver(log);
+    for (int g=0; g<10; g++) {
+      observer.notifyGameOutcome(null, g, null, 0);
+    }
+    log.close();
+
+    // Flip a bit in the last byte, the end of the last record's payload
+    File last = lastLogFile();
+    RandomAccessFile file = new RandomAccessFile(last, "rw");
+    try {
+      file.seek(last.length() - 1);
+      int b = file.read();
+      file.seek(last.length() - 1);
+      file.write(b ^ 1);
+    } finally {
+      file.close();
+    }
+
+    log = new GameHistoryLog(directory, GameHistoryLog.MIN_SEGMENT_BYTES, 4);
+    assertEquals(9, log.getNextSequence());
+
+    Collector collector = new Collector();
+    log.read(0, collector);
+    assertEquals(9, collector.games.size());
+  }
+
+  /*
+   * A closed log takes no more records
+   */
+  @Test
+  public void closedLogRejectsAppends() {
+
+    log.close();
+    try {
+      new HistoryObserver(log).notifyGameOutcome(null, 0, null, 0);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals("Game history log closed", e.getMessage());
+    }
+  }
+
+  /*
+   * Private helper method, the newest segment's log file
+   */
+  private File lastLogFile() {
+    File last = null;
+    for (File file : directory.listFiles()) {
+      if (file.getName().endsWith(".log") && (last == null || file.getName().compareTo(last.getName()) > 0)) {
+        last = file;
+      }
+    }
+    return last;
+  }
+
+
+
+  /**
+   * Visitor that keeps everything it's given
+   */
+  private static class Collector implements HistoryVisitor {
+
+    List<long[]> rounds = new ArrayList<long[]>();
+    List<String> games = new ArrayList<String>();
+    List<Long> gameIds = new ArrayList<Long>();
+
+    @Override
+    public void round(long gameId, int round, int p1Token, int p2Token, int outcome) {
+      rounds.add(new long[] { gameId, round, p1Token, p2Token, outcome });
+    }
+
+    @Override
+    public void game(long gameId, String p1, int p1Score, String p2, int p2Score, int rounds) {
+      games.add(p1 + " " + p1Score + " " + p2 + " " + p2Score + " " + rounds);
+      gameIds.add(gameId);
+    }
+  }
+
+}
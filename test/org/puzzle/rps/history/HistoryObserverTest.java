@@ -0,0 +1,151 @@
+package org.puzzle.rps.history;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.GameEngine;
+import org.puzzle.rps.IndexedGameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.SimulationGamesMaster;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.PlayerFactory;
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+
+public class HistoryObserverTest {
+
+  // Test data
+  RuleInterpreter rules;
+  File directory;
+  GameHistoryLog log;
+
+  @Before
+  public void prep() throws IOException {
+
+    rules = new RuleInterpreter();
+    rules.parseRules( new File("src/resources/lizardSpockRules.txt") );
+
+    directory = Files.createTempDirectory("history-").toFile();
+    log = new GameHistoryLog(directory);
+  }
+
+  @After
+  public void tidy() {
+    log.close();
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  /*
+   * Every round of a game is recorded, exactly as played, then the outcome
+   */
+  @Test
+  public void gameRecorded() {
+
+    PlayerFactory factory = new PlayerFactory();
+    Player p1 = factory.createPlayer(PlayerType.RANDOM_COMPUTER, rules, 1L);
+    Player p2 = factory.createPlayer(PlayerType.ADAPTIVE_COMPUTER, rules, 2L);
+
+    GameEngine game = new GameEngine(p1, p2, rules, 2500);
+    game.setGameDelay(0);
+    RoundRecorder played = new RoundRecorder();
+    game.registerObserver(played);
+    HistoryObserver observer = new HistoryObserver(log);
+    game.registerObserver(observer);
+    game.play();
+
+    log.awaitDurable( observer.getLastSequence() );
+
+    final List<int[]> recorded = new ArrayList<int[]>();
+    final String[] outcome = new String[1];
+    log.read(0, new HistoryVisitor() {
+      @Override
+      public void round(long gameId, int round, int p1Token, int p2Token, int code) {
+        recorded.add(new int[] { p1Token, p2Token, code });
+      }
+      @Override
+      public void game(long gameId, String p1, int p1Score, String p2, int p2Score, int rounds) {
+        outcome[0] = String.format("%s %d %s %d %d", p1, p1Score, p2, p2Score, rounds);
+      }
+    });
+
+    assertEquals(2500, recorded.size());
+    for (int r=0; r<2500; r++) {
+      assertEquals(played.rounds.get(r)[0], recorded.get(r)[0]);
+      assertEquals(played.rounds.get(r)[1], recorded.get(r)[1]);
+      assertEquals(played.rounds.get(r)[2], recorded.get(r)[2]);
+    }
+    assertEquals(String.format("%s %d %s %d 2500", p1, game.outcome().getP1Score(), p2, game.outcome().getP2Score()),
+        outcome[0]);
+  }
+
+  /*
+   * A games master with a history log records every game it runs
+   */
+  @Test
+  public void gamesMasterRecordsGames() {
+
+    SimulationGamesMaster gm = new SimulationGamesMaster(rules, new PlayerFactory(),
+        PlayerType.RANDOM_COMPUTER, PlayerType.RANDOM_COMPUTER, 100);
+    gm.setHistory(log);
+    gm.simulate(12);
+    log.sync();
+
+    final int[] counts = new int[2];
+    log.read(0, new HistoryVisitor() {
+      @Override
+      public void round(long gameId, int round, int p1Token, int p2Token, int outcome) {
+        counts[0]++;
+      }
+      @Override
+      public void game(long gameId, String p1, int p1Score, String p2, int p2Score, int rounds) {
+        counts[1]++;
+      }
+    });
+
+    assertEquals(1200, counts[0]);
+    assertEquals(12, counts[1]);
+  }
+
+
+
+  /**
+   * Observer that keeps every round played
+   */
+  private static class RoundRecorder implements IndexedGameObserver {
+
+    List<int[]> rounds = new ArrayList<int[]>();
+
+    @Override
+    public void notifyPlay(Player player, int token) {
+    }
+
+    @Override
+    public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+      rounds.add(new int[] { p1Token, p2Token, outcome });
+    }
+
+    @Override
+    public void notifyPlay(Player player, String token) {
+    }
+
+    @Override
+    public void notifyRoundOutcome(Result r) {
+    }
+
+    @Override
+    public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+package org.puzzle.rps.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.GameEngine;
+import org.puzzle.rps.GameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.RandomComputerPlayer;
+
+public class EngineMetricsTest {
+
+  // Test data
+  RuleInterpreter rules;
+
+  // Object under test
+  EngineMetrics metrics;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+    rules = new RuleInterpreter();
+    rules.parseRules(new File("src/resources/rpsRules.txt"));
+
+    metrics = new EngineMetrics();
+  }
+
+  /*
+   * Games attached to the registry report their rounds, games and latencies
+   */
+  @Test
+  public void gamesMeasured() {
+
+    MetricsSnapshot before = metrics.snapshot();
+    playGame(1000);
+    playGame(500);
+    MetricsSnapshot after = metrics.snapshot();
+
+    assertEquals(1500, after.roundsPlayed);
+    assertEquals(2, after.gamesCompleted);
+    assertEquals(0, after.gamesInFlight);
+    assertTrue(after.roundsPerSecondSince(before) > 0);
+
+    assertEquals(1500, after.winnerLatency.count);
+    assertEquals(1500, after.observerLatency.count);
+    assertEquals(3000, after.moveLatency.get("RandomComputerPlayer").count);
+  }
+
+  /*
+   * Sampling times only some rounds, but counts them all
+   */
+  @Test
+  public void samplingLimitsTimedRounds() {
+
+    metrics = new EngineMetrics(8);
+    playGame(800);
+
+    MetricsSnapshot snapshot = metrics.snapshot();
+    assertEquals(800, snapshot.roundsPlayed);
+    assertEquals(100, snapshot.winnerLatency.count);
+  }
+
+  /*
+   * A game stopped by an exception counts as failed, not as still in flight
+   */
+  @Test
+  public void failedGameNotInFlight() {
+
+    GameEngine game = new GameEngine(new RandomComputerPlayer(rules.getTokenList()),
+        new RandomComputerPlayer(rules.getTokenList()), rules, 100);
+    game.setGameDelay(0);
+    game.setMetrics(metrics);
+    game.registerObserver(new GameObserver() {
+      @Override
+      public void notifyPlay(Player player, String token) {
+      }
+
+      @Override
+      public void notifyRoundOutcome(Result r) {
+        throw new IllegalStateException("Boom");
+      }
+
+      @Override
+      public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+      }
+    });
+
+    try {
+      game.play();
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals("Boom", e.getMessage());
+    }
+
+    MetricsSnapshot snapshot = metrics.snapshot();
+    assertEquals(0, snapshot.gamesInFlight);
+    assertEquals(0, snapshot.gamesCompleted);
+    assertEquals(1, metrics.getGamesFailed());
+  }
+
+  /*
+   * Sample intervals must be powers of two
+   */
+  @Test
+  public void sampleIntervalValidated() {
+    try {
+      new EngineMetrics(10);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Sample interval '10' is not a power of two", e.getMessage());
+    }
+  }
+
+  /*
+   * The registry can be read over JMX
+   */
+  @Test
+  public void publishedOverJmx() throws Exception {
+
+    ObjectName name = metrics.register("test");
+    try {
+      playGame(250);
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      assertEquals(250L, server.getAttribute(name, "RoundsPlayed"));
+      assertEquals(1L, server.getAttribute(name, "GamesCompleted"));
+      assertEquals(0L, server.getAttribute(name, "GamesInFlight"));
+    } finally {
+      metrics.unregister();
+    }
+
+    assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+  }
+
+  /*
+   * Histogram percentiles are bucket upper bounds
+   */
+  @Test
+  public void histogramPercentiles() {
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i=0; i<99; i++) {
+      histogram.record(100);
+    }
+    histogram.record(5000);
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(100, snapshot.count);
+    assertEquals(149, snapshot.meanNanos);
+    assertEquals(127, snapshot.p50Nanos);
+    assertEquals(127, snapshot.p99Nanos);
+    assertEquals(8191, snapshot.maxNanos);
+  }
+
+  /*
+   * Private helper, plays a headless game attached to the registry
+   */
+  private void playGame(int rounds) {
+    GameEngine game = new GameEngine(new RandomComputerPlayer(rules.getTokenList()),
+        new RandomComputerPlayer(rules.getTokenList()), rules, rounds);
+    game.setGameDelay(0);
+    game.setMetrics(metrics);
+    game.play();
+  }
+
+}
@@ -0,0 +1,308 @@
+package org.puzzle.rps.observers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.GameEngine;
+import org.puzzle.rps.GameObserver;
+import org.puzzle.rps.IndexedGameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.RandomComputerPlayer;
+
+public class AsyncObserverDispatcherTest {
+
+  // Test data
+  RuleInterpreter rules;
+  Player p1;
+  Player p2;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+    rules = new RuleInterpreter();
+    rules.parseRules(new File("src/resources/lizardSpockRules.txt"));
+
+    p1 = new RandomComputerPlayer(rules.getTokenList());
+    p2 = new RandomComputerPlayer(rules.getTokenList());
+  }
+
+  /*
+   * Observers behind the dispatcher see exactly the same events, in the same
+   * order, as an observer called directly. A small buffer forces many wrap-arounds.
+   */
+  @Test
+  public void eventOrderPreserved() {
+    for (WaitStrategy strategy : WaitStrategy.values()) {
+      checkEventOrder(strategy);
+    }
+  }
+
+  private void checkEventOrder(WaitStrategy strategy) {
+
+    RecordingObserver direct = new RecordingObserver();
+    RecordingObserver plain = new RecordingObserver();
+    RecordingIndexedObserver indexed = new RecordingIndexedObserver();
+
+    AsyncObserverDispatcher dispatcher = new AsyncObserverDispatcher(rules, 16, strategy, 4, plain, indexed);
+
+    GameEngine game = new GameEngine(p1, p2, rules, 5000);
+    game.setGameDelay(0);
+    game.registerObserver(direct);
+    game.registerObserver(dispatcher);
+    game.play();
+
+    dispatcher.shutdown();
+
+    assertEquals(direct.events, plain.events);
+    assertEquals(direct.events.size(), indexed.events.size());
+    assertEquals(3 * 5000 + 1, indexed.events.size());
+
+    // Indexed events carry indices and outcome codes
+    assertEquals("round " + rules.outcome(indexed.lastP1Token, indexed.lastP2Token), indexed.events.get(indexed.events.size() - 2));
+  }
+
+  /*
+   * Events published by token and Result reach observers as they would by index
+   */
+  @Test
+  public void tokenEventsPublished() {
+
+    RecordingObserver plain = new RecordingObserver();
+    RecordingIndexedObserver indexed = new RecordingIndexedObserver();
+    AsyncObserverDispatcher dispatcher = new AsyncObserverDispatcher(rules, 16, WaitStrategy.YIELDING, 4, plain, indexed);
+
+    Result result = rules.winner("Rock", "Paper");
+    dispatcher.notifyPlay(p1, "Rock");
+    dispatcher.notifyRoundOutcome(result);
+    dispatcher.shutdown();
+
+    assertEquals(p1 + " Rock", plain.events.get(0));
+    assertEquals(result.toString(), plain.events.get(1));
+    assertEquals(p1 + " " + rules.tokenIndex("Rock"), indexed.events.get(0));
+    assertEquals(rules.tokenIndex("Paper"), indexed.lastP1Token);
+    assertEquals(rules.tokenIndex("Rock"), indexed.lastP2Token);
+    assertEquals("round " + rules.outcome(indexed.lastP1Token, indexed.lastP2Token), indexed.events.get(1));
+  }
+
+  /*
+   * A slow observer doesn't hold up the game, as long as the buffer has room
+   */
+  @Test
+  public void slowObserverDoesNotStallGame() {
+
+    SlowObserver slow = new SlowObserver();
+    AsyncObserverDispatcher dispatcher = new AsyncObserverDispatcher(rules, 1024, WaitStrategy.SLEEPING, 16, slow);
+
+    GameEngine game = new GameEngine(p1, p2, rules, 100);
+    game.setGameDelay(0);
+    game.registerObserver(dispatcher);
+
+    long start = System.nanoTime();
+    game.play();
+    long gameMillis = (System.nanoTime() - start) / 1000000;
+
+    // Observer takes over 100ms to see the game; the game itself is far quicker
+    assertTrue(gameMillis < 100);
+
+    dispatcher.drain();
+    assertEquals(100, slow.rounds);
+    dispatcher.shutdown();
+  }
+
+  /*
+   * Observer failures surface when the dispatcher is drained
+   */
+  @Test
+  public void observerFailureReported() {
+
+    GameObserver failing = new RecordingObserver() {
+      @Override
+      public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+        throw new IllegalStateException("Boom");
+      }
+    };
+    AsyncObserverDispatcher dispatcher = new AsyncObserverDispatcher(rules, 64, WaitStrategy.YIELDING, 8, failing);
+
+    GameEngine game = new GameEngine(p1, p2, rules, 10);
+    game.setGameDelay(0);
+    game.registerObserver(dispatcher);
+    game.play();
+
+    try {
+      dispatcher.shutdown();
+      fail("RTE expected");
+    } catch (RuntimeException e) {
+      assertEquals("Boom", e.getCause().getMessage());
+    }
+  }
+
+  /*
+   * One dispatcher may serve several games at once: each player's moves arrive in
+   * order, and nothing is lost or mixed up
+   */
+  @Test
+  public void concurrentGamesShareDispatcher() throws InterruptedException {
+
+    PlaysByPlayer shared = new PlaysByPlayer();
+    final AsyncObserverDispatcher dispatcher = new AsyncObserverDispatcher(rules, 32, WaitStrategy.YIELDING, 4, shared);
+
+    final PlaysByPlayer[] direct = new PlaysByPlayer[4];
+    Thread[] threads = new Thread[direct.length];
+    for (int g=0; g<threads.length; g++) {
+      direct[g] = new PlaysByPlayer();
+      final GameEngine game = new GameEngine(new RandomComputerPlayer(rules.getTokenList(), g),
+          new RandomComputerPlayer(rules.getTokenList(), 100 + g), rules, 3000);
+      game.setGameDelay(0);
+      game.registerObserver(direct[g]);
+      game.registerObserver(dispatcher);
+      threads[g] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          game.play();
+        }
+      });
+      threads[g].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    dispatcher.shutdown();
+
+    assertEquals(4, shared.games);
+    assertEquals(8, shared.plays.size());
+    for (PlaysByPlayer d : direct) {
+      for (Map.Entry<Player, List<Integer>> e : d.plays.entrySet()) {
+        assertEquals(e.getValue(), shared.plays.get(e.getKey()));
+      }
+    }
+  }
+
+  /*
+   * Ring buffer capacity must be a power of two
+   */
+  @Test
+  public void capacityValidated() {
+
+    try {
+      new AsyncObserverDispatcher(rules, 100, WaitStrategy.BUSY_SPIN, 8);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Ring buffer capacity '100' is not a power of two", e.getMessage());
+    }
+  }
+
+
+
+  /**
+   * Observer which records events as strings
+   */
+  private static class RecordingObserver implements GameObserver {
+
+    List<String> events = new ArrayList<String>();
+
+    @Override
+    public void notifyPlay(Player player, String token) {
+      events.add(player + " " + token);
+    }
+
+    @Override
+    public void notifyRoundOutcome(Result r) {
+      events.add(r.toString());
+    }
+
+    @Override
+    public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+      events.add(p1Score + ":" + p2Score);
+    }
+
+  }
+
+  /**
+   * Indexed observer which records events as strings
+   */
+  private static class RecordingIndexedObserver extends RecordingObserver implements IndexedGameObserver {
+
+    int lastP1Token, lastP2Token;
+
+    @Override
+    public void notifyPlay(Player player, int token) {
+      events.add(player + " " + token);
+    }
+
+    @Override
+    public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+      lastP1Token = p1Token;
+      lastP2Token = p2Token;
+      events.add("round " + outcome);
+    }
+
+  }
+
+  /**
+   * Indexed observer which records each player's moves
+   */
+  private static class PlaysByPlayer implements IndexedGameObserver {
+
+    Map<Player, List<Integer>> plays = new HashMap<Player, List<Integer>>();
+    int games = 0;
+
+    @Override
+    public void notifyPlay(Player player, int token) {
+      List<Integer> moves = plays.get(player);
+      if (moves == null) {
+        moves = new ArrayList<Integer>();
+        plays.put(player, moves);
+      }
+      moves.add(token);
+    }
+
+    @Override
+    public void notifyRoundOutcome(Player player1, int p1Token, Player player2, int p2Token, int outcome) {
+    }
+
+    @Override
+    public void notifyPlay(Player player, String token) {
+    }
+
+    @Override
+    public void notifyRoundOutcome(Result r) {
+    }
+
+    @Override
+    public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+      games++;
+    }
+
+  }
+
+  /**
+   * Observer which takes a millisecond over each round
+   */
+  private static class SlowObserver extends RecordingObserver {
+
+    int rounds = 0;
+
+    @Override
+    public void notifyRoundOutcome(Result r) {
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      rounds++;
+    }
+
+  }
+
+}
@@ -0,0 +1,170 @@
+package org.puzzle.rps.observers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.GameEngine;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.RandomComputerPlayer;
+
+public class StatisticsObserverTest {
+
+  // Test data
+  RuleInterpreter rules;
+
+  // Object under test
+  StatisticsObserver stats;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+    rules = new RuleInterpreter();
+    rules.parseRules(new File("src/resources/rpsRules.txt"));
+
+    stats = new StatisticsObserver(rules);
+  }
+
+  /*
+   * Token and player statistics follow a scripted game
+   */
+  @Test
+  public void scriptedGameRecorded() {
+
+    Player p1 = scripted("Rock","Rock","Rock","Paper","Scissors","Scissors");
+    Player p2 = scripted("Scissors","Scissors","Paper","Paper","Rock","Rock");
+
+    play(p1, p2, 6);
+
+    int rock = rules.tokenIndex("Rock");
+    int paper = rules.tokenIndex("Paper");
+    int scissors = rules.tokenIndex("Scissors");
+
+    assertEquals(1, stats.getGames());
+    assertEquals(5, stats.getPlays(rock));
+    assertEquals(3, stats.getPlays(paper));
+    assertEquals(4, stats.getPlays(scissors));
+
+    assertEquals(4, stats.getWins(rock));
+    assertEquals(1, stats.getLosses(rock));
+    assertEquals(1, stats.getWins(paper));
+    assertEquals(2, stats.getDraws(paper));
+    assertEquals(4, stats.getLosses(scissors));
+
+    // P1: W, W, L, D, L, L
+    StatisticsObserver.PlayerStatistics p1Stats = stats.getPlayerStatistics(p1);
+    assertEquals(2, p1Stats.getWins());
+    assertEquals(3, p1Stats.getLosses());
+    assertEquals(1, p1Stats.getDraws());
+    assertEquals(-2, p1Stats.getCurrentStreak());
+    assertEquals(2, p1Stats.getLongestWinStreak());
+    assertEquals(2, p1Stats.getLongestLossStreak());
+
+    StatisticsObserver.PlayerStatistics p2Stats = stats.getPlayerStatistics(p2);
+    assertEquals(2, p2Stats.getCurrentStreak());
+    assertEquals(3, p2Stats.getWins(p1));
+    assertEquals(2, p2Stats.getLosses(p1));
+    assertEquals(1, p2Stats.getDraws(p1));
+    assertEquals(0, p2Stats.getWins(p2));
+  }
+
+  /*
+   * Round outcomes notified by Result count towards the tokens, not the players
+   */
+  @Test
+  public void resultsCountTokens() {
+
+    Player p1 = scripted("Rock");
+    stats.notifyPlay(p1, "Rock");
+    stats.notifyRoundOutcome( rules.winner("Rock","Paper") );
+    stats.notifyRoundOutcome( rules.winner("Scissors","Scissors") );
+
+    assertEquals(1, stats.getPlays(rules.tokenIndex("Rock")));
+    assertEquals(1, stats.getWins(rules.tokenIndex("Paper")));
+    assertEquals(1, stats.getLosses(rules.tokenIndex("Rock")));
+    assertEquals(2, stats.getDraws(rules.tokenIndex("Scissors")));
+    assertNull(stats.getPlayerStatistics(p1));
+  }
+
+  /*
+   * Unknown players have no statistics
+   */
+  @Test
+  public void unknownPlayer() {
+    assertNull(stats.getPlayerStatistics(scripted("Rock")));
+  }
+
+  /*
+   * One observer shared by many concurrent games loses no updates
+   */
+  @Test
+  public void sharedByConcurrentGames() throws InterruptedException {
+
+    final int gameCount = 16;
+    final int rounds = 20000;
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int g=0; g<gameCount; g++) {
+      threads.add( new Thread(new Runnable() {
+        @Override
+        public void run() {
+          play(new RandomComputerPlayer(rules.getTokenList()), new RandomComputerPlayer(rules.getTokenList()), rounds);
+        }
+      }));
+    }
+
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    long plays = 0;
+    long wins = 0;
+    long losses = 0;
+    long draws = 0;
+    for (int t=0; t<rules.getTokenCount(); t++) {
+      plays += stats.getPlays(t);
+      wins += stats.getWins(t);
+      losses += stats.getLosses(t);
+      draws += stats.getDraws(t);
+    }
+
+    assertEquals(gameCount, stats.getGames());
+    assertEquals(2L * gameCount * rounds, plays);
+    assertEquals(wins, losses);
+    assertEquals(2L * gameCount * rounds, wins + losses + draws);
+  }
+
+  /*
+   * Private helper, plays a game with the statistics observer attached
+   */
+  private void play(Player p1, Player p2, int rounds) {
+    GameEngine game = new GameEngine(p1, p2, rules, rounds);
+    game.setGameDelay(0);
+    game.registerObserver(stats);
+    game.play();
+  }
+
+  /*
+   * Private helper, creates a player which plays the given tokens in turn
+   */
+  private Player scripted(final String... moves) {
+    return new Player() {
+      int next = 0;
+
+      @Override
+      public String getMove() {
+        return moves[next++];
+      }
+    };
+  }
+
+}
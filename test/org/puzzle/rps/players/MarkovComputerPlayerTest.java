@@ -0,0 +1,181 @@
+package org.puzzle.rps.players;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.GameEngine;
+import org.puzzle.rps.GameObserver;
+import org.puzzle.rps.Result;
+import org.puzzle.rps.RuleInterpreter;
+
+public class MarkovComputerPlayerTest {
+
+  // Test data
+  RuleInterpreter rules;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+    rules = new RuleInterpreter();
+    rules.parseRules(new File("src/resources/rpsRules.txt"));
+  }
+
+  /*
+   * Move indices are always valid token indices
+   */
+  @Test
+  public void moveIndicesInRange() {
+
+    MarkovComputerPlayer player = new MarkovComputerPlayer(rules, MarkovComputerPlayer.DEFAULT_ORDER);
+    for (int i=0; i<100; i++) {
+      int move = player.getMoveIndex();
+      assertTrue(move >= 0 && move < rules.getTokenCount());
+    }
+    assertEquals(rules.getTokenList(), player.getTokenList());
+  }
+
+  /*
+   * A player that always plays the same token is soon beaten every round
+   */
+  @Test
+  public void beatsConstantOpponent() {
+
+    MarkovComputerPlayer player = new MarkovComputerPlayer(rules, 1);
+    int[] score = play(player, cycling("Rock"), 1000);
+
+    assertTrue(score[0] > 950);
+  }
+
+  /*
+   * A player cycling through tokens is soon beaten every round
+   */
+  @Test
+  public void beatsCyclingOpponent() {
+
+    MarkovComputerPlayer player = new MarkovComputerPlayer(rules, MarkovComputerPlayer.DEFAULT_ORDER);
+    int[] score = play(cycling("Rock","Paper","Scissors"), player, 1000);
+
+    assertTrue(score[1] > 950);
+    assertTrue(score[0] < 50);
+  }
+
+  /*
+   * Learning carries over from one game to the next
+   */
+  @Test
+  public void learningKept() {
+
+    MarkovComputerPlayer player = new MarkovComputerPlayer(rules, 1);
+    play(player, cycling("Paper","Rock"), 100);
+    int[] score = play(player, cycling("Paper","Rock"), 10);
+
+    assertTrue(score[0] >= 9);
+  }
+
+  /*
+   * A player restored from saved state has learnt the same, and carries on the same
+   */
+  @Test
+  public void savedStateRestored() {
+
+    MarkovComputerPlayer first = new MarkovComputerPlayer(rules, 2, 8L);
+    play(first, new MarkovComputerPlayer(rules, 1, 9L), 500);
+    ByteBuffer saved = ByteBuffer.allocate( first.getStateSize() );
+    first.saveState(saved);
+    saved.flip();
+
+    MarkovComputerPlayer second = new MarkovComputerPlayer(rules, 2, 8L);
+    second.restoreState(saved);
+
+    int[] firstScore = play(first, new MarkovComputerPlayer(rules, 1, 10L), 300);
+    int[] secondScore = play(second, new MarkovComputerPlayer(rules, 1, 10L), 300);
+    assertEquals(firstScore[0], secondScore[0]);
+    assertEquals(firstScore[1], secondScore[1]);
+  }
+
+  /*
+   * Saved state is only restored into a player of the same order
+   */
+  @Test
+  public void savedStateOfOtherOrderRejected() {
+
+    MarkovComputerPlayer first = new MarkovComputerPlayer(rules, 2, 8L);
+    ByteBuffer saved = ByteBuffer.allocate( first.getStateSize() );
+    first.saveState(saved);
+    saved.flip();
+    try {
+      new MarkovComputerPlayer(rules, 1, 8L).restoreState(saved);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  /*
+   * Orders below one, or orders needing too large a transition table, are rejected
+   */
+  @Test
+  public void invalidOrderRejected() {
+    try {
+      new MarkovComputerPlayer(rules, 0);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid Markov order '0'", e.getMessage());
+    }
+
+    try {
+      new MarkovComputerPlayer(rules, 20);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /*
+   * Private helper, plays a game and returns both scores
+   */
+  private int[] play(Player p1, Player p2, int rounds) {
+
+    final int[] score = new int[2];
+    GameEngine game = new GameEngine(p1, p2, rules, rounds);
+    game.setGameDelay(0);
+    game.registerObserver(new GameObserver() {
+      @Override
+      public void notifyPlay(Player player, String token) {
+      }
+
+      @Override
+      public void notifyRoundOutcome(Result r) {
+      }
+
+      @Override
+      public void notifyGameOutcome(Player player1, int p1Score, Player player2, int p2Score) {
+        score[0] = p1Score;
+        score[1] = p2Score;
+      }
+    });
+    game.play();
+    return score;
+  }
+
+  /*
+   * Private helper, creates a player which plays the given tokens in a cycle
+   */
+  private Player cycling(final String... moves) {
+    return new Player() {
+      int next = 0;
+
+      @Override
+      public String getMove() {
+        return moves[next++ % moves.length];
+      }
+    };
+  }
+
+}
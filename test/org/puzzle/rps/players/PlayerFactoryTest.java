@@ -2,7 +2,10 @@ package org.puzzle.rps.players;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -10,6 +13,7 @@ import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.puzzle.rps.RuleInterpreter;
 import org.puzzle.rps.players.PlayerFactory.PlayerType;
 
 public class PlayerFactoryTest {
@@ -36,9 +40,10 @@ public class PlayerFactoryTest {
   public void checkPlayerEnum() {
     
     PlayerType[] knownTypes = PlayerType.values();
-    assertEquals(2, knownTypes.length);
+    assertEquals(3, knownTypes.length);
     assertEquals(PlayerType.HUMAN, knownTypes[0]);
     assertEquals(PlayerType.RANDOM_COMPUTER, knownTypes[1]);
+    assertEquals(PlayerType.ADAPTIVE_COMPUTER, knownTypes[2]);
   }
 
   /*
@@ -55,6 +60,32 @@ public class PlayerFactoryTest {
 
   }
 
+  /*
+   * All player types, including adaptive players, can be created from the rules
+   */
+  @Test
+  public void createPlayerTypesFromRules() throws FileNotFoundException {
+    
+    RuleInterpreter rules = new RuleInterpreter();
+    rules.parseRules(new File("src/resources/rpsRules.txt"));
+
+    assertTrue(pf.createPlayer(PlayerType.RANDOM_COMPUTER, rules) instanceof RandomComputerPlayer);
+    assertTrue(pf.createPlayer(PlayerType.ADAPTIVE_COMPUTER, rules) instanceof MarkovComputerPlayer);
+  }
+
+  /*
+   * Adaptive players can't be created from tokens alone
+   */
+  @Test
+  public void adaptiveNeedsRules() {
+    try {
+      pf.createPlayer(PlayerType.ADAPTIVE_COMPUTER, tokens);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
   /* Creational logical is tricky to test ... this is more of a sanity
    * check that one of the player types has been instantiated with the 
    * given tokens. */
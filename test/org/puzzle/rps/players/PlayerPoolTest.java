@@ -0,0 +1,120 @@
+package org.puzzle.rps.players;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+import org.puzzle.rps.tournament.Tournament;
+import org.puzzle.rps.tournament.TournamentResult;
+
+public class PlayerPoolTest {
+
+  // Test data
+  RuleInterpreter rules;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+    rules = new RuleInterpreter();
+    rules.parseRules(new File("src/resources/lizardSpockRules.txt"));
+  }
+
+  /*
+   * Released players are reused, reset, rather than new ones created
+   */
+  @Test
+  public void playersReused() {
+
+    PlayerPool pool = new PlayerFactory().createPool(PlayerType.ADAPTIVE_COMPUTER, rules);
+
+    Player first = pool.acquire();
+    Player second = pool.acquire();
+    assertNotSame(first, second);
+    assertTrue(first instanceof MarkovComputerPlayer);
+
+    pool.release(first);
+    assertSame(first, pool.acquire());
+    assertEquals(2, pool.getCreatedCount());
+  }
+
+  /*
+   * Pools from factories with the same seed hand out players that play the same moves
+   */
+  @Test
+  public void seedStreamRepeatable() {
+
+    PlayerPool pool1 = new PlayerFactory(5L).createPool(PlayerType.RANDOM_COMPUTER, rules);
+    PlayerPool pool2 = new PlayerFactory(5L).createPool(PlayerType.RANDOM_COMPUTER, rules);
+
+    for (int p=0; p<3; p++) {
+      IndexedPlayer player1 = (IndexedPlayer) pool1.acquire();
+      IndexedPlayer player2 = (IndexedPlayer) pool2.acquire();
+      for (int i=0; i<20; i++) {
+        assertEquals(player1.getMoveIndex(), player2.getMoveIndex());
+      }
+      pool1.release(player1);
+      pool2.release(player2);
+    }
+  }
+
+  /*
+   * Human players, and players that can't be reset, aren't pooled
+   */
+  @Test
+  public void onlyResettablePlayersPooled() {
+
+    try {
+      new PlayerFactory().createPool(PlayerType.HUMAN, rules);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Human players can't be pooled", e.getMessage());
+    }
+
+    PlayerPool pool = new PlayerFactory().createPool(PlayerType.RANDOM_COMPUTER, rules);
+    try {
+      pool.release( new HumanConsolePlayer(rules.getTokenList(), System.in, System.out) );
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /*
+   * Tournaments give players back to pooled entrants after each game
+   */
+  @Test
+  public void tournamentReleasesPlayers() {
+
+    PlayerFactory factory = new PlayerFactory(11L);
+    PlayerPool random = factory.createPool(PlayerType.RANDOM_COMPUTER, rules);
+    PlayerPool adaptive = factory.createPool(PlayerType.ADAPTIVE_COMPUTER, rules);
+
+    List<Supplier<? extends Player>> entrants = new ArrayList<Supplier<? extends Player>>();
+    entrants.add(random);
+    entrants.add(adaptive);
+
+    ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      TournamentResult result = new Tournament(rules, entrants, 20, 50).run(pool);
+      assertEquals(50, result.wins(0, 1) + result.losses(0, 1) + result.draws(0, 1));
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(1, random.getCreatedCount());
+    assertEquals(1, adaptive.getCreatedCount());
+  }
+
+}
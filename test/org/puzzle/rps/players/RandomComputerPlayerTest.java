@@ -3,10 +3,13 @@ package org.puzzle.rps.players;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -85,6 +88,94 @@ public class RandomComputerPlayerTest {
     assertTrue(differCount > 0);
   }
  
+  /*
+   * Move indices refer to the robot's token list
+   */
+  @Test
+  public void moveIndicesInRange() {
+
+    IndexedPlayer indexed = (IndexedPlayer) randomCP;
+    assertEquals(validTokens, indexed.getTokenList());
+
+    Set<Integer> found = new HashSet<Integer>();
+    for (int i=0;i<1000;i++) {
+      found.add( indexed.getMoveIndex() );
+    }
+
+    Set<Integer> expected = new HashSet<Integer>(Arrays.asList(0, 1, 2));
+    assertEquals(expected, found);
+  }
+
+  /*
+   * Seeded robots repeat their moves; resetting reseeds them
+   */
+  @Test
+  public void seededMovesRepeat() {
+
+    RandomComputerPlayer first = new RandomComputerPlayer(validTokens, 99L);
+    RandomComputerPlayer second = new RandomComputerPlayer(validTokens, 99L);
+
+    int[] moves = new int[50];
+    for (int i=0; i<moves.length; i++) {
+      moves[i] = first.getMoveIndex();
+      assertEquals(moves[i], second.getMoveIndex());
+    }
+
+    first.reset(7L);
+    second.reset(7L);
+    for (int i=0; i<moves.length; i++) {
+      assertEquals(first.getMoveIndex(), second.getMoveIndex());
+    }
+  }
+
+  /*
+   * Seeded robots move just as SplittableRandom would choose, for any number of tokens
+   */
+  @Test
+  public void seededMovesMatchSplittableRandom() {
+
+    for (int bound : new int[] { 1, 2, 3, 5, 7, 64, 1000, Integer.MAX_VALUE }) {
+      PlayerRandom random = new PlayerRandom(bound * 31L);
+      SplittableRandom expected = new SplittableRandom(bound * 31L);
+      for (int i=0; i<1000; i++) {
+        assertEquals(expected.nextInt(bound), random.nextInt(bound));
+      }
+    }
+  }
+
+  /*
+   * A robot restored from saved state carries on with the same moves
+   */
+  @Test
+  public void savedStateRestored() {
+
+    RandomComputerPlayer first = new RandomComputerPlayer(validTokens, 5L);
+    for (int i=0; i<123; i++) {
+      first.getMoveIndex();
+    }
+    ByteBuffer saved = ByteBuffer.allocate( first.getStateSize() );
+    first.saveState(saved);
+    saved.flip();
+
+    RandomComputerPlayer second = new RandomComputerPlayer(validTokens, 5L);
+    second.restoreState(saved);
+    for (int i=0; i<100; i++) {
+      assertEquals(first.getMoveIndex(), second.getMoveIndex());
+    }
+  }
+
+  /*
+   * Creating robots doesn't take time; there used to be a sleep to vary the seed
+   */
+  @Test
+  public void creationIsQuick() {
+    long start = System.nanoTime();
+    for (int i=0; i<1000; i++) {
+      new RandomComputerPlayer(validTokens);
+    }
+    assertTrue(System.nanoTime() - start < 1000000000L);
+  }
+
   /*
    * Test that the robot has a name
    */
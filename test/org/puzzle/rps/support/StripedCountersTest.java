@@ -0,0 +1,84 @@
+package org.puzzle.rps.support;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StripedCountersTest {
+
+  /*
+   * Counters start at zero, and are independent of each other
+   */
+  @Test
+  public void countersIndependent() {
+
+    StripedCounters counters = new StripedCounters(3, 4);
+    counters.increment(0);
+    counters.add(2, 40);
+    counters.increment(2);
+
+    assertEquals(3, counters.size());
+    assertArrayEquals(new long[] {1, 0, 41}, counters.sums());
+  }
+
+  /*
+   * Concurrent updates from more threads than stripes are all counted
+   */
+  @Test
+  public void concurrentUpdatesCounted() throws InterruptedException {
+
+    final StripedCounters counters = new StripedCounters(2, 3);
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t=0; t<8; t++) {
+      threads.add( new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i=0; i<100000; i++) {
+            counters.increment(i & 1);
+          }
+        }
+      }));
+    }
+
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    assertEquals(400000, counters.sum(0));
+    assertEquals(400000, counters.sum(1));
+  }
+
+  /*
+   * Counters out of range are refused, rather than updating another stripe
+   */
+  @Test
+  public void invalidCounterRefused() {
+
+    StripedCounters counters = new StripedCounters(3, 2);
+    for (int counter : new int[] { -1, 3, 3 + 16 }) {
+      try {
+        counters.add(counter, 1);
+        fail("IllegalArgumentException expected");
+      } catch (IllegalArgumentException e) {
+        assertEquals(String.format("Invalid counter '%d'", counter), e.getMessage());
+      }
+      try {
+        counters.sum(counter);
+        fail("IllegalArgumentException expected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    assertEquals(0, counters.sums()[0] + counters.sums()[1] + counters.sums()[2]);
+  }
+
+}
@@ -0,0 +1,185 @@
+package org.puzzle.rps.tournament;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.puzzle.rps.GameRecord;
+import org.puzzle.rps.RuleInterpreter;
+import org.puzzle.rps.players.Player;
+import org.puzzle.rps.players.PlayerFactory;
+import org.puzzle.rps.players.PlayerFactory.PlayerType;
+import org.puzzle.rps.players.RandomComputerPlayer;
+
+public class TournamentTest {
+
+  // Test data
+  RuleInterpreter rules;
+  List<Supplier<? extends Player>> entrants;
+
+  @Before
+  public void prep() throws FileNotFoundException {
+
+    rules = new RuleInterpreter();
+    rules.parseRules( new File("src/resources/rpsRules.txt") );
+
+    // Three stubborn entrants, which always play the same token
+    entrants = new ArrayList<Supplier<? extends Player>>();
+    entrants.add( stubborn("Rock") );
+    entrants.add( stubborn("Paper") );
+    entrants.add( stubborn("Scissors") );
+  }
+
+  /*
+   * Every pairing is played, and the matrix reflects the rules
+   */
+  @Test
+  public void allPairingsPlayed() {
+
+    TournamentResult result = new Tournament(rules, entrants, 5, 4).run();
+
+    assertEquals(3, result.getEntrants());
+
+    // Paper beats Rock, Rock beats Scissors, Scissors beats Paper
+    assertEquals(4, result.wins(1, 0));
+    assertEquals(4, result.losses(0, 1));
+    assertEquals(4, result.wins(0, 2));
+    assertEquals(4, result.wins(2, 1));
+    assertEquals(0, result.wins(0, 1));
+    assertEquals(0, result.draws(0, 1));
+
+    for (int i=0; i<3; i++) {
+      assertEquals(4, result.totalWins(i));
+    }
+  }
+
+  /*
+   * Seeded tournaments give the same result however they're scheduled, and any
+   * game can be replayed on its own
+   */
+  @Test
+  public void seededTournamentRepeatable() {
+
+    List<PlayerType> types = Arrays.asList(PlayerType.RANDOM_COMPUTER, PlayerType.ADAPTIVE_COMPUTER,
+        PlayerType.RANDOM_COMPUTER);
+    Tournament tournament = new Tournament(rules, new PlayerFactory(), types, 30, 6, 1234L);
+
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool several = new ForkJoinPool(4);
+    try {
+      TournamentResult first = tournament.run(single);
+      TournamentResult second = tournament.run(several);
+
+      for (int i=0; i<3; i++) {
+        for (int j=0; j<3; j++) {
+          assertEquals(first.wins(i, j), second.wins(i, j));
+          assertEquals(first.draws(i, j), second.draws(i, j));
+        }
+      }
+
+      // Replaying the games of a pairing accounts for its results
+      long wins = 0;
+      long losses = 0;
+      for (int g=0; g<6; g++) {
+        GameRecord record = tournament.replayGame(1, 2, g);
+        wins += record.p1Score > record.p2Score ? 1 : 0;
+        losses += record.p1Score < record.p2Score ? 1 : 0;
+      }
+      assertEquals(first.wins(1, 2), wins);
+      assertEquals(first.losses(1, 2), losses);
+    } finally {
+      single.shutdown();
+      several.shutdown();
+    }
+
+    assertEquals(1234L, tournament.getMasterSeed());
+  }
+
+  /*
+   * Identical entrants draw every game
+   */
+  @Test
+  public void drawsRecordedBothWays() {
+
+    entrants.add( stubborn("Rock") );
+
+    TournamentResult result = new Tournament(rules, entrants, 5, 3).run();
+
+    assertEquals(3, result.draws(0, 3));
+    assertEquals(3, result.draws(3, 0));
+    assertEquals(0, result.wins(0, 3));
+    assertEquals(0, result.losses(0, 3));
+  }
+
+  /*
+   * Many entrants on a dedicated pool; every game is accounted for
+   */
+  @Test
+  public void largeTournamentAccountsForEveryGame() {
+
+    final List<String> tokens = rules.getTokenList();
+    List<Supplier<? extends Player>> randoms = new ArrayList<Supplier<? extends Player>>();
+    for (int i=0; i<12; i++) {
+      randoms.add( new Supplier<Player>() {
+        @Override
+        public Player get() {
+          return new RandomComputerPlayer(tokens);
+        }
+      });
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    TournamentResult result = new Tournament(rules, randoms, 51, 1).run(pool);
+    pool.shutdown();
+
+    // 66 pairings, one game each; every game has a winner or is drawn
+    long games = 0;
+    for (int i=0; i<12; i++) {
+      for (int j=i+1; j<12; j++) {
+        games += result.wins(i, j) + result.losses(i, j) + result.draws(i, j);
+      }
+    }
+    assertEquals(66, games);
+  }
+
+  /*
+   * A tournament of one is no tournament at all
+   */
+  @Test
+  public void needsTwoEntrants() {
+
+    try {
+      new Tournament(rules, entrants.subList(0, 1), 5, 1);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("A tournament needs at least two entrants", e.getMessage());
+    }
+  }
+
+  /*
+   * Supplier of players which always play the given token
+   */
+  private Supplier<Player> stubborn(final String token) {
+    return new Supplier<Player>() {
+      @Override
+      public Player get() {
+        return new Player() {
+          @Override
+          public String getMove() {
+            return token;
+          }
+        };
+      }
+    };
+  }
+
+}